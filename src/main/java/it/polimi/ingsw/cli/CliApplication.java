@@ -10,6 +10,8 @@ import it.polimi.ingsw.client.network.liveloop.UserOfClient;
 import it.polimi.ingsw.client.network.tcpip.ClientCriticalError;
 import it.polimi.ingsw.controller.ChatMessage;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.LobbyPage;
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.controller.interfaces.ClientChatController;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.TypedCard;
@@ -28,6 +30,11 @@ import static it.polimi.ingsw.controller.event.lobby.LobbyEvents.LOBBY_START;
  * Codex Naturalis CLI application. Run an interactive session to interact with a running server.
  */
 public class CliApplication {
+    /**
+     * Number of lobbies shown by each page of the 'lobbies' command.
+     */
+    private static final int LOBBIES_PAGE_SIZE = 10;
+
     private final String address;
 
     private final int port;
@@ -198,7 +205,7 @@ public class CliApplication {
             if (hm.getState() == CliState.PRE_LOBBY) {
                 switch (keyword) {
                     case "create" -> createCommand(words);
-                    case "lobbies" -> lobbiesCommand();
+                    case "lobbies" -> lobbiesCommand(words);
                     case "join" -> joinCommand(words);
                     case "exit" -> killCommand();
                     default -> runSpecific = false;
@@ -279,10 +286,34 @@ public class CliApplication {
         this.ccc = cm.clientChatController();
     }
 
-    private void lobbiesCommand() {
-        List<LobbyInfo> lobbies = cmc.getLobbies();
-        IOManager.println(lobbies.size() + " lobbies are available");
-        for (LobbyInfo lobby : lobbies) {
+    private void lobbiesCommand(String[] words) throws CliInputException {
+        validateLength(words, 1, 4);
+
+        int page = 1;
+        boolean free = false;
+        boolean rejoin = false;
+        String prefix = null;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].equals("free")) {
+                free = true;
+            } else if (words[i].equals("rejoin")) {
+                rejoin = true;
+            } else if (words[i].startsWith("name=")) {
+                prefix = words[i].substring("name=".length());
+            } else {
+                page = validateInteger(words[i], 1, Integer.MAX_VALUE);
+            }
+        }
+
+        LobbyPage lobbies = cmc.getLobbies(new LobbyQuery((page - 1) * LOBBIES_PAGE_SIZE, LOBBIES_PAGE_SIZE,
+                free, prefix, rejoin));
+        if (lobbies == null) {
+            throw new CliInputException("Impossible to get the list of lobbies");
+        }
+
+        int pages = Math.max(1, (lobbies.total() + LOBBIES_PAGE_SIZE - 1) / LOBBIES_PAGE_SIZE);
+        IOManager.println(lobbies.total() + " lobbies are available, page " + page + " of " + pages);
+        for (LobbyInfo lobby : lobbies.lobbies()) {
             IOManager.println("ID: " + lobby.getUuid() + ", name: " + lobby.getName() + ", max players: " + lobby.getMaxPlayers() + ", players:");
             for (String name : lobby.getPlayerUsernames()) {
                 IOManager.println("    " + name);
@@ -537,11 +568,13 @@ public class CliApplication {
 
     private void manuscriptCommand(String[] words) throws CliInputException {
         int length = validateLength(words, 1, 2);
+        // The manuscripts come from the replica of the match: only what changed since the last command is fetched
+        cgc.getReplica().sync();
         if (length == 1) {
-            IOManager.println(io.manuscript(cgc.getManuscript(myUsername)));
+            IOManager.println(io.manuscript(cgc.getReplica().getManuscript(myUsername)));
         } else {
             validateUsername(words[1]);
-            IOManager.println(io.manuscript(cgc.getManuscript(words[1])));
+            IOManager.println(io.manuscript(cgc.getReplica().getManuscript(words[1])));
         }
     }
 
@@ -633,7 +666,9 @@ public class CliApplication {
             IOManager.println("""
                         PRE_LOBBY commands:
                         - create NAME MAX: Try to create lobby with name NAME and max number of players MAX
-                        - lobbies: Show list of available lobbies.
+                        - lobbies [PAGE] [free] [rejoin] [name=PREFIX]: Show a page of the available lobbies.
+                          free: only the ones with a free seat, rejoin: only the matches you left,
+                          name=PREFIX: only the ones whose name starts with PREFIX
                         - join ID: Try to join lobby with id ID (IDs can be obtained from 'lobbies' command)"""
             );
         } else if (hm.getState() == CliState.LOBBY) {
@@ -72,13 +72,15 @@ public class ConnectionManager implements ConnectionManagerI {
             ProfilesRMI profiles = (ProfilesRMI) RMIClientHandler.getRemoteStub("Profiles");
 
             // Creating User
-            profiles.createUserRMI();
-            UserStubRMI myUser = (UserStubRMI) RMIClientHandler.getRemoteStub("User");
+            // The User is private to this session: it is returned directly, not looked up in the registry
+            UserStubRMI myUser = profiles.createUserRMI();
 
             this.userStub = myUser;
 
             // Setting push service
-            PushServiceOfClientRMI pRMI = (PushServiceOfClientRMI) RMIClientHandler.exportObject(p);
+            // With the sockets chosen by the Server, so that pushes get the same treatment as calls
+            PushServiceOfClientRMI pRMI = (PushServiceOfClientRMI) RMIClientHandler.exportObject(p,
+                    myUser.getSocketFactory());
             myUser.registerPushService(pRMI);
 
             user = new UserOfClient(null, true, myUser, HEARTBEAT_MS, SENSE_MS, deathByConnectionLost);
@@ -0,0 +1,98 @@
+package it.polimi.ingsw.client;
+
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
+import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of lobbies shown by the lobby browser of a Client, kept up to date with the changes the Server sends to
+ * the subscribers (see {@link LobbyListChangeEvent}) instead of asking for the whole list again.
+ * <p>
+ * A change may arrive before the page it follows (e.g. an RMI push overtaking the answer of the request): until the
+ * page is set the changes are kept aside, then the ones newer than the page are applied to it, in order. A change
+ * carries the whole lobby, so applying again a change the page already includes does no harm.
+ */
+public class LobbyBrowser {
+    private final Map<String, LobbyInfo> lobbies = new LinkedHashMap<>();
+    private final List<LobbyListChangeEvent> early = new ArrayList<>();
+    private long version = 0;
+    private boolean subscribed = false;
+    private boolean ready = false;
+
+    /**
+     * Starts a subscription: from now on the changes are accepted, and kept aside until the page is set.
+     */
+    public synchronized void start() {
+        lobbies.clear();
+        early.clear();
+        subscribed = true;
+        ready = false;
+    }
+
+    /**
+     * Sets the page the subscription started with, and applies the changes that arrived before it.
+     *
+     * @param page    the lobbies of the page
+     * @param version the version of the page
+     */
+    public synchronized void reset(List<LobbyInfo> page, long version) {
+        lobbies.clear();
+        page.forEach(lobby -> lobbies.put(lobby.getUuid(), lobby));
+        this.version = version;
+        ready = true;
+
+        early.forEach(this::apply);
+        early.clear();
+    }
+
+    /**
+     * Ends the subscription: the changes still arriving are ignored.
+     */
+    public synchronized void stop() {
+        lobbies.clear();
+        early.clear();
+        subscribed = false;
+        ready = false;
+    }
+
+    /**
+     * Applies a change sent by the Server.
+     *
+     * @param event the change
+     * @return true if the list changed, false if the change has been ignored or kept aside
+     */
+    public synchronized boolean apply(LobbyListChangeEvent event) {
+        if (!subscribed) {
+            return false;
+        }
+
+        if (!ready) {
+            early.add(event);
+            return false;
+        }
+
+        if (event.version() <= version) {
+            return false;
+        }
+
+        if (event.kind() == LobbyListChangeEvent.Kind.REMOVED) {
+            lobbies.remove(event.lobby().getUuid());
+        } else {
+            lobbies.put(event.lobby().getUuid(), event.lobby());
+        }
+
+        version = event.version();
+        return true;
+    }
+
+    /**
+     * @return a copy of the lobbies currently listed, empty if not subscribed
+     */
+    public synchronized List<LobbyInfo> getLobbies() {
+        return lobbies.values().stream().map(LobbyInfo::new).toList();
+    }
+}
@@ -4,6 +4,10 @@ import it.polimi.ingsw.client.network.liveloop.UserOfClient;
 import it.polimi.ingsw.client.network.rmi.DefaultRMIExceptionsHandlerOfClient;
 import it.polimi.ingsw.controller.EventHandler;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameReplica;
+import it.polimi.ingsw.controller.PlaceAndDraw;
+import it.polimi.ingsw.controller.PlaceAndDrawResult;
+import it.polimi.ingsw.controller.VersionedGameState;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
 import it.polimi.ingsw.controller.interfaces.ClientGameController;
@@ -37,6 +41,7 @@ public class NetworkClientGameController implements ClientGameController {
     private final UserOfClient userOfClient;
     private final Map<EventType<? extends Event>, List<EventHandler<? extends Event>>> eventHandlers = new HashMap<>();
     private final Boolean RMI;
+    private final GameReplica replica = new GameReplica(this::getGameState);
 
     public NetworkClientGameController(String username, UserOfClient user, Boolean RMI) {
         this.myUsername = username;
@@ -330,6 +335,51 @@ public class NetworkClientGameController implements ClientGameController {
         }
     }
 
+    public synchronized PlaceAndDrawResult placeAndDraw(PlaceAndDraw turn) {
+        if (!this.RMI) {
+            try {
+                SingleArgMessage<PlaceAndDrawResult> message = singleCastAndSend(userOfClient,
+                        new DoubleArgMessage<>(PLACE_AND_DRAW, myUsername, turn),
+                        ANSWER_PLACE_AND_DRAW
+                );
+                return message.get();
+            } catch (ClassCastException e) {
+                return new PlaceAndDrawResult(false, null, false);
+            }
+        } else {
+            try {
+                return this.userOfClient.getUserStub().placeAndDraw(myUsername, turn);
+            } catch (RemoteException e) {
+                throw DefaultRMIExceptionsHandlerOfClient.clientCriticalError;
+            }
+        }
+    }
+
+    public synchronized VersionedGameState getGameState(long ifNewerThan) {
+        if (!this.RMI) {
+            try {
+                SingleArgMessage<VersionedGameState> message = singleCastAndSend(userOfClient,
+                        new SingleArgMessage<>(GET_GAME_STATE, ifNewerThan),
+                        ANSWER_GET_GAME_STATE
+                );
+                return message.get();
+            } catch (ClassCastException e) {
+                return null;
+            }
+        } else {
+            try {
+                return this.userOfClient.getUserStub().getGameState(ifNewerThan);
+            } catch (RemoteException e) {
+                throw DefaultRMIExceptionsHandlerOfClient.clientCriticalError;
+            }
+        }
+    }
+
+    @Override
+    public GameReplica getReplica() {
+        return replica;
+    }
+
     public synchronized boolean gameEnded() {
         if (!this.RMI) {
             try {
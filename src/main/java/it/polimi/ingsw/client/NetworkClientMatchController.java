@@ -7,8 +7,11 @@ import it.polimi.ingsw.client.network.state.InGameStateOfClient;
 import it.polimi.ingsw.client.network.state.InLobbyStateOfClient;
 import it.polimi.ingsw.client.network.state.StateOfClient;
 import it.polimi.ingsw.controller.EventHandler;
+import it.polimi.ingsw.controller.LobbyPage;
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
 import it.polimi.ingsw.controller.interfaces.ClientMatchController;
 import it.polimi.ingsw.model.game.gamelobby.GameLobbyException;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
@@ -24,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
+import static it.polimi.ingsw.controller.event.lobby.LobbyEvents.LOBBY_LIST_CHANGE;
 import static it.polimi.ingsw.controller.event.lobby.LobbyEvents.LOBBY_START;
 import static it.polimi.ingsw.network.messages.MessageType.*;
 
@@ -34,6 +38,7 @@ public class NetworkClientMatchController implements ClientMatchController {
     private final UserOfClient userOfClient;
     private final Map<EventType<? extends Event>, List<EventHandler<? extends Event>>> eventHandlers = new HashMap<>();
     private final Boolean RMI;
+    private final LobbyBrowser lobbyBrowser = new LobbyBrowser();
 
     /**
      * Constructor for the class.
@@ -120,6 +125,9 @@ public class NetworkClientMatchController implements ClientMatchController {
             boolean ok = answer.getType() == LOBBY_JOIN_OK;
             if (!ok) {
                 this.userOfClient.setState(oldState);
+            } else {
+                // The Server ends the subscription to the list of lobbies
+                lobbyBrowser.stop();
             }
 
             return ok;
@@ -129,6 +137,8 @@ public class NetworkClientMatchController implements ClientMatchController {
 
                 if (!ok) {
                     this.userOfClient.setState(oldState);
+                } else {
+                    lobbyBrowser.stop();
                 }
 
                 return ok;
@@ -142,32 +152,103 @@ public class NetworkClientMatchController implements ClientMatchController {
      * Asks the Server for the list of lobbies that can be joined.
      * @return the list of lobbies that can be joined. This can be null (see: {@link it.polimi.ingsw.controller.MatchController} specifications).
      */
-        public synchronized List<LobbyInfo> getLobbies() {
-        List<ListOfLobbyToJoinMessage.LobbyInfo> lobbies;
+    public synchronized List<LobbyInfo> getLobbies() {
+        LobbyPage page = getLobbies(LobbyQuery.ALL);
+        return page == null ? null : page.lobbies();
+    }
+
+    /**
+     * Asks the Server for a page of the list of lobbies that can be joined.
+     * @param query the page and the filters
+     * @return the page of lobbies. This can be null (see: {@link it.polimi.ingsw.controller.MatchController} specifications).
+     */
+    public synchronized LobbyPage getLobbies(LobbyQuery query) {
+        return requestLobbies(query, false);
+    }
+
+    /**
+     * Asks the Server for the list of lobbies that can be joined, and for the changes to it from now on: the
+     * lobbies are then kept up to date (see {@link #getSubscribedLobbies()}), and the handlers of
+     * {@link it.polimi.ingsw.controller.event.lobby.LobbyEvents#LOBBY_LIST_CHANGE} are notified of every change.
+     * Creating or joining a lobby ends the subscription.
+     * @param query the filters of the lobbies to follow
+     * @return the lobbies matching the filters. This can be null (see: {@link it.polimi.ingsw.controller.MatchController} specifications).
+     */
+    public synchronized List<LobbyInfo> subscribeLobbies(LobbyQuery query) {
+        // Started before asking, the changes arriving before the answer are kept aside
+        lobbyBrowser.start();
+
+        LobbyPage page = requestLobbies(query, true);
+        if (page == null) {
+            lobbyBrowser.stop();
+            return null;
+        }
+
+        lobbyBrowser.reset(page.lobbies(), page.version());
+        return lobbyBrowser.getLobbies();
+    }
+
+    /**
+     * @return the lobbies followed with {@link #subscribeLobbies(LobbyQuery)}, up to date with the last change received
+     */
+    public List<LobbyInfo> getSubscribedLobbies() {
+        return lobbyBrowser.getLobbies();
+    }
+
+    /**
+     * Asks the Server to stop sending the changes to the list of lobbies. The Server does not answer.
+     */
+    public synchronized void unsubscribeLobbies() {
+        lobbyBrowser.stop();
+
         if (!this.RMI) {
-            GetListOfLobbyToJoinMessage message = new GetListOfLobbyToJoinMessage();
-            Message answer = userOfClient.sendAndWaitMultiple(message, List.of(
+            userOfClient.send(new StopLobbyUpdatesMessage());
+        } else {
+            try {
+                this.userOfClient.getUserStub().stopLobbyUpdatesRMI();
+            } catch (RemoteException e) {
+                throw DefaultRMIExceptionsHandlerOfClient.clientCriticalError;
+            }
+        }
+    }
+
+    /**
+     * Applies a change to the list of lobbies sent by the Server, and notifies the handlers if the list changed.
+     * Not synchronized: it is called by the thread receiving the answers the synchronized methods wait for.
+     * @param event the change
+     */
+    public void onLobbyListChange(LobbyListChangeEvent event) {
+        if (lobbyBrowser.apply(event)) {
+            executeHandlers(LOBBY_LIST_CHANGE, event);
+        }
+    }
+
+    private LobbyPage requestLobbies(LobbyQuery query, boolean subscribe) {
+        ListOfLobbyToJoinMessage answer;
+        if (!this.RMI) {
+            GetListOfLobbyToJoinMessage message = new GetListOfLobbyToJoinMessage(query, subscribe);
+            Message reply = userOfClient.sendAndWaitMultiple(message, List.of(
                     LIST_OF_LOBBY_TO_JOIN,
                     UNKNOWN_ERROR));
 
-            if (answer.getType() == UNKNOWN_ERROR) {
-                lobbies = null;
+            if (reply.getType() == UNKNOWN_ERROR) {
+                answer = null;
             } else {
-                lobbies = ((ListOfLobbyToJoinMessage) answer).getLobbies();
+                answer = (ListOfLobbyToJoinMessage) reply;
             }
         } else {
             try {
-                lobbies = this.userOfClient.getUserStub().getListOfLobbyToJoinRMI();
+                answer = this.userOfClient.getUserStub().getListOfLobbyToJoinRMI(query, subscribe);
             } catch (RemoteException e) {
                 throw DefaultRMIExceptionsHandlerOfClient.clientCriticalError;
             }
         }
 
-        if (lobbies == null) {
+        if (answer == null) {
             return null;
         }
 
-        return lobbies.stream().map(l -> {
+        List<LobbyInfo> lobbies = answer.getLobbies().stream().map(l -> {
             try {
                 return new LobbyInfo(l.uuid, l.name, l.maxPlayers, l.playerUsernames, l.gameOngoing);
             } catch (GameLobbyException e) {
@@ -183,6 +264,8 @@ public class NetworkClientMatchController implements ClientMatchController {
                 }
             }
         }).toList();
+
+        return new LobbyPage(lobbies, answer.getOffset(), answer.getTotal(), answer.getVersion());
     }
 
     /**
@@ -205,6 +288,8 @@ public class NetworkClientMatchController implements ClientMatchController {
 
             if (!ok) {
                 this.userOfClient.setState(oldState);
+            } else {
+                lobbyBrowser.stop();
             }
 
             return ok;
@@ -220,6 +305,8 @@ public class NetworkClientMatchController implements ClientMatchController {
                 if (!ok) {
                     // Reverting back to previous state
                     this.userOfClient.setState(oldState);
+                } else {
+                    lobbyBrowser.stop();
                 }
 
                 return ok;
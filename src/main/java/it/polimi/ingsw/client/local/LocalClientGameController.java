@@ -2,8 +2,13 @@ package it.polimi.ingsw.client.local;
 
 import it.polimi.ingsw.controller.GameController;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameReplica;
+import it.polimi.ingsw.controller.PlaceAndDraw;
+import it.polimi.ingsw.controller.PlaceAndDrawResult;
+import it.polimi.ingsw.controller.VersionedGameState;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.game.GameEvents;
 import it.polimi.ingsw.controller.interfaces.ClientGameController;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.StarterCard;
@@ -23,16 +28,24 @@ public class LocalClientGameController implements ClientGameController {
 
     private final GameController gc;
     private final String myUsername;
+    private final GameReplica replica;
 
     public LocalClientGameController(GameController gc, String username) {
         this.gc = gc;
         this.myUsername = username;
-
+        this.replica = subscribeReplica();
     }
 
     public LocalClientGameController(GameController gc) {
         this.gc = gc;
         this.myUsername = gc.getGameFlow().getAllUsernames().get(0);
+        this.replica = subscribeReplica();
+    }
+
+    private GameReplica subscribeReplica() {
+        GameReplica replica = new GameReplica(version -> gc.getGameState(myUsername, version));
+        gc.addEventHandler(myUsername, GameEvents.STATE_DELTA, replica::apply);
+        return replica;
     }
 
     @Override
@@ -111,6 +124,21 @@ public class LocalClientGameController implements ClientGameController {
         return gc.drawCoveredCard(myUsername, type);
     }
 
+    @Override
+    public PlaceAndDrawResult placeAndDraw(PlaceAndDraw turn) {
+        return gc.placeAndDraw(myUsername, turn);
+    }
+
+    @Override
+    public VersionedGameState getGameState(long ifNewerThan) {
+        return gc.getGameState(myUsername, ifNewerThan);
+    }
+
+    @Override
+    public GameReplica getReplica() {
+        return replica;
+    }
+
     @Override
     public boolean gameEnded() {
         return gc.gameEnded();
@@ -1,8 +1,12 @@
 package it.polimi.ingsw.client.local;
 
+import it.polimi.ingsw.client.LobbyBrowser;
+import it.polimi.ingsw.controller.LobbyPage;
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.controller.LogicMatchController;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.lobby.LobbyEvents;
 import it.polimi.ingsw.controller.interfaces.ClientMatchController;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
 
@@ -13,6 +17,7 @@ import java.util.function.Consumer;
 public class LocalClientMatchController implements ClientMatchController {
     private final String currUsername;
     private final LogicMatchController mc;
+    private final LobbyBrowser lobbyBrowser = new LobbyBrowser();
 
     public LocalClientMatchController(String currUsername, LogicMatchController mc) {
         this.currUsername = currUsername;
@@ -42,6 +47,7 @@ public class LocalClientMatchController implements ClientMatchController {
     public boolean createLobby(String name, int maxPlayers) {
         return boxExceptionBool(() -> {
             mc.createLobby(name, maxPlayers, currUsername);
+            lobbyBrowser.stop();
             return true;
         });
     }
@@ -51,10 +57,41 @@ public class LocalClientMatchController implements ClientMatchController {
         return mc.getInfoLobbies();
     }
 
+    @Override
+    public LobbyPage getLobbies(LobbyQuery query) {
+        return mc.getLobbyPage(currUsername, query);
+    }
+
+    @Override
+    public List<LobbyInfo> subscribeLobbies(LobbyQuery query) {
+        lobbyBrowser.start();
+
+        LobbyPage page = mc.subscribeLobbies(currUsername, query, e -> {
+            if (lobbyBrowser.apply(e)) {
+                mc.executeHandlers(LobbyEvents.LOBBY_LIST_CHANGE, e);
+            }
+        });
+
+        lobbyBrowser.reset(page.lobbies(), page.version());
+        return lobbyBrowser.getLobbies();
+    }
+
+    @Override
+    public List<LobbyInfo> getSubscribedLobbies() {
+        return lobbyBrowser.getLobbies();
+    }
+
+    @Override
+    public void unsubscribeLobbies() {
+        lobbyBrowser.stop();
+        mc.unsubscribeLobbies(currUsername);
+    }
+
     @Override
     public boolean joinLobby(String uuid) {
         return boxExceptionBool(() -> {
             mc.joinLobby(uuid, currUsername);
+            lobbyBrowser.stop();
             return true;
         });
     }
@@ -9,8 +9,10 @@ import it.polimi.ingsw.client.network.tcpip.Client;
 import it.polimi.ingsw.client.network.tcpip.ClientCriticalError;
 import it.polimi.ingsw.client.network.tcpip.ClientException;
 import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
 import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.messages.MessageType;
+import it.polimi.ingsw.network.messages.servertoclient.EventBatchMessage;
 import it.polimi.ingsw.network.messages.servertoclient.LobbyStartMessage;
 import it.polimi.ingsw.network.rmi.UserStubRMI;
 import it.polimi.ingsw.network.tcpip.Heartbeat;
@@ -19,10 +21,6 @@ import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static it.polimi.ingsw.network.messages.util.Casting.singleArgCast;
@@ -44,18 +42,14 @@ public class UserOfClient {
     private final UserStubRMI userStub;
 
     // Heartbeat information
-    private final Integer heartbeatMs;
-    private Boolean heartbeatContinuitySignal;
-    private final Object heartbeatContinuitySignalLock;
-    private final Thread heartbeatThread;
+    private final LivenessWheel.Periodic heartbeat;
 
     // Sense information
-    private final AtomicLong lastSense;
-    private final ScheduledExecutorService executorService;
+    private final LivenessWheel.Session sense;
 
     /**
      * Callback to be called when the connection is lost.
-     * This callback is called by the executorService upon the timeouting of the Sense checker.
+     * This callback is called by the liveness wheel upon the timeouting of the Sense checker.
      */
     private final Consumer<Void> deathByConnectionLost;
 
@@ -82,48 +76,25 @@ public class UserOfClient {
             this.listenLoop = new ListenLoopOfClient(0, deathByConnectionLost);
             this.userStub = null;
 
-            this.heartbeatMs = null;
-            this.heartbeatContinuitySignal = null;
-            this.heartbeatContinuitySignalLock = null;
-            this.heartbeatThread = null;
-            this.lastSense = null;
-            this.executorService = null;
+            this.heartbeat = null;
+            this.sense = null;
             this.deathByConnectionLost = deathByConnectionLost;
         } else {
             this.client = null;
             this.listenLoop = null;
             this.userStub = userStub;
 
-            // Start heartbeat thread
-            this.heartbeatMs = heartbeatMs;
-            this.heartbeatContinuitySignal = false;
-            this.heartbeatContinuitySignalLock = new Object();
-            this.heartbeatThread = new Thread(this::heartbeatRMIThreadImplementation);
-
-            this.lastSense = new AtomicLong(System.currentTimeMillis());
-            this.executorService = Executors.newSingleThreadScheduledExecutor();
             this.deathByConnectionLost = deathByConnectionLost;
 
-            this.heartbeatThread.setUncaughtExceptionHandler((t, e) -> {
-                synchronized (this.heartbeatContinuitySignalLock) {
-                    this.heartbeatContinuitySignal = false;
-                }
+            // If more than senseMs pass without a Sense, the Server is gone
+            this.sense = LivenessWheel.getInstance().track(senseMs, () -> {
+                // Here i need to disconnect the Client from the RMI Server
+                this.stopHeartbeat();
+                this.deathByConnectionLost.accept(null);
             });
 
-            this.executorService.scheduleAtFixedRate(() -> {
-                // If more than senseMs have passed since the last sense
-                if (System.currentTimeMillis() - this.lastSense.get() > senseMs) {
-                    // Here i need to disconnect the Client from the RMI Server
-                    this.executorService.shutdown();
-                    this.deathByConnectionLost.accept(null);
-                }
-            }, 1, 1, TimeUnit.SECONDS);
-
-            synchronized (this.heartbeatContinuitySignalLock) {
-                this.heartbeatContinuitySignal = true;
-            }
-
-            this.heartbeatThread.start();
+            // Start heartbeat
+            this.heartbeat = LivenessWheel.getInstance().every(heartbeatMs, this::sendHeartbeatRMI);
         }
 
         this.messageTypesRegisteredForWait = new ArrayList<>();
@@ -137,29 +108,32 @@ public class UserOfClient {
     }
 
     /**
-     * Heartbeat thread implementation.
-     * This thread guards for RMI connection loss.
+     * Heartbeat implementation, run periodically by the {@link LivenessWheel}.
+     * This guards for RMI connection loss.
      * For Socket, refer {@link Client} internal implementation: the Heartbeat mechanism is directly implemented there.
      */
-    private void heartbeatRMIThreadImplementation() {
-        while (true) {
-            synchronized (this.heartbeatContinuitySignalLock) {
-                if (!this.heartbeatContinuitySignal) {
-                    break;
-                }
-            }
+    private void sendHeartbeatRMI() {
+        try {
+            this.userStub.heartbeat(new Heartbeat());
+        } catch (RemoteException e) {
+            // The Server is unreachable: no point in insisting, the Sense checker will notice
+            this.heartbeat.cancel();
+        }
+    }
 
-            try {
-                this.userStub.heartbeat(new Heartbeat());
-                Thread.sleep(this.heartbeatMs);
-            } catch (InterruptedException | RemoteException e) {
-                throw new RuntimeException("The used TCP connection may be invalid.");
-            }
+    private void stopHeartbeat() {
+        if (this.heartbeat != null) {
+            this.heartbeat.cancel();
         }
     }
 
-        public AtomicLong getLastSense() {
-        return lastSense;
+    /**
+     * Records that a Sense has been received from the Server.
+     */
+    public void onSense() {
+        if (this.sense != null) {
+            this.sense.touch();
+        }
     }
 
         public UserStubRMI getUserStub() {
@@ -345,6 +319,8 @@ public class UserOfClient {
      * @param message The message to react to.
      */
     public void react(Message message) {
+        this.invalidateReplicaIfNeeded(message);
+
         switch (message.getType()) {
             case LOBBY_START_WRAPPED -> this.state.onLobbyStartEventWrapped(singleArgCast(message));
             case LOBBY_START -> this.state.onLobbyStartEvent((LobbyStartMessage) message);
@@ -359,6 +335,11 @@ public class UserOfClient {
             case BROADCAST_MESSAGE_EVENT -> this.state.onBroadcastMessageEvent(singleArgCast(message));
             case PRIVATE_MESSAGE_EVENT -> this.state.onPrivateMessageEvent(singleArgCast(message));
             case MATCH_COMPOSITION_CHANGE_EVENT -> this.state.onMatchCompositionChangeEvent(singleArgCast(message));
+            case STATE_DELTA_EVENT -> this.state.onStateDeltaEvent(singleArgCast(message));
+            case LOBBY_LIST_CHANGE_EVENT -> this.state.onLobbyListChangeEvent(singleArgCast(message));
+
+            // All the events of a single game action: handled in order, as if they had been received one by one
+            case EVENT_BATCH -> ((EventBatchMessage) message).getMessages().forEach(this::react);
 
             case INVALID_LOBBY_INFO_FOR_CREATION,
                     LIST_OF_LOBBY_TO_JOIN,
@@ -388,6 +369,7 @@ public class UserOfClient {
                     WHAT_LOBBY_TO_JOIN,
                     START_LOBBY,
                     GET_LIST_OF_LOBBY_TO_JOIN,
+                    STOP_LOBBY_UPDATES,
                     GET_LOBBY_INFO_MESSAGE,
                     LOBBY_EXIT,
                     LOBBY_INFO,
@@ -403,6 +385,32 @@ public class UserOfClient {
         }
     }
 
+    /**
+     * A Server using object streams sends the game events without the changes of the state of the match (see
+     * StateDeltaEvent): the replica of the match is marked as stale at every game event, so that it catches up on
+     * its next read instead of showing an old state.
+     * @param message The message received from the Server.
+     */
+    private void invalidateReplicaIfNeeded(Message message) {
+        if (this.RMI || this.client.isFramed() || this.cgc == null) {
+            return;
+        }
+
+        switch (message.getType()) {
+            case CHOOSE_GOAL_EVENT,
+                    DRAW_COVERED_EVENT,
+                    DRAW_VISIBLE_EVENT,
+                    PLACE_CARD_EVENT,
+                    SET_COLOR_EVENT,
+                    SET_STARTER_EVENT,
+                    STATE_CHANGE_EVENT,
+                    TURN_CHANGE_EVENT,
+                    MATCH_COMPOSITION_CHANGE_EVENT -> this.cgc.getReplica().invalidate();
+            default -> {
+            }
+        }
+    }
+
     public ListenLoopOfClient getListenLoop() {
         return listenLoop;
     }
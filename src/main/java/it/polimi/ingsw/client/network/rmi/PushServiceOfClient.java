@@ -5,6 +5,7 @@ import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.tcpip.Sense;
 
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * This class represents the RMI implementation of the PushService exposed by the Client to the Server.
@@ -39,7 +40,20 @@ public class PushServiceOfClient implements PushServiceOfClientRMI {
             // Basically same as the "react" in UserOfClient
             this.userOfClient.react((Message) object);
         } else {
-            this.userOfClient.getLastSense().set(System.currentTimeMillis());
+            this.userOfClient.onSense();
+        }
+    }
+
+    /**
+     * Method to push many events to the Client.
+     * The Server uses this method to send at once the events it had queued for the Client.
+     * @param messages the events to push, in order
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    @Override
+    public void pushEvents(List<Message> messages) throws RemoteException {
+        for (Message message : messages) {
+            this.userOfClient.react(message);
         }
     }
 
@@ -1,7 +1,10 @@
 package it.polimi.ingsw.client.network.rmi;
 
+import it.polimi.ingsw.network.messages.Message;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Interface to expose the methods of the {@link PushServiceOfClient} class for RMI use.
@@ -16,4 +19,12 @@ public interface PushServiceOfClientRMI extends Remote {
      * @throws RemoteException if something goes wrong with the RMI communication
      */
     void pushEvent(Object object) throws RemoteException;
+
+    /**
+     * Method to push many events to the Client with a single remote call.
+     * This has to be called by the Server to send the events it had queued for the Client.
+     * @param messages the events to push, to be handled in order
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    void pushEvents(List<Message> messages) throws RemoteException;
 }
@@ -1,5 +1,7 @@
 package it.polimi.ingsw.client.network.rmi;
 
+import it.polimi.ingsw.network.rmi.TunedSocketFactory;
+
 import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -86,4 +88,23 @@ public class RMIClientHandler {
         // Export the object
         return UnicastRemoteObject.exportObject(obj, 0);
     }
+
+    /**
+     * Export an object using RMI, with the given sockets.
+     * Used for the push service, so that the Server calls it over the same kind of sockets the Client uses to call
+     * the Server.
+     *
+     * @param obj the object to export. The object must implement the Remote interface.
+     * @param factory the factory of both the server sockets and the sockets the Server will connect with
+     * @return the stub of the object. The caller will have to cast the stub appropriately.
+     * @throws RemoteException if the registry has not been created yet or if the object could not be exported
+     */
+    public static Remote exportObject(Remote obj, TunedSocketFactory factory) throws RemoteException {
+        if (registryIP == null) {
+            throw new RemoteException("Registry IP has not been set yet.");
+        }
+
+        // Export the object
+        return UnicastRemoteObject.exportObject(obj, 0, factory, factory);
+    }
 }
@@ -1,6 +1,8 @@
 package it.polimi.ingsw.client.network.state;
 
 import it.polimi.ingsw.client.network.liveloop.UserOfClient;
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
+import it.polimi.ingsw.network.messages.SingleArgMessage;
 
 /**
  * This class represents the ChooseCreateJoinState of the User in the Server.
@@ -10,4 +12,9 @@ public class ChooseCreateJoinStateOfClient extends StateOfClient {
     public ChooseCreateJoinStateOfClient(UserOfClient userOfClient) {
         super(userOfClient);
     }
+
+    @Override
+    public void onLobbyListChangeEvent(SingleArgMessage<LobbyListChangeEvent> message) {
+        userOfClient.getClientMC().onLobbyListChange(message.get());
+    }
 }
@@ -154,6 +154,22 @@ public class InGameStateOfClient extends StateOfClient {
         }
     }
 
+    /**
+     * Handle the StateDeltaEvent from the Server.
+     * The handling consists in updating the replica of the match, then executing the handlers of the STATE_DELTA
+     * event. It comes first among the events of a command, so the other handlers already read the new state.
+     * @param message the StateDeltaEvent received from the Server.
+     */
+    @Override
+    public void onStateDeltaEvent(SingleArgMessage<StateDeltaEvent> message) {
+        try {
+            userOfClient.getClientGC().getReplica().apply(message.get());
+            userOfClient.getClientGC().executeHandlers(STATE_DELTA, message.get());
+        } catch (NullPointerException ignored) {
+            // (*)
+        }
+    }
+
     // Chat-related events
 
     /**
@@ -4,6 +4,7 @@ import it.polimi.ingsw.client.network.liveloop.UserOfClient;
 import it.polimi.ingsw.controller.event.chat.BroadcastMesssageEvent;
 import it.polimi.ingsw.controller.event.chat.PrivateMessageEvent;
 import it.polimi.ingsw.controller.event.game.*;
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
 import it.polimi.ingsw.controller.event.lobby.LobbyStartEvent;
 import it.polimi.ingsw.network.messages.SingleArgMessage;
 import it.polimi.ingsw.network.messages.servertoclient.LobbyStartMessage;
@@ -46,6 +47,14 @@ abstract public class StateOfClient {
         // (*)
     }
 
+    /**
+     * Handle the LobbyListChangeEvent from the Server.
+     * @param message the LobbyListChangeEvent received from the Server.
+     */
+    public void onLobbyListChangeEvent(SingleArgMessage<LobbyListChangeEvent> message) {
+        // Not (*): the changes sent before the Server knew the lobby browser had been left are simply outdated
+    }
+
     /**
      * Handle the MatchCompositionChangeEvent from the Server.
      * @param message the MatchCompositionChangeEvent received from the Server.
@@ -118,6 +127,14 @@ abstract public class StateOfClient {
         // (*)
     }
 
+    /**
+     * Handle the StateDeltaEvent from the Server.
+     * @param message the StateDeltaEvent received from the Server.
+     */
+    public void onStateDeltaEvent(SingleArgMessage<StateDeltaEvent> message) {
+        // (*)
+    }
+
     // Chat-related events
 
     /**
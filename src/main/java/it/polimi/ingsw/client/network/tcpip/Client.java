@@ -1,7 +1,12 @@
 package it.polimi.ingsw.client.network.tcpip;
 
+import it.polimi.ingsw.network.codec.Codecs;
+import it.polimi.ingsw.network.codec.FramedStreams;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
 import it.polimi.ingsw.network.tcpip.Heartbeat;
 import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
+import it.polimi.ingsw.network.tcpip.SessionObjectOutputStream;
 
 import java.io.*;
 import java.net.*;
@@ -36,9 +41,9 @@ public class Client {
 
     /**
      * Unidirectional stream: THIS_NODE -> OPPOSITE_NODE.
-     * Used for serializable objects.
+     * Used for serializable objects. It is periodically reset, see {@link SessionObjectOutputStream}.
      */
-    private ObjectOutputStream objectOutputStream;
+    private SessionObjectOutputStream objectOutputStream;
 
     /**
      * Unidirectional stream: OPPOSITE_NODE -> THIS_NODE.
@@ -46,6 +51,12 @@ public class Client {
      */
     private ObjectInputStream objectInputStream;
 
+    /**
+     * Streams used in place of the object streams when the server speaks the framed protocol
+     * (see {@link FramedProtocol}). Each frame carries a single object, encoded with the negotiated codec.
+     */
+    private FramedStreams framedStreams;
+
     /**
      * A flag to check if the socket is reserved (connected to a server).
      */
@@ -53,9 +64,11 @@ public class Client {
 
     // Heartbeat information
     private final Integer heartbeatMs;
-    private Boolean heartbeatContinuitySignal;
-    private final Object heartbeatContinuitySignalLock;
-    private final Thread heartbeatThread;
+
+    /**
+     * The heartbeat, run by the {@link LivenessWheel} while the socket is reserved. Null otherwise.
+     */
+    private volatile LivenessWheel.Periodic heartbeat;
 
     // Sense information
     private final Integer senseMs;
@@ -68,6 +81,7 @@ public class Client {
     public Client(Integer heartbeatMs, Integer senseMs) {
         this.objectInputStream = null;
         this.objectOutputStream = null;
+        this.framedStreams = null;
         this.socket = null;
 
         this.reserved = false;
@@ -77,17 +91,9 @@ public class Client {
         this.sendLock = new Object();
 
         this.heartbeatMs = heartbeatMs;
-        this.heartbeatContinuitySignal = false;
-        this.heartbeatContinuitySignalLock = new Object();
-        this.heartbeatThread = new Thread(this::heartbeatThreadImplementation);
+        this.heartbeat = null;
         this.senseMs = senseMs;
 
-        this.heartbeatThread.setUncaughtExceptionHandler((t, e) -> {
-            synchronized (this.heartbeatContinuitySignalLock) {
-                this.heartbeatContinuitySignal = false;
-            }
-        });
-
         try {
             this.privateIPAddress = Inet4Address.getLocalHost().toString();
         } catch (UnknownHostException e) {
@@ -108,24 +114,24 @@ public class Client {
     }
 
     /**
-     * The implementation of the heartbeat thread.
-     * This thread sends a heartbeat to the server every heartbeatMs milliseconds.
+     * The implementation of the heartbeat, run by the {@link LivenessWheel} every heartbeatMs milliseconds.
      * The heartbeat is an Heartbeat object.
      */
-    private void heartbeatThreadImplementation() {
-        while (true) {
-            synchronized (this.heartbeatContinuitySignalLock) {
-                if (!this.heartbeatContinuitySignal) {
-                    break;
-                }
-            }
+    private void sendHeartbeat() {
+        try {
+            this.sendSerializableObject(new Heartbeat());
+        } catch (ClientException | InvalidTCPConnectionException e) {
+            // The used TCP connection may be invalid: the listen loop will notice on its own
+            this.stopHeartbeat();
+        }
+    }
 
-            try {
-                this.sendSerializableObject(new Heartbeat());
-                Thread.sleep(this.heartbeatMs);
-            } catch (ClientException | InvalidTCPConnectionException | InterruptedException e) {
-                throw new RuntimeException("The used TCP connection may be invalid.");
-            }
+    private void stopHeartbeat() {
+        LivenessWheel.Periodic periodic = this.heartbeat;
+
+        if (periodic != null) {
+            periodic.cancel();
+            this.heartbeat = null;
         }
     }
 
@@ -148,11 +154,7 @@ public class Client {
                     this.attachStreams();
                     this.reserved = true;
 
-                    synchronized (this.heartbeatContinuitySignalLock) {
-                        this.heartbeatContinuitySignal = true;
-                    }
-
-                    this.heartbeatThread.start();
+                    this.heartbeat = LivenessWheel.getInstance().every(this.heartbeatMs, this::sendHeartbeat);
                 } catch (IOException e) {
                     this._dispose();
                     throw new InvalidTCPConnectionException(e.getMessage());
@@ -198,7 +200,13 @@ public class Client {
             if (!this.isSocketExhausted() && this.reserved) {
                 try {
                     // Read data
-                    Object read = this.objectInputStream.readObject();
+                    Object read;
+
+                    if (this.framedStreams != null) {
+                        read = this.framedStreams.read();
+                    } else {
+                        read = this.objectInputStream.readObject();
+                    }
 
                     if (read == null) {
                         throw new InvalidTCPConnectionException("The used TCP connection may be invalid or the object could not be read.");
@@ -226,8 +234,11 @@ public class Client {
         synchronized (this.sendLock) {
             try {
                 // Writing the object to stream
-                this.objectOutputStream.writeObject(serializableObject);
-                this.objectOutputStream.flush();
+                if (this.framedStreams != null) {
+                    this.framedStreams.write(serializableObject);
+                } else {
+                    this.objectOutputStream.writeMessage(serializableObject);
+                }
                 return true;
             } catch (IOException e) {
                 // The object could not be written to the stream
@@ -259,11 +270,18 @@ public class Client {
         this.socket = null;
         this.objectOutputStream = null;
         this.objectInputStream = null;
+        this.framedStreams = null;
         this.reserved = false;
+        this.stopHeartbeat();
+    }
 
-        synchronized (this.heartbeatContinuitySignalLock) {
-            this.heartbeatContinuitySignal = false;
-        }
+    /**
+     * Tells whether the server speaks the framed protocol: only then it sends the changes of the state of the match
+     * along with the game events.
+     * @return true if the streams attached are the framed ones, false if they are object streams (or not attached)
+     */
+    public Boolean isFramed() {
+        return this.framedStreams != null;
     }
 
     /**
@@ -273,7 +291,8 @@ public class Client {
         private Boolean isSocketExhausted() {
         return this.socket == null &&
                 this.objectInputStream == null &&
-                this.objectOutputStream == null;
+                this.objectOutputStream == null &&
+                this.framedStreams == null;
     }
 
     /**
@@ -285,11 +304,26 @@ public class Client {
 
     /**
      * Attach the streams to the socket.
+     * Both kinds of server speak first: the first four bytes are either the framed protocol preamble or the
+     * header of a Java serialization stream. They are peeked to choose which streams to use.
+     * A framed server then negotiates the codec, the most compact one being preferred.
      * @throws IOException if the streams could not be attached
      */
     private void attachStreams() throws IOException {
-        this.objectOutputStream = new ObjectOutputStream(this.socket.getOutputStream());
-        this.objectInputStream = new ObjectInputStream(this.socket.getInputStream());
+        BufferedInputStream inputStream = new BufferedInputStream(this.socket.getInputStream());
+
+        inputStream.mark(FramedProtocol.HEADER_BYTES);
+        int preamble = new DataInputStream(inputStream).readInt();
+
+        if (preamble == FramedProtocol.MAGIC) {
+            this.framedStreams = FramedStreams.connect(inputStream, this.socket.getOutputStream(), Codecs.CLIENT_PREFERENCE);
+        } else {
+            // Legacy server: give back the stream header to the ObjectInputStream
+            inputStream.reset();
+
+            this.objectOutputStream = new SessionObjectOutputStream(this.socket.getOutputStream());
+            this.objectInputStream = new ObjectInputStream(inputStream);
+        }
     }
 
     /**
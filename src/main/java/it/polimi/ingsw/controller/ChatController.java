@@ -1,6 +1,7 @@
 package it.polimi.ingsw.controller;
 
 import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.EventDispatcher;
 import it.polimi.ingsw.controller.event.EventType;
 import it.polimi.ingsw.controller.event.chat.BroadcastMesssageEvent;
 import it.polimi.ingsw.controller.event.chat.ChatEvents;
@@ -8,19 +9,24 @@ import it.polimi.ingsw.controller.event.chat.PrivateMessageEvent;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
 import it.polimi.ingsw.util.TextValidator;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ChatController {
     List<String> usernames;
-    private final Map<EventType<? extends Event>, List<EventHandler<? extends Event>>> eventHandlers = new HashMap<>();
+    private final EventHandlerRegistry eventHandlers = new EventHandlerRegistry();
     private final LobbyInfo lobbyInfo;
 
+    /**
+     * Mailboxes of the subscribers, by username: every subscriber gets the messages in the order they have been
+     * sent, see {@link EventDispatcher}.
+     */
+    private final Map<String, EventDispatcher.Mailbox> mailboxes = new ConcurrentHashMap<>();
+
     public ChatController(LobbyInfo lobbyInfo) {
         this.usernames = lobbyInfo.getPlayerUsernames();
         this.lobbyInfo = lobbyInfo;
@@ -69,8 +75,7 @@ public class ChatController {
      * @param consumer {@code Consumer} to add
      */
     public <T extends Event> void addEventHandler(String username, EventType<T> type, Consumer<T> consumer) {
-        eventHandlers.computeIfAbsent(type, k -> new ArrayList<>());
-        eventHandlers.get(type).add(new EventHandler<>(consumer, username));
+        eventHandlers.add(username, type, consumer);
     }
 
     /**
@@ -80,47 +85,43 @@ public class ChatController {
      * @param consumer {@code Consumer} to remove
      */
     public <T extends Event> void removeEventHandler(EventType<T> type, Consumer<T> consumer) {
-        List<EventHandler<? extends Event>> presentConsumers = eventHandlers.get(type);
-        List<EventHandler<? extends Event>> toDelete = presentConsumers
-                .stream()
-                .filter(h -> h.handler().equals(consumer)).toList();
-        presentConsumers.removeAll(toDelete);
+        eventHandlers.remove(type, consumer);
     }
 
-    private <T extends Event> List<Consumer<T>> getEventHandlers(String username, EventType<T> type) {
-        List<EventHandler<?>> presentConsumers = eventHandlers.get(type);
-        if (presentConsumers != null) {
-            return presentConsumers
-                    .stream()
-                    .map(h -> (EventHandler<T>) h)
-                    .filter(h -> h.username() != null
-                            && (username != null
-                            && username.equals(h.username()))
-                            || username == null)
-                    .map(EventHandler::handler)
-                    .toList();
+    private <T extends Event> void executeHandlers(String username, EventType<T> type, T info) {
+        List<Consumer<T>> handlers = eventHandlers.get(username, type);
+
+        if (!handlers.isEmpty()) {
+            mailboxes.computeIfAbsent(username, EventDispatcher.getInstance()::openMailbox)
+                    .post(() -> handlers.forEach(consumer -> consumer.accept(info)));
         }
-        return new ArrayList<>();
     }
 
-    private <T extends Event> void removeAllHandlersOfUsername(String username) {
-        for (EventType<? extends Event> eventType : eventHandlers.keySet()) {
-            List<? extends Consumer<? extends Event>> eventHandlers = this.getEventHandlers(username, eventType);
+    public void disconnectPlayer(String username) {
+        if (this.usernames.contains(username)) {
+            // Removing handlers of the disconnected user
+            this.eventHandlers.removeAll(username);
 
-            for (Consumer<? extends Event> consumer : eventHandlers) {
-                this.removeEventHandler((EventType<T>) eventType, (Consumer<T>) consumer);
+            EventDispatcher.Mailbox mailbox = this.mailboxes.remove(username);
+            if (mailbox != null) {
+                mailbox.close();
             }
         }
     }
 
-    private <T extends Event> void executeHandlers(String username, EventType<T> type, T info) {
-        getEventHandlers(username, type).forEach(consumer -> (new Thread(() -> consumer.accept(info))).start());
-    }
-
-    public void disconnectPlayer(String username) {
-        if (this.usernames.contains(username)) {
-            // Removing handlers of the disconnected user
-            this.removeAllHandlersOfUsername(username);
+    /**
+     * Removes the handlers and closes the mailboxes of every subscriber, once the lobby or the match of the chat has
+     * been pruned: the ones of the subscribers that have not been disconnected would be kept forever otherwise.
+     */
+    public void close() {
+        // The handlers go first: a message sent in the meantime finds no handler and opens no new mailbox
+        this.eventHandlers.getSubscribers().forEach(this.eventHandlers::removeAll);
+
+        for (String username : this.mailboxes.keySet()) {
+            EventDispatcher.Mailbox mailbox = this.mailboxes.remove(username);
+            if (mailbox != null) {
+                mailbox.close();
+            }
         }
     }
 
@@ -0,0 +1,126 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.EventType;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The event handlers of a controller, indexed by {@link EventType} and by username.
+ * <ul>
+ *     <li>Firing an event reads the pre-built array of handlers of a (type, username) pair: nothing is filtered
+ *     nor copied.</li>
+ *     <li>Removing every handler of a username drops one entry per event type.</li>
+ *     <li>Handlers can be added and removed while events are being fired: firing iterates over a snapshot
+ *     (copy-on-write), so it neither fails nor sees a half-updated array. Handlers are added far less often than
+ *     they are fired.</li>
+ * </ul>
+ * Handlers may be added without a username (e.g. by bots): they form a subscriber of their own.
+ */
+public class EventHandlerRegistry {
+    /**
+     * Key of the handlers added without a username. Usernames are never empty, see
+     * {@link it.polimi.ingsw.util.TextValidator}.
+     */
+    private static final String NO_USERNAME = "";
+
+    private final ConcurrentMap<EventType<? extends Event>, ConcurrentMap<String, CopyOnWriteArrayList<Consumer<? extends Event>>>> handlers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Adds a handler.
+     *
+     * @param username username of the subscriber, may be null
+     * @param type     type of event to handle
+     * @param consumer handler to add
+     */
+    public <T extends Event> void add(String username, EventType<T> type, Consumer<T> consumer) {
+        handlers.computeIfAbsent(type, k -> new ConcurrentHashMap<>())
+                .compute(key(username), (k, list) -> {
+                    CopyOnWriteArrayList<Consumer<? extends Event>> updated = list == null ? new CopyOnWriteArrayList<>() : list;
+                    updated.add(consumer);
+                    return updated;
+                });
+    }
+
+    /**
+     * Removes a handler, whatever username it was added with.
+     *
+     * @param type     type of event the handler was added for
+     * @param consumer handler to remove
+     */
+    public <T extends Event> void remove(EventType<T> type, Consumer<T> consumer) {
+        ConcurrentMap<String, CopyOnWriteArrayList<Consumer<? extends Event>>> byUsername = handlers.get(type);
+
+        if (byUsername == null) {
+            return;
+        }
+
+        for (String username : byUsername.keySet()) {
+            byUsername.computeIfPresent(username, (k, list) -> {
+                list.remove(consumer);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    /**
+     * Removes every handler of a subscriber.
+     *
+     * @param username username of the subscriber, may be null
+     */
+    public void removeAll(String username) {
+        String key = key(username);
+        handlers.values().forEach(byUsername -> byUsername.remove(key));
+    }
+
+    /**
+     * Gets the handlers of a subscriber for an event type, in the order they have been added.
+     *
+     * @param username username of the subscriber, may be null
+     * @param type     type of event
+     * @return the handlers, as a read-only snapshot that later additions and removals do not affect
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Event> List<Consumer<T>> get(String username, EventType<T> type) {
+        ConcurrentMap<String, CopyOnWriteArrayList<Consumer<? extends Event>>> byUsername = handlers.get(type);
+
+        if (byUsername == null) {
+            return List.of();
+        }
+
+        CopyOnWriteArrayList<Consumer<? extends Event>> list = byUsername.get(key(username));
+
+        if (list == null) {
+            return List.of();
+        }
+
+        // Copying a copy-on-write list only copies the reference to its current array
+        return Collections.unmodifiableList((List<Consumer<T>>) (List<?>) new CopyOnWriteArrayList<>(list));
+    }
+
+    /**
+     * Gets the subscribers having at least one handler.
+     *
+     * @return the usernames of the subscribers; null stands for the handlers added without a username
+     */
+    public Set<String> getSubscribers() {
+        Set<String> subscribers = new LinkedHashSet<>();
+
+        handlers.values().forEach(byUsername -> byUsername.keySet()
+                .forEach(key -> subscribers.add(key.equals(NO_USERNAME) ? null : key)));
+
+        return subscribers;
+    }
+
+    private static String key(String username) {
+        return username == null ? NO_USERNAME : username;
+    }
+}
@@ -1,7 +1,10 @@
 package it.polimi.ingsw.controller;
 
 import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.EventDispatcher;
 import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.FiredBatch;
+import it.polimi.ingsw.controller.event.FiredEvent;
 import it.polimi.ingsw.controller.event.game.*;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.StarterCard;
@@ -19,10 +22,15 @@ import it.polimi.ingsw.model.player.PlayerData;
 import it.polimi.ingsw.model.player.PlayerManuscript;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static it.polimi.ingsw.controller.GameState.*;
 
@@ -36,9 +44,53 @@ public class GameController {
     private final CommonBoard gameBoard;
 
     private final GameFlow gameFlow;
-    private final Map<EventType<? extends Event>, List<EventHandler<? extends Event>>> eventHandlers = new HashMap<>();
+    private final EventHandlerRegistry eventHandlers = new EventHandlerRegistry();
+
+    /**
+     * Handlers receiving, in a single call, all the events produced by a command. By username.
+     */
+    private final Map<String, Consumer<FiredBatch>> batchHandlers = new HashMap<>();
+
+    /**
+     * Events fired by the command being executed, in firing order. They are delivered when the command ends
+     * (see {@link #commitTransaction()}), so that subscribers never observe a half-applied command.
+     */
+    private final List<PendingEvent> pendingEvents = new ArrayList<>();
+    private int transactionDepth = 0;
+
+    /**
+     * Mailboxes of the subscribers, by username: the events of consecutive commands reach every subscriber in
+     * order, see {@link EventDispatcher}. When the actor mode is enabled they are drained by the shard of the match.
+     */
+    private final Map<String, EventDispatcher.Mailbox> mailboxes = new HashMap<>();
+
+    private record PendingEvent(FiredEvent fired, String excludedUsername) {
+    }
+
+    private record BatchKey(StateDeltaEvent delta, List<Integer> included) {
+    }
+
     private String winner;
 
+    /**
+     * Runs the commands of the Clients one at a time when the actor mode is enabled, see {@link MatchActor}.
+     */
+    private final MatchActor actor = new MatchActor(this);
+
+    /**
+     * The state of the match as of the last command that changed it: the read queries are served from it, without
+     * taking the lock (see {@link GameSnapshot}).
+     */
+    private volatile GameSnapshot snapshot;
+    private long version = 0;
+
+    /**
+     * What the commands changed since the last snapshot: the next one copies and compares only that.
+     * The positions of the placed cards by player, in placement order, and the types of the drawn cards.
+     */
+    private final Map<String, List<ManuscriptPosition>> placedSinceSnapshot = new LinkedHashMap<>();
+    private final Set<CardType> drawnSinceSnapshot = EnumSet.noneOf(CardType.class);
+
     /**
      * This class implements the controller of our application. <br>
      * It has methods to act on the model and change it during all game phases, from the set-up to the end of the game. <br><br>
@@ -91,6 +143,7 @@ public class GameController {
             personalGoals.put(player, new ArrayList<>(goalsDeck.drawNextNCards(2)));
         }
 
+        publishSnapshot();
     }
 
     /**
@@ -102,8 +155,8 @@ public class GameController {
     private boolean settingStateComplete() {
         return gameFlow.getConnectedPlayers().stream().allMatch(player ->
                 manuscripts.get(player) != null &&
-                        getPlayerData(player).getPrivateGoal() != null &&
-                        getPlayerData(player).getColor() != null
+                        gameFlow.getPlayerData(player).getPrivateGoal() != null &&
+                        gameFlow.getPlayerData(player).getColor() != null
         );
     }
 
@@ -155,35 +208,42 @@ public class GameController {
      * {@code false} if manuscript was already initialized or if {@code gameState} is not {@code SETTING}
      */
     public synchronized boolean setStarterCard(String username, CardFace face) {
-        // if player does not exist, you cannot set its starter card
-        if (!gameFlow.getAllUsernames().contains(username))
-            return false;
+        this.beginTransaction();
 
-        // If a manuscript already exists, you cannot set its starter card (PlayerData is immutable).
-        if (manuscripts.get(username) != null)
-            return false;
+        try {
+            // if player does not exist, you cannot set its starter card
+            if (!gameFlow.getAllUsernames().contains(username))
+                return false;
 
-        // if game has already started, you cannot initialize a new manuscript
-        if (gameFlow.getState() != SETTING) {
-            return false;
-        }
+            // If a manuscript already exists, you cannot set its starter card (PlayerData is immutable).
+            if (manuscripts.get(username) != null)
+                return false;
 
-        StarterCard playerStarter = personalStarters.get(username);
-        // if the card is bad positioned, we have to flip it
-        if (face == CardFace.BACK)
-            playerStarter.flip();
+            // if game has already started, you cannot initialize a new manuscript
+            if (gameFlow.getState() != SETTING) {
+                return false;
+            }
 
-        // we initialize this player's manuscript
-        manuscripts.put(username, new PlayerManuscript(playerStarter));
+            StarterCard playerStarter = personalStarters.get(username);
+            // if the card is bad positioned, we have to flip it
+            if (face == CardFace.BACK)
+                playerStarter.flip();
 
-        // notify listeners
-        SetStarterEvent setInfo = new SetStarterEvent(username, playerStarter);
-        executeOthersHandlers(username, GameEvents.SET_STARTER, setInfo);
+            // we initialize this player's manuscript
+            manuscripts.put(username, new PlayerManuscript(playerStarter));
+            placedSinceSnapshot.computeIfAbsent(username, k -> new ArrayList<>()).add(new ManuscriptPosition(0, 0));
 
-        if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
-            completeDisconnectedSettingAndStart();
+            // notify listeners
+            SetStarterEvent setInfo = new SetStarterEvent(username, playerStarter);
+            executeOthersHandlers(username, GameEvents.SET_STARTER, setInfo);
 
-        return true;
+            if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
+                completeDisconnectedSettingAndStart();
+
+            return true;
+        } finally {
+            this.commitTransaction();
+        }
     }
 
     /**
@@ -211,23 +271,29 @@ public class GameController {
      * given {@code color} is not available, given player has already a color set
      */
     public synchronized boolean setPlayerColor(String username, PlayerColor color) {
-        if (gameFlow.getState() == SETTING && gameFlow.getAllUsernames().contains(username)) {
+        this.beginTransaction();
 
-            if (getAvailableColors().contains(color) && getPlayerData(username).getColor() == null) {
-                gameFlow.getPlayerData(username).setColor(color);
+        try {
+            if (gameFlow.getState() == SETTING && gameFlow.getAllUsernames().contains(username)) {
 
-                //notify listeners
-                SetColorEvent colorInfo = new SetColorEvent(username, color);
-                executeHandlers(GameEvents.SET_COLOR, colorInfo);
+                if (getAvailableColors().contains(color) && gameFlow.getPlayerData(username).getColor() == null) {
+                    gameFlow.getPlayerData(username).setColor(color);
 
-                if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
-                    completeDisconnectedSettingAndStart();
+                    //notify listeners
+                    SetColorEvent colorInfo = new SetColorEvent(username, color);
+                    executeHandlers(GameEvents.SET_COLOR, colorInfo);
 
-                return true;
+                    if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
+                        completeDisconnectedSettingAndStart();
+
+                    return true;
+                }
             }
-        }
 
-        return false;
+            return false;
+        } finally {
+            this.commitTransaction();
+        }
     }
 
     private synchronized void initPlayerHand(String username) {
@@ -268,31 +334,36 @@ public class GameController {
      * given {@code GoalCard} is not among the given player's proposals, given player has already a private goal set
      */
     public synchronized boolean choosePrivateGoal(String username, GoalCard goal) {
+        this.beginTransaction();
 
-        // if game is still setting up
-        if (gameFlow.getState() == SETTING && gameFlow.getAllUsernames().contains(username)) {
+        try {
+            // if game is still setting up
+            if (gameFlow.getState() == SETTING && gameFlow.getAllUsernames().contains(username)) {
 
-            // if the goal has already been set
-            if (getPlayerData(username).getPrivateGoal() != null)
-                return false;
+                // if the goal has already been set
+                if (gameFlow.getPlayerData(username).getPrivateGoal() != null)
+                    return false;
 
-            // if the goal passed has been proposed to the player
-            if (personalGoals.get(username).contains(goal)) {
-                // set the goal to player's private goal
-                setPlayerPrivateGoal(username, goal);
+                // if the goal passed has been proposed to the player
+                if (personalGoals.get(username).contains(goal)) {
+                    // set the goal to player's private goal
+                    setPlayerPrivateGoal(username, goal);
 
-                // notify listeners
-                ChooseGoalEvent goalInfo = new ChooseGoalEvent(username);
-                executeHandlers(GameEvents.CHOOSE_GOAL, goalInfo);
-            } else return false;
+                    // notify listeners
+                    ChooseGoalEvent goalInfo = new ChooseGoalEvent(username);
+                    executeHandlers(GameEvents.CHOOSE_GOAL, goalInfo);
+                } else return false;
 
-            // if all players have chosen their goals, we can pass to PLAYING state
-            if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
-                completeDisconnectedSettingAndStart();
+                // if all players have chosen their goals, we can pass to PLAYING state
+                if (settingStateComplete() && !gameFlow.getDisconnectedPlayers().contains(username))
+                    completeDisconnectedSettingAndStart();
 
-            return true;
+                return true;
+            }
+            return false;
+        } finally {
+            this.commitTransaction();
         }
-        return false;
     }
 
 
@@ -310,10 +381,8 @@ public class GameController {
      * @param username name of player to get data
      * @return The specified {@code username}'s {@link PlayerData}
      */
-    public synchronized PlayerData getPlayerData(String username) {
-        if (!gameFlow.getAllUsernames().contains(username))
-            throw new RuntimeException("Requested player does not exist");
-        return new PlayerData(gameFlow.getPlayerData(username));
+    public PlayerData getPlayerData(String username) {
+        return new PlayerData(snapshot.getPlayerData(username));
     }
 
     /**
@@ -323,10 +392,9 @@ public class GameController {
      * @param username name of player to get data
      * @return The specified {@code username}'s clean {@link PlayerData}
      */
-    public synchronized PlayerData getCleanPlayerData(String username) {
-        if (!gameFlow.getAllUsernames().contains(username))
-            throw new RuntimeException("Requested player does not exist");
-        return gameFlow.getPlayerData(username).cleanPlayerData();
+    public PlayerData getCleanPlayerData(String username) {
+        // Already cleaned by the snapshot: cleaning it again would hide the cards behind the wrong ids
+        return new PlayerData(snapshot.getCleanPlayerData(username));
     }
 
     /**
@@ -337,26 +405,10 @@ public class GameController {
      * @param username player whose information is full
      * @return List with information about all players, ordered by game turn; detailed player at index 0, other players' data is cleaned
      */
-    public synchronized List<PlayerData> getAllPlayerData(String username) {
-        List<PlayerData> players = new ArrayList<>();
-
-        for (String name : gameFlow.getAllUsernames()) {
-            if (name.equals(username))
-                players.add(getPlayerData(name));
-            else
-                players.add(getCleanPlayerData(name));
-        }
-
-        // shifting players to have the detailed one in first place
-        while (!players.get(0).getUsername().equals(username)) {
-            PlayerData first = players.get(0);
-            players.set(0, players.get(1));
-            players.set(1, players.get(2));
-            players.set(2, players.get(3));
-            players.set(3, first);
-        }
-
-        return players;
+    public List<PlayerData> getAllPlayerData(String username) {
+        return snapshot.getAllPlayerData(username).stream()
+                .map(PlayerData::new)
+                .toList();
     }
 
     /**
@@ -368,21 +420,49 @@ public class GameController {
      * @return A copy of the given player's {@code PlayerManuscript};
      * an empty {@code PLayerManuscript}, if that player has not initialized their manuscript yet
      */
-    public synchronized PlayerManuscript getManuscript(String username) {
-        if (!gameFlow.getAllUsernames().contains(username))
-            throw new RuntimeException("Invalid getManuscript - player does not exist");
+    public PlayerManuscript getManuscript(String username) {
+        return new PlayerManuscript(snapshot.getManuscript(username));
+    }
 
-        return (manuscripts.get(username) != null) ?
-                new PlayerManuscript(manuscripts.get(username)) :
-                new PlayerManuscript();
+    public GameFlow getGameFlow() {
+        return snapshot.getGameFlow().deepCopy();
     }
 
-    public synchronized GameFlow getGameFlow() {
-        return new GameFlow(gameFlow);
+    public CommonBoard getGameBoard() {
+        return new CommonBoard(snapshot.getGameBoard());
     }
 
-    public synchronized CommonBoard getGameBoard() {
-        return new CommonBoard(gameBoard);
+    /**
+     * Returns the state of the match as of the last command that changed it. Unlike the other read queries, it
+     * neither waits for the running command nor copies anything: the returned objects are shared and must not
+     * be modified.
+     *
+     * @return the last published {@link GameSnapshot}
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the state of the match as seen by the given player, unless they already have its current version:
+     * only the changes if the version they have is recent enough, the whole state otherwise.
+     *
+     * @param username    player whose information is full
+     * @param ifNewerThan version the player already has, 0 if none
+     * @return the state of the match; only its version if it is not newer than {@code ifNewerThan}
+     */
+    public VersionedGameState getGameState(String username, long ifNewerThan) {
+        GameSnapshot current = snapshot;
+
+        if (current.getVersion() <= ifNewerThan)
+            return VersionedGameState.notModified(current.getVersion());
+
+        StateDeltaEvent delta = current.getDeltaSince(ifNewerThan, username);
+
+        if (delta != null)
+            return VersionedGameState.incremental(delta);
+
+        return current.viewFor(username);
     }
 
     /**
@@ -400,56 +480,63 @@ public class GameController {
      * @throws RuntimeException If the given player is disconnected
      */
     public synchronized boolean placeCard(String username, TypedCard card, ManuscriptPosition position) {
-        // if there is one player left in game, game operations are not allowed
-        if (gameFlow.isIdle())
-            return false;
+        this.beginTransaction();
 
-        // if the given player is disconnected, they cannot place any card
-        if (gameFlow.isDisconnected(username))
-            throw new RuntimeException(username + " is disconnected and cannot place any card");
+        try {
+            // if there is one player left in game, game operations are not allowed
+            if (gameFlow.isIdle())
+                return false;
 
-        if (card == null || position == null)   // if parameters are invalid you cannot place any card
-            return false;
+            // if the given player is disconnected, they cannot place any card
+            if (gameFlow.isDisconnected(username))
+                throw new RuntimeException(username + " is disconnected and cannot place any card");
 
-        // if we're not playing you cannot place any card
-        if (!List.of(PLAYING, EMPTY_DECKS, LAST_ROUND).contains(gameFlow.getState())) {
-            throw new RuntimeException("Cannot place any card during " + gameFlow.getState() + " state");
-        }
+            if (card == null || position == null)   // if parameters are invalid you cannot place any card
+                return false;
 
-        if (!gameFlow.isCurrentPlayer(username)) {  // if you are not playing, you cannot place any card
-            return false;
-        }
+            // if we're not playing you cannot place any card
+            if (!List.of(PLAYING, EMPTY_DECKS, LAST_ROUND).contains(gameFlow.getState())) {
+                throw new RuntimeException("Cannot place any card during " + gameFlow.getState() + " state");
+            }
 
-        PlayerData player = gameFlow.getPlayerData(username);
-        PlayerManuscript manuscript = manuscripts.get(username);
+            if (!gameFlow.isCurrentPlayer(username)) {  // if you are not playing, you cannot place any card
+                return false;
+            }
 
-        if (player != null && manuscript != null) {                 // check: the player exists and has an initialized manuscript
+            PlayerData player = gameFlow.getPlayerData(username);
+            PlayerManuscript manuscript = manuscripts.get(username);
 
-            if (!manuscripts.get(username).isEmpty()) {                         // if player's manuscript has some starter card placed
+            if (player != null && manuscript != null) {                 // check: the player exists and has an initialized manuscript
 
-                // check if this placement is legit
-                if (!player.getHand().contains(card)) return false;              // card must be in player's hand
+                if (!manuscripts.get(username).isEmpty()) {                         // if player's manuscript has some starter card placed
 
-                int handIndex = player.getHand().indexOf(card);
+                    // check if this placement is legit
+                    if (!player.getHand().contains(card)) return false;              // card must be in player's hand
 
-                if (!manuscript.isPlaceable(position, card))
-                    return false;       // card must be placeable in that position of manuscript
+                    int handIndex = player.getHand().indexOf(card);
 
-                player.playCard(card);                                          // remove card from player's hand
-                player.addPoints(manuscript.insertCard(position, card));        // place card on the manuscript and claim the points this move scored
+                    if (!manuscript.isPlaceable(position, card))
+                        return false;       // card must be placeable in that position of manuscript
 
-                // notify listeners
-                PlaceCardEvent placeInfo = new PlaceCardEvent(username, card, handIndex, position);
-                executeOthersHandlers(username, GameEvents.PLACE_EVENT, placeInfo);
+                    player.playCard(card);                                          // remove card from player's hand
+                    player.addPoints(manuscript.insertCard(position, card));        // place card on the manuscript and claim the points this move scored
+                    placedSinceSnapshot.computeIfAbsent(username, k -> new ArrayList<>()).add(position);
 
-                if (gameFlow.getState() != PLAYING) {         // if we don't have to draw afterward, our turn ends here
-                    goToNextTurn();
-                }
+                    // notify listeners
+                    PlaceCardEvent placeInfo = new PlaceCardEvent(username, card, handIndex, position);
+                    executeOthersHandlers(username, GameEvents.PLACE_EVENT, placeInfo);
 
-                return true;
+                    if (gameFlow.getState() != PLAYING) {         // if we don't have to draw afterward, our turn ends here
+                        goToNextTurn();
+                    }
+
+                    return true;
+                }
             }
+            return false;
+        } finally {
+            this.commitTransaction();
         }
-        return false;
     }
 
     private String canDraw(String username) {
@@ -466,7 +553,7 @@ public class GameController {
             return username + " cannot draw: GameState is not PLAYING";
 
         // if you have all 3 cards in hand, you cannot draw any card
-        if (!getPlayerData(username).getHand().contains(null))
+        if (!gameFlow.getPlayerData(username).getHand().contains(null))
             return username + " cannot draw: " + username + " hand already contains 3 cards";
 
         // if you are not playing, you cannot draw any card
@@ -488,63 +575,70 @@ public class GameController {
      * null, if requested card was missing
      */
         public synchronized TypedCard drawVisibleCard(String username, CardType type, int index) {
-        String drawChallengeMessage = canDraw(username);
-        if (drawChallengeMessage.equals("Game is idle: drawing is not allowed")) {
-            return null;
-        }
+        this.beginTransaction();
 
-        if (!drawChallengeMessage.equals("ok"))
-            throw new RuntimeException(drawChallengeMessage);
+        try {
+            String drawChallengeMessage = canDraw(username);
+            if (drawChallengeMessage.equals("Game is idle: drawing is not allowed")) {
+                return null;
+            }
 
-        // only 2 visible cards are present
-        if (index < 0 || index > 1)
-            throw new RuntimeException("Invalid index for drawVisibleCard - allowed indexes are: (0, 1)");
+            if (!drawChallengeMessage.equals("ok"))
+                throw new RuntimeException(drawChallengeMessage);
 
-        PlayerData player = gameFlow.getPlayerData(username);
+            // only 2 visible cards are present
+            if (index < 0 || index > 1)
+                throw new RuntimeException("Invalid index for drawVisibleCard - allowed indexes are: (0, 1)");
 
-        // if this player exists
-        if (player != null) {
-            // try to draw the requested card
-            TypedCard drawn = gameBoard.drawVisibleCard(type, index);
-            // if the card was present, just add it to player's card and pass turn to next player
-            if (drawn != null) {
+            PlayerData player = gameFlow.getPlayerData(username);
 
-                // add the card to player's hand
-                player.addCardToHand(drawn);
+            // if this player exists
+            if (player != null) {
+                // try to draw the requested card
+                drawnSinceSnapshot.add(type);
+                TypedCard drawn = gameBoard.drawVisibleCard(type, index);
+                // if the card was present, just add it to player's card and pass turn to next player
+                if (drawn != null) {
 
-                // if we just drew the last card in the game, we warn GameFlow that the next
-                // round must be the last round, so nobody draws anymore
-                if (gameBoard.allDecksEmpty()) {
-                    gameFlow.setState(EMPTY_DECKS);
+                    // add the card to player's hand
+                    player.addCardToHand(drawn);
 
-                    // notify listeners
-                    StateChangeEvent stateInfo = new StateChangeEvent(gameFlow.getState());
-                    executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
-                }
+                    // if we just drew the last card in the game, we warn GameFlow that the next
+                    // round must be the last round, so nobody draws anymore
+                    if (gameBoard.allDecksEmpty()) {
+                        gameFlow.setState(EMPTY_DECKS);
 
-                // choose the card to return (the new one or the drew one if there are no more cards in that spot)
-                TypedCard newCard = gameBoard.getVisibleCards(type).get(index);
-                TypedCard returnCard = (newCard == null) ? drawn : newCard;
+                        // notify listeners
+                        StateChangeEvent stateInfo = new StateChangeEvent(gameFlow.getState());
+                        executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
+                    }
 
-                // notify listeners
-                DrawVisibleEvent dvInfo = new DrawVisibleEvent(username, index, type, drawn, returnCard);
+                    // choose the card to return (the new one or the drew one if there are no more cards in that spot)
+                    TypedCard newCard = gameBoard.getVisibleCards(type).get(index);
+                    TypedCard returnCard = (newCard == null) ? drawn : newCard;
 
-                executeOthersHandlers(username, GameEvents.DRAW_VISIBLE, dvInfo);
+                    // notify listeners
+                    DrawVisibleEvent dvInfo = new DrawVisibleEvent(username, index, type, drawn, returnCard);
 
-                goToNextTurn();
+                    executeOthersHandlers(username, GameEvents.DRAW_VISIBLE, dvInfo);
+
+                    goToNextTurn();
 
-                return returnCard;
-            } else {
+                    return returnCard;
+                } else {
 
-                // if we drew null but there are still cards on the board,
-                // current player has to try to draw again
-                if (!gameBoard.allDecksEmpty())
-                    return null;
-                else
-                    throw new RuntimeException("Invalid drawVisibleCard operation - cannot draw if decks are empty");
+                    // if we drew null but there are still cards on the board,
+                    // current player has to try to draw again
+                    if (!gameBoard.allDecksEmpty())
+                        return null;
+                    else
+                        throw new RuntimeException("Invalid drawVisibleCard operation - cannot draw if decks are empty");
+                }
             }
+            throw new RuntimeException("Invalid drawVisibleCard operation - given player does not exist");
+        } finally {
+            this.commitTransaction();
         }
-        throw new RuntimeException("Invalid drawVisibleCard operation - given player does not exist");
     }
 
     /**
@@ -558,46 +652,94 @@ public class GameController {
      * @return the drawn card; null, if the requested deck is empty
      */
     public synchronized TypedCard drawCoveredCard(String username, CardType type) {
-        String drawChallengeMessage = canDraw(username);
-        if (drawChallengeMessage.equals("Game is idle: drawing is not allowed")) {
-            return null;
-        }
+        this.beginTransaction();
 
-        if (!drawChallengeMessage.equals("ok"))
-            throw new RuntimeException(drawChallengeMessage);
+        try {
+            String drawChallengeMessage = canDraw(username);
+            if (drawChallengeMessage.equals("Game is idle: drawing is not allowed")) {
+                return null;
+            }
 
-        PlayerData player = gameFlow.getPlayerData(username);
+            if (!drawChallengeMessage.equals("ok"))
+                throw new RuntimeException(drawChallengeMessage);
 
-        // if this player exists
-        if (player != null) {
+            PlayerData player = gameFlow.getPlayerData(username);
 
-            // make it draw a covered card from the board
-            TypedCard drawn;
-            try {
-                drawn = gameBoard.drawCovered(type);
-            } catch (EmptyDeckException e) {
-                // if there are still cards to draw, we cannot pass the turn to next player:
-                // we return null to make current player draw again
-                if (!gameBoard.allDecksEmpty())
-                    return null;
-
-                // if decks are empty, you should not get here
-                throw new RuntimeException("Invalid drawCoveredCard operation - cannot draw if decks are empty");
+            // if this player exists
+            if (player != null) {
+
+                // make it draw a covered card from the board
+                TypedCard drawn;
+                try {
+                    drawnSinceSnapshot.add(type);
+                    drawn = gameBoard.drawCovered(type);
+                } catch (EmptyDeckException e) {
+                    // if there are still cards to draw, we cannot pass the turn to next player:
+                    // we return null to make current player draw again
+                    if (!gameBoard.allDecksEmpty())
+                        return null;
+
+                    // if decks are empty, you should not get here
+                    throw new RuntimeException("Invalid drawCoveredCard operation - cannot draw if decks are empty");
+                }
+
+                // add drawn card to player's hand
+                player.addCardToHand(drawn);
+
+                //notify listeners
+                DrawCoveredEvent dcInfo = new DrawCoveredEvent(username, drawn.cleanCard(), type);
+
+                executeOthersHandlers(username, GameEvents.DRAW_COVERED, dcInfo);
+                goToNextTurn();
+
+                // return the card drawn
+                return drawn;
             }
+            throw new RuntimeException("Invalid drawCoveredCard operation - given player does not exist");
+        } finally {
+            this.commitTransaction();
+        }
+    }
 
-            // add drawn card to player's hand
-            player.addCardToHand(drawn);
+    /**
+     * Plays a whole turn: places a card as {@link #placeCard} does and, if a draw is due, draws as
+     * {@link #drawVisibleCard} or {@link #drawCoveredCard} do.
+     * No other command can run in between, and the events of both steps reach the listeners as a single batch.
+     * A successful placement is never undone: if the draw does not succeed (e.g. the requested visible card is
+     * missing) the player is still to draw, with the single draw commands.
+     *
+     * @param username name of user that is playing the turn
+     * @param turn     the card to place and the card to draw
+     * @return the outcome of both steps
+     * @throws RuntimeException If the given player is disconnected, as {@link #placeCard} does
+     */
+    public synchronized PlaceAndDrawResult placeAndDraw(String username, PlaceAndDraw turn) {
+        this.beginTransaction();
 
-            //notify listeners
-            DrawCoveredEvent dcInfo = new DrawCoveredEvent(username, drawn.cleanCard(), type);
+        try {
+            if (turn == null || !placeCard(username, turn.card(), turn.position())) {
+                return new PlaceAndDrawResult(false, null, false);
+            }
 
-            executeOthersHandlers(username, GameEvents.DRAW_COVERED, dcInfo);
-            goToNextTurn();
+            // Nothing to draw during the last rounds: placing has already ended the turn
+            if (gameFlow.getState() != PLAYING || !gameFlow.isCurrentPlayer(username)) {
+                return new PlaceAndDrawResult(true, null, true);
+            }
 
-            // return the card drawn
-            return drawn;
+            TypedCard drawn;
+            try {
+                drawn = turn.drawsCovered() ?
+                        drawCoveredCard(username, turn.drawType()) :
+                        drawVisibleCard(username, turn.drawType(), turn.drawIndex());
+            } catch (RuntimeException e) {
+                // The placement stays: the player will draw with the single commands
+                drawn = null;
+            }
+
+            return new PlaceAndDrawResult(true, drawn, !gameFlow.isCurrentPlayer(username));
+        } finally {
+            this.commitTransaction();
         }
-        throw new RuntimeException("Invalid drawCoveredCard operation - given player does not exist");
     }
 
     /**
@@ -646,38 +788,43 @@ public class GameController {
      * {@code null} if match ends in a draw, or if this method is called before the game ends
      */
     public synchronized String getWinner() {
+        this.beginTransaction();
 
-        // if match has ended (no one can play anymore)
-        if (gameEnded()) {
+        try {
+            // if match has ended (no one can play anymore)
+            if (gameEnded()) {
 
-            // save every player's score before considering goals
-            Map<String, Integer> preGoalScores = gameFlow.getPlayerScores();
+                // save every player's score before considering goals
+                Map<String, Integer> preGoalScores = gameFlow.getPlayerScores();
 
-            // for all players, add goals scores
-            addGoalsPoints();
+                // for all players, add goals scores
+                addGoalsPoints();
 
-            // get players with max points after goals calculation
-            List<String> leadingPlayers = gameFlow.getLeadingPlayers();
+                // get players with max points after goals calculation
+                List<String> leadingPlayers = gameFlow.getLeadingPlayers();
 
-            // if there is only one, he wins
-            if (leadingPlayers.size() == 1) {
-                // from now on, no operation is possible on this GameController
-                gameFlow.setState(END);
+                // if there is only one, he wins
+                if (leadingPlayers.size() == 1) {
+                    // from now on, no operation is possible on this GameController
+                    gameFlow.setState(END);
 
-                // notify listeners
-                executeHandlers(
-                        GameEvents.STATE_CHANGE,
-                        new StateChangeEvent(gameFlow.getState())
-                );
-                winner = leadingPlayers.get(0);
-            }
+                    // notify listeners
+                    executeHandlers(
+                            GameEvents.STATE_CHANGE,
+                            new StateChangeEvent(gameFlow.getState())
+                    );
+                    winner = leadingPlayers.get(0);
+                }
 
-            // if there are more players with same points, the one who got more points from goals wins
-            else {
-                winner = solveDraw(preGoalScores, leadingPlayers);
+                // if there are more players with same points, the one who got more points from goals wins
+                else {
+                    winner = solveDraw(preGoalScores, leadingPlayers);
+                }
             }
+            return winner;
+        } finally {
+            this.commitTransaction();
         }
-        return winner;
     }
 
     private void addGoalsPoints() {
@@ -750,50 +897,56 @@ public class GameController {
      * {@code false} if the given player is not playing this game
      */
     public synchronized boolean disconnectPlayer(String username) {
-        // cannot disconnect a player that is not in this game
-        if (!gameFlow.getAllUsernames().contains(username)) return false;
-
-        // if disconnected player has placed but not drew, draw for him and pass turn before disconnecting
-        if (gameFlow.getState() == PLAYING) {
-            // if player has null cards during PLAYING, he must be between placing and drawing:
-            // make them draw a random card
-            if (getPlayerData(username).getHand().contains(null)) {
-                TypedCard c;
-                do {
-                    c = drawVisibleCard(
-                            username,
-                            ((int) (Math.random() * 2) % 2 == 0) ? CardType.GOLD : CardType.RESOURCE,
-                            (int) (Math.random() * 2)
-                    );
-                } while (c == null);
+        this.beginTransaction();
+
+        try {
+            // cannot disconnect a player that is not in this game
+            if (!gameFlow.getAllUsernames().contains(username)) return false;
+
+            // if disconnected player has placed but not drew, draw for him and pass turn before disconnecting
+            if (gameFlow.getState() == PLAYING) {
+                // if player has null cards during PLAYING, he must be between placing and drawing:
+                // make them draw a random card
+                if (gameFlow.getPlayerData(username).getHand().contains(null)) {
+                    TypedCard c;
+                    do {
+                        c = drawVisibleCard(
+                                username,
+                                ((int) (Math.random() * 2) % 2 == 0) ? CardType.GOLD : CardType.RESOURCE,
+                                (int) (Math.random() * 2)
+                        );
+                    } while (c == null);
+                }
             }
-        }
 
 
-        Boolean disconnectStatus = gameFlow.disconnectPlayer(username);
+            Boolean disconnectStatus = gameFlow.disconnectPlayer(username);
 
-        if (disconnectStatus) {
-            executeOthersHandlers(username, GameEvents.MATCH_COMPOSITION_CHANGE, new MatchCompositionChangeEvent());
-        }
+            if (disconnectStatus) {
+                executeOthersHandlers(username, GameEvents.MATCH_COMPOSITION_CHANGE, new MatchCompositionChangeEvent());
+            }
 
-        if (gameFlow.getState() == SETTING) {                    // during SETTING phase,
-            if (settingStateComplete())                         // after a disconnection, remaining players may be all set:
-                completeDisconnectedSettingAndStart();          // the game can start
-        }
+            if (gameFlow.getState() == SETTING) {                    // during SETTING phase,
+                if (settingStateComplete())                         // after a disconnection, remaining players may be all set:
+                    completeDisconnectedSettingAndStart();          // the game can start
+            }
 
-        if (gameFlow.isIdle() && gameFlow.notEveryoneDisconnected()) {            // if after the disconnection we fall into IDLE,
-            StateChangeEvent stateInfo = new StateChangeEvent(IDLE);            // we notify all listeners
-            executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
-        }
+            if (gameFlow.isIdle() && gameFlow.notEveryoneDisconnected()) {            // if after the disconnection we fall into IDLE,
+                StateChangeEvent stateInfo = new StateChangeEvent(IDLE);            // we notify all listeners
+                executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
+            }
 
-        if (gameFlow.getCurrentPlayer().equals(username) && gameFlow.getState() != SETTING) {
-            goToNextTurn();
-        }
+            if (gameFlow.getCurrentPlayer().equals(username) && gameFlow.getState() != SETTING) {
+                goToNextTurn();
+            }
 
-        // Removing handlers of the disconnected user
-        this.removeAllHandlersOfUsername(username);
+            // Removing handlers of the disconnected user
+            this.removeAllHandlersOfUsername(username);
 
-        return true;
+            return true;
+        } finally {
+            this.commitTransaction();
+        }
     }
 
     /**
@@ -805,27 +958,64 @@ public class GameController {
      * {@code false} if the given player is not playing this game
      */
     public synchronized boolean reconnectPlayer(String username) {
-        // cannot reconnect a player that is not in this game
-        if (!gameFlow.getAllUsernames().contains(username)) return false;
+        this.beginTransaction();
 
-        Boolean reconnectStatus = gameFlow.reconnectPlayer(username);
+        try {
+            // cannot reconnect a player that is not in this game
+            if (!gameFlow.getAllUsernames().contains(username)) return false;
 
-        if (reconnectStatus) {
-            executeOthersHandlers(username, GameEvents.MATCH_COMPOSITION_CHANGE, new MatchCompositionChangeEvent());
-        }
+            Boolean reconnectStatus = gameFlow.reconnectPlayer(username);
 
-        if (gameFlow.getConnectedPlayers().size() == 2) {                                // if after the reconnection there are 2 players connected, that means we were IDLE before:
-            StateChangeEvent stateInfo = new StateChangeEvent(gameFlow.getState());     // notify listeners that we are out of IDLE now
-            executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
-        }
-        if (gameFlow.getConnectedPlayers().size() == 1) {
-            if (!gameFlow.getCurrentPlayer().equals(username)) {    // if after the reconnection this player is the only one in game, we have to make sure it becomes the current player
-                goToNextTurn();                                     // so if it's not the current player already, we go to next turn until he becomes so
-                // IT SHOULD BE IMPOSSIBLE TO GET HERE: MATCHES GET KILLED WHEN EVERY PLAYER QUITS
+            if (reconnectStatus) {
+                executeOthersHandlers(username, GameEvents.MATCH_COMPOSITION_CHANGE, new MatchCompositionChangeEvent());
+            }
+
+            if (gameFlow.getConnectedPlayers().size() == 2) {                                // if after the reconnection there are 2 players connected, that means we were IDLE before:
+                StateChangeEvent stateInfo = new StateChangeEvent(gameFlow.getState());     // notify listeners that we are out of IDLE now
+                executeHandlers(GameEvents.STATE_CHANGE, stateInfo);
             }
+            if (gameFlow.getConnectedPlayers().size() == 1) {
+                if (!gameFlow.getCurrentPlayer().equals(username)) {    // if after the reconnection this player is the only one in game, we have to make sure it becomes the current player
+                    goToNextTurn();                                     // so if it's not the current player already, we go to next turn until he becomes so
+                    // IT SHOULD BE IMPOSSIBLE TO GET HERE: MATCHES GET KILLED WHEN EVERY PLAYER QUITS
+                }
+            }
+
+            return true;
+        } finally {
+            this.commitTransaction();
         }
+    }
+
+    /**
+     * Gets the actor of this match: the commands of the Clients go through it.
+     *
+     * @return the actor of this match
+     */
+    public MatchActor getActor() {
+        return actor;
+    }
 
-        return true;
+    /**
+     * Gets the number of deliveries of the given subscriber waiting to be run, e.g. to spot a slow handler.
+     *
+     * @param username username of the subscriber
+     * @return the depth of the mailbox of the subscriber, 0 if they have none
+     */
+    public synchronized int getEventQueueDepth(String username) {
+        EventDispatcher.Mailbox mailbox = mailboxes.get(username);
+        return mailbox == null ? 0 : mailbox.getDepth();
+    }
+
+    /**
+     * Adds a handler receiving all the events produced by each command, in firing order, with a single call.
+     * Replaces any batch handler previously added for the same username.
+     *
+     * @param username username of the subscriber: events not meant for them are left out of their batches
+     * @param consumer handler to add
+     */
+    public synchronized void addBatchHandler(String username, Consumer<FiredBatch> consumer) {
+        batchHandlers.put(username, consumer);
     }
 
     /**
@@ -835,8 +1025,7 @@ public class GameController {
      * @param consumer {@code Consumer} to add
      */
     public <T extends Event> void addEventHandler(String username, EventType<T> type, Consumer<T> consumer) {
-        eventHandlers.computeIfAbsent(type, k -> new ArrayList<>());
-        eventHandlers.get(type).add(new EventHandler<>(consumer, username));
+        eventHandlers.add(username, type, consumer);
     }
 
     /**
@@ -846,48 +1035,117 @@ public class GameController {
      * @param consumer {@code Consumer} to remove
      */
     public <T extends Event> void removeEventHandler(EventType<T> type, Consumer<T> consumer) {
-        List<EventHandler<? extends Event>> presentConsumers = eventHandlers.get(type);
-        List<EventHandler<? extends Event>> toDelete = presentConsumers
-                .stream()
-                .filter(h -> h.handler().equals(consumer)).toList();
-        presentConsumers.removeAll(toDelete);
-    }
-
-    private <T extends Event> List<Consumer<T>> getEventHandlers(String username, EventType<T> type) {
-        List<EventHandler<?>> presentConsumers = eventHandlers.get(type);
-        if (presentConsumers != null) {
-            return presentConsumers
-                    .stream()
-                    .map(h -> (EventHandler<T>) h)
-                    .filter(h -> h.username() != null
-                            && (username != null
-                            && username.equals(h.username()))
-                            || username == null)
-                    .map(EventHandler::handler)
-                    .toList();
-        }
-        return new ArrayList<>();
+        eventHandlers.remove(type, consumer);
     }
 
-    private <T extends Event> void removeAllHandlersOfUsername(String username) {
-        for (EventType<? extends Event> eventType : eventHandlers.keySet()) {
-            List<? extends Consumer<? extends Event>> eventHandlers = this.getEventHandlers(username, eventType);
+    private void removeAllHandlersOfUsername(String username) {
+        batchHandlers.remove(username);
+        eventHandlers.removeAll(username);
 
-            for (Consumer<? extends Event> consumer : eventHandlers) {
-                this.removeEventHandler((EventType<T>) eventType, (Consumer<T>) consumer);
-            }
+        EventDispatcher.Mailbox mailbox = mailboxes.remove(username);
+        if (mailbox != null) {
+            mailbox.close();
         }
     }
 
     private <T extends Event> void executeHandlers(EventType<T> type, T info) {
-        getEventHandlers(null, type).forEach(consumer -> (new Thread(() -> consumer.accept(info))).start());
+        executeOthersHandlers(null, type, info);
     }
 
     private <T extends Event> void executeOthersHandlers(String excludedUsername, EventType<T> type, T info) {
-        List<Consumer<T>> allEventHandlers = new ArrayList<>(this.getEventHandlers(null, type));
-        List<Consumer<T>> mineEventHandlers = this.getEventHandlers(excludedUsername, type);
-        allEventHandlers.removeAll(mineEventHandlers);
+        // Outside a command the event is delivered right away, as a transaction of its own
+        beginTransaction();
+        pendingEvents.add(new PendingEvent(new FiredEvent(type, info), excludedUsername));
+        commitTransaction();
+    }
+
+    /**
+     * Starts collecting the fired events instead of delivering them. Transactions nest: only the outermost one
+     * delivers, so a command calling another command (e.g. disconnectPlayer drawing for the player) is delivered
+     * as a whole.
+     */
+    private void beginTransaction() {
+        transactionDepth++;
+    }
+
+    /**
+     * Ends a transaction. When the outermost one ends, every subscriber gets the events meant for them in firing
+     * order, through their mailbox: a batch handler gets them with a single call, per-type handlers get one call
+     * per event, one after the other.
+     */
+    private <T extends Event> void commitTransaction() {
+        transactionDepth--;
+
+        if (transactionDepth > 0 || pendingEvents.isEmpty()) {
+            return;
+        }
+
+        // Every change to the match fires at least one event. The snapshot is published before delivering them,
+        // so that a subscriber reacting to an event reads the state it describes
+        publishSnapshot();
+        GameSnapshot published = snapshot;
+
+        List<PendingEvent> events = new ArrayList<>(pendingEvents);
+        pendingEvents.clear();
+
+        Set<String> subscribers = new LinkedHashSet<>(batchHandlers.keySet());
+        subscribers.addAll(eventHandlers.getSubscribers());
+
+        // Subscribers receiving the same events share the same batch instance, so that the batch can be encoded
+        // once for all of them (see FiredBatch)
+        Map<BatchKey, FiredBatch> sharedBatches = new HashMap<>();
+
+        for (String subscriber : subscribers) {
+            List<Runnable> deliveries = new ArrayList<>();
+            List<Integer> included = new ArrayList<>();
+
+            // Every subscriber gets the changes first, even if all the other events are excluded for them: replicas
+            // are up to date before the other events are handled, and see every version
+            StateDeltaEvent delta = published.getDeltaFor(subscriber);
+            eventHandlers.get(subscriber, GameEvents.STATE_DELTA).forEach(consumer -> deliveries.add(() -> consumer.accept(delta)));
+
+            for (int i = 0; i < events.size(); i++) {
+                PendingEvent pending = events.get(i);
+
+                if (pending.excludedUsername() != null && pending.excludedUsername().equals(subscriber)) {
+                    continue;
+                }
+
+                included.add(i);
+
+                EventType<T> type = (EventType<T>) pending.fired().type();
+                T info = (T) pending.fired().event();
+                eventHandlers.get(subscriber, type).forEach(consumer -> deliveries.add(() -> consumer.accept(info)));
+            }
+
+            Consumer<FiredBatch> batchHandler = batchHandlers.get(subscriber);
+
+            if (batchHandler != null) {
+                FiredBatch batch = sharedBatches.computeIfAbsent(new BatchKey(delta, included),
+                        k -> new FiredBatch(Stream.concat(
+                                Stream.of(new FiredEvent(GameEvents.STATE_DELTA, delta)),
+                                k.included().stream().map(i -> events.get(i).fired())
+                        ).toList()));
+                deliveries.add(0, () -> batchHandler.accept(batch));
+            }
+
+            if (!deliveries.isEmpty()) {
+                // On the shard of the match when it runs as an actor: its events run on the thread of its commands
+                mailboxes.computeIfAbsent(subscriber,
+                                name -> EventDispatcher.getInstance().openMailbox(name, actor.getShard()))
+                        .post(() -> deliveries.forEach(Runnable::run));
+            }
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the current state of the match, with the next version.
+     */
+    private void publishSnapshot() {
+        version++;
+        snapshot = new GameSnapshot(snapshot, version, gameFlow, gameBoard, manuscripts, placedSinceSnapshot, drawnSinceSnapshot);
 
-        allEventHandlers.forEach(consumer -> (new Thread(() -> consumer.accept(info))).start());
+        placedSinceSnapshot.clear();
+        drawnSinceSnapshot.clear();
     }
 }
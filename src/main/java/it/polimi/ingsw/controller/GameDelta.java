@@ -0,0 +1,66 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.model.card.PlayableCard;
+import it.polimi.ingsw.model.card.TypedCard;
+import it.polimi.ingsw.model.game.CardType;
+import it.polimi.ingsw.model.player.ManuscriptPosition;
+import it.polimi.ingsw.model.player.PlayerData;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A change between two consecutive {@link GameSnapshot}s of a match, small enough to be sent after every command
+ * instead of the objects it changes (see {@link GameReplica}). Its size does not depend on how long the match
+ * has been going on: a placement is one card, not the whole manuscript.
+ */
+public sealed interface GameDelta extends Serializable {
+    /**
+     * A card has been placed on the manuscript of a player; the starter card is placed at (0, 0).
+     * The items of the manuscript are not sent: placing the same card on the same manuscript changes them the
+     * same way.
+     * @param username The owner of the manuscript.
+     * @param position The position of the card.
+     * @param card The card, with the face it has been placed with.
+     */
+    record CardPlaced(String username, ManuscriptPosition position, PlayableCard card) implements GameDelta {
+    }
+
+    /**
+     * The hand, the points, the color or the private goal of a player have changed.
+     * @param player The new PlayerData of the player, cleaned of its private data unless it is sent to its owner.
+     */
+    record PlayerChanged(PlayerData player) implements GameDelta {
+    }
+
+    /**
+     * Cards have been drawn from the board.
+     * @param type The type of the cards.
+     * @param coveredDrawn The number of cards removed from the top of the covered deck.
+     * @param visibleCards The new visible cards of that type.
+     */
+    record BoardChanged(CardType type, int coveredDrawn, List<TypedCard> visibleCards) implements GameDelta {
+    }
+
+    /**
+     * The state, the turn or the connected players of the match have changed.
+     * @param state The new GameState.
+     * @param turn The new turn number.
+     * @param disconnectedPlayers The players that are now disconnected.
+     * @param idle True if the match is now idle.
+     */
+    record FlowChanged(GameState state, int turn, List<String> disconnectedPlayers, boolean idle) implements GameDelta {
+    }
+
+    /**
+     * Returns the delta as it can be sent to a player: the data of the other players is cleaned.
+     * @param viewer The player receiving the delta, null if it is not a player.
+     * @return This delta, or a cleaned copy of it.
+     */
+    default GameDelta forViewer(String viewer) {
+        if (this instanceof PlayerChanged changed && !changed.player().getUsername().equals(viewer)) {
+            return new PlayerChanged(changed.player().cleanPlayerData());
+        }
+        return this;
+    }
+}
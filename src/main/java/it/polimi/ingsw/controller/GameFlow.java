@@ -45,6 +45,24 @@ public class GameFlow implements Serializable {
         this.isIdle = other.isIdle;
     }
 
+    GameFlow(List<PlayerData> players, GameState state, int turn, List<String> disconnectedPlayers, boolean isIdle) {
+        this.players = players;
+        this.state = state;
+        this.turn = turn;
+        this.disconnectedPlayers = List.copyOf(disconnectedPlayers);
+        this.isIdle = isIdle;
+    }
+
+    /**
+     * Returns a copy of this {@code GameFlow} that also copies the {@link PlayerData} of the players:
+     * unlike {@link #GameFlow(GameFlow)}, the copy is not affected by later changes to the players.
+     *
+     * @return a deep copy of this {@code GameFlow}
+     */
+    GameFlow deepCopy() {
+        return new GameFlow(this.players.stream().map(PlayerData::new).toList(), state, turn, disconnectedPlayers, isIdle);
+    }
+
     /**
      * Increments {@code turn} number; checks and changes {@code state} if needed.
      *
@@ -0,0 +1,250 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.game.StateDeltaEvent;
+import it.polimi.ingsw.model.card.StarterCard;
+import it.polimi.ingsw.model.card.TypedCard;
+import it.polimi.ingsw.model.game.CommonBoard;
+import it.polimi.ingsw.model.player.PlayerData;
+import it.polimi.ingsw.model.player.PlayerManuscript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * A local copy of the state of a match, kept by a Client.
+ * <p>
+ * The replica applies the {@link StateDeltaEvent} the Server sends after every command, so reading a manuscript,
+ * the board or the data of a player does not go through the network. The whole state is fetched only when the
+ * replica is empty or has missed a version (e.g. after a reconnection), and even then the Server answers with the
+ * missed deltas when they are recent enough (see {@link GameController#getGameState(String, long)}).
+ * <p>
+ * Applying an event never fetches anything: the thread delivering the events may be the one the answer has to
+ * come from. A missed version only marks the replica as stale, and the next read catches up.
+ * The getters return copies, which the caller is free to modify.
+ */
+public class GameReplica {
+    private final LongFunction<VersionedGameState> fetcher;
+
+    private long version = 0;
+    private boolean stale = true;
+    private GameFlow gameFlow;
+    private CommonBoard gameBoard;
+    private final Map<String, PlayerManuscript> manuscripts = new HashMap<>();
+    /**
+     * The data of the players, in turn order: full for the owner of the replica, clean for the others.
+     */
+    private final Map<String, PlayerData> players = new LinkedHashMap<>();
+
+    /**
+     * @param fetcher asks the Server for the state of the match if newer than the given version, see
+     *                {@link GameController#getGameState(String, long)}
+     */
+    public GameReplica(LongFunction<VersionedGameState> fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Applies the changes of a command. Changes already applied are ignored; changes that do not follow the
+     * version of the replica mark it as stale.
+     *
+     * @param event the changes sent by the Server
+     */
+    public synchronized void apply(StateDeltaEvent event) {
+        if (event.toVersion() <= version) {
+            return;
+        }
+
+        if (stale || event.fromVersion() != version) {
+            stale = true;
+            return;
+        }
+
+        applyDeltas(event.deltas());
+        version = event.toVersion();
+    }
+
+    /**
+     * Asks the Server for what changed since the version of the replica, and applies it. It is a single request,
+     * whose answer is tiny when the replica is up to date.
+     */
+    public void sync() {
+        long base;
+
+        synchronized (this) {
+            base = version;
+        }
+
+        // Not holding the lock while waiting: the events keep being applied in the meantime
+        VersionedGameState state = fetcher.apply(base);
+
+        if (state == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!state.isModified()) {
+                if (version == base) {
+                    stale = false;
+                }
+            } else if (state.isIncremental()) {
+                if (version == base) {
+                    applyDeltas(state.delta().deltas());
+                    version = state.version();
+                    stale = false;
+                }
+            } else if (state.version() > version) {
+                reset(state);
+            }
+        }
+    }
+
+    /**
+     * Marks the replica as stale, for a Server that does not send the changes: the next read catches up.
+     */
+    public synchronized void invalidate() {
+        stale = true;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public GameFlow getGameFlow() {
+        catchUp();
+
+        synchronized (this) {
+            return gameFlow.deepCopy();
+        }
+    }
+
+    public CommonBoard getGameBoard() {
+        catchUp();
+
+        synchronized (this) {
+            return new CommonBoard(gameBoard);
+        }
+    }
+
+    /**
+     * @param username name of the player
+     * @return the manuscript of the player, empty if they have not placed their starter card yet
+     * @throws RuntimeException if the player does not exist
+     */
+    public PlayerManuscript getManuscript(String username) {
+        catchUp();
+
+        synchronized (this) {
+            return new PlayerManuscript(checkPlayer(manuscripts.get(username)));
+        }
+    }
+
+    /**
+     * @param username name of the player
+     * @return the data of the player; clean, unless it is the owner of the replica
+     * @throws RuntimeException if the player does not exist
+     */
+    public PlayerData getPlayerData(String username) {
+        catchUp();
+
+        synchronized (this) {
+            return new PlayerData(checkPlayer(players.get(username)));
+        }
+    }
+
+    /**
+     * @param username player to put first
+     * @return the data of all players in turn order, starting from the given one
+     * @throws RuntimeException if the player does not exist
+     */
+    public List<PlayerData> getAllPlayerData(String username) {
+        catchUp();
+
+        synchronized (this) {
+            checkPlayer(players.get(username));
+
+            List<String> usernames = new ArrayList<>(players.keySet());
+            int first = usernames.indexOf(username);
+            List<PlayerData> all = new ArrayList<>();
+
+            for (int i = 0; i < usernames.size(); i++) {
+                all.add(new PlayerData(players.get(usernames.get((first + i) % usernames.size()))));
+            }
+
+            return all;
+        }
+    }
+
+    private void catchUp() {
+        boolean needed;
+
+        synchronized (this) {
+            needed = stale;
+        }
+
+        if (needed) {
+            sync();
+        }
+
+        synchronized (this) {
+            if (gameFlow == null) {
+                throw new RuntimeException("The state of the match is not available");
+            }
+        }
+    }
+
+    private <T> T checkPlayer(T value) {
+        if (value == null)
+            throw new RuntimeException("Requested player does not exist");
+        return value;
+    }
+
+    /**
+     * Replaces the content of the replica with the whole state of the match. The state is copied: it may be
+     * shared with the Server when the match is local.
+     */
+    private void reset(VersionedGameState state) {
+        manuscripts.clear();
+        state.manuscripts().forEach((username, manuscript) -> manuscripts.put(username, new PlayerManuscript(manuscript)));
+
+        Map<String, PlayerData> received = new HashMap<>();
+        state.players().forEach(player -> received.put(player.getUsername(), new PlayerData(player)));
+
+        players.clear();
+        state.gameFlow().getAllUsernames().forEach(username -> players.put(username, received.get(username)));
+
+        gameBoard = new CommonBoard(state.gameBoard());
+        setFlow(state.gameFlow().getState(), state.gameFlow().getTurn(), state.gameFlow().getDisconnectedPlayers(),
+                state.gameFlow().isIdle());
+
+        version = state.version();
+        stale = false;
+    }
+
+    private void applyDeltas(List<GameDelta> deltas) {
+        for (GameDelta delta : deltas) {
+            if (delta instanceof GameDelta.CardPlaced placed) {
+                // Built the same way the GameController does, so the items come out the same
+                if (placed.card() instanceof StarterCard starter) {
+                    manuscripts.put(placed.username(), new PlayerManuscript(starter));
+                } else {
+                    manuscripts.get(placed.username()).insertCard(placed.position(), (TypedCard) placed.card());
+                }
+            } else if (delta instanceof GameDelta.PlayerChanged changed) {
+                players.put(changed.player().getUsername(), new PlayerData(changed.player()));
+                setFlow(gameFlow.getState(), gameFlow.getTurn(), gameFlow.getDisconnectedPlayers(), gameFlow.isIdle());
+            } else if (delta instanceof GameDelta.BoardChanged board) {
+                gameBoard.update(board.type(), board.coveredDrawn(), board.visibleCards());
+            } else if (delta instanceof GameDelta.FlowChanged flow) {
+                setFlow(flow.state(), flow.turn(), flow.disconnectedPlayers(), flow.idle());
+            }
+        }
+    }
+
+    private void setFlow(GameState state, int turn, List<String> disconnectedPlayers, boolean idle) {
+        gameFlow = new GameFlow(List.copyOf(players.values()), state, turn, disconnectedPlayers, idle);
+    }
+}
@@ -0,0 +1,277 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.game.StateDeltaEvent;
+import it.polimi.ingsw.model.card.TypedCard;
+import it.polimi.ingsw.model.game.CardType;
+import it.polimi.ingsw.model.game.CommonBoard;
+import it.polimi.ingsw.model.player.ManuscriptPosition;
+import it.polimi.ingsw.model.player.PlayerData;
+import it.polimi.ingsw.model.player.PlayerManuscript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A copy of the state of a match, taken by the {@link GameController} at the end of every command that changed it.
+ * <p>
+ * Each snapshot has a version, higher than the one of the previous snapshot of the same match. The snapshot is
+ * built once and then shared by every reader, without locks and without further copies: the objects it holds
+ * must never be modified. For the same reason a snapshot shares with the previous one the manuscripts and the
+ * covered decks that the last commands did not change, and copies only the others.
+ * <p>
+ * A snapshot also knows what changed since the previous one, as a list of {@link GameDelta}s, and keeps the
+ * deltas of the last {@value #HISTORY} versions: a player a few versions behind can catch up with them instead of
+ * receiving the whole state.
+ */
+public final class GameSnapshot {
+    /**
+     * Number of versions a player can be behind and still catch up with deltas.
+     */
+    private static final int HISTORY = 32;
+
+    private final long version;
+    private final GameFlow gameFlow;
+    private final CommonBoard gameBoard;
+    private final Map<String, PlayerManuscript> manuscripts;
+    private final Map<String, PlayerData> cleanPlayers;
+
+    /**
+     * The changes since the previous snapshot, with the full data of every player; empty for the first snapshot.
+     */
+    private final StateDeltaEvent delta;
+    /**
+     * The same changes, as seen by a player whose own data has not changed.
+     */
+    private final StateDeltaEvent publicDelta;
+    /**
+     * The changes of the last versions, oldest first; the last one is {@link #delta}.
+     */
+    private final List<StateDeltaEvent> history;
+
+    /**
+     * Copies the state of a match. To be called while holding the lock of the GameController.
+     *
+     * @param previous    the previous snapshot of the match, null if this is the first one
+     * @param version     version of the snapshot
+     * @param gameFlow    current GameFlow of the match
+     * @param gameBoard   current CommonBoard of the match
+     * @param manuscripts current manuscripts of the players, null for the players that have not placed their
+     *                    starter card yet
+     * @param placed      the positions of the cards placed since the previous snapshot, by player, in placement
+     *                    order; ignored for the first snapshot
+     * @param drawn       the types of the cards drawn from the board since the previous snapshot, covered or
+     *                    visible; ignored for the first snapshot
+     */
+    GameSnapshot(GameSnapshot previous, long version, GameFlow gameFlow, CommonBoard gameBoard,
+                 Map<String, PlayerManuscript> manuscripts, Map<String, List<ManuscriptPosition>> placed,
+                 Set<CardType> drawn) {
+        this.version = version;
+        this.gameFlow = gameFlow.deepCopy();
+        this.gameBoard = previous == null ? new CommonBoard(gameBoard) : new CommonBoard(gameBoard, previous.gameBoard, drawn);
+
+        Map<String, PlayerManuscript> manuscriptsCopy = new HashMap<>();
+        Map<String, PlayerData> cleanPlayersCopy = new HashMap<>();
+
+        for (String username : this.gameFlow.getAllUsernames()) {
+            PlayerManuscript manuscript = manuscripts.get(username);
+
+            if (previous != null && !placed.containsKey(username)) {
+                manuscriptsCopy.put(username, previous.manuscripts.get(username));
+            } else {
+                manuscriptsCopy.put(username, manuscript != null ? new PlayerManuscript(manuscript) : new PlayerManuscript());
+            }
+            cleanPlayersCopy.put(username, this.gameFlow.getPlayerData(username).cleanPlayerData());
+        }
+
+        this.manuscripts = Collections.unmodifiableMap(manuscriptsCopy);
+        this.cleanPlayers = Collections.unmodifiableMap(cleanPlayersCopy);
+
+        if (previous == null) {
+            this.delta = new StateDeltaEvent(0, version, List.of());
+            this.history = List.of();
+        } else {
+            this.delta = new StateDeltaEvent(previous.version, version, diff(previous, placed, drawn));
+
+            List<StateDeltaEvent> history = new ArrayList<>(previous.history);
+            history.add(this.delta);
+            this.history = List.copyOf(history.subList(Math.max(0, history.size() - HISTORY), history.size()));
+        }
+
+        this.publicDelta = new StateDeltaEvent(delta.fromVersion(), delta.toVersion(),
+                delta.deltas().stream().map(d -> d.forViewer(null)).toList());
+    }
+
+    /**
+     * Lists what changed between the previous snapshot and this one. Only the flow and the players are compared:
+     * the placed cards and the
+     * drawn types are known from the commands.
+     */
+    private List<GameDelta> diff(GameSnapshot previous, Map<String, List<ManuscriptPosition>> placed, Set<CardType> drawn) {
+        List<GameDelta> deltas = new ArrayList<>();
+        GameFlow before = previous.gameFlow;
+
+        if (before.getState() != gameFlow.getState() ||
+                before.getTurn() != gameFlow.getTurn() ||
+                before.isIdle() != gameFlow.isIdle() ||
+                !before.getDisconnectedPlayers().equals(gameFlow.getDisconnectedPlayers())) {
+            deltas.add(new GameDelta.FlowChanged(gameFlow.getState(), gameFlow.getTurn(),
+                    gameFlow.getDisconnectedPlayers(), gameFlow.isIdle()));
+        }
+
+        for (String username : gameFlow.getAllUsernames()) {
+            PlayerData player = gameFlow.getPlayerData(username);
+
+            if (!samePlayer(before.getPlayerData(username), player)) {
+                deltas.add(new GameDelta.PlayerChanged(player));
+            }
+
+            PlayerManuscript manuscript = manuscripts.get(username);
+
+            for (ManuscriptPosition position : placed.getOrDefault(username, List.of())) {
+                deltas.add(new GameDelta.CardPlaced(username, position, manuscript.getCardAt(position)));
+            }
+        }
+
+        for (CardType type : drawn) {
+            int coveredDrawn = previous.gameBoard.getCoveredCardsLeft(type) - gameBoard.getCoveredCardsLeft(type);
+            List<TypedCard> visibleCards = gameBoard.getVisibleCards(type);
+
+            if (coveredDrawn > 0 || !visibleCards.equals(previous.gameBoard.getVisibleCards(type))) {
+                deltas.add(new GameDelta.BoardChanged(type, coveredDrawn, Collections.unmodifiableList(visibleCards)));
+            }
+        }
+
+        return deltas;
+    }
+
+    private static boolean samePlayer(PlayerData before, PlayerData after) {
+        return Objects.equals(before.getHand(), after.getHand()) &&
+                before.getPoints() == after.getPoints() &&
+                before.getColor() == after.getColor() &&
+                Objects.equals(before.getPrivateGoal(), after.getPrivateGoal());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public GameFlow getGameFlow() {
+        return gameFlow;
+    }
+
+    public CommonBoard getGameBoard() {
+        return gameBoard;
+    }
+
+    /**
+     * @param username name of the player
+     * @return the full PlayerData of the player
+     * @throws RuntimeException if the player does not exist
+     */
+    public PlayerData getPlayerData(String username) {
+        checkPlayer(username);
+        return gameFlow.getPlayerData(username);
+    }
+
+    /**
+     * @param username name of the player
+     * @return the PlayerData of the player, cleaned of all private data
+     * @throws RuntimeException if the player does not exist
+     */
+    public PlayerData getCleanPlayerData(String username) {
+        checkPlayer(username);
+        return cleanPlayers.get(username);
+    }
+
+    /**
+     * @param username player whose information is full
+     * @return the PlayerData of all players in turn order, starting from the given one; the data of the other
+     * players is cleaned
+     * @throws RuntimeException if the player does not exist
+     */
+    public List<PlayerData> getAllPlayerData(String username) {
+        checkPlayer(username);
+
+        List<String> usernames = gameFlow.getAllUsernames();
+        int first = usernames.indexOf(username);
+        List<PlayerData> players = new ArrayList<>(usernames.size());
+
+        for (int i = 0; i < usernames.size(); i++) {
+            String name = usernames.get((first + i) % usernames.size());
+            players.add(name.equals(username) ? gameFlow.getPlayerData(name) : cleanPlayers.get(name));
+        }
+
+        return players;
+    }
+
+    /**
+     * @param username name of the player
+     * @return the manuscript of the player, empty if they have not placed their starter card yet
+     * @throws RuntimeException if the player does not exist
+     */
+    public PlayerManuscript getManuscript(String username) {
+        checkPlayer(username);
+        return manuscripts.get(username);
+    }
+
+    /**
+     * Gets the whole state of the match, as seen by a player.
+     *
+     * @param username player whose information is full
+     * @return the versioned state of the match
+     * @throws RuntimeException if the player does not exist
+     */
+    public VersionedGameState viewFor(String username) {
+        return new VersionedGameState(version, gameFlow, gameBoard, manuscripts, getAllPlayerData(username), null);
+    }
+
+    /**
+     * Gets the changes since the previous snapshot, as seen by a player.
+     *
+     * @param viewer the player receiving the changes, null if it is not a player
+     * @return the changes; the same instance for every player whose own data has not changed
+     */
+    public StateDeltaEvent getDeltaFor(String viewer) {
+        boolean ownDataChanged = delta.deltas().stream().anyMatch(d ->
+                d instanceof GameDelta.PlayerChanged changed && changed.player().getUsername().equals(viewer));
+
+        if (!ownDataChanged) {
+            return publicDelta;
+        }
+
+        return new StateDeltaEvent(delta.fromVersion(), delta.toVersion(),
+                delta.deltas().stream().map(d -> d.forViewer(viewer)).toList());
+    }
+
+    /**
+     * Gets the changes from an older version up to this snapshot, as seen by a player.
+     *
+     * @param fromVersion the version the player has
+     * @param viewer      the player receiving the changes, null if it is not a player
+     * @return the changes in the order they have to be applied; null if the version is too old to be caught up
+     * with deltas
+     */
+    public StateDeltaEvent getDeltaSince(long fromVersion, String viewer) {
+        for (int i = 0; i < history.size(); i++) {
+            if (history.get(i).fromVersion() == fromVersion) {
+                List<GameDelta> deltas = history.subList(i, history.size()).stream()
+                        .flatMap(event -> event.deltas().stream())
+                        .map(d -> d.forViewer(viewer))
+                        .toList();
+                return new StateDeltaEvent(fromVersion, version, deltas);
+            }
+        }
+
+        return null;
+    }
+
+    private void checkPlayer(String username) {
+        if (!manuscripts.containsKey(username))
+            throw new RuntimeException("Requested player does not exist");
+    }
+}
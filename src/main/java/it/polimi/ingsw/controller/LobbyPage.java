@@ -0,0 +1,18 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
+import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+
+import java.util.List;
+
+/**
+ * A page of the list of lobbies, as seen by a user (see {@link LobbyQuery}).
+ *
+ * @param lobbies the lobbies of the page, in creation order
+ * @param offset  the position of the first lobby of the page among the matching ones
+ * @param total   the number of lobbies matching the filters, across all the pages
+ * @param version the version of the list of lobbies the page has been taken at: the changes sent to a subscriber
+ *                with a higher version are more recent than the page (see {@link LobbyListChangeEvent})
+ */
+public record LobbyPage(List<LobbyInfo> lobbies, int offset, int total, long version) {
+}
@@ -0,0 +1,63 @@
+package it.polimi.ingsw.controller;
+
+import java.io.Serializable;
+
+/**
+ * What a user asks of the list of lobbies: a page of it, optionally filtered.
+ * <p>
+ * The lobbies are listed in creation order. A started match is listed only to the players it was started with, who
+ * can rejoin it; every filter set must hold:
+ * <ul>
+ *     <li>{@code freeSeatsOnly}: only the lobbies that are not started and not full, which a new player can join;</li>
+ *     <li>{@code namePrefix}: only the lobbies whose name starts with the prefix, ignoring case;</li>
+ *     <li>{@code reconnectableOnly}: only the started matches the user can rejoin.</li>
+ * </ul>
+ *
+ * @param offset            number of matching lobbies to skip
+ * @param limit             maximum number of lobbies in the page
+ * @param freeSeatsOnly     true to list only the lobbies with a free seat
+ * @param namePrefix        prefix of the name of the lobbies to list, null for any name
+ * @param reconnectableOnly true to list only the matches the user can rejoin
+ */
+public record LobbyQuery(int offset, int limit, boolean freeSeatsOnly, String namePrefix,
+                         boolean reconnectableOnly) implements Serializable {
+    /**
+     * Every lobby the user can see, in a single page.
+     */
+    public static final LobbyQuery ALL = new LobbyQuery(0, Integer.MAX_VALUE, false, null, false);
+
+    public LobbyQuery {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("The offset and the limit of a page must not be negative.");
+        }
+
+        if (namePrefix != null && namePrefix.isEmpty()) {
+            namePrefix = null;
+        }
+    }
+
+    /**
+     * Tells whether a lobby is listed to a user.
+     * @param lobby The lobby.
+     * @param username The username of the user looking at the list.
+     * @return True if the lobby is visible to the user and matches every filter.
+     */
+    boolean matches(LobbyRegistry.Entry lobby, String username) {
+        boolean reconnectable = !lobby.isLobbable() && lobby.getChronoUsernames().contains(username);
+
+        if (!lobby.isLobbable() && !reconnectable) {
+            return false;
+        }
+
+        if (freeSeatsOnly && (!lobby.isLobbable() ||
+                lobby.getInfo().getPlayerUsernames().size() >= lobby.getInfo().getMaxPlayers())) {
+            return false;
+        }
+
+        if (reconnectableOnly && !reconnectable) {
+            return false;
+        }
+
+        return namePrefix == null || lobby.getInfo().getName().regionMatches(true, 0, namePrefix, 0, namePrefix.length());
+    }
+}
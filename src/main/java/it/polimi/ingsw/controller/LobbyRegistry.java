@@ -0,0 +1,190 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The lobbies and matches of the Server, indexed by lobby UUID and by the username of their players.
+ * <p>
+ * Every lobby has an {@link Entry}, created with the lobby and kept until it is pruned: the LobbyInfo, the
+ * ChatController, the GameController (once started) and the chrono users of a lobby all hang from it, so that
+ * nothing is keyed by the LobbyInfo, whose content changes.
+ * <p>
+ * Locking discipline: lookups never lock, and are constant time however many lobbies exist. Changes to the
+ * registry, and to the lobbies in it, are made by {@link LogicMatchController} while holding its registry lock,
+ * one at a time: the two indexes are always updated together.
+ * <p>
+ * The lobby UUIDs come from a counter, so they are unique without checking the ones in use (see
+ * {@link #newLobbyUUID()}).
+ */
+public class LobbyRegistry {
+    /**
+     * Everything the Server knows about a lobby.
+     */
+    public static final class Entry {
+        private final LobbyInfo info;
+        private final ChatController chatController;
+        private final List<String> chronoUsernames = new CopyOnWriteArrayList<>();
+        private final long creationOrder;
+        private volatile GameController gameController;
+
+        private Entry(LobbyInfo info, long creationOrder) {
+            this.info = info;
+            this.chatController = new ChatController(info);
+            this.creationOrder = creationOrder;
+        }
+
+        public LobbyInfo getInfo() {
+            return info;
+        }
+
+        public ChatController getChatController() {
+            return chatController;
+        }
+
+        /**
+         * @return The GameController of the match, null if the lobby has not been started yet.
+         */
+        public GameController getGameController() {
+            return gameController;
+        }
+
+        /**
+         * @return The usernames of the players that were in the lobby when it was started: only they can join the
+         * ongoing match.
+         */
+        public List<String> getChronoUsernames() {
+            return chronoUsernames;
+        }
+
+        /**
+         * A lobby is lobbable if there is no GameController associated to it, ie: no match is ongoing and the lobby
+         * can still be joined by new players.
+         * @return True if the lobby is lobbable, false otherwise.
+         */
+        public boolean isLobbable() {
+            return gameController == null;
+        }
+    }
+
+    private final Map<String, Entry> lobbiesByUUID = new ConcurrentHashMap<>();
+    private final Map<String, Entry> lobbiesByPlayer = new ConcurrentHashMap<>();
+    private final AtomicLong nextLobbyId = new AtomicLong();
+    private long nextCreationOrder = 0;
+    /**
+     * Written holding the registry lock only, read by anyone.
+     */
+    private volatile int matches = 0;
+
+    /**
+     * Minimum length of a lobby UUID: the first 36^4 (about 1.7 million) lobbies get a 4-character UUID.
+     */
+    private static final int UUID_LENGTH = 4;
+
+    /**
+     * Allocates a new lobby UUID: the value of a counter in base 36 (digits and lowercase letters), at least
+     * {@value #UUID_LENGTH} characters long. UUIDs are never reused, so no retry is ever needed.
+     * @return The new lobby UUID.
+     */
+    public String newLobbyUUID() {
+        String id = Long.toString(nextLobbyId.getAndIncrement(), Character.MAX_RADIX);
+        return "0".repeat(Math.max(0, UUID_LENGTH - id.length())) + id;
+    }
+
+    /**
+     * @param lobbyUUID The UUID of the lobby.
+     * @return The lobby, null if not found.
+     */
+    public Entry getByUUID(String lobbyUUID) {
+        return lobbiesByUUID.get(lobbyUUID);
+    }
+
+    /**
+     * @param username The username of a player.
+     * @return The lobby the player is in, null if not found.
+     */
+    public Entry getByPlayer(String username) {
+        return lobbiesByPlayer.get(username);
+    }
+
+    public boolean containsUUID(String lobbyUUID) {
+        return lobbiesByUUID.containsKey(lobbyUUID);
+    }
+
+    /**
+     * @return The number of lobbies, started ones included.
+     */
+    public int size() {
+        return lobbiesByUUID.size();
+    }
+
+    /**
+     * @return The number of started lobbies, that is of ongoing matches.
+     */
+    public int getMatchCount() {
+        return matches;
+    }
+
+    /**
+     * @return All the lobbies, in creation order.
+     */
+    public List<Entry> getAll() {
+        List<Entry> entries = new ArrayList<>(lobbiesByUUID.values());
+        entries.sort(Comparator.comparingLong(entry -> entry.creationOrder));
+        return entries;
+    }
+
+    // The following methods change the registry: to be called holding the registry lock of LogicMatchController
+
+    /**
+     * Adds a new, empty lobby.
+     * @param info The LobbyInfo of the lobby; its UUID must not be in use.
+     * @return The new lobby.
+     */
+    Entry add(LobbyInfo info) {
+        Entry entry = new Entry(info, nextCreationOrder++);
+        lobbiesByUUID.put(info.getUuid(), entry);
+        return entry;
+    }
+
+    /**
+     * Records that a player has been added to the LobbyInfo of a lobby.
+     */
+    void playerAdded(Entry entry, String username) {
+        lobbiesByPlayer.put(username, entry);
+    }
+
+    /**
+     * Records that a player has been removed from the LobbyInfo of a lobby.
+     */
+    void playerRemoved(Entry entry, String username) {
+        lobbiesByPlayer.remove(username, entry);
+    }
+
+    /**
+     * Associates the GameController of the match to a lobby, making it not lobbable.
+     */
+    void started(Entry entry, GameController gameController) {
+        entry.gameController = gameController;
+        matches++;
+    }
+
+    /**
+     * Removes a lobby, and the players still indexed in it. Its chat is closed.
+     */
+    void remove(Entry entry) {
+        if (lobbiesByUUID.remove(entry.info.getUuid(), entry) && !entry.isLobbable()) {
+            matches--;
+        }
+
+        entry.info.getPlayerUsernames().forEach(username -> lobbiesByPlayer.remove(username, entry));
+        entry.chatController.close();
+    }
+}
@@ -2,61 +2,115 @@ package it.polimi.ingsw.controller;
 
 import it.polimi.ingsw.client.HandlerController;
 import it.polimi.ingsw.controller.event.lobby.LobbyEvents;
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
 import it.polimi.ingsw.controller.event.lobby.LobbyStartEvent;
+import it.polimi.ingsw.logger.Logger;
 import it.polimi.ingsw.model.game.gamelobby.GameLobbyException;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * This class is the main controller for the lobbies and matches. It only contains the logic implementation.
+ * <p>
+ * The lobbies are kept in a {@link LobbyRegistry}. Every User calls this controller from its own thread: the lookups
+ * run without locks, while the changes to the lobbies (create, join, start, exit) take the registry lock, one at a
+ * time. Nothing slow runs under the lock: the events and the commands to the matches are issued after releasing it,
+ * or queued (see {@link MatchActor#submit}).
+ * <p>
+ * The users on the lobby browser can subscribe to the list of lobbies (see {@link #subscribeLobbies}): every change
+ * made under the lock is then pushed to them, as a {@link LobbyListChangeEvent}, instead of being polled.
  */
 public class LogicMatchController extends HandlerController {
-    private final Map<LobbyInfo, GameController> matchesMap;
-    private final Map<LobbyInfo, ChatController> chatMap;
-    private final Map<LobbyInfo, List<String>> chronoMap;
-    private Integer maxLobbies;
-    private Integer maxMatches;
+    private final LobbyRegistry registry;
+    private final Object registryLock;
+
+    /**
+     * The users on the lobby browser, by username. Guarded by the registry lock.
+     */
+    private final Map<String, LobbySubscription> lobbySubscriptions;
+    /**
+     * Version of the list of lobbies, increased at every change. Written holding the registry lock.
+     */
+    private volatile long lobbyListVersion;
+    private volatile Integer maxLobbies;
+    private volatile Integer maxMatches;
+
+    /**
+     * Heap budgeted for each match, including the connections of its players. A 4-player match holds about 60 KB
+     * in its last round: the rest is left to the Users, their buffers and outbound queues.
+     */
+    public static final long BYTES_PER_MATCH = 512 * 1024;
+
+    /**
+     * Heap share the matches can take, in percent.
+     */
+    private static final int HEAP_SHARE_PERCENT = 50;
+
+    /**
+     * Minimum number of lobbies and matches, however small the heap is.
+     */
+    private static final int MIN_CAPACITY = 16;
 
     /**
      * Constructor for the LogicMatchController class.
-     * @param maxLobbies The maximum number of lobbies that can be created; if invalid, defaults to 256.
-     * @param maxMatches The maximum number of matches that can be created; if invalid, defaults to 256.
+     * @param maxLobbies The maximum number of lobbies that can be created; if null or invalid, defaults to
+     *                   {@link #getDefaultCapacity()}.
+     * @param maxMatches The maximum number of matches that can be ongoing; if null or invalid, defaults to
+     *                   {@link #getDefaultCapacity()}.
      */
     public LogicMatchController(Integer maxLobbies, Integer maxMatches) {
         try {
             setMaxLobbies(maxLobbies);
+        } catch (MatchControllerException e) {
+            // Invalid maxLobbies detected. Falling back to the default value
+            this.maxLobbies = getDefaultCapacity();
+        }
+
+        try {
             setMaxMatches(maxMatches);
         } catch (MatchControllerException e) {
-            // Invalid maxLobbies or/and maxMatches detected. Falling back to default values
-            try {
-                setMaxLobbies(256);
-                setMaxMatches(256);
-            } catch (MatchControllerException ignored) {
-                // setMaxLobbies and setMaxMatches are given safe values. This catch will never
-                // execute
-            }
+            // Invalid maxMatches detected. Falling back to the default value
+            this.maxMatches = getDefaultCapacity();
         }
 
-        matchesMap = new LinkedHashMap<>();
-        chatMap = new HashMap<>();
-        chronoMap = new HashMap<>();
+        registry = new LobbyRegistry();
+        registryLock = new Object();
+        lobbySubscriptions = new HashMap<>();
+        lobbyListVersion = 0;
     }
 
     /**
-     * Creates a new lobby UUID. The UUID is a 4-character string and guaranteed to be unique.
-     * @return The new lobby UUID.
+     * A user on the lobby browser: their filters, where to send the changes, and the lobbies they currently list.
      */
-        private String createNewLobbyUUID() {
-        List<String> UUIDs = matchesMap.keySet().stream()
-                .map(LobbyInfo::getUuid)
-                .toList();
+    private static final class LobbySubscription {
+        private final LobbyQuery query;
+        private final Consumer<LobbyListChangeEvent> sink;
+        private final Set<String> listed = new HashSet<>();
+
+        private LobbySubscription(LobbyQuery query, Consumer<LobbyListChangeEvent> sink) {
+            this.query = query;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Gets the number of lobbies (and of matches) the heap of this JVM can hold: {@value #HEAP_SHARE_PERCENT}% of
+     * the maximum heap, at {@link #BYTES_PER_MATCH} bytes each, and at least {@value #MIN_CAPACITY}.
+     * @return The default capacity.
+     */
+    public static int getDefaultCapacity() {
+        long budget = Runtime.getRuntime().maxMemory() / 100 * HEAP_SHARE_PERCENT;
+        return (int) Math.max(MIN_CAPACITY, Math.min(Integer.MAX_VALUE, budget / BYTES_PER_MATCH));
+    }
+
+    public Integer getMaxLobbies() {
+        return maxLobbies;
+    }
 
-        String UUID;
-        do {
-            UUID = java.util.UUID.randomUUID().toString().substring(0, 4);
-        } while (UUIDs.contains(UUID));
-        return UUID;
+    public Integer getMaxMatches() {
+        return maxMatches;
     }
 
     /**
@@ -65,8 +119,8 @@ public class LogicMatchController extends HandlerController {
      * @throws MatchControllerException If the maximum number of lobbies is invalid.
      */
     public void setMaxLobbies(Integer maxLobbies) throws MatchControllerException {
-        if (maxLobbies < 1 || maxLobbies > 256) {
-            throw new MatchControllerException("Invalid number of lobbies. Valid range from 1 to 256.",
+        if (maxLobbies == null || maxLobbies < 1) {
+            throw new MatchControllerException("Invalid number of lobbies. Must be positive.",
                     MatchControllerException.Reason.INVALID_PARAMETER);
         }
 
@@ -79,8 +133,8 @@ public class LogicMatchController extends HandlerController {
      * @throws MatchControllerException If the maximum number of matches is invalid.
      */
     public void setMaxMatches(Integer maxMatches) throws MatchControllerException {
-        if (maxMatches < 1 || maxMatches > 256) {
-            throw new MatchControllerException("Invalid number of matches. Valid range from 1 to 256.",
+        if (maxMatches == null || maxMatches < 1) {
+            throw new MatchControllerException("Invalid number of matches. Must be positive.",
                     MatchControllerException.Reason.INVALID_PARAMETER);
         }
 
@@ -92,7 +146,9 @@ public class LogicMatchController extends HandlerController {
      * @return A list of all LobbyInfo stored in the controller.
      */
         public ArrayList<LobbyInfo> getInfoLobbies() {
-        ArrayList<LobbyInfo> infos = new ArrayList<>((matchesMap.keySet()).stream().map(LobbyInfo::new).toList());
+        ArrayList<LobbyInfo> infos = new ArrayList<>(registry.getAll().stream()
+                .map(lobby -> new LobbyInfo(lobby.getInfo()))
+                .toList());
         Collections.reverse(infos);
         return infos;
     }
@@ -103,21 +159,94 @@ public class LogicMatchController extends HandlerController {
      * @return A list of all LobbyInfo about lobby that can be joined by the user.
      */
         public List<LobbyInfo> getLobbableBiasedLobbyInfo(String username) {
-        return matchesMap.keySet().stream()
-                .filter(lobby -> isLobbable(lobby) || chronoMap.get(lobby).contains(username))
+        return getLobbyPage(username, LobbyQuery.ALL).lobbies();
+    }
+
+    /**
+     * Get a page of the lobbies a user can see. No lock is taken: the page may already include changes newer than
+     * its version, which are idempotent for a subscriber (see {@link #subscribeLobbies}).
+     * @param username The username of the user.
+     * @param query The page and the filters.
+     * @return The page.
+     */
+    public LobbyPage getLobbyPage(String username, LobbyQuery query) {
+        // Read before the lobbies: the page is at least as recent as its version
+        long version = lobbyListVersion;
+
+        List<LobbyInfo> matching = registry.getAll().stream()
+                .filter(lobby -> query.matches(lobby, username))
+                .map(LobbyRegistry.Entry::getInfo)
                 .toList();
+
+        int from = Math.min(query.offset(), matching.size());
+        int to = (int) Math.min((long) from + query.limit(), matching.size());
+
+        return new LobbyPage(matching.subList(from, to), from, matching.size(), version);
     }
 
     /**
-     * Returns whether a lobby is lobbable or not.
-     * A lobby is lobbable if there is no GameController associated to it, ie: no match is ongoing and the lobby
-     * can still be joined by new players.
-     * @param info The LobbyInfo to check.
-     * @return True if the lobby is lobbable, false otherwise.
+     * Subscribes a user on the lobby browser to the changes of the lobbies matching their filters, replacing any
+     * previous subscription. Every later change of a matching lobby (or of a lobby that stops matching) is passed to
+     * the sink with a higher version than the returned page: the changes cover all the matching lobbies, not only
+     * the ones of the page.
+     * The subscription ends when the user creates or joins a lobby, or calls {@link #unsubscribeLobbies}.
+     * @param username The username of the user.
+     * @param query The page to return and the filters of the subscription.
+     * @param sink Receives the changes, holding the registry lock: it must not block.
+     * @return The requested page, taken when the subscription started.
      */
-    private boolean isLobbable(LobbyInfo info) {
-        // No GameController associated to the lobby
-        return matchesMap.get(info) == null;
+    public LobbyPage subscribeLobbies(String username, LobbyQuery query, Consumer<LobbyListChangeEvent> sink) {
+        synchronized (registryLock) {
+            LobbySubscription subscription = new LobbySubscription(query, sink);
+
+            registry.getAll().stream()
+                    .filter(lobby -> query.matches(lobby, username))
+                    .forEach(lobby -> subscription.listed.add(lobby.getInfo().getUuid()));
+
+            lobbySubscriptions.put(username, subscription);
+            return getLobbyPage(username, query);
+        }
+    }
+
+    /**
+     * Ends the subscription of a user to the list of lobbies, if any.
+     * @param username The username of the user.
+     */
+    public void unsubscribeLobbies(String username) {
+        synchronized (registryLock) {
+            lobbySubscriptions.remove(username);
+        }
+    }
+
+    /**
+     * Pushes the change of a lobby to the subscribers that list it, or listed it. To be called holding the registry
+     * lock, after the change: the subscribers getting the same kind of change get the same event instance.
+     */
+    private void publishLobbyChange(LobbyRegistry.Entry lobby) {
+        long version = ++lobbyListVersion;
+
+        if (lobbySubscriptions.isEmpty()) {
+            return;
+        }
+
+        String uuid = lobby.getInfo().getUuid();
+        boolean exists = registry.getByUUID(uuid) == lobby;
+        Map<LobbyListChangeEvent.Kind, LobbyListChangeEvent> events = new EnumMap<>(LobbyListChangeEvent.Kind.class);
+
+        lobbySubscriptions.forEach((username, subscription) -> {
+            LobbyListChangeEvent.Kind kind;
+
+            if (exists && subscription.query.matches(lobby, username)) {
+                kind = subscription.listed.add(uuid) ? LobbyListChangeEvent.Kind.ADDED : LobbyListChangeEvent.Kind.UPDATED;
+            } else if (subscription.listed.remove(uuid)) {
+                kind = LobbyListChangeEvent.Kind.REMOVED;
+            } else {
+                return;
+            }
+
+            subscription.sink.accept(events.computeIfAbsent(kind,
+                    k -> new LobbyListChangeEvent(k, new LobbyInfo(lobby.getInfo()), version)));
+        });
     }
 
     /**
@@ -127,20 +256,49 @@ public class LogicMatchController extends HandlerController {
      * @throws MatchControllerException If the lobby with the given UUID is not found.
      */
         public LobbyInfo getInfoLobbyByUUID(String lobbyUUID) throws MatchControllerException {
-        return matchesMap.keySet().stream()
-                .filter(lobby -> lobby.getUuid().equals(lobbyUUID))
-                .findAny()
-                .orElseThrow(() -> new MatchControllerException("No lobby with the given lobbyUUID found.",
-                        MatchControllerException.Reason.NO_ENTRY_FOUND));
+        return getLobbyByUUID(lobbyUUID).getInfo();
     }
 
+    /**
+     * Get the GameController of the match a player is in.
+     * @param username The username of the player.
+     * @return The GameController, null if the lobby of the player has not been started yet.
+     * @throws MatchControllerException If the lobby with the given player is not found.
+     */
     public GameController getGameController(String username) throws MatchControllerException {
-        return getMatchesMap().get(getLobbyInfoByPlayerUsername(username));
+        return getLobbyByPlayer(username).getGameController();
     }
 
+    /**
+     * Get the ChatController of the lobby a player is in.
+     * @param username The username of the player.
+     * @return The ChatController.
+     * @throws MatchControllerException If the lobby with the given player is not found.
+     */
     public ChatController getChatController(String username) throws MatchControllerException {
-        LobbyInfo lobbyInfo = getLobbyInfoByPlayerUsername(username);
-        return chatMap.get(lobbyInfo);
+        return getLobbyByPlayer(username).getChatController();
+    }
+
+    private LobbyRegistry.Entry getLobbyByUUID(String lobbyUUID) throws MatchControllerException {
+        LobbyRegistry.Entry lobby = registry.getByUUID(lobbyUUID);
+
+        if (lobby == null) {
+            throw new MatchControllerException("No lobby with the given lobbyUUID found.",
+                    MatchControllerException.Reason.NO_ENTRY_FOUND);
+        }
+
+        return lobby;
+    }
+
+    private LobbyRegistry.Entry getLobbyByPlayer(String username) throws MatchControllerException {
+        LobbyRegistry.Entry lobby = registry.getByPlayer(username);
+
+        if (lobby == null) {
+            throw new MatchControllerException("No lobby with the given player found.",
+                    MatchControllerException.Reason.NO_ENTRY_FOUND);
+        }
+
+        return lobby;
     }
 
     /**
@@ -154,24 +312,22 @@ public class LogicMatchController extends HandlerController {
     public void createLobby(String name, Integer maxPlayers, String username) throws
             MatchControllerException,
             GameLobbyException {
-        // Checking that there is space for a new lobby
-        if (matchesMap.size() == this.maxLobbies) {
-            throw new GameLobbyException("No more space for new lobbies on the server.",
-                    GameLobbyException.Reason.NO_MORE_SPACE_FOR_NEW_LOBBIES);
-        }
-
-        String uuid = createNewLobbyUUID();
+        synchronized (registryLock) {
+            // Checking that there is space for a new lobby
+            if (registry.size() >= this.maxLobbies) {
+                throw new GameLobbyException("No more space for new lobbies on the server.",
+                        GameLobbyException.Reason.NO_MORE_SPACE_FOR_NEW_LOBBIES);
+            }
 
-        LobbyInfo lobbyInfo = new LobbyInfo(uuid, name, maxPlayers, username, false);
-        matchesMap.put(lobbyInfo, null);
-        chronoMap.put(lobbyInfo, new ArrayList<>());
+            String uuid = registry.newLobbyUUID();
 
-        // We create also the chat controller, and add it in the chatMap, in the same way of GameController
-        ChatController chatController = new ChatController(lobbyInfo);
-        chatMap.put(lobbyInfo, chatController);
+            // The chat controller is created with the lobby, and lives as long as it
+            LobbyInfo lobbyInfo = new LobbyInfo(uuid, name, maxPlayers, username, false);
+            registry.add(lobbyInfo);
 
-        // Return value of joinLobby can be ignored since logic guarantees it will always be false in this context
-        joinLobby(lobbyInfo.getUuid(), username);
+            // Return value of joinLobby can be ignored since logic guarantees it will always be false in this context
+            joinLobby(lobbyInfo.getUuid(), username);
+        }
     }
 
     /**
@@ -183,30 +339,42 @@ public class LogicMatchController extends HandlerController {
      * @throws GameLobbyException If the lobby addPlayer procedure fails.
      */
         public Boolean joinLobby(String lobbyUUID, String username) throws MatchControllerException, GameLobbyException {
-        LobbyInfo infoLobby = this.getInfoLobbyByUUID(lobbyUUID);
-
-        // Before adding the user to the GameLobby, we are gonna check that doing this add is legal
-        // A lobby is joinable iff it is lobbable
-        if (isLobbable(infoLobby)) {
-            // Adding the user to a lobby that is NOT a match ongoing: this means that there is no
-            // GameController associated with this lobby. Thus, no GameController has to be specified to the
-            // user.
-            infoLobby.addPlayer(username);
-
-            // Signaling that no GameController association procedure has to be run
-            return false;
-        } else if (chronoMap.get(infoLobby).contains(username)) {
-            // If isLobbable failed, the GameLobby may still be joined by the chrono users...
-
-            // User has the rights to join the lobby even if it is not lobbable
-            // Keep in mind that the lobby is still not lobbable... with this we mean that a match is
-            // ongoing: we so have to add the User to the lobby and the associated match
-            infoLobby.addPlayer(username);
-
-            // Now... since the lobby is a match ongoing there is a GameController associated with the lobby.
-            // The user NEEDS this GameController to be able to correctly interact in the match.
-            // Signaling that a GameController association procedure has to be run
-            return true;
+        synchronized (registryLock) {
+            LobbyRegistry.Entry lobby = this.getLobbyByUUID(lobbyUUID);
+            LobbyInfo infoLobby = lobby.getInfo();
+
+            // Before adding the user to the GameLobby, we are gonna check that doing this add is legal
+            // A lobby is joinable iff it is lobbable
+            if (lobby.isLobbable()) {
+                // Adding the user to a lobby that is NOT a match ongoing: this means that there is no
+                // GameController associated with this lobby. Thus, no GameController has to be specified to the
+                // user.
+                infoLobby.addPlayer(username);
+                registry.playerAdded(lobby, username);
+
+                // The user leaves the lobby browser
+                lobbySubscriptions.remove(username);
+                publishLobbyChange(lobby);
+
+                // Signaling that no GameController association procedure has to be run
+                return false;
+            } else if (lobby.getChronoUsernames().contains(username)) {
+                // If isLobbable failed, the GameLobby may still be joined by the chrono users...
+
+                // User has the rights to join the lobby even if it is not lobbable
+                // Keep in mind that the lobby is still not lobbable... with this we mean that a match is
+                // ongoing: we so have to add the User to the lobby and the associated match
+                infoLobby.addPlayer(username);
+                registry.playerAdded(lobby, username);
+
+                lobbySubscriptions.remove(username);
+                publishLobbyChange(lobby);
+
+                // Now... since the lobby is a match ongoing there is a GameController associated with the lobby.
+                // The user NEEDS this GameController to be able to correctly interact in the match.
+                // Signaling that a GameController association procedure has to be run
+                return true;
+            }
         }
 
         // Join failed. Thus, no GameController association procedure has to be run.
@@ -220,12 +388,7 @@ public class LogicMatchController extends HandlerController {
      * @throws MatchControllerException If the lobby with the given player is not found.
      */
         public LobbyInfo getLobbyInfoByPlayerUsername(String username) throws MatchControllerException {
-        return matchesMap.keySet().stream()
-                .filter(lobby -> lobby.getPlayerUsernames().contains(username))
-                .findAny()
-                .orElseThrow(() -> new MatchControllerException("No lobby with the given player found.",
-                        MatchControllerException.Reason.NO_ENTRY_FOUND));
-
+        return getLobbyByPlayer(username).getInfo();
     }
 
     /**
@@ -234,34 +397,50 @@ public class LogicMatchController extends HandlerController {
      * @throws MatchControllerException If the lobby is not in a valid state to be started; If the user is not the master
      */
     public void startLobby(String startIssuerUsername) throws MatchControllerException {
-        LobbyInfo lobby = getLobbyInfoByPlayerUsername(startIssuerUsername);
+        synchronized (registryLock) {
+            LobbyRegistry.Entry entry = getLobbyByPlayer(startIssuerUsername);
+            LobbyInfo lobby = entry.getInfo();
+
+            // The lobby can be started only by the master
+            if (!lobby.getMasterUsername().equals(startIssuerUsername)) {
+                throw new MatchControllerException("Only the master can start the lobby and a start has been attempted" +
+                        " by a non master.", MatchControllerException.Reason.START_ATTEMPT_FROM_NON_MASTER);
+            }
 
-        // The lobby can be started only by the master
-        if (!lobby.getMasterUsername().equals(startIssuerUsername)) {
-            throw new MatchControllerException("Only the master can start the lobby and a start has been attempted" +
-                    " by a non master.", MatchControllerException.Reason.START_ATTEMPT_FROM_NON_MASTER);
-        }
+            // The lobby can be started only once, and only if there are at least 2 players
+            if (!entry.isLobbable() || lobby.getPlayerUsernames().size() < 2) {
+                throw new MatchControllerException("The lobby must have at least 2 players and not be started yet.",
+                        MatchControllerException.Reason.BAD_STATE_FOR_START);
+            }
 
-        // The lobby can be started only if there are at least 2 players
-        if (lobby.getPlayerUsernames().size() < 2) {
-            throw new MatchControllerException("The lobby must have at least 2 players to start.",
-                    MatchControllerException.Reason.BAD_STATE_FOR_START);
-        }
+            // Checking that there is space for a new match
+            if (registry.getMatchCount() >= this.maxMatches) {
+                throw new MatchControllerException("No more space for new matches on the server.",
+                        MatchControllerException.Reason.NO_MORE_SPACE_FOR_NEW_MATCHES);
+            }
 
-        // To start a lobby means basically to convert a GameLobby into a GameController
-        // Here, we are creating a GameController from the GameLobby
-        GameController gameController = new GameController(lobby.getPlayerUsernames());
+            // To start a lobby means basically to convert a GameLobby into a GameController
+            // Here, we are creating a GameController from the GameLobby
+            GameController gameController = new GameController(lobby.getPlayerUsernames());
 
-        // Lobby creation is now ok. We are gonna associate its GameController to the GameLobby so that the system
-        // knows that this lobby is "not lobbable"
-        matchesMap.put(lobby, gameController);
+            // When the matches run as actors, the match gets the least-loaded shard: all its commands and events
+            // will run there (see MatchShards)
+            gameController.getActor().place(lobby.getUuid());
 
-        // Finally, we take a snapshot of all the users' usernames that are present when startLobby is called: we
-        // are saving these usernames in chronoMap so that ONLY these users can rejoin the ongoing match in case
-        // they disconnects while playing.
-        chronoMap.get(lobby).addAll(lobby.getPlayerUsernames());
+            // Lobby creation is now ok. We are gonna associate its GameController to the GameLobby so that the system
+            // knows that this lobby is "not lobbable"
+            registry.started(entry, gameController);
 
-        lobby.setGameOngoing(true);
+            // Finally, we take a snapshot of all the users' usernames that are present when startLobby is called: we
+            // are saving these usernames as chrono users so that ONLY these users can rejoin the ongoing match in
+            // case they disconnects while playing.
+            entry.getChronoUsernames().addAll(lobby.getPlayerUsernames());
+
+            lobby.setGameOngoing(true);
+
+            // Not joinable anymore: it leaves the list of everyone but its players
+            publishLobbyChange(entry);
+        }
 
         executeHandlers(LobbyEvents.LOBBY_START, new LobbyStartEvent());
     }
@@ -278,19 +457,25 @@ public class LogicMatchController extends HandlerController {
         // Please notice that the lobby needs to be "actually a lobby", ie: the associated match must not have
         // started yet (exists yet)
 
-        LobbyInfo lobby = this.getLobbyInfoByPlayerUsername(username);
+        synchronized (registryLock) {
+            LobbyRegistry.Entry entry = this.getLobbyByPlayer(username);
+            LobbyInfo lobby = entry.getInfo();
 
-        // Check that the lobby is actually a lobby
-        // Now, check that the User is in the lobby
-        if (isLobbable(lobby) && lobby.getPlayerUsernames().contains(username)) {
-            // Telling the ChatController to disconnect the user with the given username
-            ChatController associatedChatController = chatMap.get(lobby);
-            associatedChatController.disconnectPlayer(username);
+            // Check that the lobby is actually a lobby
+            // Now, check that the User is in the lobby
+            if (entry.isLobbable() && lobby.getPlayerUsernames().contains(username)) {
+                // Telling the ChatController to disconnect the user with the given username
+                ChatController associatedChatController = entry.getChatController();
+                associatedChatController.disconnectPlayer(username);
 
-            Boolean lobbyToPrune = lobby.removePlayer(username);
+                Boolean lobbyToPrune = lobby.removePlayer(username);
+                registry.playerRemoved(entry, username);
 
-            if (lobbyToPrune) {
-                matchesMap.remove(lobby);
+                if (lobbyToPrune) {
+                    registry.remove(entry);
+                }
+
+                publishLobbyChange(entry);
             }
         }
     }
@@ -303,42 +488,44 @@ public class LogicMatchController extends HandlerController {
     public void exitMatch(String username) throws MatchControllerException {
         // This method removes the specified User from the match if the User exists in that Match
         // Being removed from the Match, the User is also removed from the corresponding lobby
-        LobbyInfo lobby = this.getLobbyInfoByPlayerUsername(username);
-
-        if (!isLobbable(lobby) && lobby.getPlayerUsernames().contains(username)) {
-            // Now, we get the associatedGameController
-            GameController associatedGameController = matchesMap.get(lobby);
-
-            // Telling the GameController to disconnect the user with the given username
-            // THIS IS THE WAY TO REMOVE A PLAYER FROM THE MATCH
-            associatedGameController.disconnectPlayer(username);
-
-            // Telling the ChatController to disconnect the user with the given username
-            ChatController associatedChatController = chatMap.get(lobby);
-            associatedChatController.disconnectPlayer(username);
-
-            // Removing the player from the lobby. Yes... we are in the exitMatch function but anyway the information
-            // about the user is saved in the LobbyInfo object. This LobbyInfo object is associated to a non-null
-            // GameController since a match is ongoing.
-            // THIS IS THE WAY TO REMOVE A PLAYER FROM THE LOBBY THAT IS AN ONGOING MATCH
-            Boolean matchToPrune = lobby.removePlayer(username);
-
-            if (matchToPrune) {
-                // If the ongoing match gets empty... well just act like with the lobbies and prune it
-                matchesMap.remove(lobby);
+        synchronized (registryLock) {
+            LobbyRegistry.Entry entry = this.getLobbyByPlayer(username);
+            LobbyInfo lobby = entry.getInfo();
+
+            if (!entry.isLobbable() && lobby.getPlayerUsernames().contains(username)) {
+                // Now, we get the associatedGameController
+                GameController associatedGameController = entry.getGameController();
+
+                // Telling the GameController to disconnect the user with the given username
+                // THIS IS THE WAY TO REMOVE A PLAYER FROM THE MATCH
+                // Queued after the commands already submitted to the match (see MatchActor) and not waited for.
+                // Submitted under the registry lock: a rejoin, even from another connection, takes the lock to join
+                // the match again, so its reconnection is always queued after this disconnection
+                associatedGameController.getActor().submit(gc -> gc.disconnectPlayer(username)).whenComplete((result, error) -> {
+                    if (error != null) {
+                        Logger.logError("Could not disconnect " + username + " from its match (" + error.getMessage() + ")");
+                    }
+                });
+
+                // Telling the ChatController to disconnect the user with the given username
+                ChatController associatedChatController = entry.getChatController();
+                associatedChatController.disconnectPlayer(username);
+
+                // Removing the player from the lobby. Yes... we are in the exitMatch function but anyway the
+                // information about the user is saved in the LobbyInfo object. This LobbyInfo object is associated
+                // to a non-null GameController since a match is ongoing.
+                // THIS IS THE WAY TO REMOVE A PLAYER FROM THE LOBBY THAT IS AN ONGOING MATCH
+                Boolean matchToPrune = lobby.removePlayer(username);
+                registry.playerRemoved(entry, username);
+
+                if (matchToPrune) {
+                    // If the ongoing match gets empty... well just act like with the lobbies and prune it
+                    registry.remove(entry);
+                    associatedGameController.getActor().release();
+                }
+
+                publishLobbyChange(entry);
             }
         }
     }
-
-        public Map<LobbyInfo, List<String>> getChronoMap() {
-        return chronoMap;
-    }
-
-        public Map<LobbyInfo, GameController> getMatchesMap() {
-        return matchesMap;
-    }
-
-        public Map<LobbyInfo, ChatController> getChatMap() {
-        return chatMap;
-    }
 }
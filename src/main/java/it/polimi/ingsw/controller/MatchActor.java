@@ -0,0 +1,238 @@
+package it.polimi.ingsw.controller;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Runs the commands of a match (see {@link GameController}) one at a time, in the order they are submitted.
+ * <p>
+ * When the actor mode is enabled, the commands of the Clients (from the InGameState of Socket Users and from the
+ * UserStub of RMI Users) and the disconnections/reconnections are queued on the actor of their match instead of
+ * being run by the thread that received them. Every match is placed on one of the {@link MatchShards} when its lobby
+ * is started, and its commands always run on the thread of that shard: the commands of a match never contend with
+ * each other, they are totally ordered (and so are the events they fire), and the matches spread across the shards.
+ * The reply of a command completes a future, so the receiving thread does not even have to wait for it.
+ * The read queries do not go through the actor: they are answered right away from the last {@link GameSnapshot}.
+ * <p>
+ * When the actor mode is disabled (the default), commands are run right away by the calling thread, as before.
+ */
+public final class MatchActor {
+    /**
+     * Maximum number of commands a shard runs for the same match before giving its other matches a turn.
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    private static volatile boolean enabled = false;
+
+    /**
+     * The actor whose commands the current thread is running, if any.
+     */
+    private static final ThreadLocal<MatchActor> draining = new ThreadLocal<>();
+
+    /**
+     * Enables or disables the actor mode. To be called at startup, before any match is created.
+     * @param enable True to run every match as an actor.
+     * @param threads The number of shards, each one a thread running its matches (see {@link MatchShards}).
+     */
+    public static synchronized void configure(boolean enable, int threads) {
+        if (MatchShards.isRunning()) {
+            throw new IllegalStateException("The match actors are already running.");
+        }
+
+        MatchShards.configure(threads);
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /* Start of the class implementation */
+    private final GameController gameController;
+    private final MatchShards shards;
+    private final Queue<Runnable> queue;
+    private final AtomicBoolean running;
+
+    private volatile MatchShards.Shard shard;
+    private String lobbyUUID;
+
+    MatchActor(GameController gameController) {
+        this(gameController, null);
+    }
+
+    /**
+     * Creates the actor of a match running on the given shards, whether the actor mode is enabled or not.
+     * @param gameController The GameController of the match.
+     * @param shards The shards to run the match on, null to follow the actor mode (see {@link #configure}).
+     */
+    MatchActor(GameController gameController, MatchShards shards) {
+        this.gameController = gameController;
+        this.shards = shards;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.running = new AtomicBoolean(false);
+    }
+
+    /**
+     * @return The shards the match runs on, null when it is run by the calling threads.
+     */
+    private MatchShards shards() {
+        if (this.shards != null) {
+            return this.shards;
+        }
+        return isEnabled() ? MatchShards.getInstance() : null;
+    }
+
+    /**
+     * Places the match on the least-loaded shard. To be called when the lobby of the match is started, before any
+     * command is submitted; does nothing when the actor mode is disabled.
+     * @param lobbyUUID The UUID of the lobby of the match.
+     */
+    synchronized void place(String lobbyUUID) {
+        MatchShards shards = this.shards();
+
+        if (shards != null && this.shard == null) {
+            this.lobbyUUID = lobbyUUID;
+            this.shard = shards.place(lobbyUUID);
+        }
+    }
+
+    /**
+     * Removes the match from its shard, once it has been pruned. The commands still queued are run anyway.
+     */
+    synchronized void release() {
+        if (this.lobbyUUID != null) {
+            this.shards().release(this.lobbyUUID);
+            this.lobbyUUID = null;
+        }
+    }
+
+    /**
+     * Gets the shard of the match: a match without a lobby (e.g. created by hand) is put on the least-loaded shard
+     * the first time it is needed.
+     * @return The shard running the match, null when the actor mode is disabled.
+     */
+    public MatchShards.Shard getShard() {
+        MatchShards shards = this.shards();
+
+        if (shards == null) {
+            return null;
+        }
+
+        MatchShards.Shard placed = this.shard;
+
+        if (placed == null) {
+            synchronized (this) {
+                if (this.shard == null) {
+                    this.shard = shards.leastLoaded();
+                }
+                placed = this.shard;
+            }
+        }
+
+        return placed;
+    }
+
+    /**
+     * Submits a command to the match.
+     * @param command The command, run on the GameController of the match.
+     * @return A future completed with the result of the command, or exceptionally with the RuntimeException it
+     * threw.
+     */
+    public <R> CompletableFuture<R> submit(Function<GameController, R> command) {
+        CompletableFuture<R> reply = new CompletableFuture<>();
+        Runnable run = () -> {
+            try {
+                reply.complete(command.apply(this.gameController));
+            } catch (RuntimeException e) {
+                reply.completeExceptionally(e);
+            }
+        };
+
+        MatchShards.Shard shard = this.getShard();
+
+        // Already running a command of this match (e.g. a command calling another one of its own match): queueing it
+        // would wait for itself. The commands of the other matches of the shard, and the event deliveries, queue
+        // like anyone else instead of overtaking the commands already waiting
+        if (shard == null || draining.get() == this) {
+            run.run();
+            return reply;
+        }
+
+        shard.commandQueued();
+        this.queue.add(() -> {
+            shard.commandRun();
+            run.run();
+        });
+        this.schedule(shard);
+        return reply;
+    }
+
+    /**
+     * Submits a command to the match and waits for its result.
+     * @param command The command, run on the GameController of the match.
+     * @return The result of the command.
+     * @throws RuntimeException The exception thrown by the command, as is.
+     * @throws IllegalStateException If called by the thread of the shard of the match, outside of its commands: the
+     * command would wait for the thread waiting for it.
+     */
+    public <R> R call(Function<GameController, R> command) {
+        MatchShards.Shard shard = this.getShard();
+
+        if (shard != null && MatchShards.current() == shard && draining.get() != this) {
+            throw new IllegalStateException("Cannot wait for a command of a match on the thread of its own shard.");
+        }
+
+        try {
+            return this.submit(command).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of commands waiting to be run.
+     * @return The number of queued commands.
+     */
+    public int getQueued() {
+        return this.queue.size();
+    }
+
+    private void schedule(MatchShards.Shard shard) {
+        if (this.queue.peek() != null && this.running.compareAndSet(false, true)) {
+            shard.execute(() -> this.drain(shard));
+        }
+    }
+
+    /**
+     * Runs up to DRAIN_BATCH commands, then queues the match again behind the other matches of its shard if more are
+     * waiting.
+     */
+    private void drain(MatchShards.Shard shard) {
+        draining.set(this);
+
+        try {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Runnable command = this.queue.poll();
+
+                if (command == null) {
+                    break;
+                }
+
+                command.run();
+            }
+        } finally {
+            draining.remove();
+            this.running.set(false);
+        }
+
+        // Submitted while the running flag was still set: nobody else would schedule them
+        this.schedule(shard);
+    }
+}
@@ -1,17 +1,23 @@
 package it.polimi.ingsw.controller;
 
 import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.FiredBatch;
+import it.polimi.ingsw.controller.event.FiredEvent;
 import it.polimi.ingsw.controller.event.chat.ChatEvents;
 import it.polimi.ingsw.controller.event.game.GameEvents;
 import it.polimi.ingsw.controller.event.game.MatchCompositionChangeEvent;
 import it.polimi.ingsw.controller.event.lobby.LobbyStartEvent;
+import it.polimi.ingsw.logger.Logger;
 import it.polimi.ingsw.model.game.gamelobby.GameLobbyException;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
 import it.polimi.ingsw.network.Profiles;
 import it.polimi.ingsw.network.ProfilesException;
 import it.polimi.ingsw.network.liveloop.User;
+import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.messages.MessageType;
 import it.polimi.ingsw.network.messages.SingleArgMessage;
+import it.polimi.ingsw.network.messages.servertoclient.EventBatchMessage;
 import it.polimi.ingsw.network.messages.servertoclient.ListOfLobbyToJoinMessage;
 import it.polimi.ingsw.network.messages.servertoclient.LobbyInfoMessage;
 import it.polimi.ingsw.network.messages.servertoclient.LobbyStartMessage;
@@ -19,10 +25,13 @@ import it.polimi.ingsw.network.rmi.UserStub;
 import it.polimi.ingsw.network.state.ChooseCreateJoinState;
 import it.polimi.ingsw.network.state.InGameState;
 import it.polimi.ingsw.network.state.InLobbyState;
+import it.polimi.ingsw.network.tcpip.ActiveTransport;
+import it.polimi.ingsw.network.tcpip.SharedFrame;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is the main controller for the lobbies and matches. It extends the LogicMatchController class.
@@ -30,6 +39,28 @@ import java.util.List;
 public class MatchController extends LogicMatchController {
     private static MatchController instance;
 
+    /**
+     * Message type wrapping each game event when sent to a client.
+     */
+    private static final Map<EventType<? extends Event>, MessageType> GAME_EVENT_MESSAGES = Map.of(
+            GameEvents.PLACE_EVENT, MessageType.PLACE_CARD_EVENT,
+            GameEvents.CHOOSE_GOAL, MessageType.CHOOSE_GOAL_EVENT,
+            GameEvents.SET_COLOR, MessageType.SET_COLOR_EVENT,
+            GameEvents.SET_STARTER, MessageType.SET_STARTER_EVENT,
+            GameEvents.TURN_CHANGE, MessageType.TURN_CHANGE_EVENT,
+            GameEvents.DRAW_COVERED, MessageType.DRAW_COVERED_EVENT,
+            GameEvents.DRAW_VISIBLE, MessageType.DRAW_VISIBLE_EVENT,
+            GameEvents.STATE_CHANGE, MessageType.STATE_CHANGE_EVENT,
+            GameEvents.MATCH_COMPOSITION_CHANGE, MessageType.MATCH_COMPOSITION_CHANGE_EVENT,
+            GameEvents.STATE_DELTA, MessageType.STATE_DELTA_EVENT
+    );
+
+    /**
+     * Frames of the last changes of the list of lobbies, shared by the subscribers getting the same change.
+     * The changes are published one at a time, under the lock of the lobbies, so it is never contended.
+     */
+    private final SharedFrame.Cache lobbyChangeFrames = new SharedFrame.Cache(8);
+
     public MatchController(Integer maxLobbies, Integer maxMatches) {
         super(maxLobbies, maxMatches);
     }
@@ -43,7 +74,7 @@ public class MatchController extends LogicMatchController {
 
         public static MatchController getInstance() {
         if (instance == null) {
-            instance = new MatchController(256, 256);
+            instance = new MatchController(null, null);
         }
         return instance;
     }
@@ -89,17 +120,15 @@ public class MatchController extends LogicMatchController {
             GameLobbyException {
         super.createLobby(name, maxPlayers, user.getUsername());
 
-        LobbyInfo info = getLobbyInfoByPlayerUsername(user.getUsername());
-
         // Setting also the ChatController for each user
-        ChatController chatController = getChatMap().get(info);
+        ChatController chatController = getChatController(user.getUsername());
         user.setChatController(chatController);
 
         // Chat controller adds (1)
         chatController.addEventHandler(user.getUsername(), ChatEvents.BROADCAST_MESSAGE, (e) -> {
             List<User> userList = Profiles.getInstance().getUsersByUsernameList(chatController.getChatDistributionList());
             if (userList.contains(user)) {
-                user.send(new SingleArgMessage<>(MessageType.BROADCAST_MESSAGE_EVENT, e));
+                user.send(SharedFrame.ofEvent(MessageType.BROADCAST_MESSAGE_EVENT, e));
             }
         });
 
@@ -107,7 +136,7 @@ public class MatchController extends LogicMatchController {
         chatController.addEventHandler(user.getUsername(), ChatEvents.PRIVATE_MESSAGE, (e) -> {
             List<User> userList = Profiles.getInstance().getUsersByUsernameList(chatController.getChatDistributionList());
             if (userList.contains(user)) {
-                user.send(new SingleArgMessage<>(MessageType.PRIVATE_MESSAGE_EVENT, e));
+                user.send(SharedFrame.ofEvent(MessageType.PRIVATE_MESSAGE_EVENT, e));
             }
         });
     }
@@ -125,10 +154,8 @@ public class MatchController extends LogicMatchController {
             MatchControllerException {
         super.createLobby(name, maxPlayers, user.getUsername());
 
-        LobbyInfo info = getLobbyInfoByPlayerUsername(user.getUsername());
-
         // Setting also the ChatController for each user
-        ChatController chatController = getChatMap().get(info);
+        ChatController chatController = getChatController(user.getUsername());
         user.setChatController(chatController);
 
         // Chat controller adds (1)
@@ -178,14 +205,14 @@ public class MatchController extends LogicMatchController {
         LobbyInfo lobbyInfo = MatchController.getInstance().getInfoLobbyByUUID(lobbyUUID);
 
         // Setting also the ChatController for each user
-        ChatController chatController = getChatMap().get(lobbyInfo);
+        ChatController chatController = getChatController(user.getUsername());
         user.setChatController(chatController);
 
         // Chat controller adds (1)
         chatController.addEventHandler(user.getUsername(), ChatEvents.BROADCAST_MESSAGE, (e) -> {
             List<User> userList = Profiles.getInstance().getUsersByUsernameList(chatController.getChatDistributionList());
             if (userList.contains(user)) {
-                user.send(new SingleArgMessage<>(MessageType.BROADCAST_MESSAGE_EVENT, e));
+                user.send(SharedFrame.ofEvent(MessageType.BROADCAST_MESSAGE_EVENT, e));
             }
         });
 
@@ -193,46 +220,32 @@ public class MatchController extends LogicMatchController {
         chatController.addEventHandler(user.getUsername(), ChatEvents.PRIVATE_MESSAGE, (e) -> {
             List<User> userList = Profiles.getInstance().getUsersByUsernameList(chatController.getChatDistributionList());
             if (userList.contains(user)) {
-                user.send(new SingleArgMessage<>(MessageType.PRIVATE_MESSAGE_EVENT, e));
+                user.send(SharedFrame.ofEvent(MessageType.PRIVATE_MESSAGE_EVENT, e));
             }
         });
 
         // If true, it means that the lobby IS an ongoing match!
         if (runGameControllerAssociationProcedure) {
-            List<User> users = List.of(user);
 
-            GameController gameController = MatchController.getInstance().getMatchesMap().get(lobbyInfo);
+            GameController gameController = getGameController(user.getUsername());
             user.setGameController(gameController);
 
             // I need to add handlers to notify the new client about events
-            gameController.addEventHandler(user.getUsername(), GameEvents.PLACE_EVENT, (e) ->
-                    sendEachUser(e, users, MessageType.PLACE_CARD_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.CHOOSE_GOAL, (e) ->
-                    sendEachUser(e, users, MessageType.CHOOSE_GOAL_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_COLOR, (e) ->
-                    sendEachUser(e, users, MessageType.SET_COLOR_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_STARTER, (e) ->
-                    sendEachUser(e, users, MessageType.SET_STARTER_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.TURN_CHANGE, (e) ->
-                    sendEachUser(e, users, MessageType.TURN_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_COVERED, (e) ->
-                    sendEachUser(e, users, MessageType.DRAW_COVERED_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_VISIBLE, (e) ->
-                    sendEachUser(e, users, MessageType.DRAW_VISIBLE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.STATE_CHANGE, (e) ->
-                    sendEachUser(e, users, MessageType.STATE_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.MATCH_COMPOSITION_CHANGE, (e) ->
-                    sendEachUser(e, users, MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+            // All the events of a game command reach the new client in a single frame
+            gameController.addBatchHandler(user.getUsername(), (batch) -> sendBatch(batch, user));
 
             return true;
         } else {
             // Get the list of users already in the lobby that is being joined
             List<User> users = this.usersFromLobbyInfo(lobbyInfo);
 
+            // A single event, so that it is encoded once for all the Users
+            MatchCompositionChangeEvent compositionChange = new MatchCompositionChangeEvent();
+
             users.stream()
                     // Removing myself
                     .filter(_user -> !_user.equals(user))
-                    .forEach(_user -> sendEachUser(new MatchCompositionChangeEvent(), List.of(_user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+                    .forEach(_user -> sendEachUser(compositionChange, List.of(_user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
 
             return false;
         }
@@ -252,7 +265,7 @@ public class MatchController extends LogicMatchController {
         LobbyInfo lobbyInfo = MatchController.getInstance().getInfoLobbyByUUID(lobbyUUID);
 
         // Setting also the ChatController for each user
-        ChatController chatController = getChatMap().get(lobbyInfo);
+        ChatController chatController = getChatController(user.getUsername());
         user.setChatController(chatController);
 
         // Chat controller adds (1)
@@ -286,34 +299,23 @@ public class MatchController extends LogicMatchController {
 
         // If true, it means that the lobby IS an ongoing match!
         if (runGameControllerAssociationProcedure) {
-            List<User> users = List.of(user);
 
-            GameController gameController = MatchController.getInstance().getMatchesMap().get(lobbyInfo);
+            GameController gameController = getGameController(user.getUsername());
             user.setGameController(gameController);
 
             // I need to add handlers to notify the new client about events
-            gameController.addEventHandler(user.getUsername(), GameEvents.PLACE_EVENT, (e) ->
-                    pushAtEachUser(e, users, MessageType.PLACE_CARD_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.CHOOSE_GOAL, (e) ->
-                    pushAtEachUser(e, users, MessageType.CHOOSE_GOAL_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_COLOR, (e) ->
-                    pushAtEachUser(e, users, MessageType.SET_COLOR_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_STARTER, (e) ->
-                    pushAtEachUser(e, users, MessageType.SET_STARTER_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.TURN_CHANGE, (e) ->
-                    pushAtEachUser(e, users, MessageType.TURN_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_COVERED, (e) ->
-                    pushAtEachUser(e, users, MessageType.DRAW_COVERED_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_VISIBLE, (e) ->
-                    pushAtEachUser(e, users, MessageType.DRAW_VISIBLE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.STATE_CHANGE, (e) ->
-                    pushAtEachUser(e, users, MessageType.STATE_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.MATCH_COMPOSITION_CHANGE, (e) ->
-                    pushAtEachUser(e, users, MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+            // All the events of a game command reach the new client with a single remote call
+            gameController.addBatchHandler(user.getUsername(), (batch) -> pushBatch(batch, user));
 
             user.getUserStub().pushEvent(new SingleArgMessage<>(MessageType.LOBBY_START_WRAPPED, new LobbyStartEvent()));
             user.setState(new InGameState(user));
-            user.getGameController().reconnectPlayer(user.getUsername());
+
+            // Not waited for: the remote call returns right away, the events of the match follow the reconnection
+            user.getGameController().getActor().submit(gc -> gc.reconnectPlayer(user.getUsername())).whenComplete((result, error) -> {
+                if (error != null) {
+                    Logger.logError("Could not reconnect " + user.getUsername() + " to its match (" + error.getMessage() + ")");
+                }
+            });
         } else {
             // Get the list of users already in the lobby that is being joined
             List<User> users = this.usersFromLobbyInfo(lobbyInfo);
@@ -327,9 +329,39 @@ public class MatchController extends LogicMatchController {
         }
     }
 
-        public List<ListOfLobbyToJoinMessage.LobbyInfo> getListOfLobbyToJoinRMI(User user) throws MatchControllerException {
-        ListOfLobbyToJoinMessage list = new ListOfLobbyToJoinMessage(user.getUsername());
-        return list.getLobbies();
+    /**
+     * Subscribes a user on the lobby browser to the changes of the list of lobbies: they are sent as
+     * LOBBY_LIST_CHANGE_EVENT, and every subscriber getting the same change shares the same frame.
+     * @param query The page to return and the filters of the subscription.
+     * @param user The user to subscribe.
+     * @return The requested page, see {@link LogicMatchController#subscribeLobbies}.
+     */
+    public LobbyPage subscribeLobbies(LobbyQuery query, User user) {
+        return super.subscribeLobbies(user.getUsername(), query,
+                (e) -> user.send(lobbyChangeFrames.ofEvent(MessageType.LOBBY_LIST_CHANGE_EVENT, e)));
+    }
+
+    /**
+     * Gets a page of the list of lobbies in an RMI communication, optionally subscribing the user to its changes:
+     * they are pushed as LOBBY_LIST_CHANGE_EVENT.
+     * @param query The page and the filters.
+     * @param subscribe True to subscribe the user to the changes.
+     * @param user The user asking for the list.
+     * @return The page.
+     */
+    public ListOfLobbyToJoinMessage getListOfLobbyToJoinRMI(LobbyQuery query, boolean subscribe, User user) {
+        if (!subscribe) {
+            return new ListOfLobbyToJoinMessage(getLobbyPage(user.getUsername(), query));
+        }
+
+        return new ListOfLobbyToJoinMessage(super.subscribeLobbies(user.getUsername(), query, (e) -> {
+            try {
+                user.getUserStub().pushEvent(new SingleArgMessage<>(MessageType.LOBBY_LIST_CHANGE_EVENT, e));
+            } catch (RemoteException ignored) {
+                // Handler failed due to RMI error. Nothing to do here. Ping service will prune
+                // the necessary.
+            }
+        }));
     }
 
         public LobbyInfo getLobbyInfoRMI(User user) throws MatchControllerException {
@@ -347,32 +379,16 @@ public class MatchController extends LogicMatchController {
         super.startLobby(startIssuerUsername);
 
         LobbyInfo info = getLobbyInfoByPlayerUsername(startIssuerUsername);
-        GameController gameController = getMatchesMap().get(info);
+        GameController gameController = getGameController(startIssuerUsername);
 
         // Setting the same GameController of the match to all the users in the starting match
         List<User> users = usersFromLobbyInfo(info);
         users.forEach(u -> u.setGameController(gameController));
 
-        // Add handlers to notify clients about events
+        // Add handlers to notify clients about events: all the events of a game command reach each client in a
+        // single frame
         for (User user : users) {
-            gameController.addEventHandler(user.getUsername(), GameEvents.PLACE_EVENT, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.PLACE_CARD_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.CHOOSE_GOAL, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.CHOOSE_GOAL_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_COLOR, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.SET_COLOR_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_STARTER, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.SET_STARTER_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.TURN_CHANGE, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.TURN_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_COVERED, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.DRAW_COVERED_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_VISIBLE, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.DRAW_VISIBLE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.STATE_CHANGE, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.STATE_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.MATCH_COMPOSITION_CHANGE, (e) ->
-                    sendEachUser(e, List.of(user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+            gameController.addBatchHandler(user.getUsername(), (batch) -> sendBatch(batch, user));
         }
 
         // Notifing all users in the lobby, except from the master that started the lobby, that the lobby
@@ -398,32 +414,16 @@ public class MatchController extends LogicMatchController {
         super.startLobby(userStub.getUser().getUsername());
 
         LobbyInfo info = getLobbyInfoByPlayerUsername(userStub.getUser().getUsername());
-        GameController gameController = getMatchesMap().get(info);
+        GameController gameController = getGameController(userStub.getUser().getUsername());
 
         // Setting the same GameController of the match to all the users in the starting match
         List<User> users = usersFromLobbyInfo(info);
         users.forEach(u -> u.setGameController(gameController));
 
         // Add handlers to notify clients about events
+        // All the events of a game command reach each client with a single remote call
         for (User user : users) {
-            gameController.addEventHandler(user.getUsername(), GameEvents.PLACE_EVENT, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.PLACE_CARD_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.CHOOSE_GOAL, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.CHOOSE_GOAL_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_COLOR, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.SET_COLOR_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.SET_STARTER, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.SET_STARTER_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.TURN_CHANGE, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.TURN_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_COVERED, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.DRAW_COVERED_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.DRAW_VISIBLE, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.DRAW_VISIBLE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.STATE_CHANGE, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.STATE_CHANGE_EVENT));
-            gameController.addEventHandler(user.getUsername(), GameEvents.MATCH_COMPOSITION_CHANGE, (e) ->
-                    pushAtEachUser(e, List.of(user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+            gameController.addBatchHandler(user.getUsername(), (batch) -> pushBatch(batch, user));
         }
 
         // Notifing all users in the lobby, except from the master that started the lobby, that the lobby
@@ -447,12 +447,15 @@ public class MatchController extends LogicMatchController {
 
             super.exitLobby(user.getUsername());
 
+            // A single event, so that it is encoded once for all the Users
+            MatchCompositionChangeEvent compositionChange = new MatchCompositionChangeEvent();
+
             // Get the list of users already in the lobby that is being joined
             users.stream()
                     // Removing myself (actually I think that I'm already missing from this list since I've left, but
                     // neverming let's filter it anyway :))
                     .filter(_user -> !_user.equals(user))
-                    .forEach(_user -> sendEachUser(new MatchCompositionChangeEvent(), List.of(_user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
+                    .forEach(_user -> sendEachUser(compositionChange, List.of(_user), MessageType.MATCH_COMPOSITION_CHANGE_EVENT));
         }
     }
 
@@ -507,14 +510,66 @@ public class MatchController extends LogicMatchController {
 
     /**
      * Sends a message to each user in a list.
+     * The same frame is sent to all of them, so the message is encoded only once.
      * @param e The event to send (encapsulated in a Message object)
      * @param users The list of users to send the message to.
      * @param type The type of the message.
      * @param <T> The type of the event.
      */
     public <T extends Event> void sendEachUser(T e, List<User> users, MessageType type) {
+        SharedFrame frame = SharedFrame.ofEvent(type, e);
+
         for (User user : users) {
-            user.send(new SingleArgMessage<>(type, e));
+            user.send(frame);
+        }
+    }
+
+    /**
+     * Sends to a user the events produced by a game command.
+     * A single event is sent as usual, more events are sent together in an {@link EventBatchMessage}.
+     * The users getting the same events get the same batch instance, so the frame is encoded once for all of them.
+     * Without the framed protocol the events are sent one by one, leaving out the state delta (see
+     * {@link ActiveTransport#speaksFramed()}).
+     * @param batch The events, in firing order.
+     * @param user The user to send the events to.
+     */
+    public void sendBatch(FiredBatch batch, User user) {
+        List<FiredEvent> events = batch.getEvents();
+
+        if (!ActiveTransport.speaksFramed()) {
+            // Object streams may be read by Clients predating batches and state deltas: the other events are sent one
+            // by one, as they always were, and the Clients that keep a replica catch up when reading it
+            events.stream()
+                    .filter(fired -> fired.type() != GameEvents.STATE_DELTA)
+                    .forEach(fired -> user.send(SharedFrame.ofEvent(GAME_EVENT_MESSAGES.get(fired.type()), fired.event())));
+            return;
+        }
+
+        user.send(SharedFrame.ofBatch(batch, () -> {
+            if (events.size() == 1) {
+                FiredEvent fired = events.get(0);
+                return new SingleArgMessage<>(GAME_EVENT_MESSAGES.get(fired.type()), fired.event());
+            }
+
+            return new EventBatchMessage(events.stream()
+                    .map(fired -> (Message) new SingleArgMessage<>(GAME_EVENT_MESSAGES.get(fired.type()), fired.event()))
+                    .toList());
+        }));
+    }
+
+    /**
+     * Pushes to a user the events produced by a game command in an RMI communication.
+     * The events are delivered with a single remote call, see {@link UserStub#pushEvents(List)}.
+     * @param batch The events, in firing order.
+     * @param user The user to push the events to.
+     */
+    public void pushBatch(FiredBatch batch, User user) {
+        try {
+            user.getUserStub().pushEvents(batch.getEvents().stream()
+                    .map(fired -> (Message) new SingleArgMessage<>(GAME_EVENT_MESSAGES.get(fired.type()), fired.event()))
+                    .toList());
+        } catch (RemoteException ex) {
+            // RMI communication failed. As in pushAtEachUser, the RMI Ping Service will prune the necessary.
         }
     }
 
@@ -0,0 +1,229 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.util.ServerThreads;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The worker loops running the matches when the actor mode is enabled (see {@link MatchActor}).
+ * <p>
+ * Every {@link Shard} is a single thread with its own queue. A match is placed on a shard when its lobby is started
+ * and stays there until it is pruned: its commands and the deliveries of its events all run on that thread, so the
+ * work of a match never moves between cores, and never waits for a lock held by a match of another shard.
+ * A new match goes to the least-loaded shard: the one with the fewest matches, then the shortest queue.
+ * <p>
+ * Placing and releasing a match are the only operations shared by all the shards, and they happen once per match.
+ * It is a singleton, created on first use.
+ */
+public final class MatchShards {
+    private static MatchShards instance;
+
+    private static int shardCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The shard whose thread is the current one, if any.
+     */
+    private static final ThreadLocal<Shard> current = new ThreadLocal<>();
+
+    /**
+     * Sets the number of shards. To be called at startup, before any match is placed.
+     * @param shards The number of shards, that is of threads running the matches.
+     * @throws IllegalStateException If the shards are already running.
+     */
+    public static synchronized void configure(int shards) {
+        if (instance != null) {
+            throw new IllegalStateException("The match shards are already running.");
+        }
+
+        if (shards <= 0) {
+            throw new IllegalArgumentException("The number of match shards must be positive.");
+        }
+
+        shardCount = shards;
+    }
+
+    public static synchronized MatchShards getInstance() {
+        if (instance == null) {
+            instance = new MatchShards(shardCount);
+        }
+        return instance;
+    }
+
+    /**
+     * @return True if the shards have been created, that is if a match has ever run as an actor.
+     */
+    public static synchronized boolean isRunning() {
+        return instance != null;
+    }
+
+    /**
+     * Gets the shard running on the current thread.
+     * @return The shard, null if the current thread is not the one of a shard.
+     */
+    public static Shard current() {
+        return current.get();
+    }
+
+    /**
+     * A worker loop: one thread running, in submission order, the commands and the event deliveries of the matches
+     * placed on it.
+     */
+    public static final class Shard implements Executor {
+        private final int index;
+        private final ExecutorService loop;
+        private final AtomicInteger matches;
+        private final AtomicInteger queuedCommands;
+        private final AtomicInteger queuedTasks;
+        private final LongAdder commands;
+
+        private Shard(int index) {
+            this.index = index;
+            this.loop = Executors.newSingleThreadExecutor(ServerThreads.factory());
+            this.matches = new AtomicInteger(0);
+            this.queuedCommands = new AtomicInteger(0);
+            this.queuedTasks = new AtomicInteger(0);
+            this.commands = new LongAdder();
+        }
+
+        /**
+         * Runs a task on the thread of the shard, after the ones already submitted.
+         * @param task The task.
+         */
+        @Override
+        public void execute(Runnable task) {
+            this.queuedTasks.incrementAndGet();
+            this.loop.execute(() -> {
+                this.queuedTasks.decrementAndGet();
+                current.set(this);
+
+                try {
+                    task.run();
+                } finally {
+                    current.remove();
+                }
+            });
+        }
+
+        /**
+         * Records that a command has been queued on an actor of this shard.
+         */
+        void commandQueued() {
+            this.queuedCommands.incrementAndGet();
+        }
+
+        /**
+         * Records that a queued command has been run.
+         */
+        void commandRun() {
+            this.queuedCommands.decrementAndGet();
+            this.commands.increment();
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        /**
+         * @return The number of matches placed on the shard.
+         */
+        public int getMatches() {
+            return this.matches.get();
+        }
+
+        /**
+         * @return The number of commands waiting to be run, by every match of the shard.
+         */
+        public int getQueuedCommands() {
+            return this.queuedCommands.get();
+        }
+
+        /**
+         * @return The number of tasks waiting for the thread: batches of commands of a match, and event deliveries.
+         */
+        public int getQueuedTasks() {
+            return this.queuedTasks.get();
+        }
+
+        /**
+         * @return The number of commands run so far.
+         */
+        public long getCommands() {
+            return this.commands.sum();
+        }
+    }
+
+    /* Start of the class implementation */
+    private final List<Shard> shards;
+    private final Map<String, Shard> shardsByLobby;
+
+    MatchShards(int shards) {
+        List<Shard> created = new ArrayList<>(shards);
+
+        for (int i = 0; i < shards; i++) {
+            created.add(new Shard(i));
+        }
+
+        this.shards = List.copyOf(created);
+        this.shardsByLobby = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Places a new match on the least-loaded shard.
+     * @param lobbyUUID The UUID of the lobby of the match.
+     * @return The shard of the match.
+     */
+    public synchronized Shard place(String lobbyUUID) {
+        Shard shard = this.leastLoaded();
+        shard.matches.incrementAndGet();
+        this.shardsByLobby.put(lobbyUUID, shard);
+        return shard;
+    }
+
+    /**
+     * Removes a match from its shard, once it has been pruned.
+     * @param lobbyUUID The UUID of the lobby of the match.
+     */
+    public synchronized void release(String lobbyUUID) {
+        Shard shard = this.shardsByLobby.remove(lobbyUUID);
+
+        if (shard != null) {
+            shard.matches.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the shard a match has been placed on.
+     * @param lobbyUUID The UUID of the lobby of the match.
+     * @return The shard, null if the match has not been placed.
+     */
+    public Shard getShard(String lobbyUUID) {
+        return this.shardsByLobby.get(lobbyUUID);
+    }
+
+    /**
+     * Gets the shard a new match would be placed on, without placing it: for the matches that have no lobby.
+     * @return The least-loaded shard.
+     */
+    public Shard leastLoaded() {
+        return this.shards.stream()
+                .min(Comparator.comparingInt(Shard::getMatches)
+                        .thenComparingInt(shard -> shard.getQueuedCommands() + shard.getQueuedTasks()))
+                .orElseThrow();
+    }
+
+    /**
+     * @return All the shards, by index.
+     */
+    public List<Shard> getShards() {
+        return this.shards;
+    }
+}
@@ -0,0 +1,40 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.model.card.TypedCard;
+import it.polimi.ingsw.model.game.CardType;
+import it.polimi.ingsw.model.player.ManuscriptPosition;
+
+import java.io.Serializable;
+
+/**
+ * A whole turn: the card to place and the card to draw afterward, see
+ * {@link GameController#placeAndDraw(String, PlaceAndDraw)}.
+ * @param card The card to place.
+ * @param position The manuscript position where to place the card.
+ * @param drawType The type of the card to draw.
+ * @param drawIndex The index of the visible card to draw, null to draw a covered card.
+ */
+public record PlaceAndDraw(
+        TypedCard card,
+        ManuscriptPosition position,
+        CardType drawType,
+        Integer drawIndex
+) implements Serializable {
+    /**
+     * A turn drawing one of the visible cards.
+     */
+    public static PlaceAndDraw drawingVisible(TypedCard card, ManuscriptPosition position, CardType type, int index) {
+        return new PlaceAndDraw(card, position, type, index);
+    }
+
+    /**
+     * A turn drawing the top card of a deck.
+     */
+    public static PlaceAndDraw drawingCovered(TypedCard card, ManuscriptPosition position, CardType type) {
+        return new PlaceAndDraw(card, position, type, null);
+    }
+
+    public boolean drawsCovered() {
+        return drawIndex == null;
+    }
+}
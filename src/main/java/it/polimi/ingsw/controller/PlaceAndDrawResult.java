@@ -0,0 +1,21 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.model.card.TypedCard;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of a {@link PlaceAndDraw} turn.
+ * @param placed True if the card has been placed, as returned by {@link GameController#placeCard}.
+ * @param drawn What {@link GameController#drawVisibleCard} or {@link GameController#drawCoveredCard} returned
+ *              (for a visible card, the one that replaced it on the board);
+ *              null if nothing has been drawn (the placement failed, no draw was due, or the draw failed and has
+ *              to be retried with the single draw commands).
+ * @param turnOver True if the turn of the player is over.
+ */
+public record PlaceAndDrawResult(
+        boolean placed,
+        TypedCard drawn,
+        boolean turnOver
+) implements Serializable {
+}
@@ -0,0 +1,56 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.game.StateDeltaEvent;
+import it.polimi.ingsw.model.game.CommonBoard;
+import it.polimi.ingsw.model.player.PlayerData;
+import it.polimi.ingsw.model.player.PlayerManuscript;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to {@link GameController#getGameState(String, long)}. It holds one of:
+ * <ul>
+ *     <li>only the version, when the player already has it;</li>
+ *     <li>the deltas from the version of the player, when it is recent enough (see {@link GameSnapshot});</li>
+ *     <li>the whole state of the match as seen by the player, otherwise.</li>
+ * </ul>
+ * @param version The version of the state, see {@link GameSnapshot}.
+ * @param gameFlow The GameFlow of the match; null unless the whole state is sent.
+ * @param gameBoard The CommonBoard of the match; null unless the whole state is sent.
+ * @param manuscripts The manuscripts of all players; null unless the whole state is sent.
+ * @param players The PlayerData of all players, as returned by {@link GameController#getAllPlayerData(String)};
+ *                null unless the whole state is sent.
+ * @param delta The changes from the version of the player; null unless only the changes are sent.
+ */
+public record VersionedGameState(
+        long version,
+        GameFlow gameFlow,
+        CommonBoard gameBoard,
+        Map<String, PlayerManuscript> manuscripts,
+        List<PlayerData> players,
+        StateDeltaEvent delta
+) implements Serializable {
+    public static VersionedGameState notModified(long version) {
+        return new VersionedGameState(version, null, null, null, null, null);
+    }
+
+    public static VersionedGameState incremental(StateDeltaEvent delta) {
+        return new VersionedGameState(delta.toVersion(), null, null, null, null, delta);
+    }
+
+    /**
+     * @return False if the player already had this version, and nothing else has been sent.
+     */
+    public boolean isModified() {
+        return gameFlow != null || delta != null;
+    }
+
+    /**
+     * @return True if only the changes have been sent.
+     */
+    public boolean isIncremental() {
+        return delta != null;
+    }
+}
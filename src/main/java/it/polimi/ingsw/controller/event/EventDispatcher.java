@@ -0,0 +1,221 @@
+package it.polimi.ingsw.controller.event;
+
+import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.util.ServerThreads;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the event handlers of the controllers.
+ * <p>
+ * Every subscriber of a controller has its own {@link Mailbox}: firing an event only enqueues the deliveries
+ * meant for the subscriber, which are run later by one of the few threads of a pool shared by the whole Server.
+ * At most one thread at a time drains a mailbox, so every subscriber observes the events in the order they have
+ * been fired, even across consecutive commands; a slow handler only delays its own subscriber.
+ * The number of threads running handlers is bounded by the pool, no matter how many events are fired.
+ * A mailbox can also be drained by another executor, e.g. the shard of its match (see
+ * {@link it.polimi.ingsw.controller.MatchShards}): the counters are still the ones of the dispatcher.
+ * It is a singleton.
+ */
+public final class EventDispatcher {
+    /**
+     * Maximum number of deliveries a thread runs for the same subscriber before giving the others a turn.
+     */
+    private static final int DRAIN_BATCH = 32;
+
+    private static EventDispatcher instance;
+
+    private static int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Sets the number of threads running the handlers. To be called at startup, before any event is fired.
+     * @param threads The number of threads.
+     * @throws IllegalStateException If the dispatcher is already running.
+     */
+    public static synchronized void configure(int threads) {
+        if (instance != null) {
+            throw new IllegalStateException("The event dispatcher is already running.");
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of event threads must be positive.");
+        }
+
+        poolSize = threads;
+    }
+
+    public static synchronized EventDispatcher getInstance() {
+        if (instance == null) {
+            instance = new EventDispatcher(poolSize);
+        }
+        return instance;
+    }
+
+    /**
+     * The ordered queue of the deliveries of a single subscriber.
+     */
+    public final class Mailbox {
+        private final String subscriber;
+        private final Executor drainer;
+        private final Queue<Runnable> queue;
+        private final AtomicInteger depth;
+        private final AtomicBoolean draining;
+        private volatile boolean closed;
+
+        private Mailbox(String subscriber, Executor drainer) {
+            this.subscriber = subscriber;
+            this.drainer = drainer;
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.depth = new AtomicInteger(0);
+            this.draining = new AtomicBoolean(false);
+            this.closed = false;
+        }
+
+        /**
+         * Enqueues a delivery for the subscriber, without ever blocking. Ignored once the mailbox is closed.
+         * @param delivery The delivery, calling the handlers of the subscriber.
+         */
+        public void post(Runnable delivery) {
+            if (this.closed) {
+                return;
+            }
+
+            this.queue.add(delivery);
+            int depth = this.depth.incrementAndGet();
+            queued.incrementAndGet();
+            peakDepth.accumulateAndGet(depth, Math::max);
+
+            // Closed in the meantime: the delivery may have escaped the cleanup
+            if (this.closed && this.queue.remove(delivery)) {
+                this.depth.decrementAndGet();
+                queued.decrementAndGet();
+                return;
+            }
+
+            this.schedule();
+        }
+
+        /**
+         * Closes the mailbox, e.g. when the subscriber leaves: the deliveries still queued are discarded.
+         */
+        public void close() {
+            this.closed = true;
+
+            while (this.queue.poll() != null) {
+                this.depth.decrementAndGet();
+                queued.decrementAndGet();
+            }
+        }
+
+        /**
+         * Gets the number of deliveries waiting to be run.
+         * @return The depth of the mailbox.
+         */
+        public int getDepth() {
+            return this.depth.get();
+        }
+
+        private void schedule() {
+            if (this.queue.peek() != null && this.draining.compareAndSet(false, true)) {
+                this.drainer.execute(this::drain);
+            }
+        }
+
+        /**
+         * Runs up to DRAIN_BATCH deliveries, then hands the mailbox back to the pool if more are waiting.
+         */
+        private void drain() {
+            try {
+                for (int i = 0; i < DRAIN_BATCH && !this.closed; i++) {
+                    Runnable delivery = this.queue.poll();
+
+                    if (delivery == null) {
+                        break;
+                    }
+
+                    this.depth.decrementAndGet();
+                    queued.decrementAndGet();
+
+                    try {
+                        delivery.run();
+                        delivered.increment();
+                    } catch (RuntimeException e) {
+                        // A failing handler must not stop the deliveries of the subscriber, nor the thread
+                        failures.increment();
+                        Logger.logError("An event handler of " + this.subscriber + " failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+                this.draining.set(false);
+            }
+
+            // Posted while the draining flag was still set: nobody else would schedule them
+            this.schedule();
+        }
+    }
+
+    /* Start of the class implementation */
+    private final ExecutorService executor;
+    private final AtomicInteger queued;
+    private final AtomicInteger peakDepth;
+    private final LongAdder delivered;
+    private final LongAdder failures;
+
+    private EventDispatcher(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads, ServerThreads.factory());
+        this.queued = new AtomicInteger(0);
+        this.peakDepth = new AtomicInteger(0);
+        this.delivered = new LongAdder();
+        this.failures = new LongAdder();
+    }
+
+    /**
+     * Creates the mailbox of a subscriber.
+     * @param subscriber The username of the subscriber, for logging.
+     * @return The new mailbox.
+     */
+    public Mailbox openMailbox(String subscriber) {
+        return new Mailbox(subscriber, this.executor);
+    }
+
+    /**
+     * Creates the mailbox of a subscriber, drained by the given executor instead of the pool of the dispatcher.
+     * @param subscriber The username of the subscriber, for logging.
+     * @param drainer The executor running the deliveries, null for the pool of the dispatcher.
+     * @return The new mailbox.
+     */
+    public Mailbox openMailbox(String subscriber, Executor drainer) {
+        return new Mailbox(subscriber, drainer != null ? drainer : this.executor);
+    }
+
+    /**
+     * Gets the number of deliveries waiting to be run, in every mailbox.
+     * @return The number of queued deliveries.
+     */
+    public int getQueued() {
+        return this.queued.get();
+    }
+
+    /**
+     * Gets the highest depth ever reached by a single mailbox.
+     * @return The peak depth.
+     */
+    public int getPeakDepth() {
+        return this.peakDepth.get();
+    }
+
+    public long getDelivered() {
+        return this.delivered.sum();
+    }
+
+    public long getFailures() {
+        return this.failures.sum();
+    }
+}
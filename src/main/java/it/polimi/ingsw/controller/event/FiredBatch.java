@@ -0,0 +1,52 @@
+package it.polimi.ingsw.controller.event;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The events produced by a command for a subscriber, in firing order, as delivered to a batch handler.
+ * <p>
+ * The subscribers receiving the same events share the same batch instance. A batch carries an attachment, built by
+ * the first recipient that asks for it and then reused by the others (e.g. the frame encoding the batch for the
+ * network): what the recipients of a command share lives and dies with the batch, nothing else keeps it.
+ */
+public final class FiredBatch {
+    private final List<FiredEvent> events;
+    private final AtomicReference<Object> attachment;
+
+    public FiredBatch(List<FiredEvent> events) {
+        this.events = List.copyOf(events);
+        this.attachment = new AtomicReference<>();
+    }
+
+    /**
+     * @return The events of the batch, in firing order.
+     */
+    public List<FiredEvent> getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Gets the attachment of the batch, building it if no other recipient did it before. Recipients racing for it
+     * may build it more than once, but they all get the same instance.
+     * @param factory Builds the attachment.
+     * @return The attachment.
+     * @param <A> The type of the attachment: every recipient must ask for the same one.
+     */
+    @SuppressWarnings("unchecked")
+    public <A> A attach(Supplier<A> factory) {
+        Object attached = this.attachment.get();
+
+        if (attached == null) {
+            A built = factory.get();
+            attached = this.attachment.compareAndExchange(null, built);
+
+            if (attached == null) {
+                return built;
+            }
+        }
+
+        return (A) attached;
+    }
+}
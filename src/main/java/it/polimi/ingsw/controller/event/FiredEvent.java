@@ -0,0 +1,12 @@
+package it.polimi.ingsw.controller.event;
+
+/**
+ * An event together with its type, as delivered inside a batch to a batch handler.
+ * @param type The type of the event.
+ * @param event The event.
+ */
+public record FiredEvent(
+        EventType<? extends Event> type,
+        Event event
+) {
+}
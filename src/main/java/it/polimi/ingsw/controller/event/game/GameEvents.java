@@ -17,4 +17,5 @@ public class GameEvents implements Serializable {
     public static EventType<SetColorEvent> SET_COLOR = new EventType<>();
     public static EventType<ChooseGoalEvent> CHOOSE_GOAL = new EventType<>();
     public static EventType<MatchCompositionChangeEvent> MATCH_COMPOSITION_CHANGE = new EventType<>();
+    public static EventType<StateDeltaEvent> STATE_DELTA = new EventType<>();
 }
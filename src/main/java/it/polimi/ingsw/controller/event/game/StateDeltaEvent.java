@@ -0,0 +1,28 @@
+package it.polimi.ingsw.controller.event.game;
+
+import it.polimi.ingsw.controller.GameDelta;
+import it.polimi.ingsw.controller.event.Event;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Event sent after every command that changed the match, before the other events of the command
+ * @param fromVersion the version of the state the deltas apply to
+ * @param toVersion the version of the state after applying the deltas
+ * @param deltas the changes, in the order they have to be applied
+ */
+public record StateDeltaEvent(
+        long fromVersion,
+        long toVersion,
+        List<GameDelta> deltas
+) implements Event, Serializable {
+    @Override
+    public String toString() {
+        return "StateDeltaEvent{" +
+                "fromVersion=" + fromVersion +
+                ", toVersion=" + toVersion +
+                ", deltas=" + deltas.size() +
+                '}';
+    }
+}
@@ -7,4 +7,5 @@ import it.polimi.ingsw.controller.event.EventType;
  */
 public class LobbyEvents {
     public static EventType<LobbyStartEvent> LOBBY_START = new EventType<>();
+    public static EventType<LobbyListChangeEvent> LOBBY_LIST_CHANGE = new EventType<>();
 }
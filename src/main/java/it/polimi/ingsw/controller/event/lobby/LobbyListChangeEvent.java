@@ -0,0 +1,19 @@
+package it.polimi.ingsw.controller.event.lobby;
+
+import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+
+/**
+ * Event sent to the users on the lobby browser when a lobby matching their filters changes.
+ *
+ * @param kind    whether the lobby entered the list, changed, or left it
+ * @param lobby   a copy of the lobby after the change
+ * @param version the version of the list of lobbies after the change: every change increases it
+ */
+public record LobbyListChangeEvent(Kind kind, LobbyInfo lobby, long version) implements Event {
+    public enum Kind {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+}
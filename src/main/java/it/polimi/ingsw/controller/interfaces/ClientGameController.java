@@ -1,6 +1,10 @@
 package it.polimi.ingsw.controller.interfaces;
 
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameReplica;
+import it.polimi.ingsw.controller.PlaceAndDraw;
+import it.polimi.ingsw.controller.PlaceAndDrawResult;
+import it.polimi.ingsw.controller.VersionedGameState;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
 import it.polimi.ingsw.model.card.GoalCard;
@@ -48,6 +52,23 @@ public interface ClientGameController {
 
         TypedCard drawCoveredCard(CardType type);
 
+    /**
+     * Places a card and draws afterward with a single request, see
+     * {@link it.polimi.ingsw.controller.GameController#placeAndDraw}.
+     */
+    PlaceAndDrawResult placeAndDraw(PlaceAndDraw turn);
+
+    /**
+     * Gets the whole state of the match, unless it is not newer than the given version, see
+     * {@link it.polimi.ingsw.controller.GameController#getGameState}.
+     */
+    VersionedGameState getGameState(long ifNewerThan);
+
+    /**
+     * Gets the local copy of the state of the match, kept up to date with the changes the Server sends.
+     */
+    GameReplica getReplica();
+
     boolean gameEnded();
 
         String getWinner();
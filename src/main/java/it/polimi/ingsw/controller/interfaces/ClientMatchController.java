@@ -1,5 +1,7 @@
 package it.polimi.ingsw.controller.interfaces;
 
+import it.polimi.ingsw.controller.LobbyPage;
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.controller.event.Event;
 import it.polimi.ingsw.controller.event.EventType;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
@@ -14,6 +16,14 @@ public interface ClientMatchController {
 
         List<LobbyInfo> getLobbies();
 
+    LobbyPage getLobbies(LobbyQuery query);
+
+    List<LobbyInfo> subscribeLobbies(LobbyQuery query);
+
+    List<LobbyInfo> getSubscribedLobbies();
+
+    void unsubscribeLobbies();
+
     boolean joinLobby(String uuid);
 
         LobbyInfo getLobbyInfo();
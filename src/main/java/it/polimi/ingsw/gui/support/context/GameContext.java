@@ -207,19 +207,23 @@ public class GameContext implements CardSizeController {
     }
 
 
+    // The updates read the replica of the match, kept up to date by the Server: no request is sent
+
     public void updateManuscript(String username) {
         manuscriptPropsMap.get(username).set(
-                new PlayerManuscript(gc.getManuscript(username))
+                gc.getReplica().getManuscript(username)
         );
     }
 
     public void updateManuscripts() {
+        // Called after our own moves, whose changes may still be on their way: one cheap round trip to be sure
+        gc.getReplica().sync();
         manuscriptPropsMap.keySet().forEach(this::updateManuscript);
     }
 
     public void updatePlayerData(String username) {
         playerDataPropsMap.get(username).set(
-                new PlayerData(gc.getPlayerData(username))
+                gc.getReplica().getPlayerData(username)
         );
     }
 
@@ -229,11 +233,11 @@ public class GameContext implements CardSizeController {
     }
 
     public void updateBoard() {
-        board.set(gc.getGameBoard());
+        board.set(gc.getReplica().getGameBoard());
     }
 
     public void updateGameFlow() {
-        gameFlow.set(new GameFlow(gc.getGameFlow()));
+        gameFlow.set(gc.getReplica().getGameFlow());
         System.out.println("----- set game flow" + gameFlow.get().getCurrentPlayer());
     }
 
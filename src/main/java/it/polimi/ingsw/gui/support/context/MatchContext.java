@@ -1,8 +1,11 @@
 package it.polimi.ingsw.gui.support.context;
 
+import it.polimi.ingsw.controller.LobbyQuery;
+import it.polimi.ingsw.controller.event.lobby.LobbyEvents;
 import it.polimi.ingsw.controller.interfaces.ClientMatchController;
 import it.polimi.ingsw.gui.support.FXBind;
 import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
@@ -33,6 +36,11 @@ public class MatchContext {
         currentLobby = new SimpleObjectProperty<>();
 
         currentLobbyPlayers = FXCollections.observableList(new ArrayList<>(), p -> new ObjectProperty[]{p});
+
+        // Once the list of lobbies has been asked with updateLobbies, the Server sends its changes
+        mc.addEventHandler(LobbyEvents.LOBBY_LIST_CHANGE, e -> Platform.runLater(() ->
+                FXBind.updateObservablePropList(mc.getSubscribedLobbies(), lobbiesPropList)
+        ));
     }
 
     public ClientMatchController cc() {
@@ -40,7 +48,7 @@ public class MatchContext {
     }
 
     public void updateLobbies() {
-        List<LobbyInfo> lobbies = mc.getLobbies();
+        List<LobbyInfo> lobbies = mc.subscribeLobbies(LobbyQuery.ALL);
         if (lobbies != null) {
 
             FXBind.updateObservablePropList(lobbies, lobbiesPropList);
@@ -51,6 +59,13 @@ public class MatchContext {
         System.out.println(lobbiesList);
     }
 
+    /**
+     * Stops the changes to the list of lobbies, when leaving the list without joining a lobby.
+     */
+    public void stopLobbyUpdates() {
+        mc.unsubscribeLobbies();
+    }
+
     public ObservableList<ObjectProperty<LobbyInfo>> getLobbiesPropList() {
         return lobbiesPropList;
     }
@@ -159,6 +159,7 @@ public class TitlesView extends CustomView {
 
     @FXML
     private void goToUsername() {
+        matchCtx.stopLobbyUpdates();
         getRouter().goTo(ViewRoute.USERNAME);
     }
 }
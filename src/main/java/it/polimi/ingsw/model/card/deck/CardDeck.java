@@ -27,7 +27,8 @@ public class CardDeck <T extends Card> implements Serializable {
     }
 
     public CardDeck(CardDeck<T> other) {
-        cards = List.copyOf(other.cards);
+        // Mutable, so that a copied deck can still be drawn from (see CommonBoard#update)
+        cards = new ArrayList<>(other.cards);
     }
 
     private void shuffle() {
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -62,6 +63,27 @@ public class CommonBoard implements Serializable {
 
     }
 
+    /**
+     * Copies a board like {@link #CommonBoard(CommonBoard)} does, but takes the covered decks that have not been
+     * drawn from since an older copy from that copy instead of copying them again;
+     * no card may be drawn from either copy afterward
+     *
+     * @param other     board to copy
+     * @param olderCopy older copy of the same board, sharing its covered decks with the new one
+     * @param drawn     types of the cards drawn from the board since {@code olderCopy} was taken
+     */
+    public CommonBoard(CommonBoard other, CommonBoard olderCopy, Set<CardType> drawn) {
+        this.commonGoals = olderCopy.commonGoals;
+
+        coveredDecks = Stream.of(CardType.values()).collect(Collectors.toUnmodifiableMap(
+                ct -> ct, ct -> drawn.contains(ct) ? new PeekableCardDeck<>(other.coveredDecks.get(ct)) : olderCopy.coveredDecks.get(ct)
+        ));
+
+        visibleCards = Stream.of(CardType.values()).collect(Collectors.toUnmodifiableMap(
+                ct -> ct, ct -> new ArrayList<>(other.visibleCards.get(ct))
+        ));
+    }
+
     /**
      * Returns a new List containing all {@code commonGoals} of this board
      *
@@ -165,6 +187,33 @@ public class CommonBoard implements Serializable {
        return coveredDecks.get(type).getCards().isEmpty();
     }
 
+    /**
+     * Returns the number of cards left in the covered deck of the specified type
+     *
+     * @param type type of deck to count
+     * @return number of cards in the covered deck of the specified {@code type}
+     */
+    public int getCoveredCardsLeft(CardType type) {
+        return coveredDecks.get(type).getCards().size();
+    }
+
+    /**
+     * Brings a copy of a board up to date with the original one:
+     * removes the given number of cards from the top of the covered deck of the specified type,
+     * then replaces the {@code visibleCards} of that type
+     *
+     * @param type         type of deck and visible cards to update
+     * @param coveredDrawn number of cards drawn from the covered deck since the copy
+     * @param visible      current visible cards of the specified {@code type}
+     */
+    public void update(CardType type, int coveredDrawn, List<TypedCard> visible) {
+        for (int i = 0; i < coveredDrawn; i++)
+            coveredDecks.get(type).drawNextCard();
+
+        visibleCards.get(type).clear();
+        visibleCards.get(type).addAll(visible);
+    }
+
         public String coveredDecksToString() {
         return coveredDecks.get(CardType.RESOURCE).toString() +
                 coveredDecks.get(CardType.GOLD).toString();
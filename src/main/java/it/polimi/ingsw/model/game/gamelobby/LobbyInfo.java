@@ -6,19 +6,22 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * This class represents the information of a lobby.
+ * It is changed by one thread at a time, but read by many: the list of players is copy-on-write, so that it can be
+ * read (and copied) while a player joins or leaves.
  */
 public class LobbyInfo implements Serializable {
     private final String uuid;
     private final String name;
     private final Integer maxPlayers;
     private final List<String> playerUsernames;
-    private String masterUsername;
-    private Boolean gameOngoing;
+    private volatile String masterUsername;
+    private volatile Boolean gameOngoing;
 
     public LobbyInfo(String uuid, String name, Integer maxPlayers,
                      String masterUsername, List<String> playerUsernames,
@@ -31,7 +34,7 @@ public class LobbyInfo implements Serializable {
         this.masterUsername = masterUsername;
 
         // DO NOT EVER F****** FORGET TO NEW ALLOCATE! This resolves an important bug.
-        this.playerUsernames = new ArrayList<>(playerUsernames);
+        this.playerUsernames = new CopyOnWriteArrayList<>(playerUsernames);
 
         this.gameOngoing = gameOngoing;
     }
@@ -53,7 +56,7 @@ public class LobbyInfo implements Serializable {
         this.name = info.name;
         this.maxPlayers = info.maxPlayers;
         this.masterUsername = info.masterUsername;
-        this.playerUsernames = new ArrayList<>(info.playerUsernames);
+        this.playerUsernames = new CopyOnWriteArrayList<>(info.playerUsernames);
         this.gameOngoing = info.gameOngoing;
     }
 
@@ -1,9 +1,24 @@
 package it.polimi.ingsw.network;
 
 import it.polimi.ingsw.cli.IOManager;
+import it.polimi.ingsw.controller.LogicMatchController;
+import it.polimi.ingsw.controller.MatchActor;
+import it.polimi.ingsw.controller.MatchController;
+import it.polimi.ingsw.controller.event.EventDispatcher;
+import it.polimi.ingsw.network.codec.Codecs;
+import it.polimi.ingsw.network.codec.DeflateCodec;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.nio.NioServer;
+import it.polimi.ingsw.network.rmi.PushDispatcher;
 import it.polimi.ingsw.network.rmi.RMIServerHandler;
+import it.polimi.ingsw.network.rmi.TunedSocketFactory;
+import it.polimi.ingsw.network.tcpip.ActiveTransport;
+import it.polimi.ingsw.network.tcpip.OutboundQueue;
 import it.polimi.ingsw.network.tcpip.Server;
 import it.polimi.ingsw.network.tcpip.ServerException;
+import it.polimi.ingsw.network.tcpip.SessionObjectOutputStream;
+import it.polimi.ingsw.util.ServerThreads;
 
 import java.net.MalformedURLException;
 import java.rmi.RemoteException;
@@ -21,6 +36,23 @@ public class Main {
         // Initialize default arguments
         int port = 40000;
         boolean rmi = false;
+        boolean nio = false;
+        boolean virtualThreads = false;
+        boolean framed = false;
+        OutboundQueue.Limits outboundLimits = OutboundQueue.getDefaultLimits();
+        SessionObjectOutputStream.ResetPolicy resetPolicy = SessionObjectOutputStream.getDefaultPolicy();
+        Integer compressionThreshold = null;
+        int heartbeatMs = Profiles.DEFAULT_HEARTBEAT_MS;
+        long livenessTickMs = LivenessWheel.DEFAULT_TICK_MS;
+        int pushThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        long pushTimeoutMs = PushDispatcher.DEFAULT_PUSH_TIMEOUT_MS;
+        int rmiSocketBuffer = 0;
+        int eventThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        boolean matchActors = false;
+        int matchThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        boolean rmiDeflate = false;
+        Integer maxLobbies = null;
+        Integer maxMatches = null;
 
         // Check if we have to run help command
         for (String arg : args) {
@@ -30,7 +62,7 @@ public class Main {
             }
         }
 
-        if (args.length != 0 && args.length != 1 && args.length != 2) {
+        if (args.length > 14) {
             showHelp();
             errorExit();
         } else {
@@ -42,8 +74,154 @@ public class Main {
                     errorExit();
                 }
 
-                if (args.length == 2) {
-                    rmi = args[1].equals("--rmi");
+                // Every other argument is a flag
+                for (int i = 1; i < args.length; i++) {
+                    switch (args[i]) {
+                        case "--rmi" -> rmi = true;
+                        case "--socket" -> rmi = false;
+                        case "--nio" -> nio = true;
+                        case "--virtual-threads" -> virtualThreads = true;
+                        case "--framed" -> framed = true;
+                        case "--match-actors" -> matchActors = true;
+                        default -> {
+                            if (args[i].startsWith("--outbound-limits=")) {
+                                outboundLimits = parseOutboundLimits(args[i].substring("--outbound-limits=".length()));
+                                break;
+                            }
+
+                            if (args[i].startsWith("--serialization-reset=")) {
+                                try {
+                                    resetPolicy = SessionObjectOutputStream.ResetPolicy.parse(
+                                            args[i].substring("--serialization-reset=".length()));
+                                    break;
+                                } catch (IllegalArgumentException e) {
+                                    System.out.println("Invalid serialization reset policy: " + e.getMessage());
+                                }
+                            }
+
+                            if (args[i].startsWith("--compression=")) {
+                                try {
+                                    compressionThreshold = Integer.parseInt(args[i].substring("--compression=".length()));
+
+                                    if (compressionThreshold >= 0) {
+                                        break;
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The compression threshold must be a non-negative number");
+                            }
+
+                            if (args[i].startsWith("--liveness=")) {
+                                String[] parts = args[i].substring("--liveness=".length()).split(",");
+
+                                try {
+                                    if (parts.length <= 2) {
+                                        heartbeatMs = Integer.parseInt(parts[0]);
+                                        livenessTickMs = parts.length == 2 ? Long.parseLong(parts[1]) : livenessTickMs;
+
+                                        if (heartbeatMs > 0 && livenessTickMs > 0) {
+                                            break;
+                                        }
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The heartbeat timeout and the tick must be positive numbers");
+                            }
+
+                            if (args[i].startsWith("--rmi-push=")) {
+                                String[] parts = args[i].substring("--rmi-push=".length()).split(",");
+
+                                try {
+                                    if (parts.length == 2) {
+                                        pushThreads = Integer.parseInt(parts[0]);
+                                        pushTimeoutMs = Long.parseLong(parts[1]);
+
+                                        if (pushThreads > 0 && pushTimeoutMs > 0) {
+                                            break;
+                                        }
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The push threads and the push timeout must be positive numbers");
+                            }
+
+                            if (args[i].startsWith("--rmi-sockets=")) {
+                                String[] parts = args[i].substring("--rmi-sockets=".length()).split(",");
+
+                                try {
+                                    if (parts.length <= 2) {
+                                        rmiSocketBuffer = Integer.parseInt(parts[0]);
+                                        rmiDeflate = parts.length == 2 && parts[1].equals("deflate");
+
+                                        if (rmiSocketBuffer >= 0 && (parts.length == 1 || rmiDeflate)) {
+                                            break;
+                                        }
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The socket buffers must be a non-negative number, optionally followed by ',deflate'");
+                            }
+
+                            if (args[i].startsWith("--event-threads=")) {
+                                try {
+                                    eventThreads = Integer.parseInt(args[i].substring("--event-threads=".length()));
+
+                                    if (eventThreads > 0) {
+                                        break;
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The number of event threads must be a positive number");
+                            }
+
+                            if (args[i].startsWith("--capacity=")) {
+                                String[] parts = args[i].substring("--capacity=".length()).split(",");
+
+                                try {
+                                    if (parts.length <= 2) {
+                                        maxLobbies = Integer.parseInt(parts[0]);
+                                        maxMatches = parts.length == 2 ? Integer.parseInt(parts[1]) : maxLobbies;
+
+                                        if (maxLobbies > 0 && maxMatches > 0) {
+                                            break;
+                                        }
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The capacity must be one or two positive numbers");
+                            }
+
+                            if (args[i].startsWith("--match-actors=")) {
+                                try {
+                                    matchActors = true;
+                                    matchThreads = Integer.parseInt(args[i].substring("--match-actors=".length()));
+
+                                    if (matchThreads > 0) {
+                                        break;
+                                    }
+                                } catch (NumberFormatException ignored) {
+                                    // Falling through to the help
+                                }
+
+                                System.out.println("The number of match threads must be a positive number");
+                            }
+
+                            showHelp();
+                            errorExit();
+                        }
+                    }
                 }
             }
         }
@@ -54,8 +232,64 @@ public class Main {
         IOManager.println("Port: " + port);
         IOManager.println("RMI: " + rmi);
 
-        if (!rmi) {
-            Server.getInstance(port);
+        // Must be chosen before any Server thread is created
+        ServerThreads.Mode threadsMode = ServerThreads.setMode(virtualThreads ?
+                ServerThreads.Mode.VIRTUAL : ServerThreads.Mode.PLATFORM);
+        IOManager.println("Threads: " + threadsMode);
+
+        // Must be chosen before any connection is accepted
+        OutboundQueue.setDefaultLimits(outboundLimits);
+        SessionObjectOutputStream.setDefaultPolicy(resetPolicy);
+
+        // Must be configured before any event is fired, with the threads of the chosen mode
+        EventDispatcher.configure(eventThreads);
+        IOManager.println("Event threads: " + eventThreads);
+
+        // Must be configured before any match is created
+        MatchActor.configure(matchActors, matchThreads);
+        IOManager.println("Match actors: " + (matchActors ? matchThreads + " shards" : "off"));
+
+        // Must be configured before any User connects: the first call creates the MatchController
+        MatchController matchController = MatchController.getInstance(maxLobbies, maxMatches);
+        IOManager.println("Capacity: " + matchController.getMaxLobbies() + " lobbies, " +
+                matchController.getMaxMatches() + " matches");
+
+        // Must be configured before any session is tracked, with the threads of the chosen mode
+        LivenessWheel.configure(livenessTickMs, LivenessWheel.DEFAULT_WHEEL_SIZE, ServerThreads.factory());
+        Profiles.setHeartbeatMs(heartbeatMs);
+        IOManager.println("Heartbeat timeout: " + heartbeatMs + " ms (tick " + livenessTickMs + " ms)");
+
+        // Must be configured before RMI is used for the first time, that is before the registry is created
+        PushDispatcher.configure(pushThreads, pushTimeoutMs);
+
+        if (rmi) {
+            // Must be configured before the first object is exported
+            TunedSocketFactory.configure(rmiSocketBuffer, rmiDeflate);
+            IOManager.println("RMI sockets: " + TunedSocketFactory.getConfigured());
+        }
+
+        if (compressionThreshold != null) {
+            DeflateCodec.setThreshold(compressionThreshold);
+            Codecs.setCompressionEnabled(true);
+            IOManager.println("Compression: over " + compressionThreshold + " bytes");
+        }
+
+        // Report how many Server threads were alive at the same time, to compare the thread modes,
+        // and the network metrics
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Peak server threads (" + threadsMode + "): " + ServerThreads.getPeakThreads());
+            System.out.println(ServerMetrics.getInstance().report());
+        }));
+
+        if (!rmi && nio) {
+            // Selector-based server: a few event loops serve every connection, no ListenLoop per User
+            NioServer nioServer = NioServer.getInstance(port, heartbeatMs);
+            ActiveTransport.use(nioServer);
+            nioServer.start();
+
+            System.out.println("Socket Server (NIO) started!");
+        } else if (!rmi) {
+            Server.getInstance(port, heartbeatMs, framed);
             WelcomingThread.getInstance().start();
 
             System.out.println("Socket Server started!");
@@ -74,17 +308,84 @@ public class Main {
      */
     private static void showHelp() {
         System.out.println("""
-                Usage: server.jar PORT [ARG]
+                Usage: server.jar PORT [ARG]...
                 
                 With zero arguments, default to port 40000 and socket mode.
                 With no ARG, default is to use socket.
+                --nio is only meaningful in socket mode; it always uses the framed protocol.
                 Server always run on the host local-network IP address.
                 
                 Options:
                 --socket        Use sockets for connection
                 --rmi           Use RMI for connection
+                --nio           Serve sockets with a few selector threads instead of one thread per client
+                --framed        Use the framed protocol (compact binary codec) with the blocking socket server
+                --virtual-threads
+                                Run loops, handlers and executors on virtual threads (Java 21+)
+                --outbound-limits=CAPACITY,HIGH,LOW,EVICT_MS
+                                Bound the outbound queue of every socket connection: a Client staying over
+                                HIGH queued messages for EVICT_MS milliseconds (without draining down to LOW)
+                                is evicted; messages over CAPACITY are dropped (default 1024,256,64,5000)
+                --serialization-reset=message|frames:N|bytes:N
+                                When object streams are used, reset them before every message, every N
+                                messages or every N bytes, so they do not keep every object ever sent
+                                reachable (default message)
+                --compression=BYTES
+                                With the framed protocol, let Clients negotiate compression: payloads of at
+                                least BYTES bytes are deflated (off by default; %d is a sensible start)
+                --liveness=TIMEOUT_MS[,TICK_MS]
+                                Consider lost a Client that does not send heartbeat for TIMEOUT_MS
+                                milliseconds; timeouts are checked every TICK_MS milliseconds, for every
+                                connection at once (default %d,%d)
+                --rmi-push=THREADS,TIMEOUT_MS
+                                In RMI mode, deliver the events to every Client with THREADS threads; a push
+                                not acknowledged within TIMEOUT_MS milliseconds fails (default: one thread
+                                per core, at least 2, and %d)
+                --match-actors[=N]
+                                Run every match as an actor: its commands and events are queued on one
+                                of N shards, each a thread of its own, instead of contending on the
+                                GameController from the threads that received them; a new match goes
+                                to the least-loaded shard (default off; N defaults to one shard per
+                                core, at least 2)
+                --capacity=LOBBIES[,MATCHES]
+                                Accept at most LOBBIES lobbies and MATCHES ongoing matches (MATCHES defaults
+                                to LOBBIES); without it, both are sized on the heap: %d KiB each for half
+                                of the maximum heap, at least 16 (%d with this heap)
+                --event-threads=N
+                                Run the event handlers of every game and chat with N threads; every
+                                subscriber still gets its events in order (default: one thread per core,
+                                at least 2)
+                --rmi-sockets=BUFFER_BYTES[,deflate]
+                                In RMI mode, size the socket buffers of the game objects (0 keeps the ones of
+                                the OS) and optionally deflate every call; Clients follow the Server settings
+                                (default 0, no compression; TCP_NODELAY is always set)
                 --help          Show this help and exit
-                """);
+                """.formatted(DeflateCodec.DEFAULT_THRESHOLD, Profiles.DEFAULT_HEARTBEAT_MS, LivenessWheel.DEFAULT_TICK_MS,
+                PushDispatcher.DEFAULT_PUSH_TIMEOUT_MS, LogicMatchController.BYTES_PER_MATCH / 1024,
+                LogicMatchController.getDefaultCapacity()));
+    }
+
+    /**
+     * Parses the value of the --outbound-limits flag. Shows the help and exits if it is malformed.
+     * @param value The value of the flag: CAPACITY,HIGH,LOW,EVICT_MS.
+     * @return The parsed limits.
+     */
+    private static OutboundQueue.Limits parseOutboundLimits(String value) {
+        String[] parts = value.split(",");
+
+        try {
+            if (parts.length == 4) {
+                return new OutboundQueue.Limits(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included: falling through to the help
+            System.out.println("Invalid outbound limits: " + e.getMessage());
+        }
+
+        showHelp();
+        errorExit();
+        return null;
     }
 
     /**
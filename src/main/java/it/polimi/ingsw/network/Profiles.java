@@ -8,30 +8,53 @@ import it.polimi.ingsw.network.liveloop.UserException;
 import it.polimi.ingsw.network.rmi.ProfilesRMI;
 import it.polimi.ingsw.network.rmi.RMIServerHandler;
 import it.polimi.ingsw.network.rmi.UserStub;
-import it.polimi.ingsw.network.tcpip.Server;
+import it.polimi.ingsw.network.rmi.UserStubRMI;
+import it.polimi.ingsw.network.tcpip.ActiveTransport;
 import it.polimi.ingsw.network.tcpip.ServerCriticalError;
 import it.polimi.ingsw.network.tcpip.ServerException;
 
-import java.net.MalformedURLException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class to save and handle all the Users connected to the Server.
  * When a Client connects and gets accepted to the Server, a User profile is created and saved in this class.
  * This class can be used to retrieve and manage the Users in the Server.
+ * The Users are indexed by connectionUUID and by username: every inbound message looks its User up, so the lookups
+ * are constant time and lock free however many Users are connected.
  * It is a singleton.
  */
 public class Profiles implements ProfilesRMI {
     private static Profiles instance;
 
     private Profiles() {
-        this.users = new HashSet<>();
-        this.usersLock = new Object();
-        this.heartbeatMs = HEARTBEAT_MS;
+        this.usersByConnectionUUID = new ConcurrentHashMap<>();
+        this.usersByUsername = new ConcurrentHashMap<>();
+        this.heartbeatMs = heartbeatTimeoutMs;
+    }
+
+    /**
+     * Time (in milliseconds) after which a Client that does not send heartbeat is considered disconnected.
+     */
+    public static final Integer DEFAULT_HEARTBEAT_MS = 6500;
+
+    private static Integer heartbeatTimeoutMs = DEFAULT_HEARTBEAT_MS;
+
+    /**
+     * Sets the time after which a silent RMI Client is considered disconnected.
+     * To be called at startup, before the first User is created.
+     * @param timeoutMs The timeout, in milliseconds.
+     */
+    public static void setHeartbeatMs(Integer timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("The heartbeat timeout must be positive.");
+        }
+
+        heartbeatTimeoutMs = timeoutMs;
     }
 
         public static Profiles getInstance() {
@@ -42,10 +65,13 @@ public class Profiles implements ProfilesRMI {
     }
 
     /* Start of the class implementation */
-    private final HashSet<User> users;
-    private final Object usersLock;
+    private final Map<String, User> usersByConnectionUUID;
+    /**
+     * Only the Users that have a username. An entry is added when the username is reserved, which is atomic: two
+     * Users asking for the same username at the same time cannot both get it.
+     */
+    private final Map<String, User> usersByUsername;
     private final Integer heartbeatMs;
-    private static final Integer HEARTBEAT_MS = 6500;
 
     /**
      * Get the User with the given connectionUUID.
@@ -54,10 +80,10 @@ public class Profiles implements ProfilesRMI {
      * @throws ProfilesException If no User with the given connectionUUID is found.
      */
         public User getUserByConnectionUUID(String connectionUUID) throws ProfilesException {
-        for (User user : this.users) {
-            if (user.getConnectionUUID().equals(connectionUUID)) {
-                return user;
-            }
+        User user = this.usersByConnectionUUID.get(connectionUUID);
+
+        if (user != null) {
+            return user;
         }
 
         throw new ProfilesException("No user with the given connectionUUID found.", ProfilesException.Reason.ENTRY_NOT_FOUND);
@@ -70,10 +96,10 @@ public class Profiles implements ProfilesRMI {
      * @throws ProfilesException If no User with the given username is found.
      */
         public User getUserByUsername(String username) throws ProfilesException {
-        for (User user : this.users) {
-            if (username.equals(user.getUsername())) {
-                return user;
-            }
+        User user = this.usersByUsername.get(username);
+
+        if (user != null) {
+            return user;
         }
 
         throw new ProfilesException("No user with the given username found.", ProfilesException.Reason.ENTRY_NOT_FOUND);
@@ -107,13 +133,7 @@ public class Profiles implements ProfilesRMI {
      * @return True if the username is already taken, false otherwise.
      */
         public Boolean isUsernameTaken(String username) {
-        for (User user : this.users) {
-            if (user.getUsername() != null && user.getUsername().equals(username)) {
-                return true;
-            }
-        }
-
-        return false;
+        return this.usersByUsername.containsKey(username);
     }
 
     /**
@@ -125,49 +145,72 @@ public class Profiles implements ProfilesRMI {
         // Create a new User
         User user = new User(connectionUUID, false, null);
 
-        synchronized (this.usersLock) {
-            // Add the new User to the list
-            this.users.add(user);
-        }
+        // Add the new User to the index
+        this.usersByConnectionUUID.put(connectionUUID, user);
+
+        // Only now the User can be found by its connectionUUID: its messages can be read
+        user.startListenLoop();
     }
 
     /**
      * Create a new User with the given connectionUUID and add it to the list of Users.
      * To be used with RMI.
      * The unicity of the connectionUUID is not responsibility of Profiles.
+     * The User is not bound to the registry: its remote reference is returned to the calling Client only, so
+     * concurrent logins never see each other's User nor contend on a registry name.
+     * @return The remote reference to the new User.
      * @throws RemoteException If something goes wrong with RMI.
-     * @throws MalformedURLException If something goes wrong with RMI.
      */
     @Override
-    public void createUserRMI() throws RemoteException, MalformedURLException {
+    public UserStubRMI createUserRMI() throws RemoteException {
         // Create a new User
         String connectionUUID = UUID.randomUUID().toString();
         UserStub userStub = new UserStub(connectionUUID, this.heartbeatMs);
 
-        synchronized (this.usersLock) {
-            // Add the new User to the List
-            this.users.add(userStub.getUser());
-        }
-
         // Make the User obj available throught RMI
-        RMIServerHandler.exportObject(userStub, "User");
+        UserStubRMI remoteUser = (UserStubRMI) RMIServerHandler.exportUnboundObject(userStub);
+
+        // Add the new User to the index
+        this.usersByConnectionUUID.put(connectionUUID, userStub.getUser());
+
+        return remoteUser;
     }
 
     /**
-     * Set the username of the User with the given connectionUUID.
-     * The unicity of the username is not responsibility of Profiles.
+     * Set the username of the User with the given connectionUUID, provided that no other User has it.
+     * Checking and reserving the username is a single atomic step: there is no need to call
+     * {@link #isUsernameTaken(String)} before.
      * @param connectionUUID The connectionUUID of the User to set the username.
      * @param username The username to set.
-     * @throws ProfilesException If no User with the given connectionUUID is found.
+     * @throws ProfilesException If no User with the given connectionUUID is found (ENTRY_NOT_FOUND), or if the
+     * username is already taken by another User (USERNAME_TAKEN).
      * @throws UserException If the provided username is invalid based on the checks performed by User.
      */
     public void setUserUsername(String connectionUUID, String username) throws ProfilesException,
             UserException {
         User user = this.getUserByConnectionUUID(connectionUUID);
 
-        synchronized (this.usersLock) {
-            // Reached if ProfilesException is not thrown
+        // Reached if ProfilesException is not thrown
+        User owner = this.usersByUsername.putIfAbsent(username, user);
+
+        if (owner != null && owner != user) {
+            throw new ProfilesException("The username is already taken.", ProfilesException.Reason.USERNAME_TAKEN);
+        }
+
+        String previous = user.getUsername();
+
+        try {
             user.setUsername(username);
+        } catch (UserException e) {
+            // Invalid username: releasing the reservation
+            if (owner == null) {
+                this.usersByUsername.remove(username, user);
+            }
+            throw e;
+        }
+
+        if (previous != null && !previous.equals(username)) {
+            this.usersByUsername.remove(previous, user);
         }
     }
 
@@ -188,7 +231,7 @@ public class Profiles implements ProfilesRMI {
         if (!RMI) {
             // First of all, let's disconnect the User (if it is not already disconnected).
             try {
-                Server.getInstance().silentClose(connectionUUID);
+                ActiveTransport.get().silentClose(connectionUUID);
             } catch (ServerException e) {
                 throw new ServerCriticalError("Something went wrong with the Server network side.");
             }
@@ -222,12 +265,15 @@ public class Profiles implements ProfilesRMI {
             // Silenced section.
         }
 
-        synchronized (this.usersLock) {
-            // Then, the User may be on Profiles (it depends on what exception was thrown). So, let's remove it
-            // anyway.
-            // Find the User witn connectionUUID: connectionUUID and remove it from users.
-            // If not found, do nothing.
-            this.users.removeIf(user -> user.getConnectionUUID().equals(connectionUUID));
+        // Then, the User may be on Profiles (it depends on what exception was thrown). So, let's remove it
+        // anyway, releasing its username too.
+        // If not found, do nothing.
+        User user = this.usersByConnectionUUID.remove(connectionUUID);
+
+        if (user != null && user.getUsername() != null) {
+            // The User may have been on the lobby browser
+            MatchController.getInstance().unsubscribeLobbies(user.getUsername());
+            this.usersByUsername.remove(user.getUsername(), user);
         }
     }
 }
@@ -6,6 +6,7 @@ package it.polimi.ingsw.network;
 public class ProfilesException extends Exception {
     public enum Reason {
         ENTRY_NOT_FOUND,
+        USERNAME_TAKEN,
     }
 
     private final Reason reason;
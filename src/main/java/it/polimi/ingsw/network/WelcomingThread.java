@@ -1,20 +1,36 @@
 package it.polimi.ingsw.network;
 
 import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.tcpip.HandshakeTimeoutException;
 import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
 import it.polimi.ingsw.network.tcpip.Server;
 import it.polimi.ingsw.network.tcpip.ServerException;
+import it.polimi.ingsw.util.ServerThreads;
 
+import java.net.Socket;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class is a Thread that is responsible for welcoming new Users to the Server.
+ * It only accepts the incoming connections: each accepted connection is handed over to a pool of handshake
+ * threads, that set up the streams and register the User in Profiles. This way a slow (or malicious) Client
+ * can only hold one handshake thread, and only for Server.HANDSHAKE_TIMEOUT_MS milliseconds, while the other
+ * Clients keep on being accepted.
  * It is a singleton.
  */
 public class WelcomingThread extends Thread {
     private static WelcomingThread instance;
 
+    /**
+     * Number of handshakes that may run concurrently.
+     */
+    private static final Integer HANDSHAKE_THREADS = 8;
+
     private WelcomingThread() {
+        this.handshakers = Executors.newFixedThreadPool(HANDSHAKE_THREADS, ServerThreads.factory());
     }
 
         public static WelcomingThread getInstance() {
@@ -25,32 +41,52 @@ public class WelcomingThread extends Thread {
     }
 
     /* Start of the class implementation */
+    private final ExecutorService handshakers;
+
     @Override
     public void run() {
         while (true) {
-            // Generate a new UUID for the upcoming new connection
-            String connectionUUID = UUID.randomUUID().toString();
-
             try {
-                // This suspends the thread until a new connection is established
-                // This may throw an IOException
-                Server.getInstance().seekReserve(connectionUUID);
+                // This suspends the thread until a new connection is accepted
+                Socket socket = Server.getInstance().acceptSocket();
+                long acceptedAt = System.nanoTime();
 
-                // Connection established. Welcome to the new Client!
-                Profiles.getInstance().createUser(connectionUUID);
-
-                Logger.logInfo("New user connected: " + connectionUUID.substring(0, 3));
+                ServerMetrics.getInstance().onAccepted();
+                this.handshakers.execute(() -> this.welcome(socket, acceptedAt));
             } catch (ServerException | InvalidTCPConnectionException e) {
-                // Encountering an IOException means that a network releated error occurred while connecting
-                // the new User to the server.
-                // If seekReserve thrown it that means that a Socket releated error occured
-                // and the User won't be connected to the server: no problem internally, since the User object creation
-                // has not been yet issued to Profiles.
-                // To handle the situation, we just need to keep on going as nothing happened: seekReserve self-sustains
-                // the handling situation in its implementation; we are just gonna log the error.
+                // Accepting failed: no User has been created, so there is nothing to clean up.
                 // The thread won't stop so the Server won't crash!
-                Logger.logError("An IOException occurred while trying to connect a new user to the server with proposed connectionUUID " + connectionUUID.substring(0, 3) + ": " + e.getMessage());
+                Logger.logError("An IOException occurred while accepting a new connection: " + e.getMessage());
             }
         }
     }
+
+    /**
+     * Completes the handshake of an accepted socket and creates its User.
+     * @param socket The accepted socket.
+     * @param acceptedAt When the socket was accepted (System.nanoTime()).
+     */
+    private void welcome(Socket socket, long acceptedAt) {
+        // Generate a new UUID for the upcoming new connection
+        String connectionUUID = UUID.randomUUID().toString();
+
+        try {
+            // This suspends the handshake thread until the streams are set up or the handshake times out
+            Server.getInstance().handshake(connectionUUID, socket);
+            ServerMetrics.getInstance().onHandshakeCompleted(System.nanoTime() - acceptedAt);
+
+            // Connection established. Welcome to the new Client!
+            Profiles.getInstance().createUser(connectionUUID);
+
+            Logger.logInfo("New user connected: " + connectionUUID.substring(0, 3));
+        } catch (ServerException | InvalidTCPConnectionException e) {
+            // If handshake thrown it that means that a Socket releated error occured
+            // and the User won't be connected to the server: no problem internally, since the User object creation
+            // has not been yet issued to Profiles.
+            // handshake self-sustains the handling situation in its implementation (the socket is closed);
+            // we are just gonna log the error.
+            ServerMetrics.getInstance().onHandshakeFailed(e instanceof HandshakeTimeoutException);
+            Logger.logError("An IOException occurred while trying to connect a new user to the server with proposed connectionUUID " + connectionUUID.substring(0, 3) + ": " + e.getMessage());
+        }
+    }
 }
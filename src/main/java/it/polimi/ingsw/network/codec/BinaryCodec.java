@@ -0,0 +1,653 @@
+package it.polimi.ingsw.network.codec;
+
+import it.polimi.ingsw.controller.GameState;
+import it.polimi.ingsw.controller.LobbyQuery;
+import it.polimi.ingsw.model.card.*;
+import it.polimi.ingsw.model.card.factory.*;
+import it.polimi.ingsw.model.card.properties.*;
+import it.polimi.ingsw.model.game.CardType;
+import it.polimi.ingsw.model.player.ManuscriptPosition;
+import it.polimi.ingsw.model.player.PlayerColor;
+import it.polimi.ingsw.model.player.PlayerData;
+import it.polimi.ingsw.network.messages.*;
+import it.polimi.ingsw.network.messages.clienttoserver.*;
+import it.polimi.ingsw.network.messages.servertoclient.*;
+import it.polimi.ingsw.network.tcpip.Heartbeat;
+import it.polimi.ingsw.network.tcpip.Sense;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary codec.
+ * <p>
+ * Every payload starts with a kind byte:
+ * <ul>
+ *     <li>HEARTBEAT, SENSE: nothing follows.</li>
+ *     <li>ARGS_MESSAGE: the MessageType ordinal (varint), the number of arguments (byte) and the arguments
+ *     of a Zero/Single/Double/TripleArgMessage, each one encoded as a tagged value.</li>
+ *     <li>NAMED_MESSAGE: the MessageType ordinal (varint), the tag of the specific Message class (varint) and
+ *     its fields.</li>
+ *     <li>BLOB: a Java serialization of the whole object, for objects with no explicit encoder.</li>
+ *     <li>BATCH: the number of messages of an EventBatchMessage (varint), then each message encoded as a payload
+ *     of its own, preceded by its length (varint). Batches are only sent by the Server, and never nested.</li>
+ * </ul>
+ * Tagged values have explicit encoders for the types that travel most: strings, integers, booleans, the model
+ * enums, lists, maps, cards (id + face), positions (two varints) and PlayerData. Any other value (e.g. manuscripts,
+ * boards, game flows, events) is embedded as a Java serialization blob, read back through a filter that only
+ * accepts classes of the game and of the JDK collections.
+ */
+public class BinaryCodec implements WireCodec {
+    public static final byte ID = 1;
+
+    // Payload kinds
+    private static final int KIND_HEARTBEAT = 0;
+    private static final int KIND_SENSE = 1;
+    private static final int KIND_ARGS_MESSAGE = 2;
+    private static final int KIND_NAMED_MESSAGE = 3;
+    private static final int KIND_BLOB = 4;
+    private static final int KIND_BATCH = 5;
+
+    // Value tags
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_STRING = 4;
+    private static final int TAG_ENUM = 5;
+    private static final int TAG_LIST = 6;
+    private static final int TAG_MAP = 7;
+    private static final int TAG_POSITION = 8;
+    private static final int TAG_CARD = 9;
+    private static final int TAG_PLAYER_DATA = 10;
+    private static final int TAG_BLOB = 11;
+
+    /**
+     * Enums with an explicit encoder. The position in the list is the wire tag: append only.
+     */
+    private static final List<Class<? extends Enum<?>>> ENUMS = List.of(
+            CardFace.class,
+            CardType.class,
+            PlayerColor.class,
+            GameState.class,
+            CornerPosition.class,
+            CardKingdom.class,
+            CardObject.class
+    );
+
+    /**
+     * Only these classes may be rebuilt from a blob.
+     */
+    private static final ObjectInputFilter BLOB_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=64;it.polimi.ingsw.**;java.util.**;java.lang.**;!*");
+
+    // Highest id of a card that can be generated by the factories. Greater ids are clean cards
+    private static final int LAST_FACTORY_ID = 102;
+    private static final int FIRST_CLEAN_ID = 103;
+    // One clean card for every group of ten resource and gold cards
+    private static final int LAST_CLEAN_ID = 110;
+
+    /**
+     * Deepest nesting of tagged values (lists, maps, PlayerData) accepted when decoding: the values sent by the
+     * Server are a few levels deep, a hostile payload must not be able to exhaust the stack.
+     */
+    private static final int MAX_VALUE_DEPTH = 16;
+
+    private static final CardFactory RESOURCE_FACTORY = new ResourceCardFactory();
+    private static final CardFactory GOLD_FACTORY = new GoldCardFactory();
+    private static final CardFactory STARTER_FACTORY = new StarterCardFactory();
+    private static final CardFactory GOAL_FACTORY = new GoalCardFactory();
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+    /**
+     * Specific Message classes with an explicit encoder. The position in the list is the wire tag: append only.
+     */
+    private final List<NamedMessage<?>> namedMessages;
+    private final Map<Class<?>, Integer> namedMessageTags;
+
+    public BinaryCodec() {
+        this.namedMessages = List.of(
+                new NamedMessage<>(GetListOfLobbyToJoinMessage.class,
+                        BinaryCodec::writeLobbyListRequest,
+                        BinaryCodec::readLobbyListRequest),
+                fieldless(GetLobbyInfoMessage.class, GetLobbyInfoMessage::new),
+                fieldless(LobbyExitMessage.class, LobbyExitMessage::new),
+                fieldless(MatchExitMessage.class, MatchExitMessage::new),
+                fieldless(StartLobbyMessage.class, StartLobbyMessage::new),
+                new NamedMessage<>(UsernameMessage.class,
+                        (m, out) -> writeString(out, m.getUsername()),
+                        in -> new UsernameMessage(readString(in))),
+                new NamedMessage<>(WhatLobbyToJoinMessage.class,
+                        (m, out) -> writeString(out, m.getLobbyUUID()),
+                        in -> new WhatLobbyToJoinMessage(readString(in))),
+                new NamedMessage<>(LobbyInfoForCreationMessage.class,
+                        (m, out) -> {
+                            writeString(out, m.getLobbyName());
+                            writeValue(out, m.getMaxPlayers());
+                        },
+                        in -> new LobbyInfoForCreationMessage(readString(in), (Integer) readValue(in))),
+                fieldless(InvalidLobbyInfoForCreationMessage.class, InvalidLobbyInfoForCreationMessage::new),
+                fieldless(LobbyAlreadyFullMessage.class, LobbyAlreadyFullMessage::new),
+                fieldless(LobbyExitOKMessage.class, LobbyExitOKMessage::new),
+                fieldless(LobbyJoinOKMessage.class, LobbyJoinOKMessage::new),
+                fieldless(LobbyStartKOMessage.class, LobbyStartKOMessage::new),
+                fieldless(LobbyStartMessage.class, LobbyStartMessage::new),
+                fieldless(LobbyStartOKMessage.class, LobbyStartOKMessage::new),
+                fieldless(MatchExitOKMessage.class, MatchExitOKMessage::new),
+                fieldless(NoMoreSpaceForNewLobbiesMessage.class, NoMoreSpaceForNewLobbiesMessage::new),
+                fieldless(UnknownErrorMessage.class, UnknownErrorMessage::new),
+                fieldless(UsernameAlreadyTakenMessage.class, UsernameAlreadyTakenMessage::new),
+                fieldless(UsernameConfirmedMessage.class, UsernameConfirmedMessage::new),
+                new NamedMessage<>(UsernameNotValidMessage.class,
+                        (m, out) -> writeString(out, m.getReason()),
+                        in -> new UsernameNotValidMessage(readString(in))),
+                fieldless(StopLobbyUpdatesMessage.class, StopLobbyUpdatesMessage::new)
+        );
+
+        this.namedMessageTags = new HashMap<>();
+        for (int i = 0; i < this.namedMessages.size(); i++) {
+            this.namedMessageTags.put(this.namedMessages.get(i).type(), i);
+        }
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        if (object instanceof Heartbeat) {
+            out.writeByte(KIND_HEARTBEAT);
+        } else if (object instanceof Sense) {
+            out.writeByte(KIND_SENSE);
+        } else if (this.namedMessageTags.containsKey(object.getClass())) {
+            int tag = this.namedMessageTags.get(object.getClass());
+            Message message = (Message) object;
+
+            out.writeByte(KIND_NAMED_MESSAGE);
+            writeVarInt(out, message.getType().ordinal());
+            writeVarInt(out, tag);
+            ((NamedMessage<Message>) this.namedMessages.get(tag)).writer().write(message, out);
+        } else if (object instanceof EventBatchMessage batch) {
+            out.writeByte(KIND_BATCH);
+            writeVarInt(out, batch.getMessages().size());
+
+            for (Message message : batch.getMessages()) {
+                byte[] nested = this.encode(message);
+                writeVarInt(out, nested.length);
+                out.write(nested);
+            }
+        } else if (object.getClass() == ZeroArgMessage.class) {
+            this.writeArgsHeader(out, (Message) object, 0);
+        } else if (object.getClass() == SingleArgMessage.class) {
+            SingleArgMessage<?> message = (SingleArgMessage<?>) object;
+            this.writeArgsHeader(out, message, 1);
+            writeValue(out, message.get());
+        } else if (object.getClass() == DoubleArgMessage.class) {
+            DoubleArgMessage<?, ?> message = (DoubleArgMessage<?, ?>) object;
+            this.writeArgsHeader(out, message, 2);
+            writeValue(out, message.get1());
+            writeValue(out, message.get2());
+        } else if (object.getClass() == TripleArgMessage.class) {
+            TripleArgMessage<?, ?, ?> message = (TripleArgMessage<?, ?, ?>) object;
+            this.writeArgsHeader(out, message, 3);
+            writeValue(out, message.get1());
+            writeValue(out, message.get2());
+            writeValue(out, message.get3());
+        } else {
+            out.writeByte(KIND_BLOB);
+            writeBlob(out, object);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException {
+        return this.decode(payload, true);
+    }
+
+    @Override
+    public Object decodeFromClient(byte[] payload) throws IOException {
+        return this.decode(payload, false);
+    }
+
+    /**
+     * Decodes a payload.
+     * @param payload The payload bytes.
+     * @param batchAllowed False to reject batches: the messages of a batch are never batches, and a Client never
+     *                     sends them. Decoding never recurses more than one level.
+     * @return The decoded object.
+     * @throws IOException If the payload is not valid, or is a batch that is not allowed.
+     */
+    private Object decode(byte[] payload, boolean batchAllowed) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        try {
+            int kind = in.readUnsignedByte();
+
+            return switch (kind) {
+                case KIND_HEARTBEAT -> new Heartbeat();
+                case KIND_SENSE -> new Sense();
+                case KIND_NAMED_MESSAGE -> {
+                    readMessageType(in);
+                    int tag = readVarInt(in);
+
+                    if (tag < 0 || tag >= this.namedMessages.size()) {
+                        throw new IOException("Unknown message class tag: " + tag + ".");
+                    }
+
+                    yield this.namedMessages.get(tag).reader().read(in);
+                }
+                case KIND_ARGS_MESSAGE -> {
+                    MessageType type = readMessageType(in);
+                    int args = in.readUnsignedByte();
+
+                    yield switch (args) {
+                        case 0 -> new ZeroArgMessage(type);
+                        case 1 -> new SingleArgMessage<>(type, readValue(in));
+                        case 2 -> new DoubleArgMessage<>(type, readValue(in), readValue(in));
+                        case 3 -> new TripleArgMessage<>(type, readValue(in), readValue(in), readValue(in));
+                        default -> throw new IOException("Invalid number of message arguments: " + args + ".");
+                    };
+                }
+                case KIND_BLOB -> readBlob(in);
+                case KIND_BATCH -> {
+                    if (!batchAllowed) {
+                        throw new IOException("Unexpected batch of messages.");
+                    }
+
+                    int count = readVarInt(in);
+
+                    // Every nested message takes at least one byte
+                    if (count < 0 || count > in.available()) {
+                        throw new IOException("Invalid number of batched messages: " + count + ".");
+                    }
+
+                    List<Message> messages = new ArrayList<>(count);
+
+                    for (int i = 0; i < count; i++) {
+                        byte[] nested = new byte[readLength(in)];
+                        in.readFully(nested);
+                        messages.add((Message) this.decode(nested, false));
+                    }
+
+                    yield new EventBatchMessage(messages);
+                }
+                default -> throw new IOException("Unknown payload kind: " + kind + ".");
+            };
+        } catch (RuntimeException e) {
+            // Malformed payloads may surface as casts or lookups failing: they are all invalid input
+            throw new IOException("Malformed payload: " + e.getMessage());
+        }
+    }
+
+    private void writeArgsHeader(DataOutputStream out, Message message, int args) throws IOException {
+        out.writeByte(KIND_ARGS_MESSAGE);
+        writeVarInt(out, message.getType().ordinal());
+        out.writeByte(args);
+    }
+
+    private static MessageType readMessageType(DataInputStream in) throws IOException {
+        int ordinal = readVarInt(in);
+
+        if (ordinal < 0 || ordinal >= MESSAGE_TYPES.length) {
+            throw new IOException("Unknown message type: " + ordinal + ".");
+        }
+
+        return MESSAGE_TYPES[ordinal];
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Tagged values
+     */
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer integer) {
+            out.writeByte(TAG_INT);
+            writeVarInt(out, zigZag(integer));
+        } else if (value instanceof String string) {
+            out.writeByte(TAG_STRING);
+            writeString(out, string);
+        } else if (value instanceof Enum<?> constant && ENUMS.contains(constant.getDeclaringClass())) {
+            out.writeByte(TAG_ENUM);
+            writeVarInt(out, ENUMS.indexOf(constant.getDeclaringClass()));
+            writeVarInt(out, constant.ordinal());
+        } else if (value instanceof ManuscriptPosition position) {
+            out.writeByte(TAG_POSITION);
+            writeVarInt(out, zigZag(position.x()));
+            writeVarInt(out, zigZag(position.y()));
+        } else if (isFactoryCard(value)) {
+            Card card = (Card) value;
+            out.writeByte(TAG_CARD);
+            writeVarInt(out, card.getId());
+            out.writeByte(card.getFace().ordinal());
+        } else if (value.getClass() == PlayerData.class) {
+            PlayerData playerData = (PlayerData) value;
+            out.writeByte(TAG_PLAYER_DATA);
+            writeString(out, playerData.getUsername());
+            writeValue(out, playerData.getColor());
+            writeValue(out, playerData.getHand());
+            writeVarInt(out, zigZag(playerData.getPoints()));
+            writeValue(out, playerData.getPrivateGoal());
+        } else if (value instanceof List<?> list) {
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(TAG_BLOB);
+            writeBlob(out, value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        return readValue(in, 0);
+    }
+
+    private static Object readValue(DataInputStream in, int depth) throws IOException {
+        if (depth > MAX_VALUE_DEPTH) {
+            throw new IOException("Values nested too deeply.");
+        }
+
+        int tag = in.readUnsignedByte();
+
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_INT:
+                return unZigZag(readVarInt(in));
+            case TAG_STRING:
+                return readString(in);
+            case TAG_ENUM: {
+                Enum<?>[] constants = ENUMS.get(readVarInt(in)).getEnumConstants();
+                return constants[readVarInt(in)];
+            }
+            case TAG_POSITION:
+                return new ManuscriptPosition(unZigZag(readVarInt(in)), unZigZag(readVarInt(in)));
+            case TAG_CARD:
+                return readCard(in);
+            case TAG_PLAYER_DATA: {
+                String username = readString(in);
+                PlayerColor color = (PlayerColor) readValue(in, depth + 1);
+                @SuppressWarnings("unchecked")
+                List<TypedCard> hand = (List<TypedCard>) readValue(in, depth + 1);
+                int points = unZigZag(readVarInt(in));
+                GoalCard privateGoal = (GoalCard) readValue(in, depth + 1);
+                return new PlayerData(username, color, hand, points, privateGoal);
+            }
+            case TAG_LIST: {
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = readLength(in);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in, depth + 1), readValue(in, depth + 1));
+                }
+                return map;
+            }
+            case TAG_BLOB:
+                return readBlob(in);
+            default:
+                throw new IOException("Unknown value tag: " + tag + ".");
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Cards
+     */
+
+    /**
+     * Cards are immutable apart from their face, so a card produced by a factory (or a clean card derived from one)
+     * is fully described by its id and face.
+     */
+    private static boolean isFactoryCard(Object value) {
+        Class<?> type = value.getClass();
+
+        if (type != ResourceCard.class && type != GoldCard.class && type != StarterCard.class &&
+                type != GoalCard.class) {
+            return false;
+        }
+
+        int id = ((Card) value).getId();
+
+        if (id >= 1 && id <= LAST_FACTORY_ID) {
+            return true;
+        }
+
+        // Only resource and gold cards have clean versions. Any other id (e.g. the placeholder private goal hiding
+        // the one of the other players) is not generated by the factories
+        return (type == ResourceCard.class || type == GoldCard.class) && id >= FIRST_CLEAN_ID && id <= LAST_CLEAN_ID;
+    }
+
+    private static Card readCard(DataInputStream in) throws IOException {
+        int id = readVarInt(in);
+        int face = in.readUnsignedByte();
+
+        Card card;
+
+        try {
+            if (id >= FIRST_CLEAN_ID) {
+                // Clean cards are generated from any card of the same group of ten: rebuild one and clean it
+                int representativeId = (id - FIRST_CLEAN_ID) * 10 + 1;
+                card = ((TypedCard) factoryOf(representativeId).generateCard(representativeId)).cleanCard();
+            } else {
+                card = factoryOf(id).generateCard(id);
+            }
+        } catch (WrongIdException e) {
+            throw new IOException("Unknown card id: " + id + ".");
+        }
+
+        if (card.getId() != id) {
+            throw new IOException("Unknown card id: " + id + ".");
+        }
+
+        card.setFace(CardFace.values()[face]);
+        return card;
+    }
+
+    private static CardFactory factoryOf(int id) throws IOException {
+        if (id < 1 || id > LAST_FACTORY_ID) {
+            throw new IOException("Unknown card id: " + id + ".");
+        }
+
+        for (CardFactory factory : List.of(RESOURCE_FACTORY, GOLD_FACTORY, STARTER_FACTORY, GOAL_FACTORY)) {
+            if (id >= factory.getFirstId() && id < factory.getFirstId() + factory.getSize()) {
+                return factory;
+            }
+        }
+
+        throw new IOException("Unknown card id: " + id + ".");
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Primitives
+     */
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            int read = in.readUnsignedByte();
+            value |= (read & 0x7F) << shift;
+
+            if ((read & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint.");
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+
+        // A length can never exceed the bytes left in the payload
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length: " + length + ".");
+        }
+
+        return length;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+
+        if (length == 0) {
+            return null;
+        }
+
+        if (length - 1 > in.available()) {
+            throw new IOException("Invalid string length: " + (length - 1) + ".");
+        }
+
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBlob(DataOutputStream out, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(value);
+        }
+
+        writeVarInt(out, bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Object readBlob(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            objectInputStream.setObjectInputFilter(BLOB_FILTER);
+            return objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class received: " + e.getMessage());
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Specific Message classes
+     */
+
+    private interface FieldsWriter<M> {
+        void write(M message, DataOutputStream out) throws IOException;
+    }
+
+    private interface FieldsReader<M> {
+        M read(DataInputStream in) throws IOException;
+    }
+
+    private record NamedMessage<M extends Message>(Class<M> type, FieldsWriter<M> writer, FieldsReader<M> reader) {
+    }
+
+    /**
+     * Writes the page, the filters and the subscription flag of a request of the list of lobbies.
+     */
+    private static void writeLobbyListRequest(GetListOfLobbyToJoinMessage message, DataOutputStream out)
+            throws IOException {
+        LobbyQuery query = message.getQuery();
+
+        writeVarInt(out, query.offset());
+        writeVarInt(out, query.limit());
+        out.writeByte((query.freeSeatsOnly() ? 1 : 0) | (query.reconnectableOnly() ? 2 : 0) |
+                (message.isSubscribe() ? 4 : 0));
+        writeString(out, query.namePrefix());
+    }
+
+    /**
+     * Reads a request of the list of lobbies. The request of a Client predating pages and filters has no fields: it
+     * asks for every lobby, as before.
+     */
+    private static GetListOfLobbyToJoinMessage readLobbyListRequest(DataInputStream in) throws IOException {
+        if (in.available() == 0) {
+            return new GetListOfLobbyToJoinMessage();
+        }
+
+        int offset = readVarInt(in);
+        int limit = readVarInt(in);
+        int flags = in.readUnsignedByte();
+        String namePrefix = readString(in);
+
+        try {
+            return new GetListOfLobbyToJoinMessage(
+                    new LobbyQuery(offset, limit, (flags & 1) != 0, namePrefix, (flags & 2) != 0), (flags & 4) != 0);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid lobby list request: " + e.getMessage());
+        }
+    }
+
+    private static <M extends Message> NamedMessage<M> fieldless(Class<M> type, Supplier<M> constructor) {
+        return new NamedMessage<>(type, (m, out) -> {}, in -> constructor.get());
+    }
+}
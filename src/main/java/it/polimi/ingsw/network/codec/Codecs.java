@@ -0,0 +1,106 @@
+package it.polimi.ingsw.network.codec;
+
+import java.util.List;
+
+/**
+ * Registry of the available codecs and of the negotiation rules.
+ * <p>
+ * Negotiation: right after reading the framed preamble the Client sends a hello frame whose payload is the list of
+ * the codec ids it supports, most preferred first. The Server answers with a hello frame whose payload is the single
+ * id it picked: the first one of the list it supports, or the Java serialization codec if none is.
+ * From then on every frame of the connection, in both directions, uses the picked codec.
+ * <p>
+ * Each codec also has a compressing variant (see {@link DeflateCodec}), with its own id. The Client always offers
+ * them first; the Server only picks them if compression has been enabled, so it is negotiated per connection and a
+ * Server not knowing them just skips their ids.
+ */
+public final class Codecs {
+    public static final WireCodec JAVA = new JavaSerializationCodec();
+    public static final WireCodec BINARY = new BinaryCodec();
+    public static final WireCodec JAVA_DEFLATE = new DeflateCodec(JAVA);
+    public static final WireCodec BINARY_DEFLATE = new DeflateCodec(BINARY);
+
+    /**
+     * Codecs offered by the Client, most preferred first.
+     */
+    public static final List<WireCodec> CLIENT_PREFERENCE = List.of(BINARY_DEFLATE, BINARY, JAVA_DEFLATE, JAVA);
+
+    /**
+     * Whether the Server accepts the compressing codecs.
+     */
+    private static volatile boolean compressionEnabled = false;
+
+    // Private constructor to prevent instantiation, since static classes has no meaning to be instantiated.
+    private Codecs() {
+    }
+
+    /**
+     * Lets the Server pick the compressing codecs, when offered. To be called at startup.
+     * @param enabled True to accept compression.
+     */
+    public static void setCompressionEnabled(boolean enabled) {
+        compressionEnabled = enabled;
+    }
+
+    public static boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Gets the codec with the given id.
+     * @param id The id of the codec.
+     * @return The codec, or null if no codec has such id.
+     */
+    public static WireCodec byId(byte id) {
+        if (id == JAVA.getId()) {
+            return JAVA;
+        }
+
+        if (id == BINARY.getId()) {
+            return BINARY;
+        }
+
+        if (id == JAVA_DEFLATE.getId()) {
+            return JAVA_DEFLATE;
+        }
+
+        if (id == BINARY_DEFLATE.getId()) {
+            return BINARY_DEFLATE;
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds the hello payload offering the given codecs.
+     * @param offered The codecs offered, most preferred first.
+     * @return The hello payload.
+     */
+    public static byte[] offer(List<WireCodec> offered) {
+        byte[] hello = new byte[offered.size()];
+
+        for (int i = 0; i < hello.length; i++) {
+            hello[i] = offered.get(i).getId();
+        }
+
+        return hello;
+    }
+
+    /**
+     * Picks the codec to be used given the hello payload of the Client: the first one offered that the Server
+     * supports and accepts.
+     * @param hello The hello payload received.
+     * @return The codec to be used.
+     */
+    public static WireCodec choose(byte[] hello) {
+        for (byte id : hello) {
+            WireCodec codec = byId(id);
+
+            if (codec != null && (compressionEnabled || !(codec instanceof DeflateCodec))) {
+                return codec;
+            }
+        }
+
+        return JAVA;
+    }
+}
@@ -0,0 +1,282 @@
+package it.polimi.ingsw.network.codec;
+
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec compressing the payloads of another codec, when they are big enough to be worth it.
+ * <p>
+ * Every payload starts with a flag byte:
+ * <ul>
+ *     <li>RAW: the payload of the inner codec follows as is. Used below the threshold, or when compressing did
+ *     not make the payload smaller.</li>
+ *     <li>DEFLATED: the length of the payload of the inner codec (4 bytes) follows, then that payload deflated
+ *     with the preset {@link #DICTIONARY}.</li>
+ * </ul>
+ * Every frame is compressed on its own, so frames can still be decoded independently of each other and a
+ * {@link it.polimi.ingsw.network.tcpip.SharedFrame} can be written to every connection using this codec.
+ * Deflaters and Inflaters hold native memory and are expensive to create, so they are pooled and reused.
+ * <p>
+ * The threshold only affects the encoding side: a peer always accepts both flags.
+ */
+public class DeflateCodec implements WireCodec {
+    /**
+     * Bit set in the id of a compressing codec: the other bits are the id of the inner codec.
+     */
+    public static final byte ID_FLAG = 0x40;
+
+    /**
+     * Payloads smaller than this are sent raw by default: heartbeats, turn events and most replies would not shrink.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final int FLAG_RAW = 0;
+    private static final int FLAG_DEFLATED = 1;
+
+    /**
+     * Strings found in almost every snapshot (class descriptors, field types and names of the model, enum
+     * constants), so that even the first occurrence in a frame is a back-reference. Both peers must use the
+     * same dictionary: changing it is a protocol change. Deflate favours the strings near the end, so the most
+     * frequent ones are the last.
+     */
+    private static final byte[] DICTIONARY = String.join("", List.of(
+            "java.lang.Boolean", "java.lang.Number", "java.lang.Enum", "java.util.ImmutableCollections$ListN",
+            "java.util.CollSer", "java.util.LinkedHashMap", "java.util.HashMap", "loadFactor", "threshold",
+            "java.util.ArrayList", "size", "Ljava/lang/Object;", "Ljava/lang/String;", "Ljava/util/List;",
+            "Ljava/util/Map;", "java.lang.Integer", "value",
+            "it.polimi.ingsw.controller.GameFlow", "it.polimi.ingsw.controller.GameState",
+            "disconnectedPlayers", "isIdle", "players", "state", "turn",
+            "it.polimi.ingsw.model.game.CommonBoard", "commonGoals", "coveredDecks", "visibleCards",
+            "it.polimi.ingsw.model.card.deck.PeekableCardDeck", "it.polimi.ingsw.model.card.deck.CardDeck",
+            "it.polimi.ingsw.model.game.CardType", "RESOURCE", "GOLD",
+            "it.polimi.ingsw.model.player.PlayerData", "username", "color", "hand", "points", "privateGoal",
+            "it.polimi.ingsw.model.player.PlayerColor", "RED", "BLUE", "GREEN", "YELLOW",
+            "it.polimi.ingsw.model.card.goal.GoalRequirementItems", "it.polimi.ingsw.model.card.goal.GoalRequirementPattern",
+            "it.polimi.ingsw.model.card.goal.GoalRequirement", "it.polimi.ingsw.model.card.GoalCard",
+            "it.polimi.ingsw.model.card.bonus.BonusFreePoints", "it.polimi.ingsw.model.card.bonus.BonusObjects",
+            "it.polimi.ingsw.model.card.bonus.BonusCorners", "it.polimi.ingsw.model.card.bonus.CardBonus", "bonus",
+            "it.polimi.ingsw.model.card.StarterCard", "it.polimi.ingsw.model.card.GoldCard", "cost",
+            "it.polimi.ingsw.model.card.ResourceCard", "it.polimi.ingsw.model.card.TypedCard", "kingdom",
+            "it.polimi.ingsw.model.card.PlayableCard", "frontCorners", "it.polimi.ingsw.model.card.Card", "id", "face",
+            "it.polimi.ingsw.model.card.properties.CardObject", "QUILL", "INKWELL", "MANUSCRIPT",
+            "it.polimi.ingsw.model.card.properties.CardKingdom", "FUNGI", "ANIMAL", "PLANT", "INSECT",
+            "it.polimi.ingsw.model.card.properties.CornerPosition", "TOP_RIGHT", "TOP_LEFT", "BOTTOM_LEFT", "BOTTOM_RIGHT",
+            "it.polimi.ingsw.model.card.properties.CardFace", "FRONT", "BACK",
+            "it.polimi.ingsw.model.card.properties.CornerItem", "it.polimi.ingsw.model.card.properties.CardItem",
+            "it.polimi.ingsw.model.player.ManuscriptPosition", "it.polimi.ingsw.model.player.PlayerManuscript",
+            "itemsNumber", "board", "x", "y"
+    )).getBytes(StandardCharsets.UTF_8);
+
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Sets the size from which payloads are compressed. To be called at startup.
+     * @param bytes The threshold, in bytes of the inner payload.
+     */
+    public static void setThreshold(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("The compression threshold cannot be negative.");
+        }
+
+        threshold = bytes;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    /* Start of the class implementation */
+    private final WireCodec inner;
+    private final byte id;
+
+    public DeflateCodec(WireCodec inner) {
+        this.inner = inner;
+        this.id = (byte) (ID_FLAG | inner.getId());
+    }
+
+    @Override
+    public byte getId() {
+        return this.id;
+    }
+
+    public WireCodec getInner() {
+        return this.inner;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        byte[] raw = this.inner.encode(object);
+
+        if (raw.length < threshold) {
+            this.record(object, raw.length, raw.length + 1, false, false, 0);
+            return withFlag(FLAG_RAW, raw);
+        }
+
+        long start = System.nanoTime();
+        byte[] deflated = deflate(raw);
+        long nanos = System.nanoTime() - start;
+
+        // Incompressible payloads (e.g. already compact binary ones) are not worth the inflating on the other side
+        if (deflated.length + Integer.BYTES >= raw.length) {
+            this.record(object, raw.length, raw.length + 1, true, false, nanos);
+            return withFlag(FLAG_RAW, raw);
+        }
+
+        byte[] payload = ByteBuffer.allocate(1 + Integer.BYTES + deflated.length)
+                .put((byte) FLAG_DEFLATED)
+                .putInt(raw.length)
+                .put(deflated)
+                .array();
+
+        this.record(object, raw.length, payload.length, true, true, nanos);
+        return payload;
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException {
+        return this.inner.decode(this.unwrap(payload));
+    }
+
+    @Override
+    public Object decodeFromClient(byte[] payload) throws IOException {
+        return this.inner.decodeFromClient(this.unwrap(payload));
+    }
+
+    /**
+     * Strips the compression flag from a payload and inflates it if needed.
+     * @param payload The payload received.
+     * @return The payload of the inner codec.
+     * @throws IOException If the payload is malformed.
+     */
+    private byte[] unwrap(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IOException("Empty payload.");
+        }
+
+        return switch (payload[0]) {
+            case FLAG_RAW -> stripFlag(payload);
+            case FLAG_DEFLATED -> {
+                ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+
+                if (buffer.remaining() < Integer.BYTES) {
+                    throw new IOException("Truncated compressed payload.");
+                }
+
+                int length = buffer.getInt();
+
+                if (length < 0 || length > FramedProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid uncompressed length: " + length + ".");
+                }
+
+                yield inflate(payload, buffer.position(), length);
+            }
+            default -> throw new IOException("Unknown compression flag: " + payload[0] + ".");
+        };
+    }
+
+    /**
+     * Reports how a payload has been encoded, by message type, so that the threshold can be tuned.
+     * Shared frames are encoded once for all their recipients, so each of them is reported once.
+     */
+    private void record(Object object, int rawBytes, int sentBytes, boolean attempted, boolean compressed, long nanos) {
+        if (object instanceof Message message) {
+            ServerMetrics.getInstance().onPayloadEncoded(message.getType(), rawBytes, sentBytes, attempted, compressed,
+                    nanos);
+        }
+    }
+
+    private static byte[] withFlag(int flag, byte[] raw) {
+        byte[] payload = new byte[raw.length + 1];
+        payload[0] = (byte) flag;
+        System.arraycopy(raw, 0, payload, 1, raw.length);
+        return payload;
+    }
+
+    private static byte[] stripFlag(byte[] payload) {
+        byte[] raw = new byte[payload.length - 1];
+        System.arraycopy(payload, 1, raw, 0, raw.length);
+        return raw;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        }
+
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] chunk = new byte[4096];
+
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            return out.toByteArray();
+        } finally {
+            // Ready for the next payload, with the dictionary to be set again
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private static byte[] inflate(byte[] payload, int offset, int length) throws IOException {
+        Inflater inflater = inflaters.poll();
+
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+
+        try {
+            inflater.setInput(payload, offset, payload.length - offset);
+
+            byte[] raw = new byte[length];
+            int read = 0;
+
+            while (read < length) {
+                int inflated = inflater.inflate(raw, read, length - read);
+
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Truncated compressed payload.");
+                    }
+                }
+
+                read += inflated;
+            }
+
+            if (!inflater.finished() && inflater.inflate(new byte[1]) != 0) {
+                throw new IOException("Compressed payload longer than declared.");
+            }
+
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed compressed payload: " + e.getMessage());
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package it.polimi.ingsw.network.codec;
+
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Blocking reader/writer of a framed connection, once the codec has been negotiated.
+ * Used by the Client and by the blocking Server when it speaks the framed protocol.
+ * It is not thread-safe: callers must serialize reads and writes on their own locks, just like they do with
+ * object streams.
+ */
+public class FramedStreams {
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final WireCodec codec;
+    /**
+     * True on the Server side: what is read comes from a Client.
+     */
+    private final boolean server;
+
+    private FramedStreams(DataInputStream in, DataOutputStream out, WireCodec codec, boolean server) {
+        this.in = in;
+        this.out = out;
+        this.codec = codec;
+        this.server = server;
+    }
+
+    /**
+     * Negotiates the codec on the Client side. The preamble must have already been consumed from the input.
+     * @param input The input stream of the socket, positioned right after the preamble.
+     * @param output The output stream of the socket.
+     * @param offered The codecs the Client supports, most preferred first.
+     * @return The framed streams, ready to be used.
+     * @throws IOException If the negotiation fails.
+     */
+    public static FramedStreams connect(InputStream input, OutputStream output, List<WireCodec> offered)
+            throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+        writeFrame(out, Codecs.offer(offered));
+        out.flush();
+
+        byte[] answer = readFrame(in);
+        WireCodec codec = answer.length == 1 ? Codecs.byId(answer[0]) : null;
+
+        if (codec == null || !offered.contains(codec)) {
+            throw new IOException("The server picked a codec that was not offered.");
+        }
+
+        return new FramedStreams(in, out, codec, false);
+    }
+
+    /**
+     * Writes the preamble and negotiates the codec on the Server side.
+     * @param input The input stream of the socket.
+     * @param output The output stream of the socket.
+     * @return The framed streams, ready to be used.
+     * @throws IOException If the negotiation fails.
+     */
+    public static FramedStreams accept(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+        // The framed Server speaks first, so the Client can tell it from the legacy one
+        out.writeInt(FramedProtocol.MAGIC);
+        out.flush();
+
+        WireCodec codec = Codecs.choose(readFrame(in));
+
+        writeFrame(out, new byte[]{codec.getId()});
+        out.flush();
+
+        return new FramedStreams(in, out, codec, true);
+    }
+
+    /**
+     * Encodes and writes a single object as a frame.
+     * @param object The object to write.
+     * @throws IOException If the object cannot be encoded or written.
+     */
+    public void write(Object object) throws IOException {
+        this.writeEncoded(this.encode(object));
+    }
+
+    /**
+     * Encodes an object with the negotiated codec into a complete frame (header included), without writing it.
+     * @param object The object to encode.
+     * @return The frame, to be written later with {@link #writeEncoded(byte[])}.
+     * @throws IOException If the object cannot be encoded.
+     */
+    public byte[] encode(Object object) throws IOException {
+        return FramedProtocol.frame(this.codec.encode(object));
+    }
+
+    /**
+     * Writes an already encoded frame, as built by {@link #encode(Object)} or by
+     * {@link it.polimi.ingsw.network.tcpip.SharedFrame}.
+     * @param frame The frame to write, header included.
+     * @throws IOException If the frame cannot be written.
+     */
+    public void writeEncoded(byte[] frame) throws IOException {
+        this.out.write(frame);
+        this.out.flush();
+    }
+
+    /**
+     * Reads and decodes a single frame. This method is blocking.
+     * @return The object read.
+     * @throws IOException If the frame cannot be read or decoded.
+     */
+    public Object read() throws IOException {
+        byte[] payload = readFrame(this.in);
+        return this.server ? this.codec.decodeFromClient(payload) : this.codec.decode(payload);
+    }
+
+    public WireCodec getCodec() {
+        return this.codec;
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > FramedProtocol.MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length received: " + length + ".");
+        }
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+}
@@ -0,0 +1,32 @@
+package it.polimi.ingsw.network.codec;
+
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
+
+import java.io.IOException;
+
+/**
+ * Codec using plain Java serialization: every payload is a standalone serialization of a single object.
+ * It is the fallback codec, spoken by every framed peer.
+ */
+public class JavaSerializationCodec implements WireCodec {
+    public static final byte ID = 0;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        return FramedProtocol.serialize(object);
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException {
+        try {
+            return FramedProtocol.deserialize(payload);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class received: " + e.getMessage());
+        }
+    }
+}
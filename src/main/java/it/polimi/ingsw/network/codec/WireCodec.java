@@ -0,0 +1,42 @@
+package it.polimi.ingsw.network.codec;
+
+import java.io.IOException;
+
+/**
+ * Describes how the objects exchanged on a framed connection are turned into frame payloads and back.
+ * The codec of a connection is negotiated once, right after the framed preamble (see {@link Codecs}).
+ */
+public interface WireCodec {
+    /**
+     * Gets the identifier of the codec, as sent during the negotiation.
+     * @return The identifier of the codec.
+     */
+    byte getId();
+
+    /**
+     * Encodes an object into a frame payload.
+     * @param object The object to encode.
+     * @return The payload bytes.
+     * @throws IOException If the object cannot be encoded.
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * Decodes a frame payload produced by {@link #encode(Object)} on the other side.
+     * @param payload The payload bytes.
+     * @return The decoded object.
+     * @throws IOException If the payload is not valid for this codec.
+     */
+    Object decode(byte[] payload) throws IOException;
+
+    /**
+     * Decodes a frame payload received by the Server. A Client only ever sends single messages: the payloads only
+     * the Server sends (e.g. batches of events) are rejected without being decoded.
+     * @param payload The payload bytes.
+     * @return The decoded object.
+     * @throws IOException If the payload is not valid for this codec, or is not expected from a Client.
+     */
+    default Object decodeFromClient(byte[] payload) throws IOException {
+        return this.decode(payload);
+    }
+}
@@ -5,11 +5,13 @@ import it.polimi.ingsw.network.Profiles;
 import it.polimi.ingsw.network.ProfilesException;
 import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.tcpip.*;
+import it.polimi.ingsw.util.ServerThreads;
 
 /**
- * This class is a Thread that listens for messages from a specific User and dispatches them to the User's react method.
+ * This class is a task that listens for messages from a specific User and dispatches them to the User's react method.
+ * It runs on its own thread, created by {@link ServerThreads} (platform or virtual depending on the Server mode).
  */
-public class ListenLoop extends Thread {
+public class ListenLoop implements Runnable {
     private final String connectionUUID;
     private final Integer delayer;
     private Boolean keepAlive;
@@ -27,6 +29,13 @@ public class ListenLoop extends Thread {
         this.keepAliveLock = new Object();
     }
 
+    /**
+     * Starts the ListenLoop on a new Server thread.
+     */
+    public void start() {
+        ServerThreads.start(this);
+    }
+
     /**
      * Stops the ListenLoop.
      */
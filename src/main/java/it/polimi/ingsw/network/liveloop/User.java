@@ -9,9 +9,10 @@ import it.polimi.ingsw.network.messages.clienttoserver.*;
 import it.polimi.ingsw.network.rmi.UserStub;
 import it.polimi.ingsw.network.state.SettingUsernameState;
 import it.polimi.ingsw.network.state.State;
+import it.polimi.ingsw.network.tcpip.ActiveTransport;
 import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
-import it.polimi.ingsw.network.tcpip.Server;
 import it.polimi.ingsw.network.tcpip.ServerException;
+import it.polimi.ingsw.network.tcpip.SharedFrame;
 import it.polimi.ingsw.util.TextValidator;
 
 import java.util.regex.Matcher;
@@ -42,8 +43,14 @@ public class User {
         this.connectionUUID = connectionUUID;
 
         if (!RMI) {
-            this.listenLoop = new ListenLoop(connectionUUID, 0);
-            this.listenLoop.start();
+            // A selector-based transport reads the connection by itself: no ListenLoop is needed in that case
+            // The ListenLoop is started by startListenLoop, once the User can be found in Profiles
+            if (ActiveTransport.needsListenLoop()) {
+                this.listenLoop = new ListenLoop(connectionUUID, 0);
+            } else {
+                this.listenLoop = null;
+            }
+
             this.userStub = null;
         } else {
             this.userStub = userStub;
@@ -57,6 +64,17 @@ public class User {
         this.gc = null;
     }
 
+    /**
+     * Starts listening for the messages of the User, if the User needs a ListenLoop.
+     * To be called once the User has been added to Profiles: a message read before that could not be
+     * dispatched and would cause the User to be pruned.
+     */
+    public void startListenLoop() {
+        if (this.listenLoop != null) {
+            this.listenLoop.start();
+        }
+    }
+
         public String getConnectionUUID() {
         return this.connectionUUID;
     }
@@ -115,7 +133,7 @@ public class User {
      */
     public void send(Message message) {
         try {
-            Server.getInstance().sendSerializableObject(this.connectionUUID, message);
+            ActiveTransport.get().sendSerializableObject(this.connectionUUID, message);
         } catch (ServerException | InvalidTCPConnectionException e) {
             // What does it mean if the server throws an exception here?
             // Basically it means that the server is not able to send the message to the client.
@@ -134,6 +152,22 @@ public class User {
         Logger.logInfo("Replied to user " + this.connectionUUID.substring(0, 3) + " with message " + message.getType());
     }
 
+    /**
+     * Sends a broadcast frame to the User using the network. Unlike {@link #send(Message)}, the frame is encoded
+     * only once for all its recipients.
+     * @param frame The frame to send.
+     */
+    public void send(SharedFrame frame) {
+        try {
+            ActiveTransport.get().sendSharedFrame(this.connectionUUID, frame);
+        } catch (ServerException | InvalidTCPConnectionException e) {
+            // Same as send(Message): the User is not reachable anymore
+            Profiles.getInstance().silentPruneUser(this.connectionUUID, false);
+        }
+
+        Logger.logInfo("Replied to user " + this.connectionUUID.substring(0, 3) + " with message " + frame.getType());
+    }
+
     /**
      * Reacts to messages received from the Client (User).
      * The reaction is dynamic and depends on the current state of the User.
@@ -147,6 +181,7 @@ public class User {
                 case WHAT_LOBBY_TO_JOIN -> this.state.onWhatLobbyToJoinMessage((WhatLobbyToJoinMessage) message);
                 case START_LOBBY -> this.state.onStartLobbyMessage((StartLobbyMessage) message);
                 case GET_LIST_OF_LOBBY_TO_JOIN -> this.state.onGetListOfLobbyToJoinMessage((GetListOfLobbyToJoinMessage) message);
+                case STOP_LOBBY_UPDATES -> this.state.onStopLobbyUpdatesMessage((StopLobbyUpdatesMessage) message);
                 case GET_LOBBY_INFO_MESSAGE -> this.state.onGetLobbyInfoMessage((GetLobbyInfoMessage) message);
                 case LOBBY_EXIT -> this.state.onLobbyExitMessage((LobbyExitMessage) message);
                 case MATCH_EXIT -> this.state.onMatchExitMessage((MatchExitMessage) message);
@@ -167,6 +202,8 @@ public class User {
                 case PLACE_CARD -> this.state.onPlaceCardMessage(tripleArgCast(message));
                 case DRAW_VISIBLE_CARD -> this.state.onDrawVisibleCardMessage(tripleArgCast(message));
                 case DRAW_COVERED_CARD -> this.state.onDrawCoveredCardMessage(doubleArgCast(message));
+                case PLACE_AND_DRAW -> this.state.onPlaceAndDrawMessage(doubleArgCast(message));
+                case GET_GAME_STATE -> this.state.onGetGameStateMessage(singleArgCast(message));
                 case GET_GAME_ENDED -> this.state.onGetGameEndedMessage(zeroArgCast(message));
                 case GET_WINNER -> this.state.onGetWinnerMessage(zeroArgCast(message));
 
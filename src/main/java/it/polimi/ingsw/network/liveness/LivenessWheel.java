@@ -0,0 +1,344 @@
+package it.polimi.ingsw.network.liveness;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel tracking the liveness of every session of the process (Socket and RMI connections on the
+ * Server, the connection to the Server on the Client) and running the periodic heartbeats.
+ * It is a singleton: a single thread serves every session, no matter how many there are.
+ * <p>
+ * The wheel is a ring of buckets, one per tick. A timeout due in N ticks is put in the bucket N ticks ahead of
+ * the current one, along with the number of whole rotations to wait before it is due. At each tick the wheel only
+ * looks at the bucket under its hand, so the cost of a tick does not depend on the number of sessions.
+ * <p>
+ * Touching a session (that is, seeing it alive) is a single volatile write: the session is not moved. When the
+ * bucket holding a session comes due, the wheel checks the last-seen timestamp and either expires the session or
+ * puts it back in the bucket of its new deadline. Expiries and periodic tasks never run on the wheel thread: they
+ * are handed to a dispatcher, so that a slow callback (e.g. pruning a User) cannot delay the other sessions.
+ */
+public final class LivenessWheel {
+    public static final long DEFAULT_TICK_MS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static LivenessWheel instance;
+
+    private static long tickMs = DEFAULT_TICK_MS;
+    private static int wheelSize = DEFAULT_WHEEL_SIZE;
+    private static ThreadFactory threadFactory = runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    /**
+     * Sets the resolution of the wheel and the factory of its threads. To be called at startup, before the wheel
+     * is used for the first time.
+     * @param tick The duration of a tick: timeouts fire at most one tick late.
+     * @param size The number of buckets: timeouts longer than size ticks wait some whole rotations.
+     * @param factory The factory of the wheel thread and of the dispatcher threads.
+     * @throws IllegalStateException If the wheel is already running.
+     */
+    public static synchronized void configure(long tick, int size, ThreadFactory factory) {
+        if (instance != null) {
+            throw new IllegalStateException("The liveness wheel is already running.");
+        }
+
+        if (tick <= 0 || size <= 0) {
+            throw new IllegalArgumentException("The tick and the size of the wheel must be positive.");
+        }
+
+        tickMs = tick;
+        wheelSize = size;
+        threadFactory = factory;
+    }
+
+    public static synchronized LivenessWheel getInstance() {
+        if (instance == null) {
+            instance = new LivenessWheel(tickMs, wheelSize, threadFactory);
+        }
+        return instance;
+    }
+
+    /**
+     * Something waiting in the wheel.
+     */
+    private abstract static class Timeout {
+        /**
+         * Whole rotations still to wait once in the bucket. Only touched by the wheel thread.
+         */
+        private long rounds;
+
+        /**
+         * @return The time (in milliseconds) at which this timeout is due.
+         */
+        abstract long deadlineMs();
+
+        /**
+         * Called by the wheel thread when the bucket of this timeout comes due.
+         * @param nowMs The current time.
+         * @return True to be put back in the wheel (at the new deadline), false to be forgotten.
+         */
+        abstract boolean onDue(long nowMs);
+    }
+
+    /**
+     * A session whose liveness is tracked: it expires when it has not been touched for its timeout.
+     */
+    public final class Session extends Timeout {
+        private final long timeoutMs;
+        private final Runnable onExpiry;
+        private volatile long lastSeenMs;
+        private final AtomicBoolean done;
+
+        private Session(long timeoutMs, Runnable onExpiry) {
+            this.timeoutMs = timeoutMs;
+            this.onExpiry = onExpiry;
+            this.lastSeenMs = System.currentTimeMillis();
+            this.done = new AtomicBoolean(false);
+        }
+
+        /**
+         * Records that the other side of the session has just been seen alive.
+         */
+        public void touch() {
+            this.lastSeenMs = System.currentTimeMillis();
+        }
+
+        /**
+         * Stops tracking the session: it will never expire.
+         */
+        public void cancel() {
+            if (this.done.compareAndSet(false, true)) {
+                tracked.decrementAndGet();
+            }
+        }
+
+        public long getLastSeenMs() {
+            return this.lastSeenMs;
+        }
+
+        @Override
+        long deadlineMs() {
+            return this.lastSeenMs + this.timeoutMs;
+        }
+
+        @Override
+        boolean onDue(long nowMs) {
+            if (this.done.get()) {
+                return false;
+            }
+
+            if (nowMs < this.deadlineMs()) {
+                // Touched since it was put in the wheel: wait for the new deadline
+                return true;
+            }
+
+            if (this.done.compareAndSet(false, true)) {
+                tracked.decrementAndGet();
+                dispatch(this.onExpiry);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A task run periodically, e.g. sending a heartbeat. A run is skipped if the previous one has not finished yet.
+     */
+    public final class Periodic extends Timeout {
+        private final long periodMs;
+        private final Runnable task;
+        private volatile long nextMs;
+        private volatile boolean cancelled;
+        private final AtomicBoolean running;
+
+        private Periodic(long periodMs, Runnable task) {
+            this.periodMs = periodMs;
+            this.task = task;
+            this.nextMs = System.currentTimeMillis() + periodMs;
+            this.cancelled = false;
+            this.running = new AtomicBoolean(false);
+        }
+
+        /**
+         * Stops running the task. A run already started is not interrupted.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        @Override
+        long deadlineMs() {
+            return this.nextMs;
+        }
+
+        @Override
+        boolean onDue(long nowMs) {
+            if (this.cancelled) {
+                return false;
+            }
+
+            if (nowMs < this.nextMs) {
+                return true;
+            }
+
+            if (this.running.compareAndSet(false, true)) {
+                dispatch(() -> {
+                    try {
+                        if (!this.cancelled) {
+                            this.task.run();
+                        }
+                    } finally {
+                        this.running.set(false);
+                    }
+                });
+            }
+
+            this.nextMs = nowMs + this.periodMs;
+            return true;
+        }
+    }
+
+    /* Start of the class implementation */
+    private final long tick;
+    private final List<Queue<Timeout>> buckets;
+
+    /**
+     * Timeouts added by other threads, moved into the buckets by the wheel thread at the next tick: the buckets are
+     * only ever touched by the wheel thread.
+     */
+    private final Queue<Timeout> incoming;
+
+    private final ExecutorService dispatcher;
+    private final AtomicInteger tracked;
+
+    /**
+     * Number of ticks elapsed since the wheel started. Only touched by the wheel thread.
+     */
+    private long ticks;
+
+    private LivenessWheel(long tick, int size, ThreadFactory factory) {
+        this.tick = tick;
+        this.buckets = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            this.buckets.add(new ArrayDeque<>());
+        }
+
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.dispatcher = Executors.newCachedThreadPool(factory);
+        this.tracked = new AtomicInteger(0);
+        this.ticks = 0;
+
+        Thread wheelThread = factory.newThread(this::run);
+        wheelThread.setName("liveness-wheel");
+        wheelThread.start();
+    }
+
+    /**
+     * Starts tracking the liveness of a session.
+     * @param timeoutMs The time after which the session expires if it has not been touched.
+     * @param onExpiry Called (on a dispatcher thread) when the session expires.
+     * @return The session, to be touched whenever the other side is seen alive and cancelled when closed.
+     */
+    public Session track(long timeoutMs, Runnable onExpiry) {
+        Session session = new Session(timeoutMs, onExpiry);
+        this.tracked.incrementAndGet();
+        this.incoming.add(session);
+        return session;
+    }
+
+    /**
+     * Runs a task periodically, starting one period from now.
+     * @param periodMs The period.
+     * @param task The task, run on a dispatcher thread.
+     * @return The periodic task, to be cancelled when no longer needed.
+     */
+    public Periodic every(long periodMs, Runnable task) {
+        Periodic periodic = new Periodic(periodMs, task);
+        this.incoming.add(periodic);
+        return periodic;
+    }
+
+    /**
+     * Gets the number of sessions currently tracked.
+     * @return The number of sessions.
+     */
+    public int getTrackedSessions() {
+        return this.tracked.get();
+    }
+
+    public long getTickMs() {
+        return this.tick;
+    }
+
+    private void dispatch(Runnable runnable) {
+        this.dispatcher.execute(runnable);
+    }
+
+    /**
+     * Body of the wheel thread: advances the hand one bucket per tick, forever.
+     */
+    private void run() {
+        long startNanos = System.nanoTime();
+
+        while (true) {
+            long wakeNanos = startNanos + (this.ticks + 1) * this.tick * 1_000_000L;
+            long sleepMs = (wakeNanos - System.nanoTime()) / 1_000_000L;
+
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            this.ticks++;
+            long now = System.currentTimeMillis();
+
+            Timeout added;
+            while ((added = this.incoming.poll()) != null) {
+                this.schedule(added, now);
+            }
+
+            Queue<Timeout> bucket = this.buckets.get((int) (this.ticks % this.buckets.size()));
+            List<Timeout> rescheduled = new ArrayList<>();
+
+            for (int i = bucket.size(); i > 0; i--) {
+                Timeout timeout = bucket.poll();
+
+                if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                    bucket.add(timeout);
+                } else if (timeout.onDue(now)) {
+                    rescheduled.add(timeout);
+                }
+            }
+
+            // Only after the bucket has been walked, or a timeout due this very tick would be seen twice
+            for (Timeout timeout : rescheduled) {
+                this.schedule(timeout, now);
+            }
+        }
+    }
+
+    /**
+     * Puts a timeout in the bucket of its deadline. Only called by the wheel thread.
+     */
+    private void schedule(Timeout timeout, long nowMs) {
+        long delayTicks = Math.max(1, (timeout.deadlineMs() - nowMs + this.tick - 1) / this.tick);
+
+        timeout.rounds = (delayTicks - 1) / this.buckets.size();
+        this.buckets.get((int) ((this.ticks + delayTicks) % this.buckets.size())).add(timeout);
+    }
+}
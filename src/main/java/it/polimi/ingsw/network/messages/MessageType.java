@@ -80,4 +80,17 @@ public enum MessageType implements Serializable {
     BROADCAST_MESSAGE_EVENT,
     PRIVATE_MESSAGE_EVENT,
     MATCH_COMPOSITION_CHANGE_EVENT,
+
+    EVENT_BATCH,
+
+    PLACE_AND_DRAW,
+    ANSWER_PLACE_AND_DRAW,
+
+    GET_GAME_STATE,
+    ANSWER_GET_GAME_STATE,
+
+    STATE_DELTA_EVENT,
+
+    STOP_LOBBY_UPDATES,
+    LOBBY_LIST_CHANGE_EVENT,
 }
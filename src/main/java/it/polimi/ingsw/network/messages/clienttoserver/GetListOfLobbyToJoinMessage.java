@@ -1,13 +1,49 @@
 package it.polimi.ingsw.network.messages.clienttoserver;
 
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.messages.MessageType;
 
 /**
  * Message sent by the client to the server to request the list of lobbies that the client can join.
+ * The client can ask for a page of the list, filtered, and subscribe to its changes: they are then sent as
+ * LOBBY_LIST_CHANGE_EVENT until the client joins a lobby or sends a StopLobbyUpdatesMessage.
  */
 public class GetListOfLobbyToJoinMessage extends Message {
+    /**
+     * The one of the request predating pages and filters: the request of an older Client is still read, without a
+     * query (see {@link #getQuery()}).
+     */
+    private static final long serialVersionUID = 8594322179125085546L;
+
+    private final LobbyQuery query;
+    private final boolean subscribe;
+
+    /**
+     * Asks for every lobby, once.
+     */
     public GetListOfLobbyToJoinMessage() {
+        this(LobbyQuery.ALL, false);
+    }
+
+    public GetListOfLobbyToJoinMessage(LobbyQuery query, boolean subscribe) {
         super(MessageType.GET_LIST_OF_LOBBY_TO_JOIN);
+
+        this.query = query;
+        this.subscribe = subscribe;
+    }
+
+    /**
+     * @return The page and the filters asked for, null if sent by a Client predating them.
+     */
+    public LobbyQuery getQuery() {
+        return this.query;
+    }
+
+    /**
+     * @return True if the client also wants the changes of the list.
+     */
+    public boolean isSubscribe() {
+        return this.subscribe;
     }
 }
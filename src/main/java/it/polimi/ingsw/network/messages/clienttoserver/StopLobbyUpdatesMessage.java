@@ -0,0 +1,14 @@
+package it.polimi.ingsw.network.messages.clienttoserver;
+
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.messages.MessageType;
+
+/**
+ * Message sent by the client to the server when it leaves the lobby browser: the changes of the list of lobbies are
+ * not sent anymore. The server does not reply.
+ */
+public class StopLobbyUpdatesMessage extends Message {
+    public StopLobbyUpdatesMessage() {
+        super(MessageType.STOP_LOBBY_UPDATES);
+    }
+}
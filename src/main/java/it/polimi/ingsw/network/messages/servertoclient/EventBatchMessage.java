@@ -0,0 +1,24 @@
+package it.polimi.ingsw.network.messages.servertoclient;
+
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.messages.MessageType;
+
+import java.util.List;
+
+/**
+ * Message carrying all the event messages produced by a single game action, in the order they were fired.
+ * The client handles them one after the other, as if they had been received separately.
+ */
+public class EventBatchMessage extends Message {
+    private final List<Message> messages;
+
+    public EventBatchMessage(List<Message> messages) {
+        super(MessageType.EVENT_BATCH);
+
+        this.messages = messages;
+    }
+
+    public List<Message> getMessages() {
+        return this.messages;
+    }
+}
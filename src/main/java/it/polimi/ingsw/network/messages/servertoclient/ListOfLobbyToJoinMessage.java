@@ -1,7 +1,6 @@
 package it.polimi.ingsw.network.messages.servertoclient;
 
-import it.polimi.ingsw.controller.MatchController;
-import it.polimi.ingsw.controller.MatchControllerException;
+import it.polimi.ingsw.controller.LobbyPage;
 import it.polimi.ingsw.network.messages.Message;
 import it.polimi.ingsw.network.messages.MessageType;
 
@@ -10,9 +9,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Message sent to the client containing the list of lobbies that the client can join.
+ * Message sent to the client containing the list of lobbies that the client can join: a page of it, with the
+ * number of lobbies across all the pages.
  */
 public class ListOfLobbyToJoinMessage extends Message {
+    /**
+     * The one of the list predating pages: an older Client still reads the lobbies, ignoring the other fields.
+     */
+    private static final long serialVersionUID = -68626851897150412L;
+
     public static class LobbyInfo implements Serializable {
         public String uuid;
         public String name;
@@ -32,12 +37,15 @@ public class ListOfLobbyToJoinMessage extends Message {
     }
 
     private final List<LobbyInfo> lobbies;
+    private final int offset;
+    private final int total;
+    private final long version;
 
-    public ListOfLobbyToJoinMessage(String username) throws MatchControllerException {
+    public ListOfLobbyToJoinMessage(LobbyPage page) {
         super(MessageType.LIST_OF_LOBBY_TO_JOIN);
 
         this.lobbies = new ArrayList<>();
-        MatchController.getInstance().getLobbableBiasedLobbyInfo(username).forEach(lobby -> {
+        page.lobbies().forEach(lobby -> {
             LobbyInfo info = new LobbyInfo();
 
             info.uuid = lobby.getUuid();
@@ -49,9 +57,34 @@ public class ListOfLobbyToJoinMessage extends Message {
 
             this.lobbies.add(info);
         });
+
+        this.offset = page.offset();
+        this.total = page.total();
+        this.version = page.version();
     }
 
-        public List<LobbyInfo> getLobbies() {
+    public List<LobbyInfo> getLobbies() {
         return lobbies;
     }
+
+    /**
+     * @return The position of the first lobby of the page among the ones matching the filters.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The number of lobbies matching the filters, across all the pages.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The version of the list of lobbies the page has been taken at, see {@link LobbyPage}.
+     */
+    public long getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,477 @@
+package it.polimi.ingsw.network.metrics;
+
+import it.polimi.ingsw.controller.MatchShards;
+import it.polimi.ingsw.controller.event.EventDispatcher;
+import it.polimi.ingsw.network.messages.MessageType;
+import it.polimi.ingsw.network.rmi.PushDispatcher;
+import it.polimi.ingsw.network.tcpip.OutboundQueue;
+import it.polimi.ingsw.network.tcpip.SessionObjectOutputStream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the runtime metrics of the network side of the Server.
+ * All the counters are lock-free, so they can be updated from any thread without slowing it down.
+ * It is a singleton, created when the class is loaded: getting it takes no lock.
+ */
+public class ServerMetrics {
+    private static final ServerMetrics instance = new ServerMetrics();
+
+    /**
+     * Totals of the payloads of a MessageType encoded by a compressing codec.
+     */
+    public static class CompressionStats {
+        private final LongAdder payloads = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder compressed = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder sentBytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        public long getPayloads() {
+            return this.payloads.sum();
+        }
+
+        /**
+         * @return The number of payloads over the threshold, that have been compressed.
+         */
+        public long getAttempts() {
+            return this.attempts.sum();
+        }
+
+        /**
+         * @return The number of payloads actually sent compressed, since compressing made them smaller.
+         */
+        public long getCompressed() {
+            return this.compressed.sum();
+        }
+
+        public long getRawBytes() {
+            return this.rawBytes.sum();
+        }
+
+        public long getSentBytes() {
+            return this.sentBytes.sum();
+        }
+
+        /**
+         * @return The ratio between the bytes sent and the bytes the inner codec produced (lower is better).
+         */
+        public double getRatio() {
+            long raw = this.getRawBytes();
+            return raw == 0 ? 1 : (double) this.getSentBytes() / raw;
+        }
+
+        /**
+         * @return The average time spent compressing a payload over the threshold, in microseconds.
+         */
+        public double getAverageCompressMicros() {
+            long attempts = this.getAttempts();
+            return attempts == 0 ? 0 : this.nanos.sum() / (attempts * 1_000.0);
+        }
+    }
+
+    private ServerMetrics() {
+        this.acceptQueueDepth = new AtomicInteger(0);
+        this.peakAcceptQueueDepth = new AtomicInteger(0);
+        this.handshakesCompleted = new AtomicLong(0);
+        this.handshakesFailed = new AtomicLong(0);
+        this.handshakesTimedOut = new AtomicLong(0);
+        this.handshakeTotalNanos = new AtomicLong(0);
+        this.handshakeMaxNanos = new AtomicLong(0);
+        this.outboundQueues = new ConcurrentHashMap<>();
+        this.outboundDropped = new AtomicLong(0);
+        this.slowConsumersEvicted = new AtomicLong(0);
+        this.serializationSessions = new ConcurrentHashMap<>();
+        this.sharedFramesEncoded = new AtomicLong(0);
+        this.sharedFramesReused = new AtomicLong(0);
+        this.compressionStats = new ConcurrentHashMap<>();
+        this.pushMailboxes = new ConcurrentHashMap<>();
+    }
+
+    public static ServerMetrics getInstance() {
+        return instance;
+    }
+
+    /* Start of the class implementation */
+
+    /**
+     * Connections accepted whose handshake has not finished yet (waiting for a handshake thread or in progress).
+     */
+    private final AtomicInteger acceptQueueDepth;
+    private final AtomicInteger peakAcceptQueueDepth;
+
+    private final AtomicLong handshakesCompleted;
+    private final AtomicLong handshakesFailed;
+    private final AtomicLong handshakesTimedOut;
+    private final AtomicLong handshakeTotalNanos;
+    private final AtomicLong handshakeMaxNanos;
+
+    /**
+     * Outbound queues of the live connections, by connection name.
+     */
+    private final Map<String, OutboundQueue<?>> outboundQueues;
+    private final AtomicLong outboundDropped;
+    private final AtomicLong slowConsumersEvicted;
+
+    /**
+     * Serialization sessions of the live connections using object streams, by connection name.
+     */
+    private final Map<String, SessionObjectOutputStream> serializationSessions;
+
+    private final AtomicLong sharedFramesEncoded;
+    private final AtomicLong sharedFramesReused;
+
+    /**
+     * Compression totals, by MessageType.
+     */
+    private final Map<MessageType, CompressionStats> compressionStats;
+
+    /**
+     * Push mailboxes of the live RMI Users, by connectionUUID.
+     */
+    private final Map<String, PushDispatcher.Mailbox> pushMailboxes;
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Accept and handshake
+     */
+
+    /**
+     * To be called when a connection has been accepted and queued for its handshake.
+     */
+    public void onAccepted() {
+        int depth = this.acceptQueueDepth.incrementAndGet();
+        this.peakAcceptQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * To be called when the handshake of an accepted connection succeeded.
+     * @param latencyNanos Time elapsed from the accept to the end of the handshake.
+     */
+    public void onHandshakeCompleted(long latencyNanos) {
+        this.acceptQueueDepth.decrementAndGet();
+        this.handshakesCompleted.incrementAndGet();
+        this.handshakeTotalNanos.addAndGet(latencyNanos);
+        this.handshakeMaxNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * To be called when the handshake of an accepted connection failed.
+     * @param timedOut True if the handshake failed because the Client did not complete it in time.
+     */
+    public void onHandshakeFailed(boolean timedOut) {
+        this.acceptQueueDepth.decrementAndGet();
+        this.handshakesFailed.incrementAndGet();
+
+        if (timedOut) {
+            this.handshakesTimedOut.incrementAndGet();
+        }
+    }
+
+    public int getAcceptQueueDepth() {
+        return this.acceptQueueDepth.get();
+    }
+
+    public int getPeakAcceptQueueDepth() {
+        return this.peakAcceptQueueDepth.get();
+    }
+
+    public long getHandshakesCompleted() {
+        return this.handshakesCompleted.get();
+    }
+
+    public long getHandshakesFailed() {
+        return this.handshakesFailed.get();
+    }
+
+    public long getHandshakesTimedOut() {
+        return this.handshakesTimedOut.get();
+    }
+
+    /**
+     * Gets the average handshake latency.
+     * @return The average latency in milliseconds, 0 if no handshake completed yet.
+     */
+    public double getAverageHandshakeMs() {
+        long completed = this.handshakesCompleted.get();
+        return completed == 0 ? 0 : this.handshakeTotalNanos.get() / (completed * 1_000_000.0);
+    }
+
+    public double getMaxHandshakeMs() {
+        return this.handshakeMaxNanos.get() / 1_000_000.0;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Outbound queues
+     */
+
+    /**
+     * Starts tracking the outbound queue of a connection.
+     * @param connectionName The name of the connection.
+     * @param queue The outbound queue of the connection.
+     */
+    public void registerOutboundQueue(String connectionName, OutboundQueue<?> queue) {
+        this.outboundQueues.put(connectionName, queue);
+    }
+
+    /**
+     * Stops tracking the outbound queue of a closed connection.
+     * @param connectionName The name of the connection.
+     */
+    public void unregisterOutboundQueue(String connectionName) {
+        this.outboundQueues.remove(connectionName);
+    }
+
+    /**
+     * To be called when an outbound item is dropped because the queue of its connection is full.
+     */
+    public void onOutboundDropped() {
+        this.outboundDropped.incrementAndGet();
+    }
+
+    /**
+     * To be called when a connection is evicted for being a slow consumer.
+     */
+    public void onSlowConsumerEvicted() {
+        this.slowConsumersEvicted.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of items waiting to be written to a connection.
+     * @param connectionName The name of the connection.
+     * @return The depth of the outbound queue, 0 if the connection is unknown.
+     */
+    public int getOutboundQueueDepth(String connectionName) {
+        OutboundQueue<?> queue = this.outboundQueues.get(connectionName);
+        return queue == null ? 0 : queue.getDepth();
+    }
+
+    /**
+     * Gets the number of items dropped for a connection because its queue was full.
+     * @param connectionName The name of the connection.
+     * @return The number of dropped items, 0 if the connection is unknown.
+     */
+    public long getOutboundDrops(String connectionName) {
+        OutboundQueue<?> queue = this.outboundQueues.get(connectionName);
+        return queue == null ? 0 : queue.getDropped();
+    }
+
+    public long getOutboundDropped() {
+        return this.outboundDropped.get();
+    }
+
+    public long getSlowConsumersEvicted() {
+        return this.slowConsumersEvicted.get();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Serialization sessions
+     */
+
+    /**
+     * Starts tracking the serialization session of a connection using object streams.
+     * @param connectionName The name of the connection.
+     * @param session The object output stream of the connection.
+     */
+    public void registerSerializationSession(String connectionName, SessionObjectOutputStream session) {
+        this.serializationSessions.put(connectionName, session);
+    }
+
+    /**
+     * Stops tracking the serialization session of a closed connection.
+     * @param connectionName The name of the connection.
+     */
+    public void unregisterSerializationSession(String connectionName) {
+        this.serializationSessions.remove(connectionName);
+    }
+
+    /**
+     * Gets the number of objects the object output stream of a connection is keeping reachable.
+     * @param connectionName The name of the connection.
+     * @return The size of the handle table, 0 if the connection is unknown or framed.
+     */
+    public long getHandleTableSize(String connectionName) {
+        SessionObjectOutputStream session = this.serializationSessions.get(connectionName);
+        return session == null ? 0 : session.getHandleTableSize();
+    }
+
+    /**
+     * Gets the number of bytes serialized to a connection since it was opened.
+     * @param connectionName The name of the connection.
+     * @return The number of bytes, 0 if the connection is unknown or framed.
+     */
+    public long getSerializedBytes(String connectionName) {
+        SessionObjectOutputStream session = this.serializationSessions.get(connectionName);
+        return session == null ? 0 : session.getBytesWritten();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Broadcast
+     */
+
+    /**
+     * To be called when a broadcast frame is encoded for the first recipient using a codec.
+     */
+    public void onSharedFrameEncoded() {
+        this.sharedFramesEncoded.incrementAndGet();
+    }
+
+    /**
+     * To be called when a broadcast frame already encoded for another recipient is reused.
+     */
+    public void onSharedFrameReused() {
+        this.sharedFramesReused.incrementAndGet();
+    }
+
+    public long getSharedFramesEncoded() {
+        return this.sharedFramesEncoded.get();
+    }
+
+    public long getSharedFramesReused() {
+        return this.sharedFramesReused.get();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    Compression
+     */
+
+    /**
+     * To be called when a compressing codec encodes a message.
+     * @param type The type of the message.
+     * @param rawBytes The size of the payload produced by the inner codec.
+     * @param sentBytes The size of the payload actually sent.
+     * @param attempted True if the payload was over the threshold.
+     * @param compressed True if the payload has been sent compressed.
+     * @param nanos Time spent compressing.
+     */
+    public void onPayloadEncoded(MessageType type, int rawBytes, int sentBytes, boolean attempted, boolean compressed,
+                                 long nanos) {
+        CompressionStats stats = this.compressionStats.computeIfAbsent(type, t -> new CompressionStats());
+
+        stats.payloads.increment();
+        stats.rawBytes.add(rawBytes);
+        stats.sentBytes.add(sentBytes);
+
+        if (attempted) {
+            stats.attempts.increment();
+            stats.nanos.add(nanos);
+        }
+
+        if (compressed) {
+            stats.compressed.increment();
+        }
+    }
+
+    /**
+     * Gets the compression totals of a MessageType.
+     * @param type The type of the messages.
+     * @return The totals, null if no message of that type has been encoded by a compressing codec.
+     */
+    public CompressionStats getCompressionStats(MessageType type) {
+        return this.compressionStats.get(type);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /*
+    RMI pushes
+     */
+
+    /**
+     * Starts tracking the push mailbox of an RMI User.
+     * @param connectionUUID The connectionUUID of the User.
+     * @param mailbox The push mailbox of the User.
+     */
+    public void registerPushMailbox(String connectionUUID, PushDispatcher.Mailbox mailbox) {
+        this.pushMailboxes.put(connectionUUID, mailbox);
+    }
+
+    /**
+     * Stops tracking the push mailbox of a pruned RMI User.
+     * @param connectionUUID The connectionUUID of the User.
+     */
+    public void unregisterPushMailbox(String connectionUUID) {
+        this.pushMailboxes.remove(connectionUUID);
+    }
+
+    /**
+     * Gets the push mailbox of an RMI User, to read its queue depth, push latency and timeouts.
+     * @param connectionUUID The connectionUUID of the User.
+     * @return The mailbox, null if the User is unknown.
+     */
+    public PushDispatcher.Mailbox getPushMailbox(String connectionUUID) {
+        return this.pushMailboxes.get(connectionUUID);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Builds a human-readable report of all the metrics.
+     * @return The report.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("""
+                        Accept queue depth: %d (peak %d)
+                        Handshakes: %d completed, %d failed (%d timed out)
+                        Handshake latency: avg %.2f ms, max %.2f ms
+                        Outbound: %d dropped, %d slow consumers evicted
+                        Broadcast frames: %d encoded, %d reused""",
+                this.getAcceptQueueDepth(), this.getPeakAcceptQueueDepth(),
+                this.getHandshakesCompleted(), this.getHandshakesFailed(), this.getHandshakesTimedOut(),
+                this.getAverageHandshakeMs(), this.getMaxHandshakeMs(),
+                this.getOutboundDropped(), this.getSlowConsumersEvicted(),
+                this.getSharedFramesEncoded(), this.getSharedFramesReused()));
+
+        EventDispatcher events = EventDispatcher.getInstance();
+        report.append(String.format("%nController events: %d delivered, %d queued (peak mailbox depth %d), %d handler failures",
+                events.getDelivered(), events.getQueued(), events.getPeakDepth(), events.getFailures()));
+
+        if (MatchShards.isRunning()) {
+            MatchShards.getInstance().getShards().forEach(shard -> report.append(String.format(
+                    "%n  Match shard %d: %d matches, %d commands run, %d queued, %d tasks waiting",
+                    shard.getIndex(), shard.getMatches(), shard.getCommands(), shard.getQueuedCommands(),
+                    shard.getQueuedTasks())));
+        }
+
+        this.outboundQueues.forEach((connectionName, queue) -> {
+            report.append("\n  ").append(connectionName, 0, 3)
+                    .append(": depth ").append(queue.getDepth())
+                    .append(", dropped ").append(queue.getDropped());
+
+            SessionObjectOutputStream session = this.serializationSessions.get(connectionName);
+
+            if (session != null) {
+                report.append(", handles ").append(session.getHandleTableSize())
+                        .append(", bytes ").append(session.getBytesWritten())
+                        .append(" (").append(session.getResets()).append(" resets)");
+            }
+        });
+
+        this.compressionStats.forEach((type, stats) -> report.append(String.format(
+                "%n  %s: %d payloads (%d compressed), %d -> %d bytes (ratio %.2f), avg %.1f us",
+                type, stats.getPayloads(), stats.getCompressed(), stats.getRawBytes(), stats.getSentBytes(),
+                stats.getRatio(), stats.getAverageCompressMicros())));
+
+        this.pushMailboxes.forEach((connectionUUID, mailbox) -> report.append(String.format(
+                "%n  %s (RMI): depth %d, %d pushed in %d calls, latency avg %.2f ms max %.2f ms, %d timeouts, %d failures",
+                connectionUUID.substring(0, 3), mailbox.getDepth(), mailbox.getDelivered(), mailbox.getCalls(),
+                mailbox.getAverageLatencyMs(), mailbox.getMaxLatencyMs(), mailbox.getTimeouts(),
+                mailbox.getFailures())));
+
+        return report.toString();
+    }
+}
@@ -0,0 +1,303 @@
+package it.polimi.ingsw.network.nio;
+
+import it.polimi.ingsw.network.codec.WireCodec;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
+import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
+import it.polimi.ingsw.network.tcpip.OutboundQueue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Describes a single non-blocking connection handled by a {@link NioEventLoop}.
+ * It holds the partial-frame reading state, the queue of frames waiting to be written and the queue of
+ * decoded objects waiting to be dispatched to the User.
+ */
+class NioConnection {
+    /**
+     * Frames completed by a single readiness notification at most: a Client sending a lot cannot starve the other
+     * connections of its event loop. What is left is read on the next notification.
+     */
+    static final int MAX_FRAMES_PER_READ = 16;
+
+    private final String connectionUUID;
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private SelectionKey key;
+
+    /**
+     * Reading state. Only touched by the event loop thread.
+     * While payload is null the header is being read, otherwise the payload is.
+     */
+    private final ByteBuffer header;
+    private ByteBuffer payload;
+
+    /**
+     * Stage of the connection, deciding the biggest frame accepted (see {@link #maxFrameBytes()}).
+     * helloRead is only touched by the event loop thread, loggedIn is set by the worker dispatching the login.
+     */
+    private boolean helloRead;
+    private volatile boolean loggedIn;
+
+    /**
+     * Frames waiting to be written to the channel. Filled by any thread, drained by the event loop thread.
+     * It is bounded: a Client that does not read fast enough is closed as soon as a frame does not fit.
+     */
+    private final OutboundQueue<ByteBuffer> outbound;
+
+    /**
+     * Decoded objects waiting to be dispatched to the User, in arrival order.
+     * The draining flag guarantees that at most one worker at a time dispatches for this connection, so the
+     * User always observes its messages in the same order the Client sent them.
+     */
+    private final Queue<Object> inbox;
+    private final AtomicBoolean draining;
+
+    /**
+     * Codec negotiated with the Client. Null until the hello frame of the Client has been received.
+     */
+    private volatile WireCodec codec;
+
+    /**
+     * Liveness of the Client, touched by every read. Null until the connection is tracked.
+     */
+    private volatile LivenessWheel.Session liveness;
+    private final long acceptedAtNanos;
+    private final AtomicBoolean closed;
+
+    NioConnection(String connectionUUID, SocketChannel channel, NioEventLoop loop) {
+        this.connectionUUID = connectionUUID;
+        this.channel = channel;
+        this.loop = loop;
+        this.key = null;
+
+        this.header = ByteBuffer.allocate(FramedProtocol.HEADER_BYTES);
+        this.payload = null;
+        this.helloRead = false;
+        this.loggedIn = false;
+
+        this.outbound = new OutboundQueue<>();
+        this.inbox = new ConcurrentLinkedQueue<>();
+        this.draining = new AtomicBoolean(false);
+
+        this.codec = null;
+        this.liveness = null;
+        this.acceptedAtNanos = System.nanoTime();
+        this.closed = new AtomicBoolean(false);
+    }
+
+    String getConnectionUUID() {
+        return this.connectionUUID;
+    }
+
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    NioEventLoop getLoop() {
+        return this.loop;
+    }
+
+    SelectionKey getKey() {
+        return this.key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    WireCodec getCodec() {
+        return this.codec;
+    }
+
+    void setCodec(WireCodec codec) {
+        this.codec = codec;
+    }
+
+    long getAcceptedAtNanos() {
+        return this.acceptedAtNanos;
+    }
+
+    /**
+     * Starts tracking the liveness of the Client on the {@link LivenessWheel}.
+     * @param timeoutMs The time after which a Client that does not speak nor send heartbeat is considered lost.
+     * @param onExpiry Called when the Client is considered lost.
+     */
+    void trackLiveness(long timeoutMs, Runnable onExpiry) {
+        this.liveness = LivenessWheel.getInstance().track(timeoutMs, onExpiry);
+    }
+
+    Boolean isClosed() {
+        return this.closed.get();
+    }
+
+    Queue<Object> getInbox() {
+        return this.inbox;
+    }
+
+    AtomicBoolean getDraining() {
+        return this.draining;
+    }
+
+    Boolean isLoggedIn() {
+        return this.loggedIn;
+    }
+
+    /**
+     * Records that the User of the connection has a username: from now on frames up to
+     * {@link FramedProtocol#MAX_FRAME_BYTES} are accepted.
+     */
+    void setLoggedIn() {
+        this.loggedIn = true;
+    }
+
+    /**
+     * @return The biggest frame accepted at the current stage of the connection: the hello, then the login, then
+     * any message.
+     */
+    private int maxFrameBytes() {
+        if (!this.helloRead) {
+            return FramedProtocol.MAX_HELLO_BYTES;
+        }
+
+        return this.loggedIn ? FramedProtocol.MAX_FRAME_BYTES : FramedProtocol.MAX_LOGIN_FRAME_BYTES;
+    }
+
+    /**
+     * Appends a raw frame (header included) to the outbound queue and asks the event loop to flush it.
+     * @param frame The frame to write.
+     * @return True if the frame has been enqueued, false if it has been dropped because the queue is full.
+     * @throws InvalidTCPConnectionException If the connection is already closed.
+     */
+    Boolean enqueue(ByteBuffer frame) throws InvalidTCPConnectionException {
+        if (this.closed.get()) {
+            throw new InvalidTCPConnectionException("The used TCP connection may be invalid.");
+        }
+
+        if (!this.outbound.offer(frame)) {
+            return false;
+        }
+
+        this.loop.requestWrite(this);
+        return true;
+    }
+
+    /**
+     * Encodes a payload into a frame and enqueues it.
+     * @param payload The payload to send.
+     * @return True if the frame has been enqueued, false if it has been dropped because the queue is full.
+     * @throws InvalidTCPConnectionException If the connection is already closed.
+     */
+    Boolean enqueuePayload(byte[] payload) throws InvalidTCPConnectionException {
+        return this.enqueue(ByteBuffer.wrap(FramedProtocol.frame(payload)));
+    }
+
+    /**
+     * Reads what is available on the channel and returns the completed payloads, at most
+     * {@value #MAX_FRAMES_PER_READ} of them.
+     * To be called by the event loop thread only.
+     * @return The payloads completed by this read, possibly empty.
+     * @throws IOException If the channel reached end-of-stream or failed.
+     * @throws InvalidTCPConnectionException If the Client violated the framing.
+     */
+    List<byte[]> readFrames() throws IOException, InvalidTCPConnectionException {
+        List<byte[]> completed = new ArrayList<>();
+
+        while (completed.size() < MAX_FRAMES_PER_READ) {
+            ByteBuffer target = this.payload == null ? this.header : this.payload;
+            int read = this.channel.read(target);
+
+            if (read < 0) {
+                throw new IOException("End of stream reached.");
+            }
+
+            LivenessWheel.Session session = this.liveness;
+            if (read > 0 && session != null) {
+                session.touch();
+            }
+
+            if (target.hasRemaining()) {
+                // Nothing more to read for now: wait for the next readiness notification
+                return completed;
+            }
+
+            if (this.payload == null) {
+                // Header completed: allocate the payload
+                this.header.flip();
+                int length = this.header.getInt();
+                this.header.clear();
+
+                FramedProtocol.checkFrameLength(length, this.maxFrameBytes());
+                this.payload = ByteBuffer.allocate(length);
+            } else {
+                // Payload completed
+                completed.add(this.payload.array());
+                this.payload = null;
+                this.helloRead = true;
+            }
+        }
+
+        // The channel may still hold data: being level-triggered, the selector notifies it again right away
+        return completed;
+    }
+
+    OutboundQueue<ByteBuffer> getOutbound() {
+        return this.outbound;
+    }
+
+    /**
+     * Writes as many queued frames as the channel accepts.
+     * To be called by the event loop thread only.
+     * @return True if the outbound queue has been fully flushed, false if the channel is full.
+     * @throws IOException If the channel failed.
+     */
+    Boolean flush() throws IOException {
+        ByteBuffer frame;
+
+        while ((frame = this.outbound.peek()) != null) {
+            this.channel.write(frame);
+
+            if (frame.hasRemaining()) {
+                return false;
+            }
+
+            this.outbound.poll();
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the connection.
+     * The method is silent: no exception is thrown if the closing procedure fails.
+     * @return True if this call actually closed the connection, false if it was already closed.
+     */
+    Boolean silentClose() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return false;
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException ignored) {
+            // Nothing to handle: the connection is gone anyway
+        }
+
+        LivenessWheel.Session session = this.liveness;
+        if (session != null) {
+            session.cancel();
+        }
+
+        this.outbound.close();
+        this.inbox.clear();
+        return true;
+    }
+}
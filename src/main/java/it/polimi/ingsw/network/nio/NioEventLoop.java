@@ -0,0 +1,223 @@
+package it.polimi.ingsw.network.nio;
+
+import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
+import it.polimi.ingsw.network.tcpip.Server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A Thread owning a Selector and multiplexing many {@link NioConnection}s.
+ * All the channel reads and writes happen on this thread; other threads only enqueue work and wake the
+ * selector up.
+ */
+class NioEventLoop extends Thread {
+    /**
+     * Upper bound of a single select: idle connections are checked at least this often.
+     */
+    private static final long SELECT_TIMEOUT_MS = 500;
+
+    private final NioServer server;
+    private final Selector selector;
+
+    /**
+     * Connections waiting to be registered to the selector.
+     */
+    private final Queue<NioConnection> pendingRegistrations;
+
+    /**
+     * Connections that have frames to be written. A set is used so that many sends towards the same
+     * connection between two selects only cause one interest update.
+     */
+    private final Set<NioConnection> pendingWrites;
+
+    /**
+     * Connections currently registered to this loop.
+     */
+    private final Set<NioConnection> connections;
+
+    NioEventLoop(NioServer server, Integer index) throws IOException {
+        super("nio-event-loop-" + index);
+        this.setDaemon(true);
+
+        this.server = server;
+        this.selector = Selector.open();
+
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.pendingWrites = ConcurrentHashMap.newKeySet();
+        this.connections = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Hands a connection over to this loop.
+     * @param connection The connection to register.
+     */
+    void register(NioConnection connection) {
+        this.pendingRegistrations.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Asks the loop to flush the outbound queue of a connection.
+     * @param connection The connection with something to write.
+     */
+    void requestWrite(NioConnection connection) {
+        if (this.pendingWrites.add(connection)) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Gets the number of connections handled by this loop.
+     * @return The number of connections.
+     */
+    int getConnectionCount() {
+        return this.connections.size();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                this.selector.select(SELECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                Logger.logError("Selector failure in " + this.getName() + ": " + e.getMessage());
+                continue;
+            }
+
+            this.processRegistrations();
+            this.processWriteRequests();
+
+            Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                NioConnection connection = (NioConnection) key.attachment();
+
+                if (!key.isValid()) {
+                    this.drop(connection);
+                    continue;
+                }
+
+                try {
+                    if (key.isReadable()) {
+                        this.onReadable(connection);
+                    }
+
+                    if (key.isValid() && key.isWritable()) {
+                        this.onWritable(connection);
+                    }
+                } catch (IOException | InvalidTCPConnectionException e) {
+                    // The Client went away (gracefully or not) or spoke garbage: either way it is lost
+                    this.drop(connection);
+                }
+            }
+
+            this.pruneIdle();
+        }
+    }
+
+    private void processRegistrations() {
+        NioConnection connection;
+
+        while ((connection = this.pendingRegistrations.poll()) != null) {
+            try {
+                connection.setKey(connection.getChannel().register(this.selector, SelectionKey.OP_READ, connection));
+                this.connections.add(connection);
+
+                // The preamble may have been queued before the key existed
+                this.pendingWrites.add(connection);
+            } catch (ClosedChannelException e) {
+                this.drop(connection);
+            }
+        }
+    }
+
+    private void processWriteRequests() {
+        Iterator<NioConnection> iterator = this.pendingWrites.iterator();
+
+        while (iterator.hasNext()) {
+            NioConnection connection = iterator.next();
+            iterator.remove();
+
+            if (connection.getKey() == null || !connection.getKey().isValid()) {
+                continue;
+            }
+
+            try {
+                this.onWritable(connection);
+            } catch (IOException e) {
+                this.drop(connection);
+            }
+        }
+    }
+
+    private void onReadable(NioConnection connection) throws IOException, InvalidTCPConnectionException {
+        List<byte[]> frames = connection.readFrames();
+
+        for (byte[] frame : frames) {
+            this.server.onFrame(connection, frame);
+        }
+    }
+
+    private void onWritable(NioConnection connection) throws IOException {
+        SelectionKey key = connection.getKey();
+
+        if (connection.flush()) {
+            // Everything written: stop being notified about writability
+            key.interestOps(SelectionKey.OP_READ);
+        } else {
+            // The socket buffer is full: resume when the channel drains
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * A Client that has not completed its handshake is only given Server.HANDSHAKE_TIMEOUT_MS milliseconds from
+     * the accept. A Client whose outbound queue stayed over its high watermark for too long is evicted as a slow
+     * consumer. Heartbeats are not checked here: the liveness of every connection is tracked by the
+     * {@link it.polimi.ingsw.network.liveness.LivenessWheel}.
+     */
+    private void pruneIdle() {
+        long now = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+
+        for (NioConnection connection : this.connections) {
+            if (connection.getCodec() == null) {
+                if (nowNanos - connection.getAcceptedAtNanos() > Server.HANDSHAKE_TIMEOUT_MS * 1_000_000L) {
+                    this.drop(connection);
+                }
+            } else if (connection.getOutbound().mustEvict(now)) {
+                Logger.logWarning("Evicting slow consumer " + connection.getConnectionUUID().substring(0, 3) + ".");
+                ServerMetrics.getInstance().onSlowConsumerEvicted();
+                this.drop(connection);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking a connection that has been closed from outside the loop.
+     * @param connection The closed connection.
+     */
+    void forget(NioConnection connection) {
+        this.connections.remove(connection);
+        this.pendingWrites.remove(connection);
+    }
+
+    private void drop(NioConnection connection) {
+        this.forget(connection);
+        this.server.onConnectionLost(connection);
+    }
+}
@@ -0,0 +1,369 @@
+package it.polimi.ingsw.network.nio;
+
+import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.Profiles;
+import it.polimi.ingsw.network.ProfilesException;
+import it.polimi.ingsw.network.codec.Codecs;
+import it.polimi.ingsw.network.codec.WireCodec;
+import it.polimi.ingsw.network.liveloop.User;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.tcpip.*;
+import it.polimi.ingsw.util.ServerThreads;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Describes a selector-based TCPIP server.
+ * Instead of dedicating a blocked ListenLoop thread to every connection, a small fixed set of
+ * {@link NioEventLoop}s multiplexes all the connections and a bounded worker pool runs the Users' reactions.
+ * It speaks the {@link FramedProtocol}.
+ * Is a singleton.
+ */
+public class NioServer extends Thread implements ServerTransport {
+    private static NioServer instance;
+
+    private NioServer(Integer port, Integer heartbeatMs, Integer eventLoops, Integer workers) throws ServerException {
+        super("nio-acceptor");
+
+        if (port < 0 || port > 65353) {
+            throw new ServerException("Invalid value specified for 'port'. Valid range: from 0 to 65353.");
+        }
+
+        if (eventLoops < 1 || workers < 1) {
+            throw new ServerException("At least one event loop and one worker are required.");
+        }
+
+        this.port = port;
+        this.heartbeatMs = heartbeatMs;
+        this.connections = new ConcurrentHashMap<>();
+        this.nextLoop = new AtomicInteger(0);
+
+        try {
+            // Creating the welcome channel. Accepting is kept blocking: only the accepted channels are multiplexed
+            this.welcomeChannel = ServerSocketChannel.open();
+            this.welcomeChannel.bind(new InetSocketAddress(this.port));
+
+            this.eventLoops = new NioEventLoop[eventLoops];
+            for (int i = 0; i < eventLoops; i++) {
+                this.eventLoops[i] = new NioEventLoop(this, i);
+            }
+        } catch (IOException e) {
+            // Server cannot be started. The server won't work. Stopping execution.
+            throw new ServerCriticalError("The server could not be started");
+        }
+
+        // The workers run the Users' reactions: they follow the thread mode of the Server and are counted with the
+        // other Server threads. The acceptor and the event loops stay platform threads, each pinned to a selector
+        this.workers = Executors.newFixedThreadPool(workers, ServerThreads.factory());
+    }
+
+    public static NioServer getInstance(Integer port, Integer heartbeatMs) throws ServerException {
+        if (instance == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            instance = new NioServer(port, heartbeatMs, Math.max(1, cores / 2), Math.max(2, cores));
+        }
+        return instance;
+    }
+
+    public static NioServer getInstance(Integer port) throws ServerException {
+        return getInstance(port, Profiles.DEFAULT_HEARTBEAT_MS);
+    }
+
+    public static NioServer getInstance() throws ServerException {
+        if (instance == null) {
+            throw new ServerException("The server must be initialized with a port.");
+        }
+        return instance;
+    }
+
+    /* Start of the class implementation */
+    private final Integer port;
+    private final Integer heartbeatMs;
+    private final ServerSocketChannel welcomeChannel;
+    private final NioEventLoop[] eventLoops;
+    private final AtomicInteger nextLoop;
+
+    /**
+     * Pool running the Users' reactions, so that a slow controller call never stalls an event loop.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Live connections, by connectionUUID.
+     */
+    private final Map<String, NioConnection> connections;
+
+    /**
+     * Starts the event loops and keeps on accepting new connections.
+     */
+    @Override
+    public void run() {
+        for (NioEventLoop loop : this.eventLoops) {
+            loop.start();
+        }
+
+        while (true) {
+            // Generate a new UUID for the upcoming new connection
+            String connectionUUID = UUID.randomUUID().toString();
+            boolean accepted = false;
+
+            try {
+                // This suspends the thread until a new connection is established
+                SocketChannel channel = this.welcomeChannel.accept();
+                ServerMetrics.getInstance().onAccepted();
+                accepted = true;
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                NioEventLoop loop = this.eventLoops[Math.floorMod(this.nextLoop.getAndIncrement(), this.eventLoops.length)];
+                NioConnection connection = new NioConnection(connectionUUID, channel, loop);
+                this.connections.put(connectionUUID, connection);
+                ServerMetrics.getInstance().registerOutboundQueue(connectionUUID, connection.getOutbound());
+
+                // The framed Server speaks first, so the Client can tell it from the legacy one
+                ByteBuffer preamble = ByteBuffer.allocate(FramedProtocol.HEADER_BYTES);
+                preamble.putInt(FramedProtocol.MAGIC);
+                preamble.flip();
+                connection.enqueue(preamble);
+
+                // Connection established. Welcome to the new Client!
+                // The User must exist before the first frame can be read
+                Profiles.getInstance().createUser(connectionUUID);
+
+                // A Client that does not speak nor send heartbeat within heartbeatMs is considered lost
+                connection.trackLiveness(this.heartbeatMs, () -> {
+                    connection.getLoop().forget(connection);
+                    this.onConnectionLost(connection);
+                });
+                loop.register(connection);
+
+                Logger.logInfo("New user connected: " + connectionUUID.substring(0, 3));
+            } catch (IOException | InvalidTCPConnectionException e) {
+                this.silentClose(connectionUUID);
+
+                if (accepted) {
+                    ServerMetrics.getInstance().onHandshakeFailed(false);
+                }
+
+                Logger.logError("An IOException occurred while trying to connect a new user to the server with proposed connectionUUID " + connectionUUID.substring(0, 3) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Called by an event loop when a full frame has been received.
+     * @param connection The connection the frame belongs to.
+     * @param payload The payload of the frame.
+     * The first frame of every connection is the hello of the Client, used to negotiate the codec.
+     * @throws InvalidTCPConnectionException If the payload cannot be decoded.
+     */
+    void onFrame(NioConnection connection, byte[] payload) throws InvalidTCPConnectionException {
+        WireCodec codec = connection.getCodec();
+
+        if (codec == null) {
+            codec = Codecs.choose(payload);
+            connection.setCodec(codec);
+            connection.enqueuePayload(new byte[]{codec.getId()});
+
+            ServerMetrics.getInstance().onHandshakeCompleted(System.nanoTime() - connection.getAcceptedAtNanos());
+            return;
+        }
+
+        Object read;
+
+        try {
+            read = codec.decodeFromClient(payload);
+        } catch (IOException e) {
+            throw new InvalidTCPConnectionException("The used TCP connection may be invalid or the object could not be read.");
+        }
+
+        if (read instanceof Heartbeat) {
+            // Heartbeats are answered right away, they never need a worker
+            HeartbeatSenser.sense(connection.getConnectionUUID());
+            return;
+        }
+
+        connection.getInbox().add(read);
+        this.scheduleDrain(connection);
+    }
+
+    /**
+     * Makes sure a worker is dispatching the inbox of the connection.
+     * At most one worker drains a given connection at a time.
+     * @param connection The connection to drain.
+     */
+    private void scheduleDrain(NioConnection connection) {
+        if (connection.getDraining().compareAndSet(false, true)) {
+            this.workers.execute(() -> this.drain(connection));
+        }
+    }
+
+    private void drain(NioConnection connection) {
+        Object read;
+
+        try {
+            while ((read = connection.getInbox().poll()) != null) {
+                Message message = (Message) read;
+                Logger.logInfo("Received message: " + message.getType());
+
+                User user = Profiles.getInstance().getUserByConnectionUUID(connection.getConnectionUUID());
+                user.react(message);
+
+                if (!connection.isLoggedIn() && user.getUsername() != null) {
+                    connection.setLoggedIn();
+                }
+            }
+        } catch (ProfilesException | ClassCastException e) {
+            // Not finding the User or receiving something that is not a Message: the connection can no
+            // longer be trusted. Safely deallocate User resources.
+            Profiles.getInstance().silentPruneUser(connection.getConnectionUUID(), false);
+        } finally {
+            connection.getDraining().set(false);
+        }
+
+        // Something may have arrived between the last poll and the release of the flag
+        if (!connection.getInbox().isEmpty() && !connection.isClosed()) {
+            this.scheduleDrain(connection);
+        }
+    }
+
+    /**
+     * Called by an event loop when a connection is lost (end-of-stream, failure, bad framing or heartbeat timeout).
+     * @param connection The lost connection.
+     */
+    void onConnectionLost(NioConnection connection) {
+        if (connection.silentClose()) {
+            this.connections.remove(connection.getConnectionUUID(), connection);
+            ServerMetrics.getInstance().unregisterOutboundQueue(connection.getConnectionUUID());
+
+            if (connection.getCodec() == null) {
+                long elapsedNanos = System.nanoTime() - connection.getAcceptedAtNanos();
+                ServerMetrics.getInstance().onHandshakeFailed(elapsedNanos > Server.HANDSHAKE_TIMEOUT_MS * 1_000_000L);
+            }
+
+            // Pruning touches the controllers and may block: never do it on an event loop
+            this.workers.execute(() -> Profiles.getInstance().silentPruneUser(connection.getConnectionUUID(), false));
+        }
+    }
+
+    @Override
+    public void sendSerializableObject(String connectionName, Object serializableObjectToSend)
+            throws ServerException, InvalidTCPConnectionException {
+        NioConnection connection = this.connections.get(connectionName);
+
+        if (connection == null) {
+            throw new ServerException("No connection is associated with the specified connectionName.");
+        }
+
+        WireCodec codec = connection.getCodec();
+
+        if (codec == null) {
+            throw new ServerException("The codec of the connection has not been negotiated yet.");
+        }
+
+        byte[] payload;
+
+        try {
+            payload = codec.encode(serializableObjectToSend);
+        } catch (IOException e) {
+            throw new InvalidTCPConnectionException("The object could not be serialized: " + e.getMessage());
+        }
+
+        if (!connection.enqueuePayload(payload)) {
+            this.closeFull(connectionName);
+        }
+    }
+
+    @Override
+    public void sendSharedFrame(String connectionName, SharedFrame frame)
+            throws ServerException, InvalidTCPConnectionException {
+        NioConnection connection = this.connections.get(connectionName);
+
+        if (connection == null) {
+            throw new ServerException("No connection is associated with the specified connectionName.");
+        }
+
+        WireCodec codec = connection.getCodec();
+
+        if (codec == null) {
+            throw new ServerException("The codec of the connection has not been negotiated yet.");
+        }
+
+        byte[] bytes;
+
+        try {
+            bytes = frame.getFrame(codec);
+        } catch (IOException e) {
+            throw new InvalidTCPConnectionException("The object could not be serialized: " + e.getMessage());
+        }
+
+        // Every recipient gets its own buffer (and position) over the same bytes: nothing is copied
+        if (!connection.enqueue(ByteBuffer.wrap(bytes))) {
+            this.closeFull(connectionName);
+        }
+    }
+
+    /**
+     * Closes a connection whose outbound queue is full. The frame that did not fit cannot just be skipped: it may be
+     * the reply the Client is waiting for, or an event its replica needs, and the rest of the stream would go on
+     * without it. The caller prunes the User.
+     * @param connectionName The name of the connection.
+     * @throws InvalidTCPConnectionException Always, since the connection has been closed.
+     */
+    private void closeFull(String connectionName) throws InvalidTCPConnectionException {
+        Logger.logWarning("Closing slow consumer " + connectionName.substring(0, 3) + ": its outbound queue is full.");
+        ServerMetrics.getInstance().onOutboundDropped();
+        ServerMetrics.getInstance().onSlowConsumerEvicted();
+        this.silentClose(connectionName);
+
+        throw new InvalidTCPConnectionException("The outbound queue of the connection is full.");
+    }
+
+    @Override
+    public void silentClose(String connectionName) {
+        NioConnection connection = this.connections.remove(connectionName);
+
+        if (connection != null) {
+            ServerMetrics.getInstance().unregisterOutboundQueue(connectionName);
+            connection.silentClose();
+            connection.getLoop().forget(connection);
+        }
+    }
+
+    @Override
+    public Boolean needsListenLoop() {
+        return false;
+    }
+
+    /**
+     * The selector-based Server only speaks the framed protocol.
+     * @return Always true.
+     */
+    @Override
+    public Boolean speaksFramed() {
+        return true;
+    }
+
+    public Integer getPort() {
+        return this.port;
+    }
+
+    /**
+     * Gets the number of live connections.
+     * @return The number of live connections.
+     */
+    public Integer getConnectionCount() {
+        return this.connections.size();
+    }
+}
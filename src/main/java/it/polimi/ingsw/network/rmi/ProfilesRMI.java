@@ -1,6 +1,5 @@
 package it.polimi.ingsw.network.rmi;
 
-import java.net.MalformedURLException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 
@@ -10,8 +9,8 @@ import java.rmi.RemoteException;
 public interface ProfilesRMI extends Remote {
     /**
      * Create a user in an RMI communication.
+     * @return the remote reference to the User of the calling Client, private to its session
      * @throws RemoteException if something goes wrong with the RMI communication
-     * @throws MalformedURLException if something goes wrong with the RMI communication
      */
-    void createUserRMI() throws RemoteException, MalformedURLException;
+    UserStubRMI createUserRMI() throws RemoteException;
 }
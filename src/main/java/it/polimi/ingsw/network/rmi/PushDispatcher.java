@@ -0,0 +1,370 @@
+package it.polimi.ingsw.network.rmi;
+
+import it.polimi.ingsw.client.network.rmi.PushServiceOfClientRMI;
+import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.messages.servertoclient.EventBatchMessage;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.network.tcpip.InvalidTCPConnectionException;
+import it.polimi.ingsw.network.tcpip.OutboundQueue;
+import it.polimi.ingsw.util.ServerThreads;
+
+import java.net.SocketTimeoutException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the events pushed to the RMI Clients.
+ * <p>
+ * Every {@link UserStub} has its own {@link Mailbox}: pushing only enqueues the event and returns, the remote call
+ * to the {@link PushServiceOfClientRMI} is made later by one of the few threads of a pool shared by the whole
+ * Server. At most one thread at a time drains a mailbox, so every Client receives its events in the order they
+ * have been pushed; a slow Client only delays itself, never the GameController broadcasting to everyone.
+ * <p>
+ * The Messages queued for a Client are coalesced: all the ones waiting when a thread gets to the mailbox (e.g. the
+ * events of a whole game command, or the ones pushed while the previous call was in flight) are delivered with a
+ * single {@link PushServiceOfClientRMI#pushEvents(List)} call.
+ * <p>
+ * A push that does not complete within the push timeout fails, like any other failed push: the mailbox is then
+ * closed, since a Client that missed an event cannot be trusted to have a consistent view anymore, and the Client
+ * is left to the liveness checks. The timeout is the RMI response timeout of the process, so it also bounds the
+ * time a pool thread can be held by an unresponsive Client.
+ * It is a singleton.
+ */
+public final class PushDispatcher {
+    public static final long DEFAULT_PUSH_TIMEOUT_MS = 5000;
+
+    /**
+     * Maximum number of remote calls a thread makes to the same Client before giving the other Clients a turn.
+     */
+    private static final int DRAIN_BATCH = 16;
+
+    /**
+     * Maximum number of queued pushes delivered with a single remote call.
+     */
+    private static final int MAX_COALESCED = 64;
+
+    private static PushDispatcher instance;
+
+    private static int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static long pushTimeoutMs = DEFAULT_PUSH_TIMEOUT_MS;
+
+    /**
+     * Sets the number of delivering threads and the push timeout. To be called at startup, before RMI is used
+     * for the first time: the RMI runtime reads its response timeout only once.
+     * @param threads The number of threads delivering the events of every Client.
+     * @param timeoutMs The time after which a push that has not been acknowledged by its Client fails.
+     * @throws IllegalStateException If the dispatcher is already running.
+     */
+    public static synchronized void configure(int threads, long timeoutMs) {
+        if (instance != null) {
+            throw new IllegalStateException("The push dispatcher is already running.");
+        }
+
+        if (threads <= 0 || timeoutMs <= 0) {
+            throw new IllegalArgumentException("The threads and the push timeout must be positive.");
+        }
+
+        poolSize = threads;
+        pushTimeoutMs = timeoutMs;
+        System.setProperty("sun.rmi.transport.tcp.responseTimeout", Long.toString(timeoutMs));
+    }
+
+    public static synchronized PushDispatcher getInstance() {
+        if (instance == null) {
+            instance = new PushDispatcher(poolSize);
+        }
+        return instance;
+    }
+
+    /**
+     * An event waiting to be delivered.
+     * @param event The event.
+     * @param done Completed once the Client has received the event, or when delivering it has failed.
+     * @param enqueuedAtNanos When the event has been pushed.
+     */
+    private record Push(Object event, CompletableFuture<Void> done, long enqueuedAtNanos) {
+    }
+
+    /**
+     * The ordered queue of the events to be delivered to a single Client, along with its statistics.
+     */
+    public final class Mailbox {
+        private final String connectionUUID;
+        private final OutboundQueue<Push> queue;
+        private final AtomicBoolean draining;
+        private final AtomicBoolean closed;
+        private volatile PushServiceOfClientRMI pushService;
+
+        private final LongAdder delivered;
+        private final LongAdder calls;
+        private final LongAdder latencyNanos;
+        private final AtomicLong maxLatencyNanos;
+        private final LongAdder timeouts;
+        private final LongAdder failures;
+
+        private Mailbox(String connectionUUID) {
+            this.connectionUUID = connectionUUID;
+            this.queue = new OutboundQueue<>();
+            this.draining = new AtomicBoolean(false);
+            this.closed = new AtomicBoolean(false);
+            this.pushService = null;
+
+            this.delivered = new LongAdder();
+            this.calls = new LongAdder();
+            this.latencyNanos = new LongAdder();
+            this.maxLatencyNanos = new AtomicLong(0);
+            this.timeouts = new LongAdder();
+            this.failures = new LongAdder();
+        }
+
+        /**
+         * Sets the push service events are delivered to. Events pushed before are delivered once it is set.
+         * @param pushService The push service of the Client.
+         */
+        void setPushService(PushServiceOfClientRMI pushService) {
+            this.pushService = pushService;
+            this.schedule();
+        }
+
+        /**
+         * Enqueues an event for the Client, without ever blocking.
+         * @param event The event to deliver.
+         * @return A future completed once the Client has received the event; completed exceptionally with a
+         * RemoteException if the event could not be delivered.
+         * @throws RemoteException If the mailbox is closed, since an earlier push already failed.
+         */
+        public CompletableFuture<Void> push(Object event) throws RemoteException {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+
+            try {
+                if (!this.queue.offer(new Push(event, done, System.nanoTime()))) {
+                    ServerMetrics.getInstance().onOutboundDropped();
+                    done.completeExceptionally(new RemoteException("The mailbox of the Client is full."));
+                    return done;
+                }
+            } catch (InvalidTCPConnectionException e) {
+                throw new RemoteException("The push service of the Client is no longer reachable.");
+            }
+
+            if (this.queue.mustEvict(System.currentTimeMillis())) {
+                Logger.logWarning("Evicting slow RMI consumer " + this.connectionUUID.substring(0, 3) + ".");
+                ServerMetrics.getInstance().onSlowConsumerEvicted();
+                this.close();
+            } else {
+                this.schedule();
+            }
+
+            return done;
+        }
+
+        /**
+         * Closes the mailbox: the events still queued fail and further pushes are rejected.
+         */
+        public void close() {
+            if (!this.closed.compareAndSet(false, true)) {
+                return;
+            }
+
+            Push push;
+            while ((push = this.queue.poll()) != null) {
+                push.done().completeExceptionally(new RemoteException("The mailbox of the Client has been closed."));
+            }
+
+            this.queue.close();
+        }
+
+        private void schedule() {
+            if (this.pushService != null && this.queue.peek() != null && this.draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Makes up to DRAIN_BATCH remote calls, then hands the mailbox back to the pool if more are waiting.
+         */
+        private void drain() {
+            try {
+                for (int i = 0; i < DRAIN_BATCH && !this.closed.get(); i++) {
+                    List<Push> run = this.pollRun();
+
+                    if (run.isEmpty()) {
+                        break;
+                    }
+
+                    this.deliver(run);
+                }
+            } finally {
+                this.draining.set(false);
+            }
+
+            // Pushed while the draining flag was still set: nobody else would schedule them
+            this.schedule();
+        }
+
+        /**
+         * Removes the pushes to be delivered with the next remote call: a single push that is not a Message
+         * (e.g. a Sense), or as many consecutive Messages as are queued, up to MAX_COALESCED.
+         * Everything pushed while the previous call was in flight thus travels in one call.
+         * @return The pushes, empty if the mailbox is empty.
+         */
+        private List<Push> pollRun() {
+            List<Push> run = new ArrayList<>();
+            Push next;
+
+            while (run.size() < MAX_COALESCED && (next = this.queue.peek()) != null) {
+                boolean message = next.event() instanceof Message;
+
+                if (!message && !run.isEmpty()) {
+                    break;
+                }
+
+                Push polled = this.queue.poll();
+
+                if (polled == null) {
+                    // Closed in the meantime
+                    break;
+                }
+
+                run.add(polled);
+
+                if (!message) {
+                    break;
+                }
+            }
+
+            return run;
+        }
+
+        private void deliver(List<Push> run) {
+            try {
+                if (run.size() == 1) {
+                    this.pushService.pushEvent(run.get(0).event());
+                } else {
+                    List<Message> messages = new ArrayList<>();
+
+                    for (Push push : run) {
+                        if (push.event() instanceof EventBatchMessage batch) {
+                            messages.addAll(batch.getMessages());
+                        } else {
+                            messages.add((Message) push.event());
+                        }
+                    }
+
+                    this.pushService.pushEvents(messages);
+                }
+            } catch (RemoteException e) {
+                // Usually this means that the Client's registered push service has become invalid or too slow.
+                // Later events cannot be delivered without these ones: closing and letting the liveness checks
+                // prune the Client.
+                if (isTimeout(e)) {
+                    this.timeouts.increment();
+                }
+
+                this.failures.increment();
+                run.forEach(push -> push.done().completeExceptionally(e));
+                this.close();
+                return;
+            }
+
+            long now = System.nanoTime();
+            this.calls.increment();
+
+            for (Push push : run) {
+                long latency = now - push.enqueuedAtNanos();
+                this.delivered.increment();
+                this.latencyNanos.add(latency);
+                this.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                push.done().complete(null);
+            }
+        }
+
+        public int getDepth() {
+            return this.queue.getDepth();
+        }
+
+        /**
+         * @return The number of remote calls made to deliver the pushes: lower than the pushes when coalescing.
+         */
+        public long getCalls() {
+            return this.calls.sum();
+        }
+
+        public long getDelivered() {
+            return this.delivered.sum();
+        }
+
+        /**
+         * @return The average time between pushing an event and the Client acknowledging it, in milliseconds.
+         */
+        public double getAverageLatencyMs() {
+            long delivered = this.getDelivered();
+            return delivered == 0 ? 0 : this.latencyNanos.sum() / (delivered * 1_000_000.0);
+        }
+
+        public double getMaxLatencyMs() {
+            return this.maxLatencyNanos.get() / 1_000_000.0;
+        }
+
+        public long getTimeouts() {
+            return this.timeouts.sum();
+        }
+
+        public long getFailures() {
+            return this.failures.sum();
+        }
+
+        public long getDropped() {
+            return this.queue.getDropped();
+        }
+    }
+
+    /* Start of the class implementation */
+    private final ExecutorService executor;
+
+    private PushDispatcher(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads, ServerThreads.factory());
+    }
+
+    /**
+     * Creates the mailbox of a Client, tracked by the {@link ServerMetrics} until it is released.
+     * @param connectionUUID The connectionUUID of the User of the Client.
+     * @return The new mailbox.
+     */
+    public Mailbox openMailbox(String connectionUUID) {
+        Mailbox mailbox = new Mailbox(connectionUUID);
+        ServerMetrics.getInstance().registerPushMailbox(connectionUUID, mailbox);
+        return mailbox;
+    }
+
+    /**
+     * Closes the mailbox of a Client and stops tracking it.
+     * @param connectionUUID The connectionUUID of the User of the Client.
+     * @param mailbox The mailbox.
+     */
+    public void releaseMailbox(String connectionUUID, Mailbox mailbox) {
+        mailbox.close();
+        ServerMetrics.getInstance().unregisterPushMailbox(connectionUUID);
+    }
+
+    public long getPushTimeoutMs() {
+        return pushTimeoutMs;
+    }
+
+    private static boolean isTimeout(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
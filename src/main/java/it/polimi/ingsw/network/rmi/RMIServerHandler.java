@@ -80,7 +80,7 @@ public class RMIServerHandler {
     }
 
     /**
-     * Export an object using RMI.
+     * Export an object using RMI, with the sockets of {@link TunedSocketFactory#getConfigured()}.
      *
      * @param obj the object to export. The object must implement the Remote interface.
      * @throws RemoteException       if the registry has not been created yet
@@ -93,12 +93,46 @@ public class RMIServerHandler {
         }
 
         // Export the object
-        Remote stub = UnicastRemoteObject.exportObject(obj, 0);
+        TunedSocketFactory factory = TunedSocketFactory.getConfigured();
+        Remote stub = UnicastRemoteObject.exportObject(obj, 0, factory, factory);
 
         // Bind the object to the registry
         Naming.rebind("rmi://localhost:" + currentPort + "/" + name, obj);
     }
 
+    /**
+     * Export an object using RMI, without binding it to the registry.
+     * Used for per-session objects: the caller hands the returned stub to its Client directly, so that no registry
+     * name is shared between sessions.
+     * The sockets of {@link TunedSocketFactory#getConfigured()} are used.
+     *
+     * @param obj the object to export. The object must implement the Remote interface.
+     * @return the stub of the object. The caller will have to cast the stub appropriately.
+     * @throws RemoteException if the registry has not been created yet
+     * @throws RemoteException if the object could not be exported
+     */
+    public static Remote exportUnboundObject(Remote obj) throws RemoteException {
+        if (!registryCreated) {
+            throw new RemoteException("Registry has not been created yet.");
+        }
+
+        TunedSocketFactory factory = TunedSocketFactory.getConfigured();
+        return UnicastRemoteObject.exportObject(obj, 0, factory, factory);
+    }
+
+    /**
+     * Unexport an object exported with exportUnboundObject.
+     *
+     * @param obj the exported object
+     * @param force if true, unexports the object even if there are pending calls;
+     *              if false, only unexports the object if there are no pending calls
+     * @return true if the object was unexported successfully, false otherwise
+     * @throws RemoteException if the object is not exported
+     */
+    public static Boolean unexportObject(Remote obj, Boolean force) throws RemoteException {
+        return UnicastRemoteObject.unexportObject(obj, force);
+    }
+
     /**
      * Unexport an already exported object using RMI.
      *
@@ -0,0 +1,178 @@
+package it.polimi.ingsw.network.rmi;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Socket factory used to export the RMI objects of the game (the Profiles, every UserStub and the push service of
+ * every Client) instead of the default RMI sockets.
+ * <ul>
+ *     <li>TCP_NODELAY is always set: most calls (heartbeat, pushEvent, the game commands) are a few hundred bytes,
+ *     which Nagle's algorithm would hold back waiting for the acknowledgement of the previous segment.</li>
+ *     <li>The socket send and receive buffers can be sized explicitly; 0 keeps the ones of the operating system,
+ *     which usually tunes them on its own.</li>
+ *     <li>Optionally, both directions are deflated. Each call is flushed as a whole (sync flush), so the other
+ *     side can unmarshal it right away, while the compression context spans the whole connection: the class
+ *     descriptors repeated by every call are back-references after the first one.</li>
+ * </ul>
+ * The client factory travels inside the stubs, so the Clients use the settings chosen by the Server without having
+ * to know them: the factory is part of the protocol between the two sides, and both need this class.
+ * Two factories with the same settings are equal, so RMI shares listening ports and connections between them.
+ * <p>
+ * The registry keeps the default sockets: it is reached by the Clients before they have any stub.
+ */
+public final class TunedSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Size of the buffers of the compressed streams. RMI already buffers the plain socket streams.
+     */
+    private static final int STREAM_BUFFER_BYTES = 8 * 1024;
+
+    private static TunedSocketFactory configured = new TunedSocketFactory(0, false);
+
+    /**
+     * Sets the factory used for the objects exported from now on. To be called at startup, before the first export.
+     * @param bufferBytes The size of the socket send and receive buffers, 0 to keep the ones of the operating system.
+     * @param compress True to deflate the calls in both directions.
+     */
+    public static synchronized void configure(int bufferBytes, boolean compress) {
+        if (bufferBytes < 0) {
+            throw new IllegalArgumentException("The socket buffers cannot be negative.");
+        }
+
+        configured = new TunedSocketFactory(bufferBytes, compress);
+    }
+
+    public static synchronized TunedSocketFactory getConfigured() {
+        return configured;
+    }
+
+    /* Start of the class implementation */
+    private final int bufferBytes;
+    private final boolean compress;
+
+    public TunedSocketFactory(int bufferBytes, boolean compress) {
+        this.bufferBytes = bufferBytes;
+        this.compress = compress;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = this.compress ? new CompressingSocket() : new Socket();
+
+        // The receive buffer must be set before connecting to affect the TCP window
+        this.tune(socket);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = compress ? new CompressingSocket() : new Socket();
+                this.implAccept(socket);
+                tune(socket);
+                return socket;
+            }
+        };
+
+        // Accepted sockets inherit the receive buffer of the listening one
+        if (this.bufferBytes > 0) {
+            serverSocket.setReceiveBufferSize(this.bufferBytes);
+        }
+
+        serverSocket.bind(new InetSocketAddress(port));
+        return serverSocket;
+    }
+
+    private void tune(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+
+        if (this.bufferBytes > 0) {
+            socket.setSendBufferSize(this.bufferBytes);
+            socket.setReceiveBufferSize(this.bufferBytes);
+        }
+    }
+
+    public int getBufferBytes() {
+        return this.bufferBytes;
+    }
+
+    public boolean isCompressing() {
+        return this.compress;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TunedSocketFactory other &&
+                this.bufferBytes == other.bufferBytes &&
+                this.compress == other.compress;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Integer.hashCode(this.bufferBytes) + Boolean.hashCode(this.compress);
+    }
+
+    @Override
+    public String toString() {
+        return "nodelay, buffers " + (this.bufferBytes > 0 ? this.bufferBytes + " bytes" : "of the OS") +
+                (this.compress ? ", deflated" : "");
+    }
+
+    /**
+     * A socket whose streams are deflated. The Deflater and the Inflater are freed by their cleaners once the socket
+     * is unreachable: ending them on close could break a thread still reading the stream.
+     */
+    private static final class CompressingSocket extends Socket {
+        private InputStream in;
+        private OutputStream out;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (this.in == null) {
+                this.in = new InflaterInputStream(super.getInputStream(), new Inflater(), STREAM_BUFFER_BYTES) {
+                    /**
+                     * Never promises that a read will not block. The default implementation answers 1 until the end
+                     * of the stream, so the buffered stream RMI wraps around the socket would keep on reading past
+                     * the end of a call, waiting for the next one.
+                     */
+                    @Override
+                    public int available() {
+                        return 0;
+                    }
+                };
+            }
+            return this.in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (this.out == null) {
+                // Favouring speed: the calls are small and the repeated descriptors compress well anyway
+                this.out = new BufferedOutputStream(
+                        new DeflaterOutputStream(super.getOutputStream(), new Deflater(Deflater.BEST_SPEED),
+                                STREAM_BUFFER_BYTES, true),
+                        STREAM_BUFFER_BYTES);
+            }
+            return this.out;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package it.polimi.ingsw.network.rmi;
 
 import it.polimi.ingsw.client.network.rmi.PushServiceOfClientRMI;
+import it.polimi.ingsw.controller.GameController;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameSnapshot;
+import it.polimi.ingsw.controller.LobbyQuery;
+import it.polimi.ingsw.controller.MatchActor;
 import it.polimi.ingsw.controller.MatchController;
 import it.polimi.ingsw.controller.MatchControllerException;
+import it.polimi.ingsw.controller.PlaceAndDraw;
+import it.polimi.ingsw.controller.PlaceAndDrawResult;
+import it.polimi.ingsw.controller.VersionedGameState;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.StarterCard;
 import it.polimi.ingsw.model.card.TypedCard;
@@ -20,46 +27,44 @@ import it.polimi.ingsw.network.Profiles;
 import it.polimi.ingsw.network.ProfilesException;
 import it.polimi.ingsw.network.liveloop.User;
 import it.polimi.ingsw.network.liveloop.UserException;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.messages.servertoclient.EventBatchMessage;
 import it.polimi.ingsw.network.messages.servertoclient.ListOfLobbyToJoinMessage;
 import it.polimi.ingsw.network.state.ChooseCreateJoinState;
 import it.polimi.ingsw.network.state.StateType;
 import it.polimi.ingsw.network.tcpip.Heartbeat;
 import it.polimi.ingsw.network.tcpip.Sense;
-import it.polimi.ingsw.network.tcpip.ServerCriticalError;
 
-import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class UserStub implements UserStubRMI {
     private final User user;
     private PushServiceOfClientRMI pushService;
-    private final AtomicLong lastHeartbeat;
-    private final ScheduledExecutorService executorService;
+    private final PushDispatcher.Mailbox mailbox;
+    private final LivenessWheel.Session liveness;
 
     public UserStub(String connectionUUID, Integer heartbeatMs) throws RemoteException {
         this.user = new User(connectionUUID, true, this);
         this.pushService = null;
-        this.lastHeartbeat = new AtomicLong(System.currentTimeMillis());
-        this.executorService = Executors.newSingleThreadScheduledExecutor();
-
-        this.executorService.scheduleAtFixedRate(() -> {
-            // If more than heartbeatMs have passed since the last heartbeat
-            if (System.currentTimeMillis() - this.lastHeartbeat.get() > heartbeatMs) {
-                // RMI disconnection: unexporting the stub
-                try {
-                    RMIServerHandler.unexportObject("User", true);
-                } catch (NotBoundException | RemoteException e) {
-                    throw new ServerCriticalError("Something went wrong in RMI resource management.");
-                } finally {
-                    // User pruning: this ensures no locking around the Server is caused by dead Client(s)
-                    Profiles.getInstance().silentPruneUser(connectionUUID, true);
-                    this.executorService.shutdownNow();
-                }
+        this.mailbox = PushDispatcher.getInstance().openMailbox(connectionUUID);
+
+        // If more than heartbeatMs pass without a heartbeat, the Client is gone
+        this.liveness = LivenessWheel.getInstance().track(heartbeatMs, () -> {
+            // RMI disconnection: unexporting the stub
+            try {
+                RMIServerHandler.unexportObject(this, true);
+            } catch (RemoteException ignored) {
+                // Not exported (anymore): nothing to release
+            } finally {
+                // User pruning: this ensures no locking around the Server is caused by dead Client(s)
+                Profiles.getInstance().silentPruneUser(connectionUUID, true);
+                PushDispatcher.getInstance().releaseMailbox(connectionUUID, this.mailbox);
             }
-        }, 1, 1, TimeUnit.SECONDS);
+        });
     }
 
         public User getUser() {
@@ -78,57 +83,50 @@ public class UserStub implements UserStubRMI {
         // registerPushService will reject null assignments
         if (pushService != null) {
             this.pushService = pushService;
+            this.mailbox.setPushService(pushService);
         }
     }
 
+    @Override
+    public TunedSocketFactory getSocketFactory() throws RemoteException {
+        return TunedSocketFactory.getConfigured();
+    }
+
     @Override
     public void heartbeat(Heartbeat heartbeat) throws RemoteException {
-        this.lastHeartbeat.set(System.currentTimeMillis());
+        this.liveness.touch();
         this.pushEvent(new Sense());
     }
 
-    public void pushEvent(Object object) throws RemoteException {
+    /**
+     * Pushes an event to the Client, without waiting for the Client to receive it.
+     * Events are delivered in the order they are pushed, by the {@link PushDispatcher}.
+     * @param object The event to push.
+     * @return A future completed once the Client has received the event.
+     * @throws RemoteException If an earlier push to the Client already failed.
+     */
+    public CompletableFuture<Void> pushEvent(Object object) throws RemoteException {
         if (this.pushService == null) {
             // pushEvent will reject event pushing if the pushService has not been
             // set yet.
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         // Logic assures that once the pushService has become != null it cannot be changed again
-        // using registerPushService. Anyway, it can become invalid due to Client-side manipulations.
-
-        // Thread run CANNOT throw checked exceptions.
-        // Workaround is to use Callable and Future
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        Future<Void> future = executorService.submit(() -> {
-            // This throws RemoteException checked exception
-            pushService.pushEvent(object);
-            return null;
-        });
-
-        try {
-            future.get();
-        } catch (InterruptedException e) {
-            // An InterruptedException signals a critical error in the Server's thread(s) execution.
-            // This situation ought to never be encountered and there's no precise way to recover from this.
-            throw new ServerCriticalError("Server encountered an InterruptedException in its thread(s) flow.");
-        } catch (ExecutionException e) {
-            if (e.getCause() instanceof RemoteException) {
-                // Server could not push the event. This is a problem, but should absolutely not interfere
-                // with the whole Server status. Usually this means that the Client's registered push service has
-                // become invalid. If the Client attemps to take down the Server with push service invalidation
-                // it will be handled here to protect the whole Server status.
-                // Reaction depends on the application; in this case this is indicating that the Client disconnected
-                // (gracefully or not doesn't matter). We are just gonna throw the exception and let the caller
-                // handle the disconnection.
-                throw (RemoteException) e.getCause();
-            }
+        // using registerPushService. Anyway, it can become invalid due to Client-side manipulations: the
+        // dispatcher then closes the mailbox, and any later push fails right away.
+        return this.mailbox.push(object);
+    }
 
-            // ExecutionException is not of type RemoteException
-            // This situation can be akward and cannot be safely identified.
-            // This situation ought to never be encountered and there's no precise way to recover from this.
-            throw new ServerCriticalError("Server encountered an ExecutionException in its thread(s) flow.");
-        }
+    /**
+     * Pushes many events to the Client at once, e.g. the events of a single game command.
+     * They are delivered together, in order, with a single remote call.
+     * @param messages The events to push.
+     * @return A future completed once the Client has received the events.
+     * @throws RemoteException If an earlier push to the Client already failed.
+     */
+    public CompletableFuture<Void> pushEvents(List<Message> messages) throws RemoteException {
+        return this.pushEvent(messages.size() == 1 ? messages.get(0) : new EventBatchMessage(messages));
     }
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -143,20 +141,17 @@ public class UserStub implements UserStubRMI {
             return false;
         }
 
-        if (!Profiles.getInstance().isUsernameTaken(username)) {
-            try {
-                Profiles.getInstance().setUserUsername(this.user.getConnectionUUID(), username);
+        // Checking and reserving the username is a single step: two Users cannot get the same one
+        try {
+            Profiles.getInstance().setUserUsername(this.user.getConnectionUUID(), username);
 
-                // State has to be here since the handling is out of the State override
-                this.user.setState(new ChooseCreateJoinState(this.user));
-                return true;
-            } catch (ProfilesException | UserException e) {
-                // Error, but preventing Server crash.
-                return false;
-            }
+            // State has to be here since the handling is out of the State override
+            this.user.setState(new ChooseCreateJoinState(this.user));
+            return true;
+        } catch (ProfilesException | UserException e) {
+            // Username taken or invalid, or error, but preventing Server crash.
+            return false;
         }
-
-        return false;
     }
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -194,15 +189,19 @@ public class UserStub implements UserStubRMI {
     }
 
     @Override
-        public List<ListOfLobbyToJoinMessage.LobbyInfo> getListOfLobbyToJoinRMI() throws RemoteException {
-        if (this.user.getState().getStateType() != StateType.CHOOSECREATEJOIN) {
+        public ListOfLobbyToJoinMessage getListOfLobbyToJoinRMI(LobbyQuery query, boolean subscribe)
+            throws RemoteException {
+        if (this.user.getState().getStateType() != StateType.CHOOSECREATEJOIN || query == null) {
             return null;
         }
 
-        try {
-            return MatchController.getInstance().getListOfLobbyToJoinRMI(this.user);
-        } catch (MatchControllerException e) {
-            return null;
+        return MatchController.getInstance().getListOfLobbyToJoinRMI(query, subscribe, this.user);
+    }
+
+    @Override
+    public void stopLobbyUpdatesRMI() throws RemoteException {
+        if (this.user.getUsername() != null) {
+            MatchController.getInstance().unsubscribeLobbies(this.user.getUsername());
         }
     }
 
@@ -269,7 +268,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getStarterCard(username);
+            return this.inMatch(gc -> gc.getStarterCard(username));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -284,7 +283,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().setStarterCard(username, cardFace);
+            return this.inMatch(gc -> gc.setStarterCard(username, cardFace));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -299,7 +298,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getAvailableColors();
+            return this.inMatch(gc -> gc.getAvailableColors());
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -314,7 +313,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().setPlayerColor(username, playerColor);
+            return this.inMatch(gc -> gc.setPlayerColor(username, playerColor));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -329,7 +328,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getProposedPrivateGoals(username);
+            return this.inMatch(gc -> gc.getProposedPrivateGoals(username));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -344,7 +343,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().choosePrivateGoal(username, goalCard);
+            return this.inMatch(gc -> gc.choosePrivateGoal(username, goalCard));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -359,14 +358,13 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            PlayerData playerData;
+            GameSnapshot snapshot = this.user.getGameController().getSnapshot();
+
             if (username.equals(user.getUsername())) {
-                playerData = user.getGameController().getPlayerData(username);
+                return snapshot.getPlayerData(username);
             } else {
-                playerData = user.getGameController().getCleanPlayerData(username);
+                return snapshot.getCleanPlayerData(username);
             }
-
-            return playerData;
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -381,7 +379,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getAllPlayerData(username);
+            return this.user.getGameController().getSnapshot().getAllPlayerData(username);
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -396,7 +394,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getManuscript(username);
+            return this.user.getGameController().getSnapshot().getManuscript(username);
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -411,7 +409,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getGameFlow();
+            return this.user.getGameController().getSnapshot().getGameFlow();
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -426,7 +424,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getGameBoard();
+            return this.user.getGameController().getSnapshot().getGameBoard();
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -442,7 +440,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().placeCard(username, card, position);
+            return this.inMatch(gc -> gc.placeCard(username, card, position));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -457,7 +455,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().drawVisibleCard(username, type, index);
+            return this.inMatch(gc -> gc.drawVisibleCard(username, type, index));
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -472,7 +470,37 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().drawCoveredCard(username, type);
+            return this.inMatch(gc -> gc.drawCoveredCard(username, type));
+        } catch (RuntimeException e) {
+            // This handles any RuntimeException that may have not been catched (due to the unchecked nature
+            // of the exception...)
+            return null;
+        }
+    }
+
+    @Override
+    public PlaceAndDrawResult placeAndDraw(String username, PlaceAndDraw turn) throws RemoteException {
+        if (this.user.getState().getStateType() != StateType.INGAME) {
+            return new PlaceAndDrawResult(false, null, false);
+        }
+
+        try {
+            return this.inMatch(gc -> gc.placeAndDraw(username, turn));
+        } catch (RuntimeException e) {
+            // This handles any RuntimeException that may have not been catched (due to the unchecked nature
+            // of the exception...)
+            return new PlaceAndDrawResult(false, null, false);
+        }
+    }
+
+    @Override
+    public VersionedGameState getGameState(long ifNewerThan) throws RemoteException {
+        if (this.user.getState().getStateType() != StateType.INGAME) {
+            return null;
+        }
+
+        try {
+            return this.user.getGameController().getGameState(this.user.getUsername(), ifNewerThan);
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -487,7 +515,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().gameEnded();
+            return this.inMatch(gc -> gc.gameEnded());
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -502,7 +530,7 @@ public class UserStub implements UserStubRMI {
         }
 
         try {
-            return user.getGameController().getWinner();
+            return this.inMatch(gc -> gc.getWinner());
         } catch (RuntimeException e) {
             // This handles any RuntimeException that may have not been catched (due to the unchecked nature
             // of the exception...)
@@ -563,4 +591,14 @@ public class UserStub implements UserStubRMI {
                 .filter(s -> !s.equals(user.getUsername()))
                 .toList();
     }
+
+    /**
+     * Runs a command on the match of the User, through its {@link MatchActor}, and waits for its result.
+     * @param command The command, run on the GameController of the match.
+     * @return The result of the command.
+     * @throws RuntimeException The exception thrown by the command, handled by the callers like before.
+     */
+    private <R> R inMatch(Function<GameController, R> command) {
+        return user.getGameController().getActor().call(command);
+    }
 }
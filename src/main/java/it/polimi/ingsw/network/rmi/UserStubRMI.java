@@ -2,6 +2,10 @@ package it.polimi.ingsw.network.rmi;
 
 import it.polimi.ingsw.client.network.rmi.PushServiceOfClientRMI;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.LobbyQuery;
+import it.polimi.ingsw.controller.PlaceAndDraw;
+import it.polimi.ingsw.controller.PlaceAndDrawResult;
+import it.polimi.ingsw.controller.VersionedGameState;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.StarterCard;
 import it.polimi.ingsw.model.card.TypedCard;
@@ -31,6 +35,13 @@ public interface UserStubRMI extends Remote {
      */
     void registerPushService(PushServiceOfClientRMI pushService) throws RemoteException;
 
+    /**
+     * Gets the factory of the sockets the Server uses for RMI, to export the push service of the Client with.
+     * @return the socket factory of the Server
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    TunedSocketFactory getSocketFactory() throws RemoteException;
+
     /**
      * Sends an heartbeat to the RMI Server.
      * @param heartbeat the Heartbeat object
@@ -76,13 +87,22 @@ public interface UserStubRMI extends Remote {
     Boolean joinLobbyRMI(String lobbyUUID) throws RemoteException;
 
     /**
-     * Get the list of lobbies to join in an RMI communication.
-     * @return the list of lobbies to join. The list may be null (see {@link it.polimi.ingsw.controller.MatchController} specifications)
+     * Get a page of the list of lobbies to join in an RMI communication, optionally subscribing to its changes: they
+     * are pushed as LOBBY_LIST_CHANGE_EVENT until a lobby is joined or {@link #stopLobbyUpdatesRMI()} is called.
+     * @param query the page and the filters
+     * @param subscribe true to subscribe to the changes of the list
+     * @return the page of lobbies to join. It may be null (see {@link it.polimi.ingsw.controller.MatchController} specifications)
      * @throws RemoteException if something goes wrong with the RMI communication
      */
-    List<ListOfLobbyToJoinMessage.LobbyInfo> getListOfLobbyToJoinRMI()
+    ListOfLobbyToJoinMessage getListOfLobbyToJoinRMI(LobbyQuery query, boolean subscribe)
             throws RemoteException;
 
+    /**
+     * Stop receiving the changes of the list of lobbies to join in an RMI communication.
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    void stopLobbyUpdatesRMI() throws RemoteException;
+
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /*
@@ -234,6 +254,24 @@ public interface UserStubRMI extends Remote {
      */
     TypedCard drawCoveredCard(String username, CardType type) throws RemoteException;
 
+    /**
+     * Place a card and draw afterward, in a single RMI call.
+     * @param username the username of the player playing the turn
+     * @param turn the card to place and the card to draw
+     * @return the outcome of both the placement and the draw (see {@link it.polimi.ingsw.controller.GameController} specifications)
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    PlaceAndDrawResult placeAndDraw(String username, PlaceAndDraw turn) throws RemoteException;
+
+    /**
+     * Get the whole state of the match in an RMI communication, unless the Client already has its current version.
+     * @param ifNewerThan the version of the state the Client already has, 0 if none
+     * @return the state of the match as seen by the player, or only its version if it is not newer than
+     * {@code ifNewerThan}. It may be null (see {@link it.polimi.ingsw.controller.GameController} specifications)
+     * @throws RemoteException if something goes wrong with the RMI communication
+     */
+    VersionedGameState getGameState(long ifNewerThan) throws RemoteException;
+
     /**
      * Get if the game has ended in an RMI communication.
      * @return true if the game has ended, false otherwise
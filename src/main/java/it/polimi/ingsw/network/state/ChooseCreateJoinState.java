@@ -1,11 +1,13 @@
 package it.polimi.ingsw.network.state;
 
+import it.polimi.ingsw.controller.LobbyQuery;
 import it.polimi.ingsw.controller.MatchController;
 import it.polimi.ingsw.controller.MatchControllerException;
 import it.polimi.ingsw.logger.Logger;
 import it.polimi.ingsw.model.game.gamelobby.GameLobbyException;
 import it.polimi.ingsw.network.liveloop.User;
 import it.polimi.ingsw.network.messages.clienttoserver.GetListOfLobbyToJoinMessage;
+import it.polimi.ingsw.network.messages.clienttoserver.StopLobbyUpdatesMessage;
 import it.polimi.ingsw.network.messages.clienttoserver.LobbyInfoForCreationMessage;
 import it.polimi.ingsw.network.messages.clienttoserver.WhatLobbyToJoinMessage;
 import it.polimi.ingsw.network.messages.servertoclient.*;
@@ -106,7 +108,15 @@ public class ChooseCreateJoinState extends State {
                 this.user.send(new LobbyJoinOKMessage());
                 this.user.send(new LobbyStartMessage());
                 this.user.setState(new InGameState(this.user));
-                user.getGameController().reconnectPlayer(this.user.getUsername());
+
+                // Not waited for, like the other commands of the match (see InGameState). The answer is sent before:
+                // the events fired by the reconnection must not reach the Client before it knows the match started
+                user.getGameController().getActor().submit(gc -> gc.reconnectPlayer(this.user.getUsername())).whenComplete((result, error) -> {
+                    if (error != null) {
+                        Logger.logInfo("Caught a RuntimeException while reconnecting " + this.user.getUsername() + " (" + error.getMessage() + ")");
+                        this.user.send(new UnknownErrorMessage());
+                    }
+                });
             } else {
                 this.user.send(new LobbyJoinOKMessage());
                 this.user.setState(new InLobbyState(this.user));
@@ -134,7 +144,8 @@ public class ChooseCreateJoinState extends State {
      * <ul>
      *     <li>
      *         If the operation succeeds, a ListOfLobbyToJoinMessage is sent to the Client.
-     *         The message contains the list of Lobbies that the User can join.
+     *         The message contains the requested page of the list of Lobbies that the User can join.
+     *         If the Client subscribed, the changes of the list follow as LOBBY_LIST_CHANGE_EVENT.
      *     </li>
      *
      *     <li>
@@ -145,12 +156,24 @@ public class ChooseCreateJoinState extends State {
      */
     @Override
     public void onGetListOfLobbyToJoinMessage(GetListOfLobbyToJoinMessage message) {
-        try {
-            this.user.send(new ListOfLobbyToJoinMessage(this.user.getUsername()));
-        } catch (MatchControllerException e) {
-            // Specific MatchControllerException cases should not happen here and we can approximate
-            // that getting this exception here is unexpected
-            this.user.send(new UnknownErrorMessage());
+        MatchController matchController = MatchController.getInstance();
+        // A Client predating pages and filters asks for every lobby
+        LobbyQuery query = message.getQuery() == null ? LobbyQuery.ALL : message.getQuery();
+
+        if (message.isSubscribe()) {
+            this.user.send(new ListOfLobbyToJoinMessage(matchController.subscribeLobbies(query, this.user)));
+        } else {
+            this.user.send(new ListOfLobbyToJoinMessage(matchController.getLobbyPage(this.user.getUsername(), query)));
         }
     }
+
+    /**
+     * Handle the StopLobbyUpdatesMessage from the Client: the changes of the list of Lobbies are not sent anymore.
+     * No reply is sent.
+     * @param message the StopLobbyUpdatesMessage received from the Client.
+     */
+    @Override
+    public void onStopLobbyUpdatesMessage(StopLobbyUpdatesMessage message) {
+        MatchController.getInstance().unsubscribeLobbies(this.user.getUsername());
+    }
 }
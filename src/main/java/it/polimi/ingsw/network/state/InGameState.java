@@ -1,8 +1,12 @@
 package it.polimi.ingsw.network.state;
 
+import it.polimi.ingsw.controller.GameController;
 import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameSnapshot;
 import it.polimi.ingsw.controller.MatchController;
+import it.polimi.ingsw.controller.MatchActor;
 import it.polimi.ingsw.controller.MatchControllerException;
+import it.polimi.ingsw.controller.PlaceAndDraw;
 import it.polimi.ingsw.logger.Logger;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.StarterCard;
@@ -24,6 +28,8 @@ import it.polimi.ingsw.network.messages.servertoclient.MatchExitOKMessage;
 import it.polimi.ingsw.network.messages.servertoclient.UnknownErrorMessage;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * This class represents the InGameState of the User in the Server.
@@ -102,8 +108,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetStarterCardMessage(SingleArgMessage<String> message) {
-        StarterCard card = user.getGameController().getStarterCard(message.get());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_STARTER_CARD, card));
+        this.inMatch(gc -> gc.getStarterCard(message.get()),
+                card -> user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_STARTER_CARD, card)));
     }
 
     /**
@@ -127,8 +133,8 @@ public class InGameState extends State {
      */
     @Override
     public void onSetStarterCardMessage(DoubleArgMessage<String, CardFace> message) {
-        boolean result = user.getGameController().setStarterCard(message.get1(), message.get2());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_SET_STARTER_CARD, result));
+        this.inMatch(gc -> gc.setStarterCard(message.get1(), message.get2()),
+                result -> user.send(new SingleArgMessage<>(MessageType.ANSWER_SET_STARTER_CARD, result)));
     }
 
     /**
@@ -144,8 +150,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetAvailableColorsMessage(ZeroArgMessage message) {
-        List<PlayerColor> colors = user.getGameController().getAvailableColors();
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_AVAILABLE_COLORS, colors));
+        this.inMatch(gc -> gc.getAvailableColors(),
+                colors -> user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_AVAILABLE_COLORS, colors)));
     }
 
     /**
@@ -169,8 +175,8 @@ public class InGameState extends State {
      */
     @Override
     public void onSetPlayerColorMessage(DoubleArgMessage<String, PlayerColor> message) {
-        boolean result = user.getGameController().setPlayerColor(message.get1(), message.get2());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_SET_PLAYER_COLOR, result));
+        this.inMatch(gc -> gc.setPlayerColor(message.get1(), message.get2()),
+                result -> user.send(new SingleArgMessage<>(MessageType.ANSWER_SET_PLAYER_COLOR, result)));
     }
 
     /**
@@ -186,8 +192,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetProposedPrivateGoalsMessage(SingleArgMessage<String> message) {
-        List<GoalCard> goals = user.getGameController().getProposedPrivateGoals(message.get());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_PROPOSED_PRIVATE_GOALS, goals));
+        this.inMatch(gc -> gc.getProposedPrivateGoals(message.get()),
+                goals -> user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_PROPOSED_PRIVATE_GOALS, goals)));
     }
 
     /**
@@ -211,8 +217,8 @@ public class InGameState extends State {
      */
     @Override
     public void onChoosePrivateGoalMessage(DoubleArgMessage<String, GoalCard> message) {
-        boolean result = user.getGameController().choosePrivateGoal(message.get1(), message.get2());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_CHOOSE_PRIVATE_GOAL, result));
+        this.inMatch(gc -> gc.choosePrivateGoal(message.get1(), message.get2()),
+                result -> user.send(new SingleArgMessage<>(MessageType.ANSWER_CHOOSE_PRIVATE_GOAL, result)));
     }
 
     /**
@@ -228,12 +234,10 @@ public class InGameState extends State {
      */
     @Override
     public void onGetPlayerDataMessage(SingleArgMessage<String> message) {
-        PlayerData playerData;
-        if (message.get().equals(user.getUsername())) {
-            playerData = user.getGameController().getPlayerData(message.get());
-        } else {
-            playerData = user.getGameController().getCleanPlayerData(message.get());
-        }
+        GameSnapshot snapshot = user.getGameController().getSnapshot();
+        PlayerData playerData = message.get().equals(user.getUsername()) ?
+                snapshot.getPlayerData(message.get()) :
+                snapshot.getCleanPlayerData(message.get());
         user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_PLAYER_DATA, playerData));
     }
 
@@ -250,8 +254,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetAllPlayerDataMessage(SingleArgMessage<String> message) {
-        List<PlayerData> players = user.getGameController().getAllPlayerData(message.get());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_ALL_PLAYER_DATA, players));
+        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_ALL_PLAYER_DATA,
+                user.getGameController().getSnapshot().getAllPlayerData(message.get())));
     }
 
     /**
@@ -267,8 +271,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetManuscriptMessage(SingleArgMessage<String> message) {
-        PlayerManuscript manuscript = user.getGameController().getManuscript(message.get());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_MANUSCRIPT, manuscript));
+        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_MANUSCRIPT,
+                user.getGameController().getSnapshot().getManuscript(message.get())));
     }
 
     /**
@@ -284,8 +288,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetGameFlowMessage(ZeroArgMessage message) {
-        GameFlow flow = user.getGameController().getGameFlow();
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAMEFLOW, flow));
+        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAMEFLOW,
+                user.getGameController().getSnapshot().getGameFlow()));
     }
 
     /**
@@ -301,8 +305,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetGameBoardMessage(ZeroArgMessage message) {
-        CommonBoard board = user.getGameController().getGameBoard();
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAMEBOARD, board));
+        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAMEBOARD,
+                user.getGameController().getSnapshot().getGameBoard()));
     }
 
     /**
@@ -326,8 +330,8 @@ public class InGameState extends State {
      */
     @Override
     public void onPlaceCardMessage(TripleArgMessage<String, TypedCard, ManuscriptPosition> message) {
-        boolean result = user.getGameController().placeCard(message.get1(), message.get2(), message.get3());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_PLACE_CARD, result));
+        this.inMatch(gc -> gc.placeCard(message.get1(), message.get2(), message.get3()),
+                result -> user.send(new SingleArgMessage<>(MessageType.ANSWER_PLACE_CARD, result)));
     }
 
     /**
@@ -343,8 +347,8 @@ public class InGameState extends State {
      */
     @Override
     public void onDrawVisibleCardMessage(TripleArgMessage<String, CardType, Integer> message) {
-        TypedCard card = user.getGameController().drawVisibleCard(message.get1(), message.get2(), message.get3());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_DRAW_VISIBLE_CARD, card));
+        this.inMatch(gc -> gc.drawVisibleCard(message.get1(), message.get2(), message.get3()),
+                card -> user.send(new SingleArgMessage<>(MessageType.ANSWER_DRAW_VISIBLE_CARD, card)));
     }
 
     /**
@@ -360,8 +364,44 @@ public class InGameState extends State {
      */
     @Override
     public void onDrawCoveredCardMessage(DoubleArgMessage<String, CardType> message) {
-        TypedCard card = user.getGameController().drawCoveredCard(message.get1(), message.get2());
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_DRAW_COVERED_CARD, card));
+        this.inMatch(gc -> gc.drawCoveredCard(message.get1(), message.get2()),
+                card -> user.send(new SingleArgMessage<>(MessageType.ANSWER_DRAW_COVERED_CARD, card)));
+    }
+
+    /**
+     * Handle the PlaceAndDrawMessage from the Client.
+     * <ul>
+     *     <li>
+     *         An AnswerPlaceAndDrawMessage is always sent to the Client.
+     *         The AnswerPlaceAndDrawMessage contains the outcome of both the placement and the draw, so that a
+     *         whole turn only takes one round trip (see {@link it.polimi.ingsw.controller.GameController}
+     *         specifications).
+     *     </li>
+     * </ul>
+     * @param message the PlaceAndDrawMessage received from the Client.
+     */
+    @Override
+    public void onPlaceAndDrawMessage(DoubleArgMessage<String, PlaceAndDraw> message) {
+        this.inMatch(gc -> gc.placeAndDraw(message.get1(), message.get2()),
+                result -> user.send(new SingleArgMessage<>(MessageType.ANSWER_PLACE_AND_DRAW, result)));
+    }
+
+    /**
+     * Handle the GetGameStateMessage from the Client.
+     * <ul>
+     *     <li>
+     *         An AnswerGetGameStateMessage is always sent to the Client.
+     *         The AnswerGetGameStateMessage contains the whole state of the Match as seen by the User, or only its
+     *         version if it is not newer than the one in the GetGameStateMessage
+     *         (see {@link it.polimi.ingsw.controller.GameController} specifications).
+     *     </li>
+     * </ul>
+     * @param message the GetGameStateMessage received from the Client.
+     */
+    @Override
+    public void onGetGameStateMessage(SingleArgMessage<Long> message) {
+        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAME_STATE,
+                user.getGameController().getGameState(user.getUsername(), message.get())));
     }
 
     /**
@@ -385,8 +425,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetGameEndedMessage(ZeroArgMessage message) {
-        boolean ended = user.getGameController().gameEnded();
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAME_ENDED, ended));
+        this.inMatch(gc -> gc.gameEnded(),
+                ended -> user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_GAME_ENDED, ended)));
     }
 
     /**
@@ -402,8 +442,8 @@ public class InGameState extends State {
      */
     @Override
     public void onGetWinnerMessage(ZeroArgMessage message) {
-        String winner = user.getGameController().getWinner();
-        user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_WINNER, winner));
+        this.inMatch(gc -> gc.getWinner(),
+                winner -> user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_WINNER, winner)));
     }
 
     // Chat-related commands
@@ -478,4 +518,22 @@ public class InGameState extends State {
                 .toList();
         user.send(new SingleArgMessage<>(MessageType.ANSWER_GET_RECIPIENTS, recipients));
     }
+
+    /**
+     * Runs a command on the match of the User, through its {@link MatchActor}, then sends the reply built from its
+     * result. With the actor mode the reply is sent by the thread of the match, once the command has run.
+     * A RuntimeException thrown by the command is answered like the ones caught in react.
+     * @param command the command, run on the GameController of the match.
+     * @param reply sends the result of the command to the Client.
+     */
+    private <R> void inMatch(Function<GameController, R> command, Consumer<R> reply) {
+        user.getGameController().getActor().submit(command).whenComplete((result, error) -> {
+            if (error == null) {
+                reply.accept(result);
+            } else {
+                Logger.logInfo("Caught a RuntimeException in react, probably from GameController (" + error.getMessage() + ")");
+                this.defaultSendUnkownError();
+            }
+        });
+    }
 }
@@ -46,23 +46,22 @@ public class SettingUsernameState extends State {
      */
     @Override
     public void onUsernameMessage(UsernameMessage message) {
-        if (!Profiles.getInstance().isUsernameTaken(message.getUsername())) {
-            try {
-                Profiles.getInstance().setUserUsername(this.user.getConnectionUUID(), message.getUsername());
+        // Checking and reserving the username is a single step: two Users cannot get the same one
+        try {
+            Profiles.getInstance().setUserUsername(this.user.getConnectionUUID(), message.getUsername());
 
-                this.user.send(new UsernameConfirmedMessage());
-                this.user.setState(new ChooseCreateJoinState(this.user));
-            } catch (UserException e) {
-                // e.getReason() for UserException is not checked since there is only one possible
-                // option
-                this.user.send(new UsernameNotValidMessage(e.getMessage()));
-            } catch (ProfilesException e) {
-                // e.getReason() for ProfilesException is not checked since there is only one possible
-                // option.
+            this.user.send(new UsernameConfirmedMessage());
+            this.user.setState(new ChooseCreateJoinState(this.user));
+        } catch (UserException e) {
+            // e.getReason() for UserException is not checked since there is only one possible
+            // option
+            this.user.send(new UsernameNotValidMessage(e.getMessage()));
+        } catch (ProfilesException e) {
+            if (e.getReason() == ProfilesException.Reason.USERNAME_TAKEN) {
+                this.user.send(new UsernameAlreadyTakenMessage());
+            } else {
                 this.user.send(new UnknownErrorMessage());
             }
-        } else {
-            this.user.send(new UsernameAlreadyTakenMessage());
         }
     }
 }
@@ -1,5 +1,6 @@
 package it.polimi.ingsw.network.state;
 
+import it.polimi.ingsw.controller.PlaceAndDraw;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.TypedCard;
 import it.polimi.ingsw.model.card.properties.CardFace;
@@ -70,6 +71,16 @@ abstract public class State {
         this.defaultSendUnkownError();
     }
 
+    /**
+     * Handle the StopLobbyUpdatesMessage from the Client.
+     * No reply is sent, not even an error: the Client does not wait for one, and the subscription may have already
+     * ended by joining a lobby.
+     * @param message the StopLobbyUpdatesMessage received from the Client.
+     */
+    public void onStopLobbyUpdatesMessage(StopLobbyUpdatesMessage message) {
+        // Nothing to stop
+    }
+
     /**
      * Handle the GetLobbyInfoMessage from the Client.
      * @param message the GetLobbyInfoMessage received from the Client.
@@ -216,6 +227,22 @@ abstract public class State {
         this.defaultSendUnkownError();
     }
 
+    /**
+     * Handle the PlaceAndDrawMessage from the Client.
+     * @param message the PlaceAndDrawMessage received from the Client.
+     */
+    public void onPlaceAndDrawMessage(DoubleArgMessage<String, PlaceAndDraw> message) {
+        this.defaultSendUnkownError();
+    }
+
+    /**
+     * Handle the GetGameStateMessage from the Client.
+     * @param message the GetGameStateMessage received from the Client.
+     */
+    public void onGetGameStateMessage(SingleArgMessage<Long> message) {
+        this.defaultSendUnkownError();
+    }
+
     /**
      * Handle the GetGameBoardMessage from the Client.
      * @param message the GetGameBoardMessage received from the Client.
@@ -0,0 +1,55 @@
+package it.polimi.ingsw.network.tcpip;
+
+/**
+ * Holds the {@link ServerTransport} the socket Users are served with.
+ * If no transport is explicitly installed, the blocking {@link Server} singleton is used.
+ */
+public final class ActiveTransport {
+    private static ServerTransport transport = null;
+
+    // Private constructor to prevent instantiation, since static classes has no meaning to be instantiated.
+    private ActiveTransport() {
+    }
+
+    /**
+     * Installs the transport to be used by the socket Users.
+     * @param transport The transport to install.
+     */
+    public static synchronized void use(ServerTransport transport) {
+        ActiveTransport.transport = transport;
+    }
+
+    /**
+     * Gets the transport currently in use.
+     * @return The installed transport, or the blocking Server if none was installed.
+     * @throws ServerException If no transport was installed and the blocking Server was not initialized.
+     */
+    public static synchronized ServerTransport get() throws ServerException {
+        if (transport != null) {
+            return transport;
+        }
+
+        return Server.getInstance();
+    }
+
+    /**
+     * Tells whether the transport currently in use needs a ListenLoop for each connection.
+     * @return True if a ListenLoop has to be started for each socket User, false otherwise.
+     */
+    public static synchronized Boolean needsListenLoop() {
+        return transport == null || transport.needsListenLoop();
+    }
+
+    /**
+     * Tells whether the transport currently in use speaks the framed protocol, see {@link ServerTransport#speaksFramed()}.
+     * @return True if the socket Users speak the framed protocol, false if they use object streams (or if there is
+     * no transport at all).
+     */
+    public static synchronized Boolean speaksFramed() {
+        try {
+            return get().speaksFramed();
+        } catch (ServerException e) {
+            return false;
+        }
+    }
+}
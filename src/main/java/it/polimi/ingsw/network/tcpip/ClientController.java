@@ -1,8 +1,11 @@
 package it.polimi.ingsw.network.tcpip;
 
+import it.polimi.ingsw.network.codec.FramedStreams;
+import it.polimi.ingsw.network.liveness.LivenessWheel;
+import it.polimi.ingsw.util.ServerThreads;
+
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 
 /**
@@ -12,19 +15,31 @@ public class ClientController {
     /**
      * Socket for TCP communication with the client (OPPOSITE_NODE).
      */
-    private Socket socket;
+    private final Socket socket;
 
     /**
      * Unidirectional stream: THIS_NODE -> OPPOSITE_NODE.
-     * Used for serializable objects.
+     * Used for serializable objects. It is periodically reset, see {@link SessionObjectOutputStream}.
      */
-    private ObjectOutputStream objectOutputStream;
+    private final SessionObjectOutputStream objectOutputStream;
 
     /**
      * Unidirectional stream: OPPOSITE_NODE -> THIS_NODE.
      * Used for serializable objects.
      */
-    private ObjectInputStream objectInputStream;
+    private final ObjectInputStream objectInputStream;
+
+    /**
+     * Used in place of the object streams when the Server speaks the framed protocol.
+     */
+    private final FramedStreams framedStreams;
+
+    /**
+     * Items waiting to be written to the Client: objects when using object streams, already encoded
+     * frames when using the framed protocol.
+     * Senders only enqueue here; the writer thread of this ClientController is the only one writing to the socket.
+     */
+    private final OutboundQueue<Object> outbound;
 
     /**
      * Lock for sending operations.
@@ -40,19 +55,35 @@ public class ClientController {
      */
     private final Object readLock;
 
+    /**
+     * Liveness of the Client, touched by every object read. Null until the handshake is over.
+     */
+    private volatile LivenessWheel.Session liveness;
+
     /**
      * Creates a new client controller with the provided socket.
      * @param socket Socket for TCP communication with the client.
+     * @param framed True to speak the framed protocol (and negotiate its codec), false to use object streams.
      * @throws IOException If the streams could not be created.
      */
-    ClientController(Socket socket) throws IOException {
+    ClientController(Socket socket, Boolean framed) throws IOException {
         this.socket = socket;
 
-        this.objectOutputStream = new ObjectOutputStream(this.socket.getOutputStream());
-        this.objectInputStream = new ObjectInputStream(this.socket.getInputStream());
+        if (framed) {
+            this.framedStreams = FramedStreams.accept(this.socket.getInputStream(), this.socket.getOutputStream());
+            this.objectOutputStream = null;
+            this.objectInputStream = null;
+        } else {
+            this.framedStreams = null;
+            this.objectOutputStream = new SessionObjectOutputStream(this.socket.getOutputStream());
+            this.objectInputStream = new ObjectInputStream(this.socket.getInputStream());
+        }
 
+        this.outbound = new OutboundQueue<>();
         this.sendLock = new Object();
         this.readLock = new Object();
+
+        ServerThreads.start(this::writerLoop);
     }
 
     /**
@@ -67,12 +98,20 @@ public class ClientController {
         synchronized (this.readLock) {
             try {
                 // Read data
-                Object read = this.objectInputStream.readObject();
+                Object read = this.framedStreams != null ?
+                        this.framedStreams.read() :
+                        this.objectInputStream.readObject();
 
                 if (read == null) {
                     throw new InvalidTCPConnectionException("The used TCP connection may be invalid or the object could not be read.");
                 }
 
+                // Anything read, heartbeats included, proves the Client is alive
+                LivenessWheel.Session session = this.liveness;
+                if (session != null) {
+                    session.touch();
+                }
+
                 return read;
             } catch (IOException | ClassNotFoundException ignored) {
                 throw new InvalidTCPConnectionException("The used TCP connection may be invalid or the object could not be read.");
@@ -81,20 +120,84 @@ public class ClientController {
     }
 
     /**
-     * Sends a serializable object to the Client.
+     * Enqueues a serializable object to be sent to the Client by the writer thread.
+     * This method never blocks on the network.
+     * When using the framed protocol, the object is encoded right away, on the calling thread.
+     * @param serializableObject The object to send.
+     * @return True if the object has been enqueued, false if it has been dropped because the queue is full.
+     * @throws InvalidTCPConnectionException If the connection is closed or the object cannot be encoded.
+     */
+    Boolean enqueue(Object serializableObject) throws InvalidTCPConnectionException {
+        Object item = serializableObject;
+
+        if (this.framedStreams != null) {
+            try {
+                item = this.framedStreams.encode(serializableObject);
+            } catch (IOException e) {
+                throw new InvalidTCPConnectionException("The object could not be encoded: " + e.getMessage());
+            }
+        }
+
+        return this.outbound.offer(item);
+    }
+
+    /**
+     * Enqueues a broadcast frame to be sent to the Client by the writer thread.
+     * When using the framed protocol the frame already encoded for another recipient is reused, otherwise the
+     * message is written to the object stream as usual.
+     * @param frame The frame to send.
+     * @return True if the frame has been enqueued, false if it has been dropped because the queue is full.
+     * @throws InvalidTCPConnectionException If the connection is closed or the frame cannot be encoded.
+     */
+    Boolean enqueueShared(SharedFrame frame) throws InvalidTCPConnectionException {
+        if (this.framedStreams == null) {
+            return this.outbound.offer(frame.getMessage());
+        }
+
+        try {
+            return this.outbound.offer(frame.getFrame(this.framedStreams.getCodec()));
+        } catch (IOException e) {
+            throw new InvalidTCPConnectionException("The object could not be encoded: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes the queued items in order until the connection is closed.
+     * A write failure closes the connection: the ListenLoop of the Client will then notice it and prune the User.
+     */
+    private void writerLoop() {
+        try {
+            Object item;
+
+            while ((item = this.outbound.take()) != null) {
+                if (!this.notthrow__sendSerializableObject(item)) {
+                    this.silentClose();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            this.silentClose();
+        }
+    }
+
+    /**
+     * Sends a serializable object (or an encoded payload, when using the framed protocol) to the Client.
      * This method will return upon finishing the write operation with success or failure.
      * This method will not throw exceptions, but return a boolean indicating success or failure.
      * @param serializableObjectOutLocal The object to send.
      * @return True if the object was sent successfully, false otherwise.
      */
-        Boolean notthrow__sendSerializableObject(Object serializableObjectOutLocal) {
+    private Boolean notthrow__sendSerializableObject(Object serializableObjectOutLocal) {
         // Always one thread at a time should reply using the same Socket.
         // This should not prevent listening.
         synchronized (this.sendLock) {
             try {
                 // Writing the object to stream
-                this.objectOutputStream.writeObject(serializableObjectOutLocal);
-                this.objectOutputStream.flush();
+                if (this.framedStreams != null) {
+                    this.framedStreams.writeEncoded((byte[]) serializableObjectOutLocal);
+                } else {
+                    this.objectOutputStream.writeMessage(serializableObjectOutLocal);
+                }
                 return true;
             } catch (IOException e) {
                 // The object could not be written to the stream
@@ -106,34 +209,51 @@ public class ClientController {
     /**
      * Closes the connection with the Client.
      * It is silent, meaning that it does not throw exceptions upon failure.
+     * It never waits for the writer thread: closing the socket is what unblocks a writer stuck on a full
+     * TCP window.
      */
     void silentClose() {
-        // Closing everything possible, all together
-        try {
-            this.objectInputStream.close();
-        } catch (IOException ignored) {
-            // Ignoring exceptions
-        } finally {
-            this.objectInputStream = null;
-        }
+        // Discarding whatever was still to be sent and stopping the writer thread
+        this.outbound.close();
 
-        try {
-            this.objectOutputStream.close();
-        } catch (IOException ignored) {
-            // Ignoring exceptions
-        } finally {
-            this.objectOutputStream = null;
+        LivenessWheel.Session session = this.liveness;
+        if (session != null) {
+            session.cancel();
         }
 
+        // Closing the socket closes both its streams, whatever protocol is in use
         try {
             this.socket.close();
         } catch (IOException ignored) {
             // Ignoring exceptions
-        } finally {
-            this.socket = null;
         }
     }
 
+    /**
+     * Starts tracking the liveness of the Client: if nothing is read from it for timeoutMs, onExpiry is called.
+     * @param timeoutMs The time after which a silent Client is considered disconnected.
+     * @param onExpiry Called when the Client is considered disconnected.
+     */
+    void trackLiveness(long timeoutMs, Runnable onExpiry) {
+        this.liveness = LivenessWheel.getInstance().track(timeoutMs, onExpiry);
+    }
+
+    /**
+     * Gets the queue of the items waiting to be written to the Client.
+     * @return The outbound queue.
+     */
+    OutboundQueue<Object> getOutbound() {
+        return this.outbound;
+    }
+
+    /**
+     * Gets the serialization session of the connection.
+     * @return The object output stream, null when using the framed protocol (every frame is serialized on its own).
+     */
+    SessionObjectOutputStream getSerializationSession() {
+        return this.objectOutputStream;
+    }
+
     /**
      * Gets the socket of the Client.
      * @return The socket of the Client.
@@ -0,0 +1,102 @@
+package it.polimi.ingsw.network.tcpip;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and helpers of the framed socket protocol.
+ * <p>
+ * A framed Server speaks first: right after accepting, it writes {@link #MAGIC}. The Client reads the first four
+ * bytes of the connection: if they are {@link #MAGIC} the framed protocol is used, otherwise they are the header of
+ * a Java serialization stream and the legacy (one ObjectStream per connection) protocol is used.
+ * <p>
+ * Every frame is a 4 bytes big-endian length followed by that many bytes of payload. The first frame in each
+ * direction is a hello used to negotiate the codec of the connection (see
+ * {@link it.polimi.ingsw.network.codec.Codecs}); every following payload is a single object encoded with that codec,
+ * so frames can be decoded independently of each other.
+ */
+public final class FramedProtocol {
+    /**
+     * Preamble written by a framed Server ("CXN1"). It can never collide with the Java serialization
+     * stream header (0xACED0005).
+     */
+    public static final int MAGIC = 0x43584E31;
+
+    /**
+     * Length of the frame header, in bytes.
+     */
+    public static final int HEADER_BYTES = 4;
+
+    /**
+     * Frames bigger than this are considered a protocol violation and cause the connection to be closed.
+     */
+    public static final int MAX_FRAME_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Limit of the hello frame of the Client: a list of codec ids.
+     */
+    public static final int MAX_HELLO_BYTES = 16;
+
+    /**
+     * Limit of the frames a Client can send before logging in: until then it can only send its username and
+     * heartbeats, so it cannot make the Server allocate big buffers without even having a username.
+     */
+    public static final int MAX_LOGIN_FRAME_BYTES = 4 * 1024;
+
+    // Private constructor to prevent instantiation, since static classes has no meaning to be instantiated.
+    private FramedProtocol() {
+    }
+
+    /**
+     * Serializes a single object into a standalone payload.
+     * @param serializableObject The object to serialize.
+     * @return The payload bytes.
+     * @throws IOException If the object could not be serialized.
+     */
+    public static byte[] serialize(Object serializableObject) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(serializableObject);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a payload produced by {@link #serialize(Object)}.
+     * @param payload The payload bytes.
+     * @return The deserialized object.
+     * @throws IOException If the payload is not a valid serialization.
+     * @throws ClassNotFoundException If the class of the serialized object is unknown.
+     */
+    public static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return objectInputStream.readObject();
+        }
+    }
+
+    /**
+     * Builds a complete frame: the length header followed by the payload.
+     * @param payload The payload of the frame.
+     * @return The frame bytes.
+     */
+    public static byte[] frame(byte[] payload) {
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Checks that a frame length read from the network is acceptable at the current stage of the connection.
+     * @param length The length read.
+     * @param maxLength The biggest length accepted.
+     * @throws InvalidTCPConnectionException If the length is negative or too big.
+     */
+    public static void checkFrameLength(int length, int maxLength) throws InvalidTCPConnectionException {
+        if (length < 0 || length > maxLength) {
+            throw new InvalidTCPConnectionException("Invalid frame length received: " + length + ".");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package it.polimi.ingsw.network.tcpip;
+
+/**
+ * Represents a specific Server exception to be thrown whenever an accepted Client does not complete
+ * its handshake in time.
+ */
+public class HandshakeTimeoutException extends InvalidTCPConnectionException {
+    public HandshakeTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -10,7 +10,7 @@ public class HeartbeatSenser {
      */
     public static void sense(String connectionUUID) {
         try {
-            Server.getInstance().sendSerializableObject(connectionUUID, new Sense());
+            ActiveTransport.get().sendSerializableObject(connectionUUID, new Sense());
         } catch (ServerException | InvalidTCPConnectionException ignored) {
             // Sense failed. What does this mean?
             // Probably something is wrong with the connection, but is no HeartbeatSenser responsibility
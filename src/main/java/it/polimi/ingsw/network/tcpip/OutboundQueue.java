@@ -0,0 +1,164 @@
+package it.polimi.ingsw.network.tcpip;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded queue of the items waiting to be written to a single connection.
+ * <p>
+ * Senders only enqueue, they never touch the socket, so a Client with a full TCP window can no longer stall the
+ * thread that is sending to it (and, with it, the broadcast to every other Client of the match).
+ * <p>
+ * The queue has three thresholds:
+ * <ul>
+ *     <li>capacity: items offered to a full queue are refused and counted, and the Server closes the connection
+ *     (a gap in the stream could be a reply the Client waits for forever);</li>
+ *     <li>high watermark: once reached, the connection is considered a slow consumer;</li>
+ *     <li>low watermark: once the queue drains down to it, the connection is no longer a slow consumer.</li>
+ * </ul>
+ * A connection that stays a slow consumer for longer than evictAfterMs is to be evicted by its Server.
+ * @param <T> The type of the queued items.
+ */
+public class OutboundQueue<T> {
+    /**
+     * Thresholds of an OutboundQueue.
+     * @param capacity Maximum number of queued items.
+     * @param highWatermark Depth at which the connection becomes a slow consumer.
+     * @param lowWatermark Depth at which the connection stops being a slow consumer.
+     * @param evictAfterMs How long a connection may stay a slow consumer before being evicted.
+     */
+    public record Limits(int capacity, int highWatermark, int lowWatermark, long evictAfterMs) {
+        public Limits {
+            if (lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > capacity || evictAfterMs < 0) {
+                throw new IllegalArgumentException("Required: 0 <= lowWatermark < highWatermark <= capacity " +
+                        "and evictAfterMs >= 0.");
+            }
+        }
+    }
+
+    private static Limits defaultLimits = new Limits(1024, 256, 64, 5000);
+
+    /**
+     * Sets the limits used by the queues created from now on. To be called at startup.
+     * @param limits The limits to use.
+     */
+    public static synchronized void setDefaultLimits(Limits limits) {
+        defaultLimits = limits;
+    }
+
+    public static synchronized Limits getDefaultLimits() {
+        return defaultLimits;
+    }
+
+    /* Start of the class implementation */
+    private final Limits limits;
+    private final ArrayDeque<T> queue;
+    private long dropped;
+    private long slowSinceMs;
+    private boolean closed;
+
+    /**
+     * Creates a queue with the default limits.
+     */
+    public OutboundQueue() {
+        this(getDefaultLimits());
+    }
+
+    public OutboundQueue(Limits limits) {
+        this.limits = limits;
+        this.queue = new ArrayDeque<>();
+        this.dropped = 0;
+        this.slowSinceMs = -1;
+        this.closed = false;
+    }
+
+    /**
+     * Enqueues an item, without ever blocking.
+     * @param item The item to enqueue.
+     * @return True if the item has been enqueued, false if it has been dropped because the queue is full.
+     * @throws InvalidTCPConnectionException If the queue has been closed.
+     */
+    public synchronized boolean offer(T item) throws InvalidTCPConnectionException {
+        if (this.closed) {
+            throw new InvalidTCPConnectionException("The used TCP connection may be invalid.");
+        }
+
+        if (this.queue.size() >= this.limits.capacity()) {
+            this.dropped++;
+            return false;
+        }
+
+        this.queue.addLast(item);
+
+        if (this.queue.size() >= this.limits.highWatermark() && this.slowSinceMs < 0) {
+            this.slowSinceMs = System.currentTimeMillis();
+        }
+
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * Waits for an item and removes it from the queue.
+     * @return The item, or null if the queue has been closed.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public synchronized T take() throws InterruptedException {
+        while (this.queue.isEmpty() && !this.closed) {
+            this.wait();
+        }
+
+        return this.closed ? null : this.removeFirst();
+    }
+
+    /**
+     * Gets the first item without removing it.
+     * @return The first item, or null if the queue is empty.
+     */
+    public synchronized T peek() {
+        return this.queue.peekFirst();
+    }
+
+    /**
+     * Removes the first item, without blocking.
+     * @return The removed item, or null if the queue is empty.
+     */
+    public synchronized T poll() {
+        return this.queue.isEmpty() ? null : this.removeFirst();
+    }
+
+    private T removeFirst() {
+        T item = this.queue.removeFirst();
+
+        if (this.queue.size() <= this.limits.lowWatermark()) {
+            this.slowSinceMs = -1;
+        }
+
+        return item;
+    }
+
+    /**
+     * Closes the queue: queued items are discarded, waiting takers are woken up and further offers fail.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.queue.clear();
+        this.notifyAll();
+    }
+
+    /**
+     * Tells whether the connection has been a slow consumer for too long and has to be evicted.
+     * @param nowMs The current time in milliseconds.
+     * @return True if the connection has to be evicted.
+     */
+    public synchronized boolean mustEvict(long nowMs) {
+        return this.slowSinceMs >= 0 && nowMs - this.slowSinceMs > this.limits.evictAfterMs();
+    }
+
+    public synchronized int getDepth() {
+        return this.queue.size();
+    }
+
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+}
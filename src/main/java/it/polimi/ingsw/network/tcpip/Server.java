@@ -1,25 +1,38 @@
 package it.polimi.ingsw.network.tcpip;
 
+import it.polimi.ingsw.logger.Logger;
+import it.polimi.ingsw.network.Profiles;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+import it.polimi.ingsw.util.ServerThreads;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Describes a TCPIP server.
  * Is a singleton.
  */
-public class Server {
+public class Server implements ServerTransport {
     private static Server instance;
 
-    private Server(Integer port, Integer heartbeatMs) throws ServerException {
+    private Server(Integer port, Integer heartbeatMs, Boolean framed) throws ServerException {
         if (port < 0 || port > 65353) {
             throw new ServerException("Invalid value specified for 'port'. Valid range: from 0 to 65353.");
         }
 
         this.port = port;
         this.heartbeatMs = heartbeatMs;
+        this.framed = framed;
 
         try {
             // Creating the socket
@@ -52,18 +65,33 @@ public class Server {
         this.publicIPAddress = publicIPAddress;
 
         this.staledConnections = new HashMap<>();
+        this.housekeeping = Executors.newSingleThreadScheduledExecutor(ServerThreads.factory());
+        this.housekeeping.scheduleAtFixedRate(this::evictSlowConsumers,
+                EVICTION_CHECK_MS, EVICTION_CHECK_MS, TimeUnit.MILLISECONDS);
     }
 
         public static Server getInstance(Integer port, Integer heartbeatMs) throws ServerException {
+        return getInstance(port, heartbeatMs, false);
+    }
+
+    /**
+     * Gets the Server, creating it if needed.
+     * @param port The port to listen on.
+     * @param heartbeatMs The time after which a silent Client is considered disconnected.
+     * @param framed True to speak the framed protocol (with codec negotiation), false to use object streams.
+     * @return The Server.
+     * @throws ServerException If the port is not valid.
+     */
+    public static Server getInstance(Integer port, Integer heartbeatMs, Boolean framed) throws ServerException {
         if (instance == null) {
-            instance = new Server(port, heartbeatMs);
+            instance = new Server(port, heartbeatMs, framed);
         }
         return instance;
     }
 
         public static Server getInstance(Integer port) throws ServerException {
         if (instance == null) {
-            instance = new Server(port, 6500);
+            instance = new Server(port, 6500, false);
         }
         return instance;
     }
@@ -81,11 +109,32 @@ public class Server {
     private final Integer port;
     private final Integer heartbeatMs;
 
+    /**
+     * Whether the accepted connections speak the framed protocol instead of object streams.
+     */
+    private final Boolean framed;
+
     /**
      * Welcome Socket. Used to welcome incoming TCP connections to this server.
      */
     private final ServerSocket welcomeSocket;
 
+    /**
+     * Maximum time a Client is given to complete its handshake after being accepted.
+     */
+    public static final Integer HANDSHAKE_TIMEOUT_MS = 5000;
+
+    /**
+     * How often the connections are checked for slow consumers to be evicted.
+     */
+    private static final Integer EVICTION_CHECK_MS = 250;
+
+    /**
+     * Closes the sockets whose handshake takes longer than HANDSHAKE_TIMEOUT_MS and periodically evicts
+     * the slow consumers.
+     */
+    private final ScheduledExecutorService housekeeping;
+
     /**
      * HashMap to track staled connections.
      *
@@ -104,18 +153,36 @@ public class Server {
     private final HashMap<String, ClientController> staledConnections;
 
     /**
-     * Launches the Server welcoming session to welcome the first incoming TCP connection.
-     * The incoming TCP connection is received on the welcomeSocket; once received, if the connection is considered
-     * valid (based on different checks (not specified here)) a ClientController is created to separately handle
-     * the specific connection. The ClientController may be referred in another methods of the Server using the
-     * same connectionName, that must be unique.
+     * Waits for the next incoming TCP connection on the welcomeSocket and returns it as soon as it is accepted.
+     * Nothing else is done here: setting up the streams (which requires the Client to speak) is left to
+     * {@link #handshake(String, Socket)}, so that a slow Client can never hold back the accepting of the others.
+     * @return The accepted socket.
+     * @throws InvalidTCPConnectionException If accepting failed.
+     */
+    public Socket acceptSocket() throws InvalidTCPConnectionException {
+        try {
+            // Waiting... accepting... TCP connection is now alive
+            return this.welcomeSocket.accept();
+        } catch (IOException e) {
+            throw new InvalidTCPConnectionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Completes the handshake of an accepted socket: the streams are set up and, if valid, a ClientController is
+     * created to separately handle the specific connection. The ClientController may be referred in another
+     * methods of the Server using the same connectionName, that must be unique.
+     * The Client has HANDSHAKE_TIMEOUT_MS milliseconds to complete the handshake, otherwise the socket is closed.
+     * Handshakes of different sockets may run concurrently.
      * @param connectionName The name of the connection to be created.
-     * @throws InvalidTCPConnectionException If the incoming TCP connection is not valid.
+     * @param socket The accepted socket.
+     * @throws InvalidTCPConnectionException If the handshake failed or timed out.
      * @throws ServerException If the connectionName is not unique.
      */
-    public void seekReserve(String connectionName) throws ServerException, InvalidTCPConnectionException {
+    public void handshake(String connectionName, Socket socket) throws ServerException, InvalidTCPConnectionException {
         synchronized (this.staledConnections) {
             if (this.staledConnections.containsKey(connectionName)) {
+                silentCloseSocket(socket);
                 throw new ServerException("A stale connection with name 'connectionName' already exists." +
                         " Connection names must be unique.");
             }
@@ -124,30 +191,73 @@ public class Server {
             this.staledConnections.put(connectionName, null);
         }
 
-        // Creating Socket, specific for a single TCP session
-        Socket socket;
+        // The read timeout bounds every single read of the handshake; the watchdog bounds the whole of it,
+        // so that a Client trickling bytes cannot keep the handshake alive forever
+        AtomicBoolean expired = new AtomicBoolean(false);
+        ClientController cc = null;
+        ScheduledFuture<?> watchdog = this.housekeeping.schedule(() -> {
+            expired.set(true);
+            silentCloseSocket(socket);
+        }, HANDSHAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 
-        synchronized (this.welcomeSocket) {
-            try {
-                // Waiting... accepting... TCP connection is now alive
-                socket = this.welcomeSocket.accept();
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
 
-                // The Server will treat any connected Client that does not speak nor send heartbeat
-                // within heartbeatMs milliseconds as disconnected due to lost connection
-                socket.setSoTimeout(this.heartbeatMs);
+            // Creating ClientController
+            cc = new ClientController(socket, this.framed);
 
-                // Creating ClientController
-                ClientController cc = new ClientController(socket);
+            if (!watchdog.cancel(false)) {
+                throw new IOException("Handshake timed out.");
+            }
 
-                synchronized (this.staledConnections) {
-                    // Filling the hollow
-                    this.staledConnections.replace(connectionName, cc);
-                }
-            } catch (IOException e) {
-                // Fail. Removing the connectionName
-                this.silentDumpHollow(connectionName);
-                throw new InvalidTCPConnectionException(e.getMessage());
+            // The Server will treat any connected Client that does not speak nor send heartbeat
+            // within heartbeatMs milliseconds as disconnected due to lost connection. Reads no longer time out:
+            // the liveness wheel tracks the last time the Client has been heard of, for every connection at once
+            socket.setSoTimeout(0);
+            cc.trackLiveness(this.heartbeatMs, () -> {
+                Logger.logInfo("Connection " + connectionName.substring(0, 3) + " timed out.");
+                Profiles.getInstance().silentPruneUser(connectionName, false);
+            });
+
+            synchronized (this.staledConnections) {
+                // Filling the hollow
+                this.staledConnections.replace(connectionName, cc);
+            }
+
+            ServerMetrics.getInstance().registerOutboundQueue(connectionName, cc.getOutbound());
+
+            if (cc.getSerializationSession() != null) {
+                ServerMetrics.getInstance().registerSerializationSession(connectionName, cc.getSerializationSession());
+            }
+        } catch (IOException e) {
+            // Fail. Removing the connectionName
+            watchdog.cancel(false);
+            silentCloseSocket(socket);
+
+            if (cc != null) {
+                cc.silentClose();
             }
+
+            this.silentDumpHollow(connectionName);
+
+            if (expired.get() || e instanceof SocketTimeoutException) {
+                throw new HandshakeTimeoutException("Handshake timed out.");
+            }
+
+            throw new InvalidTCPConnectionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes a socket that has no ClientController yet.
+     * The method is silent: no exception is thrown if the closing procedure fails.
+     * @param socket The socket to be closed.
+     */
+    private static void silentCloseSocket(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Ignoring exceptions
         }
     }
 
@@ -158,6 +268,7 @@ public class Server {
      *
      * @param connectionName The name of the connection to be closed.
      */
+    @Override
     public void silentClose(String connectionName) {
         synchronized (this.staledConnections) {
             ClientController cc = this.staledConnections.get(connectionName);
@@ -165,10 +276,38 @@ public class Server {
             if (cc != null) {
                 cc.silentClose();
                 this.staledConnections.remove(connectionName);
+                ServerMetrics.getInstance().unregisterOutboundQueue(connectionName);
+                ServerMetrics.getInstance().unregisterSerializationSession(connectionName);
             }
         }
     }
 
+    /**
+     * Evicts the Clients whose outbound queue stayed over its high watermark for too long.
+     * Their connection is closed right away, then the User is pruned on a separate thread, since pruning goes
+     * through the controllers and may wait for their locks.
+     */
+    private void evictSlowConsumers() {
+        long now = System.currentTimeMillis();
+        List<String> slowConsumers = new ArrayList<>();
+
+        synchronized (this.staledConnections) {
+            this.staledConnections.forEach((connectionName, cc) -> {
+                if (cc != null && cc.getOutbound().mustEvict(now)) {
+                    slowConsumers.add(connectionName);
+                }
+            });
+        }
+
+        for (String connectionName : slowConsumers) {
+            Logger.logWarning("Evicting slow consumer " + connectionName.substring(0, 3) + ".");
+            ServerMetrics.getInstance().onSlowConsumerEvicted();
+
+            this.silentClose(connectionName);
+            ServerThreads.start(() -> Profiles.getInstance().silentPruneUser(connectionName, false));
+        }
+    }
+
     /**
      * Dumps the hollow connectionName allocated in the staledConnections map.
      * The method is silent: no exception is thrown if the dump-hollow procedure fails.
@@ -186,14 +325,42 @@ public class Server {
     }
 
     /**
-     * Serializes and sends a serializable object to the client handled by the ClientController cc.
+     * Enqueues a serializable object to be sent to the client handled by the ClientController cc.
+     * The method never blocks on the network: a slow client only makes its own queue grow.
      * @param connectionName The name of the connection to be used.
      * @param serializableObjectToSend The serializable object to be sent.
      * @throws ServerException If the connectionName is not valid.
      * @throws InvalidTCPConnectionException If the TCP connection is not valid.
      */
+    @Override
     public void sendSerializableObject(String connectionName, Object serializableObjectToSend)
     throws ServerException, InvalidTCPConnectionException {
+        this.enqueue(connectionName, cc -> cc.enqueue(serializableObjectToSend));
+    }
+
+    /**
+     * Enqueues a broadcast frame to be sent to the client handled by the ClientController cc.
+     * @param connectionName The name of the connection to be used.
+     * @param frame The frame to be sent.
+     * @throws ServerException If the connectionName is not valid.
+     * @throws InvalidTCPConnectionException If the TCP connection is not valid.
+     */
+    @Override
+    public void sendSharedFrame(String connectionName, SharedFrame frame)
+            throws ServerException, InvalidTCPConnectionException {
+        this.enqueue(connectionName, cc -> cc.enqueueShared(frame));
+    }
+
+    /**
+     * One of the enqueue methods of a ClientController.
+     */
+    @FunctionalInterface
+    private interface Enqueuer {
+        Boolean enqueueTo(ClientController cc) throws InvalidTCPConnectionException;
+    }
+
+    private void enqueue(String connectionName, Enqueuer enqueuer)
+            throws ServerException, InvalidTCPConnectionException {
         ClientController cc = null;
 
         synchronized (this.staledConnections) {
@@ -205,15 +372,29 @@ public class Server {
                     "connectionName. A non-hollow connectionName is required.");
         }
 
-        // Sending
-        Boolean sendResult = cc.notthrow__sendSerializableObject(serializableObjectToSend);
+        // Sending: the object is only enqueued, the writer thread of the ClientController will write it
+        boolean enqueued;
 
-        if (!sendResult) {
+        try {
+            enqueued = enqueuer.enqueueTo(cc);
+        } catch (InvalidTCPConnectionException e) {
             // Failure in sending. The connection is probably not valid anymore. Closing...
             this.silentClose(connectionName);
 
             throw new InvalidTCPConnectionException("The used TCP connection may be invalid.");
         }
+
+        if (!enqueued) {
+            // The Client is not reading fast enough and its queue is full. The object cannot just be skipped: it
+            // may be the reply the Client is waiting for, and the rest of the stream would go on without it.
+            // Closing, the caller prunes the User
+            Logger.logWarning("Closing slow consumer " + connectionName.substring(0, 3) + ": its outbound queue is full.");
+            ServerMetrics.getInstance().onOutboundDropped();
+            ServerMetrics.getInstance().onSlowConsumerEvicted();
+            this.silentClose(connectionName);
+
+            throw new InvalidTCPConnectionException("The outbound queue of the connection is full.");
+        }
     }
 
     /**
@@ -247,6 +428,20 @@ public class Server {
         }
     }
 
+    /**
+     * The blocking Server needs a ListenLoop for each connection, since reading is blocking.
+     * @return Always true.
+     */
+    @Override
+    public Boolean needsListenLoop() {
+        return true;
+    }
+
+    @Override
+    public Boolean speaksFramed() {
+        return this.framed;
+    }
+
         public String getPublicIpAddress() {
         return this.publicIPAddress;
     }
@@ -0,0 +1,51 @@
+package it.polimi.ingsw.network.tcpip;
+
+/**
+ * Describes the socket side of the Server as seen by the Users: something able to deliver serializable objects
+ * to a connection and to close it.
+ * It is implemented by the blocking {@link Server} and by the selector-based
+ * {@link it.polimi.ingsw.network.nio.NioServer}.
+ */
+public interface ServerTransport {
+    /**
+     * Sends a serializable object to the client identified by connectionName.
+     * @param connectionName The name of the connection to be used.
+     * @param serializableObjectToSend The serializable object to be sent.
+     * @throws ServerException If the connectionName is not valid.
+     * @throws InvalidTCPConnectionException If the TCP connection is not valid.
+     */
+    void sendSerializableObject(String connectionName, Object serializableObjectToSend)
+            throws ServerException, InvalidTCPConnectionException;
+
+    /**
+     * Sends a broadcast frame to the client identified by connectionName, reusing its encoding when possible.
+     * @param connectionName The name of the connection to be used.
+     * @param frame The frame to be sent.
+     * @throws ServerException If the connectionName is not valid.
+     * @throws InvalidTCPConnectionException If the TCP connection is not valid.
+     */
+    void sendSharedFrame(String connectionName, SharedFrame frame)
+            throws ServerException, InvalidTCPConnectionException;
+
+    /**
+     * Closes the connection identified by connectionName.
+     * The method is silent: no exception is thrown if the closing procedure fails.
+     * @param connectionName The name of the connection to be closed.
+     */
+    void silentClose(String connectionName);
+
+    /**
+     * Tells whether each connection of this transport needs its own
+     * {@link it.polimi.ingsw.network.liveloop.ListenLoop} to be read.
+     * @return True if reading is blocking and per-connection, false if the transport reads by itself.
+     */
+    Boolean needsListenLoop();
+
+    /**
+     * Tells whether the connections of this transport speak the framed protocol, whose Clients negotiate a codec.
+     * The Clients using object streams may predate the batches of events and the state deltas: they only get the
+     * events one by one, as before.
+     * @return True if every connection speaks the framed protocol, false if they use object streams.
+     */
+    Boolean speaksFramed();
+}
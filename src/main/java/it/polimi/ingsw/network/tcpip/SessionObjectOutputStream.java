@@ -0,0 +1,231 @@
+package it.polimi.ingsw.network.tcpip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * ObjectOutputStream for a long-lived connection, writing one top-level message at a time.
+ * <p>
+ * A plain ObjectOutputStream remembers every object it ever wrote in its handle table, so that a second write
+ * of the same object is sent as a back-reference. On a connection living for hours this keeps every
+ * PlayerManuscript, CommonBoard and event ever sent reachable, and an object mutated after being sent arrives
+ * stale when sent again, since only its handle is written.
+ * <p>
+ * This stream bounds such a serialization session: the stream is reset (and its handle table emptied) according
+ * to a {@link ResetPolicy}, checked before writing each message. It also counts the bytes written and the
+ * handles assigned since the last reset.
+ */
+public class SessionObjectOutputStream extends ObjectOutputStream {
+    /**
+     * When a serialization session ends.
+     * @param trigger What is counted to decide when to reset.
+     * @param threshold How many frames or bytes a session may last; ignored with Trigger.MESSAGE.
+     */
+    public record ResetPolicy(Trigger trigger, long threshold) {
+        public enum Trigger {
+            /**
+             * Reset before every message: no object is ever sent as a back-reference to a previous message.
+             */
+            MESSAGE,
+            /**
+             * Reset once threshold messages have been written.
+             */
+            FRAMES,
+            /**
+             * Reset once threshold bytes have been written.
+             */
+            BYTES
+        }
+
+        public ResetPolicy {
+            if (trigger == null || threshold <= 0) {
+                throw new IllegalArgumentException("A trigger and a positive threshold are required.");
+            }
+        }
+
+        public static ResetPolicy everyMessage() {
+            return new ResetPolicy(Trigger.MESSAGE, 1);
+        }
+
+        public static ResetPolicy everyFrames(long frames) {
+            return new ResetPolicy(Trigger.FRAMES, frames);
+        }
+
+        public static ResetPolicy everyBytes(long bytes) {
+            return new ResetPolicy(Trigger.BYTES, bytes);
+        }
+
+        /**
+         * Parses a policy written as "message", "frames:N" or "bytes:N".
+         * @param value The policy to parse.
+         * @return The parsed policy.
+         * @throws IllegalArgumentException If the value is malformed.
+         */
+        public static ResetPolicy parse(String value) {
+            if (value.equals("message")) {
+                return everyMessage();
+            }
+
+            String[] parts = value.split(":");
+
+            if (parts.length == 2) {
+                switch (parts[0]) {
+                    case "frames" -> {
+                        return everyFrames(Long.parseLong(parts[1]));
+                    }
+                    case "bytes" -> {
+                        return everyBytes(Long.parseLong(parts[1]));
+                    }
+                }
+            }
+
+            throw new IllegalArgumentException("Expected message, frames:N or bytes:N.");
+        }
+    }
+
+    private static ResetPolicy defaultPolicy = ResetPolicy.everyMessage();
+
+    /**
+     * Sets the policy used by the streams created from now on. To be called at startup.
+     * @param policy The policy to use.
+     */
+    public static synchronized void setDefaultPolicy(ResetPolicy policy) {
+        defaultPolicy = policy;
+    }
+
+    public static synchronized ResetPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    /**
+     * Counts the bytes actually handed to the underlying stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private volatile long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+            this.count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+    }
+
+    /* Start of the class implementation */
+    private final CountingOutputStream counter;
+    private final ResetPolicy policy;
+
+    // Only updated by the thread writing, under the lock of writeMessage, but read by any thread
+    private volatile long messagesSinceReset;
+    private volatile long bytesAtReset;
+    private volatile long handlesSinceReset;
+    private volatile long resets;
+
+    /**
+     * Creates a stream with the default policy and writes the serialization stream header.
+     * @param out The stream to write to.
+     * @throws IOException If the header cannot be written.
+     */
+    public SessionObjectOutputStream(OutputStream out) throws IOException {
+        this(new CountingOutputStream(out), getDefaultPolicy());
+    }
+
+    private SessionObjectOutputStream(CountingOutputStream counter, ResetPolicy policy) throws IOException {
+        super(counter);
+        this.counter = counter;
+        this.policy = policy;
+
+        this.messagesSinceReset = 0;
+        this.bytesAtReset = 0;
+        this.handlesSinceReset = 0;
+        this.resets = 0;
+
+        // Lets replaceObject count the objects entering the handle table
+        this.enableReplaceObject(true);
+    }
+
+    /**
+     * Writes a top-level message and flushes it, resetting the stream first if the policy says so.
+     * @param message The message to write.
+     * @throws IOException If the message cannot be written.
+     */
+    public synchronized void writeMessage(Object message) throws IOException {
+        if (this.mustReset()) {
+            this.reset();
+
+            this.resets++;
+            this.messagesSinceReset = 0;
+            this.handlesSinceReset = 0;
+            this.bytesAtReset = this.counter.getCount();
+        }
+
+        this.writeObject(message);
+        this.flush();
+
+        this.messagesSinceReset++;
+    }
+
+    private boolean mustReset() {
+        if (this.messagesSinceReset == 0) {
+            // Nothing written since the last reset: the handle table is already empty
+            return false;
+        }
+
+        return switch (this.policy.trigger()) {
+            case MESSAGE -> true;
+            case FRAMES -> this.messagesSinceReset >= this.policy.threshold();
+            case BYTES -> this.getBytesSinceReset() >= this.policy.threshold();
+        };
+    }
+
+    /**
+     * Called by ObjectOutputStream for every object that is not already in the handle table, that is for every
+     * object about to get a handle.
+     */
+    @Override
+    protected Object replaceObject(Object obj) {
+        this.handlesSinceReset++;
+        return obj;
+    }
+
+    /**
+     * Gets the number of objects assigned a handle since the last reset, that is the number of objects kept
+     * reachable by this stream. Class descriptors are not counted.
+     * @return The size of the handle table.
+     */
+    public long getHandleTableSize() {
+        return this.handlesSinceReset;
+    }
+
+    public long getBytesWritten() {
+        return this.counter.getCount();
+    }
+
+    public long getBytesSinceReset() {
+        return this.counter.getCount() - this.bytesAtReset;
+    }
+
+    public long getResets() {
+        return this.resets;
+    }
+
+    public ResetPolicy getPolicy() {
+        return this.policy;
+    }
+}
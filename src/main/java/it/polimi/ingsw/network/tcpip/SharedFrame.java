@@ -0,0 +1,159 @@
+package it.polimi.ingsw.network.tcpip;
+
+import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.FiredBatch;
+import it.polimi.ingsw.network.codec.WireCodec;
+import it.polimi.ingsw.network.messages.Message;
+import it.polimi.ingsw.network.messages.MessageType;
+import it.polimi.ingsw.network.messages.SingleArgMessage;
+import it.polimi.ingsw.network.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A message to be broadcast, encoded at most once per codec and then written as is to every recipient.
+ * <p>
+ * The frame is shared by whatever the recipients of a broadcast already share, so that no lock is taken beyond the
+ * ones of the broadcast itself:
+ * <ul>
+ *     <li>the events of a game command reach each subscriber in a {@link FiredBatch}, the same instance for all the
+ *     subscribers getting the same events: its frame is attached to it, see {@link #ofBatch};</li>
+ *     <li>a frame built once and then sent to a list of users is shared as is;</li>
+ *     <li>the other events (e.g. the changes of the list of lobbies) are shared through a {@link Cache} owned by
+ *     their source, only used by the recipients of that source.</li>
+ * </ul>
+ * <p>
+ * Per-viewer variants (e.g. the DrawCoveredEvent with the cleaned card, sent to everyone but the drawer) are just
+ * different batches or event instances: each variant gets its own SharedFrame and is encoded once for all of its
+ * viewers.
+ * <p>
+ * The encoded frames are never modified after being built, so they can be written concurrently by any number of
+ * connections.
+ */
+public final class SharedFrame {
+    /**
+     * Identifies some content (an event) sent with a given message type. Contents are compared by identity: two
+     * equal events fired separately are two different broadcasts.
+     */
+    private record ContentKey(MessageType type, Object content) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ContentKey other && this.type == other.type && this.content == other.content;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.type.hashCode() + System.identityHashCode(this.content);
+        }
+    }
+
+    /**
+     * The frames of the last events of a single source, shared by the recipients of that source.
+     * The recipients of an event ask for its frame right after it fires, so only a few events need to be remembered.
+     */
+    public static final class Cache {
+        private final Map<ContentKey, SharedFrame> recentEvents;
+
+        /**
+         * @param size How many recent events are remembered.
+         */
+        public Cache(int size) {
+            this.recentEvents = new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ContentKey, SharedFrame> eldest) {
+                    return this.size() > size;
+                }
+            };
+        }
+
+        /**
+         * Gets the frame carrying an event, shared with every other recipient of the same event instance.
+         * @param type The type of the message wrapping the event.
+         * @param event The event to send.
+         * @return The shared frame.
+         */
+        public synchronized SharedFrame ofEvent(MessageType type, Event event) {
+            return this.recentEvents.computeIfAbsent(new ContentKey(type, event), key -> SharedFrame.ofEvent(type, event));
+        }
+    }
+
+    /**
+     * Gets a new frame carrying an event, to be shared by the caller with all of its recipients.
+     * @param type The type of the message wrapping the event.
+     * @param event The event to send.
+     * @return The frame.
+     */
+    public static SharedFrame ofEvent(MessageType type, Event event) {
+        return new SharedFrame(new SingleArgMessage<>(type, event));
+    }
+
+    /**
+     * Gets the frame carrying a batch of events, shared with every other recipient of the same batch instance.
+     * @param batch The batch to send.
+     * @param message Builds the message carrying the batch, if no other recipient did it before.
+     * @return The shared frame.
+     */
+    public static SharedFrame ofBatch(FiredBatch batch, Supplier<Message> message) {
+        return batch.attach(() -> new SharedFrame(message.get()));
+    }
+
+    /* Start of the class implementation */
+    private final Message message;
+
+    /**
+     * Complete frames (header included), by codec id.
+     */
+    private final Map<Byte, byte[]> frames;
+
+    public SharedFrame(Message message) {
+        this.message = message;
+        this.frames = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the message carried by this frame, for the connections that do not use the framed protocol.
+     * @return The message.
+     */
+    public Message getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Gets the complete frame (header included) carrying the message, encoding it if no other recipient
+     * using the same codec did it before. The returned array must not be modified.
+     * @param codec The codec of the recipient.
+     * @return The frame.
+     * @throws IOException If the message cannot be encoded.
+     */
+    public byte[] getFrame(WireCodec codec) throws IOException {
+        byte[] frame = this.frames.get(codec.getId());
+
+        if (frame != null) {
+            ServerMetrics.getInstance().onSharedFrameReused();
+            return frame;
+        }
+
+        // Recipients using the same codec wait for the first one to encode, instead of encoding it themselves
+        synchronized (this) {
+            frame = this.frames.get(codec.getId());
+
+            if (frame == null) {
+                frame = FramedProtocol.frame(codec.encode(this.message));
+                this.frames.put(codec.getId(), frame);
+                ServerMetrics.getInstance().onSharedFrameEncoded();
+            } else {
+                ServerMetrics.getInstance().onSharedFrameReused();
+            }
+        }
+
+        return frame;
+    }
+
+    public MessageType getType() {
+        return this.message.getType();
+    }
+}
@@ -0,0 +1,137 @@
+package it.polimi.ingsw.util;
+
+import it.polimi.ingsw.logger.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single source of the threads created by the Server for its loops, event handlers and executors.
+ * The thread kind is chosen once, at startup: platform threads (default) or virtual threads.
+ * Every thread created through this class is counted, so the live and peak thread counts of the two modes
+ * can be compared under the same load.
+ */
+public final class ServerThreads {
+    /**
+     * The kinds of thread the Server can run on.
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private static Mode mode = Mode.PLATFORM;
+    private static ThreadFactory delegate = Thread::new;
+
+    private static final AtomicInteger liveThreads = new AtomicInteger(0);
+    private static final AtomicInteger peakThreads = new AtomicInteger(0);
+
+    /**
+     * Counting factory handed out to executors: every thread goes through the delegate currently configured.
+     */
+    private static final ThreadFactory factory = runnable -> currentDelegate().newThread(counted(runnable));
+
+    // Private constructor to prevent instantiation, since static classes has no meaning to be instantiated.
+    private ServerThreads() {
+    }
+
+    /**
+     * Sets the kind of thread used from now on. To be called at startup, before any thread is created.
+     * Virtual threads need a runtime that supports them (Java 21+): when they are not available the
+     * platform mode is kept and a warning is logged.
+     * @param requested The requested mode.
+     * @return The mode actually in use.
+     */
+    public static synchronized Mode setMode(Mode requested) {
+        if (requested == Mode.VIRTUAL) {
+            ThreadFactory virtualFactory = lookupVirtualThreadFactory();
+
+            if (virtualFactory != null) {
+                delegate = virtualFactory;
+                mode = Mode.VIRTUAL;
+                return mode;
+            }
+
+            Logger.logWarning("Virtual threads are not supported by this runtime: falling back to platform threads.");
+        }
+
+        delegate = Thread::new;
+        mode = Mode.PLATFORM;
+        return mode;
+    }
+
+    public static synchronized Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets the thread factory to be used by the Server's executors.
+     * @return The counting thread factory.
+     */
+    public static ThreadFactory factory() {
+        return factory;
+    }
+
+    /**
+     * Creates and starts a new thread running the given task.
+     * @param task The task to run.
+     * @return The started thread.
+     */
+    public static Thread start(Runnable task) {
+        Thread thread = factory.newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Gets the number of threads created through this class that are still running.
+     * @return The number of live threads.
+     */
+    public static int getLiveThreads() {
+        return liveThreads.get();
+    }
+
+    /**
+     * Gets the highest number of threads created through this class that were running at the same time.
+     * @return The peak number of live threads.
+     */
+    public static int getPeakThreads() {
+        return peakThreads.get();
+    }
+
+    private static synchronized ThreadFactory currentDelegate() {
+        return delegate;
+    }
+
+    private static Runnable counted(Runnable runnable) {
+        return () -> {
+            int live = liveThreads.incrementAndGet();
+            peakThreads.accumulateAndGet(live, Math::max);
+
+            try {
+                runnable.run();
+            } finally {
+                liveThreads.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Looks up Thread.ofVirtual().factory() reflectively, so that the code still compiles and runs on runtimes
+     * without virtual threads.
+     * @return The virtual thread factory, or null if the runtime does not support virtual threads.
+     */
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+
+            // Resolved on the public Thread.Builder interface: the concrete builder class is not accessible
+            Method factoryMethod = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factoryMethod.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -62,6 +62,8 @@ module it.polimi.ingsw {
     exports it.polimi.ingsw.network.rmi;
     exports it.polimi.ingsw.network.tcpip;
     exports it.polimi.ingsw.network;
+    exports it.polimi.ingsw.network.messages;
+    exports it.polimi.ingsw.network.codec;
     exports it.polimi.ingsw.gui.components.views;
     opens it.polimi.ingsw.gui.components.views to javafx.fxml;
     exports it.polimi.ingsw.gui.components.panes;
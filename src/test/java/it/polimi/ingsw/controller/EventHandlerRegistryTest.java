@@ -0,0 +1,62 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.game.GameEvents;
+import it.polimi.ingsw.controller.event.game.TurnChangeEvent;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class EventHandlerRegistryTest {
+
+    @Test
+    public void handlersAreIndexedByTypeAndUsernameTest() {
+        EventHandlerRegistry registry = new EventHandlerRegistry();
+        Consumer<TurnChangeEvent> first = e -> {};
+        Consumer<TurnChangeEvent> second = e -> {};
+        Consumer<TurnChangeEvent> bot = e -> {};
+
+        registry.add("alice", GameEvents.TURN_CHANGE, first);
+        registry.add("alice", GameEvents.TURN_CHANGE, second);
+        registry.add(null, GameEvents.TURN_CHANGE, bot);
+
+        assertEquals(List.of(first, second), registry.get("alice", GameEvents.TURN_CHANGE));
+        assertEquals(List.of(bot), registry.get(null, GameEvents.TURN_CHANGE));
+        assertTrue(registry.get("bob", GameEvents.TURN_CHANGE).isEmpty());
+        assertTrue(registry.get("alice", GameEvents.PLACE_EVENT).isEmpty());
+
+        Set<String> subscribers = registry.getSubscribers();
+        assertEquals(2, subscribers.size());
+        assertTrue(subscribers.contains("alice"));
+        assertTrue(subscribers.contains(null));
+
+        registry.remove(GameEvents.TURN_CHANGE, first);
+        assertEquals(List.of(second), registry.get("alice", GameEvents.TURN_CHANGE));
+
+        registry.removeAll("alice");
+        assertTrue(registry.get("alice", GameEvents.TURN_CHANGE).isEmpty());
+        assertEquals(Collections.singleton(null), registry.getSubscribers());
+    }
+
+    @Test
+    public void firingIsNotAffectedByConcurrentChangesTest() {
+        EventHandlerRegistry registry = new EventHandlerRegistry();
+        Consumer<TurnChangeEvent> first = e -> {};
+
+        registry.add("alice", GameEvents.TURN_CHANGE, first);
+        List<Consumer<TurnChangeEvent>> firing = registry.get("alice", GameEvents.TURN_CHANGE);
+
+        // Changing the registry while iterating over the handlers being fired
+        for (Consumer<TurnChangeEvent> ignored : firing) {
+            registry.add("alice", GameEvents.TURN_CHANGE, e -> {});
+            registry.remove(GameEvents.TURN_CHANGE, first);
+        }
+
+        assertEquals(List.of(first), firing);
+        assertEquals(1, registry.get("alice", GameEvents.TURN_CHANGE).size());
+    }
+}
@@ -1,5 +1,9 @@
 package it.polimi.ingsw.controller;
 
+import it.polimi.ingsw.controller.event.Event;
+import it.polimi.ingsw.controller.event.EventType;
+import it.polimi.ingsw.controller.event.FiredEvent;
+import it.polimi.ingsw.controller.event.game.GameEvents;
 import it.polimi.ingsw.controller.example.GameControllerExample;
 import it.polimi.ingsw.model.card.GoalCard;
 import it.polimi.ingsw.model.card.TypedCard;
@@ -11,7 +15,15 @@ import it.polimi.ingsw.model.player.PlayerColor;
 import it.polimi.ingsw.model.player.PlayerData;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -72,6 +84,12 @@ public class GameControllerTest {
         assertEquals("g0", all3.get(1).getUsername());
         assertEquals("g1", all3.get(2).getUsername());
         assertEquals("g2", all3.get(3).getUsername());
+
+        // Hidden cards show the clean card of the real one
+        for (int i = 0; i < p1.getHand().size(); i++) {
+            assertEquals(p1.getHand().get(i).cleanCard().getId(), all0.get(1).getHand().get(i).getId());
+            assertEquals(p1.getHand().get(i).cleanCard().getId(), gc.getCleanPlayerData("g1").getHand().get(i).getId());
+        }
     }
 
     @Test
@@ -196,6 +214,92 @@ public class GameControllerTest {
         assertThrows(RuntimeException.class, () -> gc.getManuscript("ciccio"));
     }
 
+    @Test
+    public void gameStateIsVersionedAndNotModifiedWhenUnchangedTest() {
+        GameController gc = new GameController(players4);
+
+        VersionedGameState first = gc.getGameState("g0", 0);
+        assertTrue(first.isModified());
+        assertEquals("g0", first.players().get(0).getUsername());
+        assertTrue(first.manuscripts().get("g0").isEmpty());
+
+        // Nothing changed: only the version is sent back
+        VersionedGameState same = gc.getGameState("g0", first.version());
+        assertFalse(same.isModified());
+        assertEquals(first.version(), same.version());
+
+        // A failed command changes nothing
+        assertFalse(gc.setStarterCard("ciccio", CardFace.FRONT));
+        assertFalse(gc.getGameState("g0", first.version()).isModified());
+
+        GameSnapshot before = gc.getSnapshot();
+        assertTrue(gc.setStarterCard("g0", CardFace.FRONT));
+
+        VersionedGameState after = gc.getGameState("g0", 0);
+        assertTrue(after.isModified());
+        assertTrue(after.version() > first.version());
+        assertFalse(after.manuscripts().get("g0").isEmpty());
+
+        // Published snapshots never change
+        assertTrue(before.getManuscript("g0").isEmpty());
+        assertThrows(RuntimeException.class, () -> gc.getGameState("ciccio", 0));
+    }
+
+    @Test
+    public void replicaFollowsTheMatchWithDeltasTest() throws InterruptedException {
+        GameController gc = new GameController(players4);
+        GameReplica replica = new GameReplica(version -> gc.getGameState("g0", version));
+        gc.addEventHandler("g0", GameEvents.STATE_DELTA, replica::apply);
+        replica.sync();
+        long start = replica.getVersion();
+
+        // Same setup as GameControllerExample.gc, then a couple of rounds
+        for (String player : gc.getGameFlow().getAllUsernames()) {
+            gc.setStarterCard(player, CardFace.FRONT);
+        }
+        for (String player : gc.getGameFlow().getAllUsernames()) {
+            gc.setPlayerColor(player, gc.getAvailableColors().get(0));
+        }
+        for (String player : gc.getGameFlow().getAllUsernames()) {
+            gc.choosePrivateGoal(player, gc.getProposedPrivateGoals(player).get(0));
+        }
+        for (int round = 0; round < 2; round++) {
+            for (String player : gc.getGameFlow().getAllUsernames()) {
+                GameControllerExample.playTurn(gc, player);
+            }
+        }
+
+        // Only the deltas brought the replica here: getVersion never fetches
+        long deadline = System.currentTimeMillis() + 5000;
+        while (replica.getVersion() != gc.getSnapshot().getVersion() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(gc.getSnapshot().getVersion(), replica.getVersion());
+
+        for (String player : players4) {
+            assertEquals(gc.getManuscript(player), replica.getManuscript(player));
+            assertEquals(gc.getManuscript(player).getItemsNumber(), replica.getManuscript(player).getItemsNumber());
+            assertEquals(gc.getPlayerData(player).getPoints(), replica.getPlayerData(player).getPoints());
+            assertEquals(gc.getPlayerData(player).getColor(), replica.getPlayerData(player).getColor());
+        }
+        assertEquals(gc.getPlayerData("g0").getHand(), replica.getPlayerData("g0").getHand());
+        assertEquals(gc.getPlayerData("g0").getPrivateGoal(), replica.getPlayerData("g0").getPrivateGoal());
+        // The private data of the others never reaches the replica
+        assertEquals(gc.getCleanPlayerData("g1").getPrivateGoal(), replica.getPlayerData("g1").getPrivateGoal());
+
+        for (CardType type : CardType.values()) {
+            assertEquals(gc.getGameBoard().getVisibleCards(type), replica.getGameBoard().getVisibleCards(type));
+            assertEquals(gc.getGameBoard().getCoveredCardsLeft(type), replica.getGameBoard().getCoveredCardsLeft(type));
+        }
+        assertEquals(gc.getGameFlow().getTurn(), replica.getGameFlow().getTurn());
+        assertEquals(gc.getGameFlow().getState(), replica.getGameFlow().getState());
+
+        // A player that fell behind catches up with the deltas, not with the whole state
+        VersionedGameState catchUp = gc.getGameState("g0", start);
+        assertTrue(catchUp.isIncremental());
+        assertEquals(gc.getSnapshot().getVersion(), catchUp.version());
+    }
+
     @Test
     public void cannotPlaceNullCardTest() {
         GameController gc = GameControllerExample.gc(players4);
@@ -280,6 +384,201 @@ public class GameControllerTest {
 
     }
 
+    @Test
+    public void drawEventsAreDeliveredInOneOrderedBatchTest() throws InterruptedException {
+        GameController gc = GameControllerExample.gc(players4);
+
+        String currPlayer = gc.getGameFlow().getCurrentPlayer();
+
+        TypedCard card = gc.getPlayerData(currPlayer).getHand().get(0);
+        card.flip();
+        assertTrue(gc.placeCard(currPlayer, card, new ManuscriptPosition(1, 0)));
+
+        Map<String, List<FiredEvent>> batches = new ConcurrentHashMap<>();
+        CountDownLatch delivered = new CountDownLatch(players4.size());
+
+        for (String player : players4) {
+            gc.addBatchHandler(player, batch -> {
+                batches.put(player, batch.getEvents());
+                delivered.countDown();
+            });
+        }
+
+        gc.drawVisibleCard(currPlayer, CardType.GOLD, 1);
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+        // Everyone gets the changes first; then the drawer only gets the turn change, the others get the draw and
+        // then the turn change
+        assertEquals(List.of(GameEvents.STATE_DELTA, GameEvents.TURN_CHANGE), batches.get(currPlayer).stream().map(FiredEvent::type).toList());
+
+        for (String player : players4) {
+            if (!player.equals(currPlayer)) {
+                assertEquals(List.of(GameEvents.STATE_DELTA, GameEvents.DRAW_VISIBLE, GameEvents.TURN_CHANGE),
+                        batches.get(player).stream().map(FiredEvent::type).toList());
+            }
+        }
+    }
+
+    @Test
+    public void matchActorRunsOneCommandAtATimeTest() throws Exception {
+        // An actor on its own shards: the actor mode of the whole JVM stays as it is for the other tests
+        GameController gc = GameControllerExample.gc(players4);
+        MatchActor actor = new MatchActor(gc, new MatchShards(4));
+
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger overlaps = new AtomicInteger(0);
+        List<CompletableFuture<GameFlow>> replies = new CopyOnWriteArrayList<>();
+        List<Thread> submitters = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    replies.add(actor.submit(g -> {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        GameFlow flow = g.getGameFlow();
+                        running.decrementAndGet();
+                        return flow;
+                    }));
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        CompletableFuture.allOf(replies.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(200, replies.size());
+        assertEquals(0, overlaps.get());
+
+        // A command calling its own match runs the nested command right away instead of waiting for itself
+        assertEquals(gc.getGameFlow().getCurrentPlayer(),
+                actor.submit(g -> actor.call(GameController::getGameFlow).getCurrentPlayer()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void matchActorDoesNotOvertakeOtherMatchesOfItsShardTest() throws Exception {
+        // Two matches on the same shard
+        MatchShards shards = new MatchShards(1);
+        MatchActor first = new MatchActor(GameControllerExample.gc(players4), shards);
+        MatchActor second = new MatchActor(GameControllerExample.gc(players4), shards);
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> runs = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<CompletableFuture<Boolean>> nested = first.submit(g -> {
+            try {
+                blocked.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            return second.submit(h -> runs.add("nested"));
+        });
+        CompletableFuture<Boolean> queued = second.submit(h -> runs.add("queued"));
+        blocked.countDown();
+
+        // A command of the first match submitting to the second one waits for the commands the second one had queued
+        nested.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("queued", "nested"), runs);
+    }
+
+    @Test
+    public void consecutiveCommandsReachSubscriberInOrderTest() throws InterruptedException {
+        GameController gc = GameControllerExample.gc(players4);
+
+        String currPlayer = gc.getGameFlow().getCurrentPlayer();
+        String other = players4.stream().filter(p -> !p.equals(currPlayer)).findFirst().orElseThrow();
+
+        List<List<EventType<? extends Event>>> received = new ArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+
+        gc.addBatchHandler(other, batch -> {
+            // A slow first delivery must not let the next command overtake it
+            if (received.isEmpty()) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+            }
+
+            received.add(batch.getEvents().stream().<EventType<? extends Event>>map(FiredEvent::type).toList());
+            delivered.countDown();
+        });
+
+        TypedCard card = gc.getPlayerData(currPlayer).getHand().get(0);
+        card.flip();
+        assertTrue(gc.placeCard(currPlayer, card, new ManuscriptPosition(1, 0)));
+        gc.drawCoveredCard(currPlayer, CardType.RESOURCE);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(
+                List.of(GameEvents.STATE_DELTA, GameEvents.PLACE_EVENT),
+                List.of(GameEvents.STATE_DELTA, GameEvents.DRAW_COVERED, GameEvents.TURN_CHANGE)
+        ), received);
+        assertEquals(0, gc.getEventQueueDepth(other));
+    }
+
+    @Test
+    public void placeAndDrawPlaysAWholeTurnInOneBatchTest() throws InterruptedException {
+        GameController gc = GameControllerExample.gc(players4);
+
+        String currPlayer = gc.getGameFlow().getCurrentPlayer();
+
+        TypedCard card = gc.getPlayerData(currPlayer).getHand().get(0);
+        card.flip();
+        TypedCard visible = gc.getGameBoard().getVisibleCards(CardType.GOLD).get(1);
+
+        Map<String, List<FiredEvent>> batches = new ConcurrentHashMap<>();
+        CountDownLatch delivered = new CountDownLatch(players4.size() - 1);
+
+        for (String player : players4) {
+            if (!player.equals(currPlayer)) {
+                gc.addBatchHandler(player, batch -> {
+                    batches.put(player, batch.getEvents());
+                    delivered.countDown();
+                });
+            }
+        }
+
+        PlaceAndDrawResult result = gc.placeAndDraw(currPlayer,
+                PlaceAndDraw.drawingVisible(card, new ManuscriptPosition(1, 0), CardType.GOLD, 1));
+
+        assertTrue(result.placed());
+        // Like drawVisibleCard, the result holds the card that replaced the drawn one
+        assertTrue(gc.getPlayerData(currPlayer).getHand().stream().anyMatch(c -> c.getId() == visible.getId()));
+        assertEquals(gc.getGameBoard().getVisibleCards(CardType.GOLD).get(1).getId(), result.drawn().getId());
+        assertTrue(result.turnOver());
+        assertNotEquals(currPlayer, gc.getGameFlow().getCurrentPlayer());
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+        // The whole turn reaches the other players at once
+        for (String player : batches.keySet()) {
+            assertEquals(List.of(GameEvents.STATE_DELTA, GameEvents.PLACE_EVENT, GameEvents.DRAW_VISIBLE, GameEvents.TURN_CHANGE),
+                    batches.get(player).stream().map(FiredEvent::type).toList());
+        }
+    }
+
+    @Test
+    public void placeAndDrawKeepsTurnIfPlacementFailsTest() {
+        GameController gc = GameControllerExample.gc(players4);
+
+        String currPlayer = gc.getGameFlow().getCurrentPlayer();
+        TypedCard card = gc.getPlayerData(currPlayer).getHand().get(0);
+
+        // (5, 5) is not adjacent to the starter card
+        PlaceAndDrawResult result = gc.placeAndDraw(currPlayer,
+                PlaceAndDraw.drawingCovered(card, new ManuscriptPosition(5, 5), CardType.RESOURCE));
+
+        assertFalse(result.placed());
+        assertNull(result.drawn());
+        assertEquals(currPlayer, gc.getGameFlow().getCurrentPlayer());
+        assertEquals(3, gc.getPlayerData(currPlayer).getHand().size());
+    }
+
     @Test
     public void placingCardDuringLastRoundGivesTurnToNextPlayerTest() {
         GameController gc = GameControllerExample.lastRoundGc(players4);
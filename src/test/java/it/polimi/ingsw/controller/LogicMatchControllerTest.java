@@ -0,0 +1,122 @@
+package it.polimi.ingsw.controller;
+
+import it.polimi.ingsw.controller.event.lobby.LobbyListChangeEvent;
+import it.polimi.ingsw.model.game.gamelobby.GameLobbyException;
+import it.polimi.ingsw.model.game.gamelobby.LobbyInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogicMatchControllerTest {
+
+    @Test
+    public void lobbiesAreFoundByUUIDAndPlayerThroughTheirLifeTest() throws MatchControllerException, GameLobbyException {
+        LogicMatchController lmc = new LogicMatchController(16, 16);
+
+        lmc.createLobby("first", 2, "g0");
+        lmc.createLobby("second", 3, "g2");
+
+        LobbyInfo first = lmc.getLobbyInfoByPlayerUsername("g0");
+        assertEquals("first", first.getName());
+        assertSame(first, lmc.getInfoLobbyByUUID(first.getUuid()));
+        assertNotSame(first, lmc.getLobbyInfoByPlayerUsername("g2"));
+
+        // Most recent first
+        assertEquals("second", lmc.getInfoLobbies().get(0).getName());
+
+        assertFalse(lmc.joinLobby(first.getUuid(), "g1"));
+        assertSame(first, lmc.getLobbyInfoByPlayerUsername("g1"));
+        assertSame(lmc.getChatController("g0"), lmc.getChatController("g1"));
+        assertNull(lmc.getGameController("g1"));
+
+        lmc.startLobby("g0");
+        GameController gc = lmc.getGameController("g1");
+        assertNotNull(gc);
+        assertThrows(MatchControllerException.class, () -> lmc.startLobby("g0"));
+
+        // A player leaving the match can join it again, a new one cannot
+        lmc.exitMatch("g1");
+        assertThrows(MatchControllerException.class, () -> lmc.getLobbyInfoByPlayerUsername("g1"));
+        assertTrue(lmc.getLobbableBiasedLobbyInfo("g1").contains(first));
+        assertFalse(lmc.getLobbableBiasedLobbyInfo("g3").contains(first));
+        assertTrue(lmc.joinLobby(first.getUuid(), "g1"));
+        assertSame(gc, lmc.getGameController("g1"));
+
+        // The last player leaving prunes the lobby
+        lmc.exitLobby("g2");
+        assertThrows(MatchControllerException.class, () -> lmc.getLobbyInfoByPlayerUsername("g2"));
+        assertEquals(1, lmc.getInfoLobbies().size());
+    }
+
+    @Test
+    public void lobbyIdsAreNeverReusedAndMatchesAreCappedTest() throws MatchControllerException, GameLobbyException {
+        LogicMatchController lmc = new LogicMatchController(1000, 1);
+
+        lmc.createLobby("first", 2, "g0");
+        String firstUuid = lmc.getLobbyInfoByPlayerUsername("g0").getUuid();
+        lmc.exitLobby("g0");
+
+        lmc.createLobby("first", 2, "g0");
+        lmc.createLobby("second", 2, "g2");
+        assertNotEquals(firstUuid, lmc.getLobbyInfoByPlayerUsername("g0").getUuid());
+        assertEquals(4, firstUuid.length());
+
+        lmc.joinLobby(lmc.getLobbyInfoByPlayerUsername("g0").getUuid(), "g1");
+        lmc.joinLobby(lmc.getLobbyInfoByPlayerUsername("g2").getUuid(), "g3");
+        lmc.startLobby("g0");
+
+        MatchControllerException e = assertThrows(MatchControllerException.class, () -> lmc.startLobby("g2"));
+        assertEquals(MatchControllerException.Reason.NO_MORE_SPACE_FOR_NEW_MATCHES, e.getReason());
+
+        // Invalid capacities fall back to the one sized on the heap
+        assertEquals(LogicMatchController.getDefaultCapacity(), (int) new LogicMatchController(0, null).getMaxLobbies());
+    }
+
+    @Test
+    public void lobbyListIsPagedFilteredAndPushedToSubscribersTest() throws MatchControllerException, GameLobbyException {
+        LogicMatchController lmc = new LogicMatchController(16, 16);
+
+        lmc.createLobby("alpha", 2, "g0");
+        lmc.createLobby("beta", 2, "g1");
+        lmc.createLobby("alps", 3, "g2");
+
+        LobbyPage page = lmc.getLobbyPage("g9", new LobbyQuery(1, 1, false, null, false));
+        assertEquals(3, page.total());
+        assertEquals(List.of("beta"), page.lobbies().stream().map(LobbyInfo::getName).toList());
+
+        page = lmc.getLobbyPage("g9", new LobbyQuery(0, 10, false, "AL", false));
+        assertEquals(List.of("alpha", "alps"), page.lobbies().stream().map(LobbyInfo::getName).toList());
+
+        List<LobbyListChangeEvent> changes = new ArrayList<>();
+        LobbyPage subscribed = lmc.subscribeLobbies("g9", new LobbyQuery(0, 10, true, null, false), changes::add);
+        assertEquals(3, subscribed.total());
+
+        // A lobby getting full is no longer listed to who looks for a free seat, a new one is
+        String alpha = lmc.getLobbyInfoByPlayerUsername("g0").getUuid();
+        lmc.joinLobby(alpha, "g3");
+        lmc.createLobby("gamma", 2, "g4");
+
+        assertEquals(2, changes.size());
+        assertEquals(LobbyListChangeEvent.Kind.REMOVED, changes.get(0).kind());
+        assertEquals(alpha, changes.get(0).lobby().getUuid());
+        assertEquals(LobbyListChangeEvent.Kind.ADDED, changes.get(1).kind());
+        assertEquals("gamma", changes.get(1).lobby().getName());
+        assertTrue(changes.get(0).version() > subscribed.version());
+        assertTrue(changes.get(1).version() > changes.get(0).version());
+
+        // A started match is listed only to its players, for them to rejoin
+        lmc.startLobby("g0");
+        lmc.exitMatch("g3");
+        assertEquals(List.of(alpha), lmc.getLobbyPage("g3", new LobbyQuery(0, 10, false, null, true)).lobbies()
+                .stream().map(LobbyInfo::getUuid).toList());
+        assertTrue(lmc.getLobbyPage("g9", new LobbyQuery(0, 10, false, null, true)).lobbies().isEmpty());
+
+        // Joining a lobby leaves the lobby browser
+        lmc.joinLobby(lmc.getLobbyInfoByPlayerUsername("g2").getUuid(), "g9");
+        lmc.exitLobby("g4");
+        assertEquals(2, changes.size());
+    }
+}
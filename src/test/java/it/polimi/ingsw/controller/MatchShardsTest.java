@@ -0,0 +1,48 @@
+package it.polimi.ingsw.controller;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MatchShardsTest {
+
+    @Test
+    public void matchesGoToTheLeastLoadedShardAndStayOnItsThreadTest() throws InterruptedException {
+        MatchShards shards = new MatchShards(2);
+
+        MatchShards.Shard first = shards.place("0000");
+        MatchShards.Shard second = shards.place("0001");
+        assertNotSame(first, second);
+        assertSame(first, shards.getShard("0000"));
+
+        // The shard left by a pruned match is the next one to be filled
+        shards.release("0000");
+        assertEquals(0, first.getMatches());
+        assertSame(first, shards.place("0002"));
+        assertNull(shards.getShard("0000"));
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<MatchShards.Shard> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            second.execute(() -> {
+                threads.add(Thread.currentThread());
+                seen.add(MatchShards.current());
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+        assertTrue(seen.stream().allMatch(shard -> shard == second));
+        assertNull(MatchShards.current());
+    }
+}
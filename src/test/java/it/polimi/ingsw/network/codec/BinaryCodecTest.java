@@ -0,0 +1,280 @@
+package it.polimi.ingsw.network.codec;
+
+import it.polimi.ingsw.controller.GameController;
+import it.polimi.ingsw.controller.GameFlow;
+import it.polimi.ingsw.controller.GameState;
+import it.polimi.ingsw.controller.LobbyQuery;
+import it.polimi.ingsw.model.card.Card;
+import it.polimi.ingsw.model.card.TypedCard;
+import it.polimi.ingsw.model.card.factory.*;
+import it.polimi.ingsw.model.card.properties.CardFace;
+import it.polimi.ingsw.model.card.properties.CardKingdom;
+import it.polimi.ingsw.model.card.properties.CardObject;
+import it.polimi.ingsw.model.card.properties.CornerPosition;
+import it.polimi.ingsw.model.game.CardType;
+import it.polimi.ingsw.model.player.ManuscriptPosition;
+import it.polimi.ingsw.model.player.PlayerColor;
+import it.polimi.ingsw.model.player.PlayerData;
+import it.polimi.ingsw.network.messages.*;
+import it.polimi.ingsw.network.messages.clienttoserver.*;
+import it.polimi.ingsw.network.messages.servertoclient.*;
+import it.polimi.ingsw.network.tcpip.FramedProtocol;
+import it.polimi.ingsw.network.tcpip.Heartbeat;
+import it.polimi.ingsw.network.tcpip.Sense;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+    private final BinaryCodec codec = new BinaryCodec();
+
+    @SuppressWarnings("unchecked")
+    private <T> T roundTrip(T object) throws IOException {
+        Object decoded = codec.decode(codec.encode(object));
+        assertSame(object.getClass(), decoded.getClass());
+        return (T) decoded;
+    }
+
+    private Object roundTripValue(Object value) throws IOException {
+        SingleArgMessage<Object> decoded = roundTrip(new SingleArgMessage<>(MessageType.STATE_CHANGE_EVENT, value));
+        assertEquals(MessageType.STATE_CHANGE_EVENT, decoded.getType());
+        return decoded.get();
+    }
+
+    private static void assertSameCard(Card expected, Object actual) {
+        assertSame(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), ((Card) actual).getId());
+        assertEquals(expected.getFace(), ((Card) actual).getFace());
+    }
+
+    private static void assertSamePlayer(PlayerData expected, PlayerData actual) {
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getPoints(), actual.getPoints());
+        assertSameCard(expected.getPrivateGoal(), actual.getPrivateGoal());
+        assertEquals(expected.getHand().size(), actual.getHand().size());
+
+        for (int i = 0; i < expected.getHand().size(); i++) {
+            assertSameCard(expected.getHand().get(i), actual.getHand().get(i));
+        }
+    }
+
+    @Test
+    public void everyNamedMessageSurvivesARoundTripTest() throws IOException {
+        List<Message> fieldless = List.of(
+                new GetLobbyInfoMessage(),
+                new LobbyExitMessage(),
+                new MatchExitMessage(),
+                new StartLobbyMessage(),
+                new InvalidLobbyInfoForCreationMessage(),
+                new LobbyAlreadyFullMessage(),
+                new LobbyExitOKMessage(),
+                new LobbyJoinOKMessage(),
+                new LobbyStartKOMessage(),
+                new LobbyStartMessage(),
+                new LobbyStartOKMessage(),
+                new MatchExitOKMessage(),
+                new NoMoreSpaceForNewLobbiesMessage(),
+                new UnknownErrorMessage(),
+                new UsernameAlreadyTakenMessage(),
+                new UsernameConfirmedMessage(),
+                new StopLobbyUpdatesMessage()
+        );
+
+        for (Message message : fieldless) {
+            assertEquals(message.getType(), roundTrip(message).getType());
+        }
+
+        assertEquals("g0", roundTrip(new UsernameMessage("g0")).getUsername());
+        assertEquals("00a1", roundTrip(new WhatLobbyToJoinMessage("00a1")).getLobbyUUID());
+        assertEquals("too long", roundTrip(new UsernameNotValidMessage("too long")).getReason());
+
+        LobbyInfoForCreationMessage creation = roundTrip(new LobbyInfoForCreationMessage("lobbÿ", 3));
+        assertEquals("lobbÿ", creation.getLobbyName());
+        assertEquals(Integer.valueOf(3), creation.getMaxPlayers());
+
+        GetListOfLobbyToJoinMessage all = roundTrip(new GetListOfLobbyToJoinMessage());
+        assertEquals(LobbyQuery.ALL, all.getQuery());
+        assertFalse(all.isSubscribe());
+
+        LobbyQuery query = new LobbyQuery(20, 10, true, "al", true);
+        GetListOfLobbyToJoinMessage filtered = roundTrip(new GetListOfLobbyToJoinMessage(query, true));
+        assertEquals(query, filtered.getQuery());
+        assertTrue(filtered.isSubscribe());
+    }
+
+    @Test
+    public void everyTaggedValueSurvivesARoundTripTest() throws IOException {
+        assertNull(roundTripValue(null));
+        assertEquals(true, roundTripValue(true));
+        assertEquals(false, roundTripValue(false));
+
+        for (int n : new int[]{0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertEquals(n, roundTripValue(n));
+        }
+
+        assertEquals("", roundTripValue(""));
+        assertEquals("città 🍄", roundTripValue("città 🍄"));
+
+        List<Enum<?>> constants = new ArrayList<>();
+        for (Class<? extends Enum<?>> type : List.of(CardFace.class, CardType.class, PlayerColor.class,
+                GameState.class, CornerPosition.class, CardKingdom.class, CardObject.class)) {
+            constants.addAll(Arrays.asList(type.getEnumConstants()));
+        }
+        for (Enum<?> constant : constants) {
+            assertSame(constant, roundTripValue(constant));
+        }
+
+        assertEquals(new ManuscriptPosition(-3, 41), roundTripValue(new ManuscriptPosition(-3, 41)));
+
+        // One card of every factory, on both faces, and a clean card
+        for (CardFactory factory : List.of(new ResourceCardFactory(), new GoldCardFactory(),
+                new StarterCardFactory(), new GoalCardFactory())) {
+            for (int id = factory.getFirstId(); id < factory.getFirstId() + factory.getSize(); id++) {
+                Card card = factory.generateCard(id);
+                assertSameCard(card, roundTripValue(card));
+
+                card.setFace(CardFace.BACK);
+                assertSameCard(card, roundTripValue(card));
+
+                if (card instanceof TypedCard typed) {
+                    TypedCard clean = typed.cleanCard();
+                    assertSameCard(clean, roundTripValue(clean));
+                }
+            }
+        }
+
+        List<Object> nested = new ArrayList<>(List.of(1, "two", List.of(false)));
+        nested.add(null);
+        assertEquals(nested, roundTripValue(nested));
+
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("g0", 3);
+        map.put(PlayerColor.RED, List.of(new ManuscriptPosition(0, 0)));
+        assertEquals(map, roundTripValue(map));
+
+        // Cards with ids no factory generates travel as blobs
+        Card odd = new ResourceCardFactory().generateCard(1).cleanCard().cleanCard();
+        assertSameCard(odd, roundTripValue(odd));
+
+        // Values with no explicit encoder travel as filtered blobs
+        GameFlow flow = (GameFlow) roundTripValue(new GameFlow(List.of("g0", "g1")));
+        assertEquals(List.of("g0", "g1"), flow.getAllUsernames());
+        assertEquals(GameState.SETTING, flow.getState());
+    }
+
+    @Test
+    public void playerDataWithHiddenGoalsSurvivesARoundTripTest() throws IOException {
+        GameController gc = new GameController(List.of("g0", "g1", "g2"));
+
+        for (String username : gc.getGameFlow().getAllUsernames()) {
+            gc.choosePrivateGoal(username, gc.getProposedPrivateGoals(username).get(0));
+        }
+
+        // The other players' goals are hidden behind a placeholder no factory generates
+        List<PlayerData> all = gc.getAllPlayerData("g0");
+        assertEquals(112, all.get(1).getPrivateGoal().getId());
+
+        SingleArgMessage<List<PlayerData>> decoded = roundTrip(
+                new SingleArgMessage<>(MessageType.ANSWER_GET_ALL_PLAYER_DATA, all));
+        assertEquals(MessageType.ANSWER_GET_ALL_PLAYER_DATA, decoded.getType());
+        assertEquals(all.size(), decoded.get().size());
+
+        for (int i = 0; i < all.size(); i++) {
+            assertSamePlayer(all.get(i), decoded.get().get(i));
+        }
+    }
+
+    @Test
+    public void everyMessageShapeSurvivesARoundTripTest() throws IOException {
+        assertSame(Heartbeat.class, codec.decode(codec.encode(new Heartbeat())).getClass());
+        assertSame(Sense.class, codec.decode(codec.encode(new Sense())).getClass());
+
+        assertEquals(MessageType.GET_GAMEFLOW, roundTrip(new ZeroArgMessage(MessageType.GET_GAMEFLOW)).getType());
+
+        DoubleArgMessage<String, Integer> two = roundTrip(new DoubleArgMessage<>(MessageType.DRAW_VISIBLE_CARD, "g0", 2));
+        assertEquals("g0", two.get1());
+        assertEquals(Integer.valueOf(2), two.get2());
+
+        TripleArgMessage<String, Boolean, ManuscriptPosition> three = roundTrip(
+                new TripleArgMessage<>(MessageType.PLACE_CARD, "g1", true, new ManuscriptPosition(1, -1)));
+        assertEquals("g1", three.get1());
+        assertEquals(true, three.get2());
+        assertEquals(new ManuscriptPosition(1, -1), three.get3());
+
+        EventBatchMessage batch = roundTrip(new EventBatchMessage(List.of(
+                new SingleArgMessage<>(MessageType.TURN_CHANGE_EVENT, "g1"),
+                new LobbyStartMessage())));
+        Function<Message, MessageType> type = Message::getType;
+        assertEquals(List.of(MessageType.TURN_CHANGE_EVENT, MessageType.LOBBY_START),
+                batch.getMessages().stream().map(type).toList());
+        assertEquals("g1", ((SingleArgMessage<?>) batch.getMessages().get(0)).get());
+    }
+
+    @Test
+    public void deeplyNestedValuesAreRejectedTest() throws IOException {
+        // Encoded by hand: the encoder itself would overflow the stack first
+        byte[] payload = new byte[4 + 10_000 * 2 + 2];
+        int at = 0;
+        payload[at++] = 2;  // KIND_ARGS_MESSAGE
+        payload[at++] = (byte) MessageType.STATE_CHANGE_EVENT.ordinal();
+        payload[at++] = 1;  // One argument
+        for (int i = 0; i < 10_000; i++) {
+            payload[at++] = 6;  // TAG_LIST
+            payload[at++] = 1;  // One element
+        }
+        payload[at++] = 3;  // TAG_INT
+        payload[at] = 2;    // zigzag(1)
+
+        assertThrows(IOException.class, () -> codec.decode(payload));
+    }
+
+    private static byte[] varInt(int value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while ((value & ~0x7F) != 0) {
+            bytes.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void hostileBatchesAreRejectedTest() throws IOException {
+        byte[] inner = codec.encode(new LobbyStartMessage());
+
+        // 100k batches, each holding the next one: the lengths are computed from the innermost outwards
+        int levels = 100_000;
+        int[] lengths = new int[levels + 1];
+        lengths[0] = inner.length;
+        for (int i = 1; i <= levels; i++) {
+            lengths[i] = 2 + varInt(lengths[i - 1]).length + lengths[i - 1];
+        }
+
+        ByteArrayOutputStream nested = new ByteArrayOutputStream(lengths[levels]);
+        for (int i = levels; i >= 1; i--) {
+            nested.write(5);  // KIND_BATCH
+            nested.write(1);  // One message
+            nested.write(varInt(lengths[i - 1]));
+        }
+        nested.write(inner);
+
+        assertTrue(nested.size() < FramedProtocol.MAX_FRAME_BYTES);
+        assertThrows(IOException.class, () -> codec.decode(nested.toByteArray()));
+
+        // A flat batch reaches the Clients, but the Server never accepts one
+        byte[] batch = codec.encode(new EventBatchMessage(List.of(new LobbyStartMessage())));
+        assertEquals(1, ((EventBatchMessage) codec.decode(batch)).getMessages().size());
+        assertThrows(IOException.class, () -> codec.decodeFromClient(batch));
+        assertSame(UsernameMessage.class, codec.decodeFromClient(codec.encode(new UsernameMessage("g0"))).getClass());
+
+        WireCodec deflate = new DeflateCodec(codec);
+        assertThrows(IOException.class, () -> deflate.decodeFromClient(deflate.encode(
+                new EventBatchMessage(List.of(new LobbyStartMessage())))));
+    }
+}